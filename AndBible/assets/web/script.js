@@ -3,20 +3,42 @@ function jsonload() {
 	registerVersePositions();
 }
 
+// scroll events arrive for every frame so only report the position a few times a second, and always after scrolling stops
+var SCROLL_REPORT_INTERVAL = 100;
+var scrollReportPending = false;
+
 function jsonscroll() {
-	window.jsInterface.onScroll(window.pageYOffset);
+	if (!scrollReportPending) {
+		scrollReportPending = true;
+		setTimeout(function() {
+			scrollReportPending = false;
+			window.jsInterface.onScroll(window.pageYOffset);
+		}, SCROLL_REPORT_INTERVAL);
+	}
+}
+
+// long pages are shown in pieces, each piece is added to the end of the page
+function appendHtml(html, isFinished) {
+	var container = document.createElement('div');
+	container.innerHTML = html;
+	while (container.firstChild) {
+		document.body.appendChild(container.firstChild);
+	}
+	if (isFinished) {
+		registerVersePositions();
+	}
 }
 
 function registerVersePositions() {
-	window.jsInterface.clearVersePositionCache();
-	
 	var verseTags = getVerseElements();
 	window.jsInterface.log("Num verses found:"+verseTags.length);
+	var positions = [];
 	for (i=0; i<verseTags.length; i++) {
 		verseTag = verseTags[i];
-		// send position of each verse to java to allow calculation of current verse after each scroll
-		window.jsInterface.registerVersePosition(verseTag.id, verseTag.offsetTop);
+		positions.push(verseTag.id+":"+verseTag.offsetTop);
 	}
+	// send position of every verse to java in one call to allow calculation of current verse after each scroll
+	window.jsInterface.registerVersePositions(positions.join(","));
 //	window.jsInterface.log("Register document height:"+document.height);
 //	window.jsInterface.setDocumentHeightWhenVersePositionsRegistered(document.height);
 }
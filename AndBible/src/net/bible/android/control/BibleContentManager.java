@@ -1,5 +1,9 @@
 package net.bible.android.control;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import net.bible.android.control.page.ChapterPrefetcher;
 import net.bible.android.control.page.CurrentPage;
 import net.bible.android.control.page.UpdateTextTask;
 import net.bible.android.control.page.window.Window;
@@ -26,6 +30,12 @@ public class BibleContentManager {
 	private Book previousDocument;
 	private Key previousVerse;
 	
+	// render adjacent chapters in the background after the current chapter is shown
+	private ChapterPrefetcher chapterPrefetcher = new ChapterPrefetcher();
+	
+	// a long page may still be being passed to the view in pieces; each window has its own page being loaded
+	private Map<Window, UpdateMainTextTask> currentUpdateTextTasks = new HashMap<>();
+	
 	private static final String TAG = "BibleContentManager";
 	
 	public BibleContentManager(DocumentViewManager documentViewManager) {
@@ -53,7 +63,16 @@ public class BibleContentManager {
 			previousDocument = document;
 			previousVerse = key;
 		}
-		new UpdateMainTextTask().execute(window);
+		// any prefetching for the previous page in this window is now irrelevant and would compete with the page being loaded
+		chapterPrefetcher.cancel(window);
+		// prevent pieces of the previous page being appended to the new page, but leave other windows loading
+		UpdateMainTextTask previousTask = currentUpdateTextTasks.get(window);
+		if (previousTask!=null) {
+			previousTask.cancel(false);
+		}
+		UpdateMainTextTask updateTextTask = new UpdateMainTextTask();
+		currentUpdateTextTasks.put(window, updateTextTask);
+		updateTextTask.execute(window);
     }
 
     private class UpdateMainTextTask extends UpdateTextTask {
@@ -66,6 +85,15 @@ public class BibleContentManager {
         protected void onPostExecute(String htmlFromDoInBackground) {
         	super.onPostExecute(htmlFromDoInBackground);
     		PassageChangeMediator.getInstance().contentChangeFinished();
+
+    		if (currentUpdateTextTasks.get(getWindow())==this) {
+    			currentUpdateTextTasks.remove(getWindow());
+    		}
+
+    		// wait until the whole page is shown so prefetching does not delay any remaining pieces
+    		if (documentViewManager!=null) {
+    			chapterPrefetcher.prefetchAdjacentChapters(getWindow());
+    		}
         }
 
         /** callback from base class when result is ready */
@@ -78,5 +106,17 @@ public class BibleContentManager {
     			Log.w(TAG, "Document view not yet registered");
     		}
         }
+
+    	@Override
+    	protected void appendText(String text, Window window, boolean isFinished) {
+    		if (documentViewManager!=null) {
+    			documentViewManager.getDocumentView(window).append(text, isFinished);
+    		}
+    	}
+
+    	@Override
+    	protected boolean isShowInPiecesSupported() {
+    		return true;
+    	}
     }
 }
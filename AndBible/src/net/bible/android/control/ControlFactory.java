@@ -9,6 +9,7 @@ import net.bible.android.control.backup.BackupControl;
 import net.bible.android.control.bookmark.Bookmark;
 import net.bible.android.control.bookmark.BookmarkControl;
 import net.bible.android.control.comparetranslations.CompareTranslationsControl;
+import net.bible.android.control.dictionary.DictionaryKeyIndexFactory;
 import net.bible.android.control.document.DocumentControl;
 import net.bible.android.control.download.DownloadControl;
 import net.bible.android.control.event.ABEventBus;
@@ -43,6 +44,7 @@ public class ControlFactory {
 	
 	private WindowRepository windowRepository;
 	private DocumentBibleBooksFactory documentBibleBooksFactory = new DocumentBibleBooksFactory();
+	private DictionaryKeyIndexFactory dictionaryKeyIndexFactory = new DictionaryKeyIndexFactory();
 	private BibleTraverser bibleTraverser = new BibleTraverser();
 	private DocumentControl documentControl = new DocumentControl();
 	private PageControl pageControl = new PageControl();
@@ -118,6 +120,10 @@ public class ControlFactory {
 		return documentBibleBooksFactory;
 	}
 
+	public DictionaryKeyIndexFactory getDictionaryKeyIndexFactory() {
+		return dictionaryKeyIndexFactory;
+	}
+
 	public PageControl getPageControl() {
 		ensureAllInitialised();
 		return pageControl;		
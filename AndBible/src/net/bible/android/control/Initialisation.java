@@ -4,6 +4,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 import net.bible.service.history.HistoryManager;
+import net.bible.service.sword.SwordContentFacade;
 import net.bible.service.sword.SwordDocumentFacade;
 
 /**
@@ -55,6 +56,14 @@ public class Initialisation {
 	        
 	        // needs to register a listener
 	        ControlFactory.getInstance().getDocumentBibleBooksFactory().initialise();
+	        ControlFactory.getInstance().getDictionaryKeyIndexFactory().initialise();
+	        SwordContentFacade.getInstance().getDocumentParseMethod().initialise();
+
+	        // continue creating any index that was being created when the app was killed
+	        SwordDocumentFacade.getInstance().resumeInterruptedIndexCreation();
+
+	        // continue any downloads that were interrupted when the app was killed
+	        SwordDocumentFacade.getInstance().resumeInterruptedDownloads();
 	        
 	        isInitialised = true;
 		}
@@ -2,6 +2,7 @@ package net.bible.android.control.bookmark;
 
 import java.util.List;
 
+import net.bible.android.control.page.VerseTextLoader.VerseTextLoadedListener;
 import net.bible.service.db.bookmark.BookmarkDto;
 import net.bible.service.db.bookmark.LabelDto;
 
@@ -22,6 +23,11 @@ public interface Bookmark {
 	String getBookmarkVerseKey(BookmarkDto bookmark);
 	String getBookmarkVerseText(BookmarkDto bookmark);
 	
+	/** text for item list if already loaded by loadBookmarkVerseText, otherwise null */
+	String getLoadedBookmarkVerseText(BookmarkDto bookmark);
+	/** load text of many bookmarks in one batch, in the background */
+	void loadBookmarkVerseText(List<BookmarkDto> bookmarks, VerseTextLoadedListener listener);
+	
 	/** get all labels */
 	List<LabelDto> getAllLabels();
 
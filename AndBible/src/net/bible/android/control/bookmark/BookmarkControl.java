@@ -13,6 +13,8 @@ import net.bible.android.common.resource.ResourceProvider;
 import net.bible.android.control.ControlFactory;
 import net.bible.android.control.page.CurrentBiblePage;
 import net.bible.android.control.page.CurrentPageManager;
+import net.bible.android.control.page.VerseTextLoader;
+import net.bible.android.control.page.VerseTextLoader.VerseTextLoadedListener;
 import net.bible.android.view.activity.base.Dialogs;
 import net.bible.service.common.CommonUtils;
 import net.bible.service.db.bookmark.BookmarkDBAdapter;
@@ -44,6 +46,8 @@ public class BookmarkControl implements Bookmark {
 	
 	private static final String BOOKMARK_SORT_ORDER = "BookmarkSortOrder";
 
+	private VerseTextLoader verseTextLoader = new VerseTextLoader();
+
 	private static final String TAG = "BookmarkControl";
 	
 	public BookmarkControl(ResourceProvider resourceProvider) {
@@ -109,6 +113,23 @@ public class BookmarkControl implements Bookmark {
 		return verseText;
 	}
 
+	@Override
+	public String getLoadedBookmarkVerseText(BookmarkDto bookmark) {
+		CurrentBiblePage currentBible = ControlFactory.getInstance().getCurrentPageControl().getCurrentBible();
+		return verseTextLoader.getLoadedText(currentBible.getCurrentDocument(), bookmark.getVerse(currentBible.getVersification()));
+	}
+
+	@Override
+	public void loadBookmarkVerseText(List<BookmarkDto> bookmarks, VerseTextLoadedListener listener) {
+		CurrentBiblePage currentBible = ControlFactory.getInstance().getCurrentPageControl().getCurrentBible();
+		Versification versification = currentBible.getVersification();
+		List<Verse> verses = new ArrayList<Verse>();
+		for (BookmarkDto bookmark : bookmarks) {
+			verses.add(bookmark.getVerse(versification));
+		}
+		verseTextLoader.loadAsync(currentBible.getCurrentDocument(), verses, listener);
+	}
+
 	// pure bookmark methods
 
 	/** get all bookmarks */
@@ -136,6 +157,7 @@ public class BookmarkControl implements Bookmark {
 		} finally {
 			db.close();
 		}
+		SwordContentFacade.getInstance().invalidateHtmlCache(bookmark.getVerse());
 		return newBookmark;
 	}
 
@@ -178,6 +200,7 @@ public class BookmarkControl implements Bookmark {
 			} finally {
 				db.close();
 			}
+			SwordContentFacade.getInstance().invalidateHtmlCache(bookmark.getVerse());
 		}		
 		return bOk;
 	}
@@ -1,27 +1,16 @@
 package net.bible.android.control.comparetranslations;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-
 import net.bible.android.BibleApplication;
 import net.bible.android.activity.R;
 import net.bible.android.control.ControlFactory;
+import net.bible.android.control.comparetranslations.TranslationComparer.TranslationsListener;
 import net.bible.android.control.page.CurrentPageManager;
-import net.bible.android.control.versification.ConvertibleVerse;
 import net.bible.service.common.CommonUtils;
-import net.bible.service.font.FontControl;
-import net.bible.service.sword.SwordContentFacade;
 import net.bible.service.sword.SwordDocumentFacade;
 
-import org.apache.commons.lang.StringUtils;
-import org.crosswire.jsword.book.Book;
-import org.crosswire.jsword.book.basic.AbstractPassageBook;
 import org.crosswire.jsword.passage.Verse;
 import org.crosswire.jsword.versification.BookName;
 
-import android.util.Log;
-
 /** Support the Compare Translations screen
  * 
  * @author Martin Denham [mjdenham at gmail dot com]
@@ -30,10 +19,9 @@ import android.util.Log;
  */
 public class CompareTranslationsControl {
 	
-	private static final String TAG = "CompareTranslationsControl";
-
 	private SwordDocumentFacade swordDocumentFacade = SwordDocumentFacade.getInstance();
-	private SwordContentFacade swordContentFacade = SwordContentFacade.getInstance();
+	
+	private TranslationComparer translationComparer = new TranslationComparer();
 	
 	public String getTitle() {
 		StringBuilder stringBuilder = new StringBuilder();
@@ -70,36 +58,17 @@ public class CompareTranslationsControl {
 		 return getVerse();
 	}
 	
-	/** return the list of verses to be displayed
+	/** fetch the current verse from all Bibles in the background
+	 * passing the translations to the listener, in Bible order, as they become available
 	 */
-	public List<TranslationDto> getAllTranslations() {
-		List<TranslationDto> retval = new ArrayList<TranslationDto>();
-		List<Book> books = swordDocumentFacade.getBibles();
-		FontControl fontControl = FontControl.getInstance();
-		
-		ConvertibleVerse convertibleVerse = new ConvertibleVerse(getVerse());
-		
-		for (Book book : books) {
-			try {
-				String text = swordContentFacade.getPlainText(book, convertibleVerse.getVerse(((AbstractPassageBook)book).getVersification()), 1);
-				if (text.length()>0) {
-					
-					// does this book require a custom font to display it
-					File fontFile = null;
-					String fontForBook = fontControl.getFontForBook(book);
-					if (StringUtils.isNotEmpty(fontForBook)) {
-						fontFile = fontControl.getFontFile(fontForBook);
-					}
-					
-					// create DTO with all required info to display this Translation text
-					retval.add(new TranslationDto(book, text, fontFile));
-				}
-			} catch (Exception nske) {
-				Log.d(TAG, getVerse()+" not in "+book);
-			}
-		}
-
-		return retval;		
+	public void getAllTranslations(TranslationsListener listener) {
+		translationComparer.compare(getVerse(), swordDocumentFacade.getBibles(), listener);
+	}
+	
+	/** stop fetching translations e.g. if the screen is closed
+	 */
+	public void cancel() {
+		translationComparer.cancel();
 	}
 	
 	public void showTranslation(TranslationDto translationDto) {
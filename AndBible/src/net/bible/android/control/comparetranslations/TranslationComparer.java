@@ -0,0 +1,264 @@
+package net.bible.android.control.comparetranslations;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.bible.android.control.versification.ConvertibleVerse;
+import net.bible.service.font.FontControl;
+import net.bible.service.sword.SwordContentFacade;
+
+import org.apache.commons.lang.StringUtils;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Versification;
+
+import android.util.Log;
+
+/**
+ * Fetch the text of a verse from many Bibles in parallel.
+ * Results are passed to a listener as each Bible completes, always in the order of the Bibles passed in.
+ * A Bible that takes too long is abandoned without delaying the others.
+ * Each comparison has its own threads which are stopped when it completes or is cancelled, so an abandoned Bible can not hold up later comparisons.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class TranslationComparer {
+
+	public interface TranslationsListener {
+		/** called on a background thread whenever another translation is available
+		 *
+		 * @param translations all translations fetched so far in Bible order
+		 */
+		void translationsUpdated(List<TranslationDto> translations);
+
+		/** called on a background thread when all Bibles have either returned text or timed out
+		 */
+		void comparisonComplete(List<TranslationDto> translations);
+	}
+
+	private Comparison currentComparison;
+
+	private SwordContentFacade swordContentFacade = SwordContentFacade.getInstance();
+
+	private static final int MAX_THREADS = 4;
+	private static final long MODULE_TIMEOUT_MILLIS = 3000;
+
+	private static final String TAG = "TranslationComparer";
+
+	/** fetch the verse from every Bible, cancelling any previous comparison
+	 */
+	public synchronized void compare(Verse verse, List<Book> bibles, TranslationsListener listener) {
+		cancel();
+
+		// convert once per versification rather than once per Bible
+		ConvertibleVerse convertibleVerse = new ConvertibleVerse(verse);
+		Map<Versification, Verse> convertedVerses = new HashMap<Versification, Verse>();
+		List<Verse> versePerBible = new ArrayList<Verse>(bibles.size());
+		for (Book bible : bibles) {
+			Versification v11n = ((AbstractPassageBook)bible).getVersification();
+			Verse converted = convertedVerses.get(v11n);
+			if (converted==null) {
+				converted = convertibleVerse.getVerse(v11n);
+				convertedVerses.put(v11n, converted);
+			}
+			versePerBible.add(converted);
+		}
+
+		currentComparison = new Comparison(bibles, versePerBible, listener);
+		currentComparison.start();
+	}
+
+	/** stop fetching, no more results will be passed to the listener
+	 */
+	public synchronized void cancel() {
+		if (currentComparison!=null) {
+			currentComparison.cancel();
+			currentComparison = null;
+		}
+	}
+
+	/**
+	 * Fetch and display info for one Bible
+	 */
+	private TranslationDto fetchTranslation(Book bible, Verse verse) throws BookException, NoSuchKeyException {
+		String text = swordContentFacade.getPlainText(bible, verse, 1);
+		if (text.length()==0) {
+			return null;
+		}
+
+		// does this book require a custom font to display it
+		File fontFile = null;
+		FontControl fontControl = FontControl.getInstance();
+		String fontForBook = fontControl.getFontForBook(bible);
+		if (StringUtils.isNotEmpty(fontForBook)) {
+			fontFile = fontControl.getFontFile(fontForBook);
+		}
+
+		// create DTO with all required info to display this Translation text
+		return new TranslationDto(bible, text, fontFile);
+	}
+
+	/**
+	 * Results of fetching one verse from all Bibles
+	 */
+	private class Comparison {
+		private final List<Book> bibles;
+		private final List<Verse> versePerBible;
+		private final TranslationsListener listener;
+
+		// indexed by Bible, null until fetched or if no text
+		private final TranslationDto[] translations;
+		private final boolean[] isFinished;
+		private int remaining;
+		private final List<FutureTask<?>> tasks = new ArrayList<FutureTask<?>>();
+
+		private final ExecutorService executor;
+		private final ScheduledExecutorService timeoutScheduler;
+
+		private volatile boolean isCancelled = false;
+
+		Comparison(List<Book> bibles, List<Verse> versePerBible, TranslationsListener listener) {
+			this.bibles = bibles;
+			this.versePerBible = versePerBible;
+			this.listener = listener;
+			translations = new TranslationDto[bibles.size()];
+			isFinished = new boolean[bibles.size()];
+			remaining = bibles.size();
+
+			int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+			executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory(TAG));
+			timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(TAG+"Timeout"));
+		}
+
+		void start() {
+			if (bibles.isEmpty()) {
+				shutdown();
+				listener.comparisonComplete(new ArrayList<TranslationDto>());
+				return;
+			}
+			for (int i=0; i<bibles.size(); i++) {
+				final int index = i;
+				tasks.add(new FutureTask<Void>(new Runnable() {
+					@Override
+					public void run() {
+						fetch(index);
+					}
+				}, null));
+			}
+			// all tasks must exist before any start because each task looks itself up
+			for (FutureTask<?> task : tasks) {
+				executor.execute(task);
+			}
+		}
+
+		private void fetch(int index) {
+			if (isCancelled) {
+				return;
+			}
+			FutureTask<?> task = tasks.get(index);
+			Book bible = bibles.get(index);
+
+			// the timeout starts when fetching starts so a slow Bible does not cause Bibles queued behind it to time out
+			try {
+				scheduleTimeout(index, task, bible);
+			} catch (RejectedExecutionException e) {
+				// cancelled since the check above
+				return;
+			}
+
+			TranslationDto translation = null;
+			try {
+				translation = fetchTranslation(bible, versePerBible.get(index));
+			} catch (Exception e) {
+				Log.d(TAG, versePerBible.get(index)+" not in "+bible);
+			}
+			finished(index, translation);
+		}
+
+		private void scheduleTimeout(final int index, final FutureTask<?> task, final Book bible) {
+			timeoutScheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (!task.isDone()) {
+						Log.w(TAG, "Timed out fetching "+versePerBible.get(index)+" from "+bible.getInitials());
+						task.cancel(true);
+						finished(index, null);
+					}
+				}
+			}, MODULE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		}
+
+		/** record the result for a Bible and inform the listener
+		 * synchronized so the listener receives updates in order
+		 */
+		private synchronized void finished(int index, TranslationDto translation) {
+			// a Bible may finish after timing out
+			if (isCancelled || isFinished[index]) {
+				return;
+			}
+			isFinished[index] = true;
+			translations[index] = translation;
+			remaining--;
+
+			List<TranslationDto> translationsSoFar = new ArrayList<TranslationDto>();
+			for (TranslationDto dto : translations) {
+				if (dto!=null) {
+					translationsSoFar.add(dto);
+				}
+			}
+
+			if (remaining==0) {
+				// only Bibles that have timed out can still be running
+				shutdown();
+				listener.comparisonComplete(translationsSoFar);
+			} else if (translation!=null) {
+				listener.translationsUpdated(translationsSoFar);
+			}
+		}
+
+		void cancel() {
+			isCancelled = true;
+			for (FutureTask<?> task : tasks) {
+				task.cancel(true);
+			}
+			shutdown();
+		}
+
+		/** interrupt any fetches still running and drop pending timeouts
+		 */
+		private void shutdown() {
+			executor.shutdownNow();
+			timeoutScheduler.shutdownNow();
+		}
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+		private final String name;
+
+		NamedThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
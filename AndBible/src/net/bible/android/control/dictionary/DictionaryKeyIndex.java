@@ -0,0 +1,350 @@
+package net.bible.android.control.dictionary;
+
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+
+import org.crosswire.jsword.passage.DefaultLeafKeyList;
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * Memory compact list of all the key names in a dictionary.
+ * Names are stored as packed UTF-8 bytes in module order so next/previous are simple index arithmetic.
+ * The folded names, without case or accents, are stored separately in sorted order so exact names and prefixes
+ * are found by a binary search of bytes without creating any Strings.
+ * Keys are only created when requested.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class DictionaryKeyIndex {
+
+	// all names end to end in module order
+	private final byte[] names;
+
+	// start of each name in names, with an extra entry marking the end of the last name
+	private final int[] offsets;
+
+	// module positions ordered by folded name
+	private final int[] sortedPositions;
+
+	// folded names end to end in sorted order, and the start of each
+	private final byte[] foldedNames;
+	private final int[] foldedOffsets;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// java.text.Normalizer is not available before Android 2.3
+	private static final boolean IS_NORMALIZER_AVAILABLE = isClassAvailable("java.text.Normalizer");
+
+	DictionaryKeyIndex(byte[] names, int[] offsets, int[] sortedPositions, byte[] foldedNames, int[] foldedOffsets) {
+		this.names = names;
+		this.offsets = offsets;
+		this.sortedPositions = sortedPositions;
+		this.foldedNames = foldedNames;
+		this.foldedOffsets = foldedOffsets;
+	}
+
+	/**
+	 * @param keyNames all names in module order
+	 */
+	public static DictionaryKeyIndex create(List<String> keyNames) {
+		int size = keyNames.size();
+		final byte[][] encodedNames = new byte[size][];
+		final byte[][] encodedFoldedNames = new byte[size][];
+		Integer[] positions = new Integer[size];
+		for (int i=0; i<size; i++) {
+			encodedNames[i] = keyNames.get(i).getBytes(UTF_8);
+			encodedFoldedNames[i] = fold(keyNames.get(i)).getBytes(UTF_8);
+			positions[i] = i;
+		}
+
+		// sort once while creating so every later search is a binary search
+		Arrays.sort(positions, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer position1, Integer position2) {
+				byte[] folded = encodedFoldedNames[position2];
+				return compareBytes(encodedFoldedNames[position1], 0, encodedFoldedNames[position1].length, folded, false);
+			}
+		});
+		int[] sortedPositions = new int[size];
+		byte[][] sortedFoldedNames = new byte[size][];
+		for (int i=0; i<size; i++) {
+			sortedPositions[i] = positions[i];
+			sortedFoldedNames[i] = encodedFoldedNames[positions[i]];
+		}
+
+		int[] offsets = new int[size+1];
+		byte[] names = pack(encodedNames, offsets);
+		int[] foldedOffsets = new int[size+1];
+		byte[] foldedNames = pack(sortedFoldedNames, foldedOffsets);
+		return new DictionaryKeyIndex(names, offsets, sortedPositions, foldedNames, foldedOffsets);
+	}
+
+	/**
+	 * Searches ignore case and accents so the user does not need to know how each dictionary spells its keys
+	 */
+	public static String fold(String name) {
+		String folded = name.toLowerCase(Locale.US);
+		if (IS_NORMALIZER_AVAILABLE && !isAscii(folded)) {
+			// separate accents from letters and then remove the accents
+			String decomposed = Normalizer.normalize(folded, Normalizer.Form.NFD);
+			StringBuilder withoutAccents = new StringBuilder(decomposed.length());
+			for (int i=0; i<decomposed.length(); i++) {
+				char ch = decomposed.charAt(i);
+				if (Character.getType(ch)!=Character.NON_SPACING_MARK) {
+					withoutAccents.append(ch);
+				}
+			}
+			folded = withoutAccents.toString();
+		}
+		return folded;
+	}
+
+	public int size() {
+		return sortedPositions.length;
+	}
+
+	public String getName(int position) {
+		return new String(names, offsets[position], offsets[position+1]-offsets[position], UTF_8);
+	}
+
+	public Key getKey(int position) {
+		return new DefaultLeafKeyList(getName(position));
+	}
+
+	/**
+	 * @return module position of the key with exactly this name or -1 if not found
+	 */
+	public int indexOf(String name) {
+		byte[] folded = fold(name).getBytes(UTF_8);
+		// several names may fold to the same string e.g. 'Abba' and 'abba'
+		for (int i=findFirstSorted(0, size(), folded, false); i<size() && compareFolded(i, folded, false)==0; i++) {
+			if (getName(sortedPositions[i]).equals(name)) {
+				return sortedPositions[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find all keys whose folded name starts with the folded text
+	 *
+	 * @param previous the result of a previous search which is only searched again if the new text extends its text, may be null
+	 */
+	public PrefixMatch findKeysStartingWith(String prefix, PrefixMatch previous) {
+		String folded = fold(prefix);
+		int from = 0;
+		int to = size();
+		// extending the text can only remove matches so narrow the previous result
+		if (previous!=null && previous.getKeyIndex()==this && folded.startsWith(previous.getFoldedPrefix())) {
+			from = previous.from;
+			to = previous.to;
+		}
+
+		byte[] foldedBytes = folded.getBytes(UTF_8);
+		int start = findFirstSorted(from, to, foldedBytes, false);
+		int end = findFirstSorted(start, to, foldedBytes, true);
+		return new PrefixMatch(folded, start, end);
+	}
+
+	/**
+	 * @return all keys whose folded name starts with the folded prefix, in folded name order
+	 */
+	public List<Key> getKeysStartingWith(String prefix) {
+		return new SortedKeyList(findKeysStartingWith(prefix, null));
+	}
+
+	/**
+	 * @return a read-only view of all keys in module order with fast indexOf
+	 */
+	public List<Key> asKeyList() {
+		return new ModuleKeyList();
+	}
+
+	/**
+	 * Binary search for the first sorted entry, between from and to, not before the folded bytes
+	 *
+	 * @param afterPrefix if true then entries starting with the folded bytes are also skipped
+	 */
+	private int findFirstSorted(int from, int to, byte[] folded, boolean afterPrefix) {
+		int low = from;
+		int high = to;
+		while (low<high) {
+			int mid = (low+high) >>> 1;
+			int comparison = compareFolded(mid, folded, afterPrefix);
+			if (comparison<0 || (afterPrefix && comparison==0)) {
+				low = mid+1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param isPrefix if true then a folded name starting with the folded bytes is considered equal
+	 */
+	private int compareFolded(int sortedIndex, byte[] folded, boolean isPrefix) {
+		int start = foldedOffsets[sortedIndex];
+		return compareBytes(foldedNames, start, foldedOffsets[sortedIndex+1]-start, folded, isPrefix);
+	}
+
+	/** compare unsigned bytes which gives the same order as comparing the unicode code points
+	 */
+	private static int compareBytes(byte[] bytes, int start, int length, byte[] other, boolean isPrefix) {
+		int common = Math.min(length, other.length);
+		for (int i=0; i<common; i++) {
+			int diff = (bytes[start+i] & 0xff) - (other[i] & 0xff);
+			if (diff!=0) {
+				return diff;
+			}
+		}
+		if (isPrefix && length>=other.length) {
+			return 0;
+		}
+		return length-other.length;
+	}
+
+	private static byte[] pack(byte[][] encodedNames, int[] offsets) {
+		for (int i=0; i<encodedNames.length; i++) {
+			offsets[i+1] = offsets[i]+encodedNames[i].length;
+		}
+		byte[] packed = new byte[offsets[encodedNames.length]];
+		for (int i=0; i<encodedNames.length; i++) {
+			System.arraycopy(encodedNames[i], 0, packed, offsets[i], encodedNames[i].length);
+		}
+		return packed;
+	}
+
+	private static boolean isAscii(String text) {
+		for (int i=0; i<text.length(); i++) {
+			if (text.charAt(i)>=0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isClassAvailable(String className) {
+		try {
+			Class.forName(className);
+			return true;
+		} catch (Throwable t) {
+			return false;
+		}
+	}
+
+	byte[] getNames() {
+		return names;
+	}
+	int[] getOffsets() {
+		return offsets;
+	}
+	int[] getSortedPositions() {
+		return sortedPositions;
+	}
+	byte[] getFoldedNames() {
+		return foldedNames;
+	}
+	int[] getFoldedOffsets() {
+		return foldedOffsets;
+	}
+
+	/**
+	 * The range of sorted keys starting with some text
+	 */
+	public class PrefixMatch {
+		private final String foldedPrefix;
+		private final int from;
+		private final int to;
+
+		private PrefixMatch(String foldedPrefix, int from, int to) {
+			this.foldedPrefix = foldedPrefix;
+			this.from = from;
+			this.to = to;
+		}
+
+		public int size() {
+			return to-from;
+		}
+
+		/**
+		 * @return up to count keys starting at the index'th match
+		 */
+		public List<Key> getKeys(int index, int count) {
+			int end = Math.min(from+index+count, to);
+			List<Key> keys = new ArrayList<Key>(Math.max(0, end-from-index));
+			for (int i=from+index; i<end; i++) {
+				keys.add(getKey(sortedPositions[i]));
+			}
+			return keys;
+		}
+
+		public String getFoldedPrefix() {
+			return foldedPrefix;
+		}
+
+		private DictionaryKeyIndex getKeyIndex() {
+			return DictionaryKeyIndex.this;
+		}
+	}
+
+	private class ModuleKeyList extends AbstractList<Key> implements RandomAccess {
+		@Override
+		public Key get(int position) {
+			return getKey(position);
+		}
+
+		@Override
+		public int size() {
+			return DictionaryKeyIndex.this.size();
+		}
+
+		@Override
+		public int indexOf(Object key) {
+			if (key instanceof Key) {
+				return DictionaryKeyIndex.this.indexOf(((Key)key).getName());
+			}
+			return -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object key) {
+			return indexOf(key);
+		}
+
+		@Override
+		public boolean contains(Object key) {
+			return indexOf(key)!=-1;
+		}
+	}
+
+	private class SortedKeyList extends AbstractList<Key> implements RandomAccess {
+		private final PrefixMatch match;
+
+		SortedKeyList(PrefixMatch match) {
+			this.match = match;
+		}
+
+		@Override
+		public Key get(int index) {
+			if (index<0 || index>=size()) {
+				throw new IndexOutOfBoundsException("Index:"+index+" Size:"+size());
+			}
+			return getKey(sortedPositions[match.from+index]);
+		}
+
+		@Override
+		public int size() {
+			return match.size();
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package net.bible.android.control.dictionary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.bible.android.SharedConstants;
+import net.bible.service.common.CommonUtils;
+
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+
+import android.util.Log;
+
+/**
+ * Persist the key index of each dictionary so large dictionaries do not need to be read key by key every time they are opened.
+ * An index is only valid for the version and size of the dictionary it was created from.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class DictionaryKeyIndexDao {
+
+	private File indexDir;
+
+	private static final String INDEX_DIR_NAME = "keyindex";
+	private static final String DOT_KEYS = ".keys";
+
+	// increment if the file layout or the way names are folded and sorted changes
+	private static final int INDEX_FORMAT = 2;
+
+	private static final String TAG = "DictionaryKeyIndexDao";
+
+	public DictionaryKeyIndexDao() {
+		this(new File(SharedConstants.FRONTEND_DATA_DIR, INDEX_DIR_NAME));
+	}
+
+	DictionaryKeyIndexDao(File indexDir) {
+		this.indexDir = indexDir;
+	}
+
+	/**
+	 * @return previously saved index for this version of the dictionary or null if not available
+	 */
+	public DictionaryKeyIndex load(Book dictionary) {
+		File indexFile = getIndexFile(dictionary.getInitials());
+		if (!indexFile.exists()) {
+			return null;
+		}
+
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(indexFile);
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer)==-1) {
+					throw new IOException("Unexpected end of key index");
+				}
+			}
+			buffer.flip();
+
+			if (buffer.getInt()!=INDEX_FORMAT ||
+				!getVersion(dictionary).equals(getString(buffer)) ||
+				buffer.getInt()!=dictionary.getGlobalKeyList().getCardinality()) {
+				Log.d(TAG, "Stale key index for "+dictionary.getInitials());
+				return null;
+			}
+
+			int size = buffer.getInt();
+			byte[] names = getBytes(buffer);
+			int[] offsets = getInts(buffer, size+1);
+			int[] sortedPositions = getInts(buffer, size);
+			byte[] foldedNames = getBytes(buffer);
+			int[] foldedOffsets = getInts(buffer, size+1);
+
+			return new DictionaryKeyIndex(names, offsets, sortedPositions, foldedNames, foldedOffsets);
+		} catch (Exception e) {
+			Log.e(TAG, "Error loading key index for "+dictionary.getInitials(), e);
+			return null;
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	public void save(Book dictionary, DictionaryKeyIndex keyIndex) {
+		byte[] version = getVersion(dictionary).getBytes(DictionaryKeyIndex.UTF_8);
+		byte[] names = keyIndex.getNames();
+		int[] offsets = keyIndex.getOffsets();
+		int[] sortedPositions = keyIndex.getSortedPositions();
+		byte[] foldedNames = keyIndex.getFoldedNames();
+		int[] foldedOffsets = keyIndex.getFoldedOffsets();
+
+		ByteBuffer buffer = ByteBuffer.allocate(4*6+version.length+names.length+foldedNames.length+4*(offsets.length+sortedPositions.length+foldedOffsets.length));
+		buffer.putInt(INDEX_FORMAT);
+		putBytes(buffer, version);
+		buffer.putInt(dictionary.getGlobalKeyList().getCardinality());
+		buffer.putInt(keyIndex.size());
+		putBytes(buffer, names);
+		putInts(buffer, offsets);
+		putInts(buffer, sortedPositions);
+		putBytes(buffer, foldedNames);
+		putInts(buffer, foldedOffsets);
+		buffer.flip();
+
+		try {
+			CommonUtils.writeAtomically(getIndexFile(dictionary.getInitials()), buffer);
+		} catch (Exception e) {
+			Log.e(TAG, "Error saving key index for "+dictionary.getInitials(), e);
+		}
+	}
+
+	public void delete(String initials) {
+		File indexFile = getIndexFile(initials);
+		if (indexFile.exists()) {
+			indexFile.delete();
+		}
+	}
+
+	private File getIndexFile(String initials) {
+		return new File(indexDir, initials+DOT_KEYS);
+	}
+
+	private String getString(ByteBuffer buffer) {
+		return new String(getBytes(buffer), DictionaryKeyIndex.UTF_8);
+	}
+
+	private byte[] getBytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private void putBytes(ByteBuffer buffer, byte[] bytes) {
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	private int[] getInts(ByteBuffer buffer, int length) {
+		int[] ints = new int[length];
+		buffer.asIntBuffer().get(ints);
+		buffer.position(buffer.position()+length*4);
+		return ints;
+	}
+
+	private void putInts(ByteBuffer buffer, int[] ints) {
+		buffer.asIntBuffer().put(ints);
+		buffer.position(buffer.position()+ints.length*4);
+	}
+
+	private String getVersion(Book dictionary) {
+		String version = dictionary.getBookMetaData().getProperty(SwordBookMetaData.KEY_VERSION);
+		return version!=null ? version : "";
+	}
+}
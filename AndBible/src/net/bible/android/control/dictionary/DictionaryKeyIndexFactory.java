@@ -0,0 +1,107 @@
+package net.bible.android.control.dictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.BooksEvent;
+import org.crosswire.jsword.book.BooksListener;
+import org.crosswire.jsword.passage.Key;
+
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+/**
+ * Caching factory for {@link DictionaryKeyIndex}.
+ * The keys of a dictionary are read once per dictionary version and then loaded from disk.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class DictionaryKeyIndexFactory {
+
+	private LruCache<Book, DictionaryKeyIndex> cache;
+
+	private DictionaryKeyIndexDao dictionaryKeyIndexDao;
+
+	// indexes of large lexicons are a few MB so only keep those likely to be shown in the open windows
+	private static final int CACHE_SIZE = 3;
+
+	private static final String TAG = "DictionaryKeyIndexFactory";
+
+	public DictionaryKeyIndexFactory() {
+		cache = new LruCache<Book, DictionaryKeyIndex>(CACHE_SIZE) {
+
+			/** If entry for this Book not found in cache then create one
+			 */
+			@Override
+			protected DictionaryKeyIndex create(Book dictionary) {
+				DictionaryKeyIndex keyIndex = getDictionaryKeyIndexDao().load(dictionary);
+				if (keyIndex==null) {
+					keyIndex = createKeyIndex(dictionary);
+					getDictionaryKeyIndexDao().save(dictionary, keyIndex);
+				}
+				return keyIndex;
+			}
+		};
+	}
+
+	public void initialise() {
+		flushCacheIfBooksChange();
+	}
+
+	public DictionaryKeyIndex getKeyIndex(Book dictionary) {
+		return cache.get(dictionary);
+	}
+
+	private DictionaryKeyIndex createKeyIndex(Book dictionary) {
+		Log.d(TAG, "Start to create key index for "+dictionary);
+		List<String> keyNames = new ArrayList<String>();
+		for (Key key : dictionary.getGlobalKeyList()) {
+			// root key has no name and can be ignored but also check for any other keys with no name
+			String name = key.getName();
+			if (!StringUtils.isEmpty(name)) {
+				keyNames.add(name);
+			}
+		}
+		Log.d(TAG, "Finished creating key index len:"+keyNames.size());
+		return DictionaryKeyIndex.create(keyNames);
+	}
+
+	/**
+	 * A new version of a dictionary may contain different keys
+	 */
+	private void flushCacheIfBooksChange() {
+		Books.installed().addBooksListener(new BooksListener() {
+			@Override
+			public void bookAdded(BooksEvent ev) {
+				flush(ev.getBook());
+			}
+			@Override
+			public void bookRemoved(BooksEvent ev) {
+				flush(ev.getBook());
+			}
+		});
+	}
+
+	private void flush(Book book) {
+		String initials = book.getInitials();
+		for (Book cachedDictionary : cache.snapshot().keySet()) {
+			if (initials.equals(cachedDictionary.getInitials())) {
+				cache.remove(cachedDictionary);
+			}
+		}
+		getDictionaryKeyIndexDao().delete(initials);
+	}
+
+	private synchronized DictionaryKeyIndexDao getDictionaryKeyIndexDao() {
+		// lazy because the Dao location depends on Android initialisation
+		if (dictionaryKeyIndexDao==null) {
+			dictionaryKeyIndexDao = new DictionaryKeyIndexDao();
+		}
+		return dictionaryKeyIndexDao;
+	}
+}
@@ -0,0 +1,123 @@
+package net.bible.android.control.dictionary;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.bible.android.control.dictionary.DictionaryKeyIndex.PrefixMatch;
+
+import org.crosswire.jsword.passage.Key;
+
+import android.util.Log;
+
+/**
+ * Find the dictionary keys starting with the text the user is typing.
+ * Searches run in the background and a search is abandoned as soon as the user types again.
+ * When the text is extended only the matches of the previous search are searched again.
+ * Matching keys are returned a page at a time so the first matches can be shown immediately.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class DictionaryKeySearcher {
+
+	public interface KeysFoundListener {
+		/** called on a background thread with the next page of keys matching the current search
+		 *
+		 * @param keys the next page of matching keys
+		 * @param isFirstPage true if these keys replace the results of any previous search
+		 * @param totalMatches the number of keys matching the search, including those not returned yet
+		 */
+		void keysFound(List<Key> keys, boolean isFirstPage, int totalMatches);
+	}
+
+	private final DictionaryKeyIndex keyIndex;
+
+	private final ExecutorService executor;
+
+	// incremented for every new search so superseded searches can tell they are no longer required
+	private volatile int searchNo;
+
+	// only accessed by the single executor thread
+	private PrefixMatch currentMatch;
+	private int keysReturned;
+
+	static final int PAGE_SIZE = 100;
+
+	private static final String TAG = "DictionaryKeySearcher";
+
+	public DictionaryKeySearcher(DictionaryKeyIndex keyIndex) {
+		this.keyIndex = keyIndex;
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, TAG);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Start a new search for keys starting with searchText, cancelling any previous search
+	 */
+	public void search(final String searchText, final KeysFoundListener listener) {
+		final int thisSearchNo = ++searchNo;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// the user has typed again before this search started
+				if (thisSearchNo!=searchNo) {
+					return;
+				}
+				try {
+					currentMatch = keyIndex.findKeysStartingWith(searchText, currentMatch);
+					keysReturned = 0;
+					returnNextPage(thisSearchNo, listener);
+				} catch (Exception e) {
+					Log.e(TAG, "Error searching for "+searchText, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Fetch the next page of matches for the current search, if there are any more
+	 */
+	public void loadMore(final KeysFoundListener listener) {
+		final int thisSearchNo = searchNo;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (thisSearchNo==searchNo && currentMatch!=null && keysReturned<currentMatch.size()) {
+					returnNextPage(thisSearchNo, listener);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stop returning keys for any current search
+	 */
+	public void cancel() {
+		searchNo++;
+	}
+
+	public void shutdown() {
+		cancel();
+		executor.shutdownNow();
+	}
+
+	private void returnNextPage(int thisSearchNo, KeysFoundListener listener) {
+		List<Key> keys = currentMatch.getKeys(keysReturned, PAGE_SIZE);
+		boolean isFirstPage = keysReturned==0;
+		keysReturned += keys.size();
+
+		// creating keys may have taken long enough for the user to type again
+		if (thisSearchNo==searchNo) {
+			listener.keysFound(keys, isFirstPage, currentMatch.size());
+		}
+	}
+}
@@ -8,6 +8,7 @@ import net.bible.android.SharedConstants;
 import net.bible.android.activity.R;
 import net.bible.android.view.activity.base.Dialogs;
 import net.bible.service.common.CommonUtils;
+import net.bible.service.download.CatalogueRefresher.CatalogueListener;
 import net.bible.service.download.RepoFactory;
 import net.bible.service.download.XiphosRepo;
 import net.bible.service.font.FontControl;
@@ -62,11 +63,56 @@ public class DownloadControl {
 	 * @return
 	 */
 	public List<Book> getDownloadableDocuments(boolean refresh) {
+		return getDownloadableDocuments(refresh, null);
+	}
+
+	/** return a list of all available docs that have not already been downloaded, have no lang, or don't work
+	 * 
+	 * @param listener optional listener to be sent the usable docs found so far as each repository responds
+	 */
+	public List<Book> getDownloadableDocuments(boolean refresh, final CatalogueListener listener) {
 		List<Book> availableDocs = null;
 		try {
-			availableDocs = SwordDocumentFacade.getInstance().getDownloadableDocuments(refresh);
+			CatalogueListener filteringListener = null;
+			if (listener!=null) {
+				filteringListener = new CatalogueListener() {
+					@Override
+					public void catalogueUpdated(List<Book> books) {
+						removeUnusableDocuments(books);
+						listener.catalogueUpdated(books);
+					}
+				};
+			}
+			availableDocs = SwordDocumentFacade.getInstance().getDownloadableDocuments(refresh, filteringListener);
 			
-			// there are a number of books we need to filter out of the download list for various reasons
+			removeUnusableDocuments(availableDocs);
+        	
+        	// get fonts.properties at the same time as repo list, or if not yet downloaded
+       		// the download happens in another thread
+       		fontControl.checkFontPropertiesFile(refresh);
+       		
+		} catch (Exception e) {
+			Log.e(TAG, "Error downloading document list", e);
+			availableDocs = new ArrayList<Book>();
+		}
+		return availableDocs;
+	}
+	
+	/** @return true if the previously downloaded document list can be shown while it is refreshed
+	 */
+	public boolean isDownloadableDocumentListCached() {
+		return SwordDocumentFacade.getInstance().isDownloadableDocumentListCached();
+	}
+
+	/** @return true if the user should wait for some downloads to finish before requesting more
+	 */
+	public boolean isDownloadQueueFull() {
+		return SwordDocumentFacade.getInstance().isDownloadQueueFull();
+	}
+
+	/** there are a number of books we need to filter out of the download list for various reasons
+	 */
+	private void removeUnusableDocuments(List<Book> availableDocs) {
         	for (Iterator<Book> iter=availableDocs.iterator(); iter.hasNext(); ) {
         		Book doc = iter.next();
         		if (doc.getLanguage()==null) {
@@ -89,16 +135,6 @@ public class DownloadControl {
         			iter.remove();
         		}
         	}
-        	
-        	// get fonts.properties at the same time as repo list, or if not yet downloaded
-       		// the download happens in another thread
-       		fontControl.checkFontPropertiesFile(refresh);
-       		
-		} catch (Exception e) {
-			Log.e(TAG, "Error downloading document list", e);
-			availableDocs = new ArrayList<Book>();
-		}
-		return availableDocs;
 	}
 	
 	public void downloadDocument(Book document) throws LucidException {
@@ -15,6 +15,7 @@ import net.bible.android.view.activity.base.Dialogs;
 import net.bible.android.view.activity.search.SearchIndex;
 import net.bible.android.view.activity.search.SearchResults;
 import net.bible.service.common.CommonUtils;
+import net.bible.service.sword.SwordContentFacade;
 import net.bible.service.sword.SwordDocumentFacade;
 
 import org.apache.commons.lang.StringUtils;
@@ -244,13 +245,15 @@ public class LinkControl {
 	}
 	
 	/** ensure a book is indexed and the index contains typical Greek or Hebrew Strongs Numbers
+	 * The searches are cached so this is only slow the first time
 	 */
 	private boolean checkStrongs(Book bible) {
 		try {
+			SwordContentFacade swordContentFacade = SwordContentFacade.getInstance();
 			return bible.getIndexStatus().equals(IndexStatus.DONE) &&
-				   (bible.find("+[Gen 1:1] strong:h7225").getCardinality()>0 ||
-					bible.find("+[John 1:1] strong:g746").getCardinality()>0 ||
-					bible.find("+[Gen 1:1] strong:g746").getCardinality()>0);
+				   (swordContentFacade.search(bible, "+[Gen 1:1] strong:h7225").getCardinality()>0 ||
+					swordContentFacade.search(bible, "+[John 1:1] strong:g746").getCardinality()>0 ||
+					swordContentFacade.search(bible, "+[Gen 1:1] strong:g746").getCardinality()>0);
 		} catch (BookException be) {
 			Log.e(TAG, "Error checking strongs numbers", be);
 			return false;
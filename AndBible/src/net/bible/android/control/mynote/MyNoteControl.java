@@ -14,6 +14,7 @@ import net.bible.android.control.ControlFactory;
 import net.bible.service.common.CommonUtils;
 import net.bible.service.db.mynote.MyNoteDBAdapter;
 import net.bible.service.db.mynote.MyNoteDto;
+import net.bible.service.sword.SwordContentFacade;
 
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
@@ -209,6 +210,7 @@ public class MyNoteControl implements MyNote {
 			} finally {
 				db.close();
 			}
+			SwordContentFacade.getInstance().invalidateHtmlCache(myNote.getVerse());
 		}		
 		return bOk;
 	}
@@ -223,6 +225,7 @@ public class MyNoteControl implements MyNote {
 		} finally {
 			db.close();
 		}
+		SwordContentFacade.getInstance().invalidateHtmlCache(myNote.getVerse());
 		return newMyNote;
 	}
 
@@ -236,6 +239,7 @@ public class MyNoteControl implements MyNote {
 		} finally {
 			db.close();
 		}
+		SwordContentFacade.getInstance().invalidateHtmlCache(myNote.getVerse());
 		return updatedMyNote;
 	}
 
@@ -2,8 +2,10 @@ package net.bible.android.control.navigation;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import net.bible.android.control.versification.Scripture;
 
@@ -19,6 +21,7 @@ import org.crosswire.jsword.versification.system.SystemSynodal;
  * Calculate which books are actually included in a Bible document.
  * Necessary for boks with v11n like Synodal but without dc books eg IBT.
  * Useful for partial documents eg NT or WIP.
+ * Calculation requires reading many verses so the result is persisted by {@link DocumentBibleBooksDao}.
  * 
  * @author Martin Denham [mjdenham at gmail dot com]
  * @see gnu.lgpl.License for license details.<br>
@@ -27,6 +30,8 @@ import org.crosswire.jsword.versification.system.SystemSynodal;
 public class DocumentBibleBooks {
 
 	private List<BibleBook> bookList;
+	// last chapter with content in each book in bookList, in bookList order
+	private Map<BibleBook, Integer> lastChapterMap = new LinkedHashMap<BibleBook, Integer>();
 	private AbstractPassageBook document;
 	private boolean onlyScripture = true;
 	
@@ -36,8 +41,6 @@ public class DocumentBibleBooks {
 	private static final int IBT_1_CHAPTER_BOOK_EMPTY_VERSE_STUB_MIN_LENGTH = "<chapter eID=\"gen955\" osisID=\"Obad.1\"/> <div eID=\"gen954\" osisID=\"Obad\" type=\"book\"/> <div eID=\"gen953\" type=\"x-Synodal-empty\"/>".length();
 	private static final int IBT_1_CHAPTER_BOOK_EMPTY_VERSE_STUB_MAX_LENGTH = "<chapter eID=\"gen1136\" osisID=\"EpJer.1\"/> <div eID=\"gen1135\" osisID=\"EpJer\" type=\"book\"/> <div eID=\"gen1134\" type=\"x-Synodal-non-canonical\"/>".length();
 	
-	private static Scripture scripture = new Scripture();
-
 	@SuppressWarnings("unused")
 	private static final String TAG = "DocumentBibleBooks";
 	
@@ -45,6 +48,18 @@ public class DocumentBibleBooks {
 		this.document = document;
 		calculateBibleBookList();
 	}
+
+	/** 
+	 * Recreate previously calculated contents without accessing the document
+	 */
+	DocumentBibleBooks(Map<BibleBook, Integer> lastChapterMap, boolean isProbablyIBT) {
+		this.bookList = new ArrayList<BibleBook>(lastChapterMap.keySet());
+		this.lastChapterMap.putAll(lastChapterMap);
+		this.isProbablyIBT = isProbablyIBT;
+		for (BibleBook bibleBook : bookList) {
+			onlyScripture &= Scripture.isScripture(bibleBook);
+		}
+	}
 	
 	/** 
 	 * Iterate all books checking if document contains a verse from the book
@@ -62,14 +77,28 @@ public class DocumentBibleBooks {
 			if (isVerseInBook(document, documentVersification, bibleBook, 1, 1) || 
 				isVerseInBook(document, documentVersification, bibleBook, 1, 2)) {
 				bookList.add(bibleBook);
+				lastChapterMap.put(bibleBook, calculateLastChapter(documentVersification, bibleBook));
 				
-				onlyScripture &= scripture.isScripture(bibleBook);
+				onlyScripture &= Scripture.isScripture(bibleBook);
 			}
 		}
 		
 		this.bookList = bookList;
 	}
 	
+	/** 
+	 * Partial documents may end before the last chapter in the versification
+	 */
+	private int calculateLastChapter(Versification v11n, BibleBook bibleBook) {
+		for (int chapter=v11n.getLastChapter(bibleBook); chapter>1; chapter--) {
+			if (isVerseInBook(document, v11n, bibleBook, chapter, 1) || 
+				isVerseInBook(document, v11n, bibleBook, chapter, 2)) {
+				return chapter;
+			}
+		}
+		return 1;
+	}
+	
 	public boolean contains(BibleBook book) {
 		return bookList.contains(book);
 	}
@@ -78,6 +107,25 @@ public class DocumentBibleBooks {
 		return Collections.unmodifiableList(bookList);
 	}
 
+	/** 
+	 * @return last chapter of the book containing any text, or 0 if the book is not in the document 
+	 */
+	public int getLastChapter(BibleBook book) {
+		Integer lastChapter = lastChapterMap.get(book);
+		return lastChapter!=null ? lastChapter : 0;
+	}
+
+	Map<BibleBook, Integer> getLastChapterMap() {
+		return Collections.unmodifiableMap(lastChapterMap);
+	}
+
+	/**
+	 * @return true if this is a Synodal document containing IBT empty verse stubs for missing books
+	 */
+	public boolean isProbablyIBT() {
+		return isProbablyIBT!=null && isProbablyIBT;
+	}
+
 	public boolean isOnlyScripture() {
 		return onlyScripture;
 	}
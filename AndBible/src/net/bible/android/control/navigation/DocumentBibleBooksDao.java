@@ -0,0 +1,134 @@
+package net.bible.android.control.navigation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import net.bible.android.SharedConstants;
+import net.bible.service.common.CommonUtils;
+import net.bible.service.common.CommonUtils.FileContentWriter;
+
+import org.apache.commons.lang.StringUtils;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.versification.BibleBook;
+
+import android.util.Log;
+
+/**
+ * Persist the books and chapters contained in each document so they do not need to be recalculated every time the app starts.
+ * A summary is only valid for the version of the document it was calculated from.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class DocumentBibleBooksDao {
+
+	private File summaryDir;
+
+	private static final String SUMMARY_DIR_NAME = "biblebooks";
+	private static final String DOT_PROPERTIES = ".properties";
+
+	// increment if the way books are calculated changes to force recalculation
+	private static final String SUMMARY_FORMAT = "1";
+
+	private static final String FORMAT = "Format";
+	private static final String VERSION = "Version";
+	private static final String VERSIFICATION = "Versification";
+	private static final String IBT = "IBT";
+	private static final String BOOKS = "Books";
+
+	private static final String BOOK_SEPARATOR = ",";
+	private static final String CHAPTER_SEPARATOR = ":";
+
+	private static final String TAG = "DocumentBibleBooksDao";
+
+	public DocumentBibleBooksDao() {
+		this(new File(SharedConstants.FRONTEND_DATA_DIR, SUMMARY_DIR_NAME));
+	}
+
+	DocumentBibleBooksDao(File summaryDir) {
+		this.summaryDir = summaryDir;
+	}
+
+	/**
+	 * @return previously saved books for this version of the document or null if not available
+	 */
+	public DocumentBibleBooks load(AbstractPassageBook document) {
+		File summaryFile = getSummaryFile(document.getInitials());
+		if (!summaryFile.exists()) {
+			return null;
+		}
+
+		try {
+			Properties properties = CommonUtils.loadProperties(summaryFile);
+			if (!SUMMARY_FORMAT.equals(properties.getProperty(FORMAT)) ||
+				!getVersion(document).equals(properties.getProperty(VERSION)) ||
+				!document.getVersification().getName().equals(properties.getProperty(VERSIFICATION))) {
+				Log.d(TAG, "Stale book summary for "+document.getInitials());
+				return null;
+			}
+
+			Map<BibleBook, Integer> lastChapterMap = new LinkedHashMap<BibleBook, Integer>();
+			for (String bookAndChapter : StringUtils.split(properties.getProperty(BOOKS, ""), BOOK_SEPARATOR)) {
+				String[] parts = StringUtils.split(bookAndChapter, CHAPTER_SEPARATOR);
+				lastChapterMap.put(BibleBook.fromExactOSIS(parts[0]), Integer.valueOf(parts[1]));
+			}
+
+			return new DocumentBibleBooks(lastChapterMap, Boolean.parseBoolean(properties.getProperty(IBT)));
+		} catch (Exception e) {
+			Log.e(TAG, "Error loading book summary for "+document.getInitials(), e);
+			return null;
+		}
+	}
+
+	public void save(AbstractPassageBook document, DocumentBibleBooks documentBibleBooks) {
+		StringBuilder books = new StringBuilder();
+		for (Entry<BibleBook, Integer> entry : documentBibleBooks.getLastChapterMap().entrySet()) {
+			if (books.length()>0) {
+				books.append(BOOK_SEPARATOR);
+			}
+			books.append(entry.getKey().getOSIS()).append(CHAPTER_SEPARATOR).append(entry.getValue());
+		}
+
+		final Properties properties = new Properties();
+		properties.setProperty(FORMAT, SUMMARY_FORMAT);
+		properties.setProperty(VERSION, getVersion(document));
+		properties.setProperty(VERSIFICATION, document.getVersification().getName());
+		properties.setProperty(IBT, Boolean.toString(documentBibleBooks.isProbablyIBT()));
+		properties.setProperty(BOOKS, books.toString());
+
+		final String initials = document.getInitials();
+		try {
+			CommonUtils.writeAtomically(getSummaryFile(initials), new FileContentWriter() {
+				@Override
+				public void write(FileOutputStream out) throws IOException {
+					properties.store(out, initials);
+				}
+			});
+		} catch (Exception e) {
+			Log.e(TAG, "Error saving book summary for "+initials, e);
+		}
+	}
+
+	public void delete(String initials) {
+		File summaryFile = getSummaryFile(initials);
+		if (summaryFile.exists()) {
+			summaryFile.delete();
+		}
+	}
+
+	private File getSummaryFile(String initials) {
+		return new File(summaryDir, initials+DOT_PROPERTIES);
+	}
+
+	private String getVersion(AbstractPassageBook document) {
+		String version = document.getBookMetaData().getProperty(SwordBookMetaData.KEY_VERSION);
+		return version!=null ? version : "";
+	}
+}
@@ -2,6 +2,8 @@ package net.bible.android.control.navigation;
 
 import java.util.List;
 
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookCategory;
 import org.crosswire.jsword.book.Books;
 import org.crosswire.jsword.book.BooksEvent;
 import org.crosswire.jsword.book.BooksListener;
@@ -9,9 +11,11 @@ import org.crosswire.jsword.book.basic.AbstractPassageBook;
 import org.crosswire.jsword.versification.BibleBook;
 
 import android.support.v4.util.LruCache;
+import android.util.Log;
 
 /**
  * Caching factory for {@link DocumentBibleBooks}.
+ * Contents of documents are calculated once per document version and then loaded from disk.
  * 
  * @author Martin Denham [mjdenham at gmail dot com]
  * @see gnu.lgpl.License for license details.<br>
@@ -21,8 +25,12 @@ public class DocumentBibleBooksFactory {
 	
 	private LruCache<AbstractPassageBook, DocumentBibleBooks> cache; 
 	
+	private DocumentBibleBooksDao documentBibleBooksDao;
+	
 	private static final int CACHE_SIZE = 10;
 	
+	private static final String TAG = "DocumentBibleBooksFactory";
+	
 	public DocumentBibleBooksFactory() {
 		// initialise the DocumentBibleBooks factory
 		cache = new LruCache<AbstractPassageBook, DocumentBibleBooks>(CACHE_SIZE) {
@@ -31,7 +39,12 @@ public class DocumentBibleBooksFactory {
 			 */
 			@Override
 			protected DocumentBibleBooks create(AbstractPassageBook document) {
-				return new DocumentBibleBooks(document);
+				DocumentBibleBooks documentBibleBooks = getDocumentBibleBooksDao().load(document);
+				if (documentBibleBooks==null) {
+					documentBibleBooks = new DocumentBibleBooks(document);
+					getDocumentBibleBooksDao().save(document, documentBibleBooks);
+				}
+				return documentBibleBooks;
 			}
 		};
 	}
@@ -57,12 +70,53 @@ public class DocumentBibleBooksFactory {
 		Books.installed().addBooksListener(new BooksListener() {
 			@Override
 			public void bookAdded(BooksEvent ev) {
-				cache.evictAll();
+				Book book = ev.getBook();
+				flush(book);
+				// calculate now, while installing, rather than when the user first opens the document
+				if (book instanceof AbstractPassageBook && BookCategory.BIBLE.equals(book.getBookCategory())) {
+					calculateInBackground((AbstractPassageBook)book);
+				}
 			}
 			@Override
 			public void bookRemoved(BooksEvent ev) {
-				cache.evictAll();
+				flush(ev.getBook());
+			}
+		});
+	}
+
+	/**
+	 * Only the changed document is flushed, other documents have not changed
+	 */
+	private void flush(Book book) {
+		String initials = book.getInitials();
+		for (AbstractPassageBook cachedDocument : cache.snapshot().keySet()) {
+			if (initials.equals(cachedDocument.getInitials())) {
+				cache.remove(cachedDocument);
+			}
+		}
+		getDocumentBibleBooksDao().delete(initials);
+	}
+
+	private void calculateInBackground(final AbstractPassageBook document) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					getDocumentBibleBooksFor(document);
+				} catch (Exception e) {
+					Log.e(TAG, "Error calculating books in "+document.getInitials(), e);
+				}
 			}
 		});
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	private synchronized DocumentBibleBooksDao getDocumentBibleBooksDao() {
+		// lazy because the Dao location depends on Android initialisation
+		if (documentBibleBooksDao==null) {
+			documentBibleBooksDao = new DocumentBibleBooksDao();
+		}
+		return documentBibleBooksDao;
 	}
 }
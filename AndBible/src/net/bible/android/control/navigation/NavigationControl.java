@@ -66,7 +66,17 @@ public class NavigationControl {
 	 * @return true if multi-chapter book
 	 */
 	public boolean hasChapters(BibleBook book) {
-		return getVersification().getLastChapter(book)>1;
+		return getLastChapter(book)>1;
+	}
+
+	/** Partial documents may end before the last chapter in the versification
+	 * 
+	 * @return last chapter of the book in the current document
+	 */
+	public int getLastChapter(BibleBook book) {
+		AbstractPassageBook document = getCurrentPassageDocument();
+		int lastChapter = document!=null ? documentBibleBooksFactory.getDocumentBibleBooksFor(document).getLastChapter(book) : 0;
+		return lastChapter>0 ? lastChapter : getVersification().getLastChapter(book);
 	}
 	
 	/** default book for use when jumping into the middle of passage selection
@@ -36,7 +36,6 @@ abstract public class CachedKeyPage extends CurrentPageBase  {
 		super.setCurrentDocument(doc);
 	}
 
-	//TODO remove this and do binary search of globalkeylist
 	/** make dictionary key lookup much faster
 	 * 
 	 * @return
@@ -46,15 +45,7 @@ abstract public class CachedKeyPage extends CurrentPageBase  {
 			try {
 				Log.d(TAG, "Start to create cached key list for "+getCurrentDocument());
 				// this cache is cleared in setCurrentDoc
-		    	mCachedGlobalKeyList = new ArrayList<Key>();
-
-		    	for (Key key : getCurrentDocument().getGlobalKeyList()) {
-		    		// root key has no name and can be ignored but also check for any other keys with no name
-		    		if (!StringUtils.isEmpty(key.getName())) {
-						mCachedGlobalKeyList.add(key);
-		    		}
-		    	}
-
+		    	mCachedGlobalKeyList = createGlobalKeyList(getCurrentDocument());
 			} catch (OutOfMemoryError oom) {
 				mCachedGlobalKeyList = null;
 				System.gc();
@@ -71,6 +62,20 @@ abstract public class CachedKeyPage extends CurrentPageBase  {
 		return mCachedGlobalKeyList;
 	}
 
+	/** list all the keys in the document
+	 */
+	protected List<Key> createGlobalKeyList(Book document) {
+		List<Key> keyList = new ArrayList<Key>();
+
+		for (Key key : document.getGlobalKeyList()) {
+			// root key has no name and can be ignored but also check for any other keys with no name
+			if (!StringUtils.isEmpty(key.getName())) {
+				keyList.add(key);
+			}
+		}
+		return keyList;
+	}
+
 	/** add or subtract a number of pages from the current position and return Verse
 	 */
 	public Key getKeyPlus(int num) {
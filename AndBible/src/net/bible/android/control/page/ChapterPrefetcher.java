@@ -0,0 +1,130 @@
+package net.bible.android.control.page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.bible.android.control.page.window.Window;
+import net.bible.service.sword.SwordContentFacade;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.passage.Key;
+
+import android.util.Log;
+
+/**
+ * Speculatively render the chapters either side of the current chapter so the next swipe is shown immediately.
+ * Rendered html is stored in the SwordContentFacade html cache which is bounded in size.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class ChapterPrefetcher {
+
+	private final ExecutorService executor;
+
+	// prefetches are tracked per window so moving in one window does not abandon prefetching for another
+	private final Map<Window, WindowPrefetches> pendingPrefetches = new WeakHashMap<>();
+
+	// do not prefetch unless at least this proportion of the heap is free, to avoid triggering OutOfMemoryErrors when showing the actual page
+	private static final float MIN_FREE_HEAP_RATIO = 0.25f;
+
+	private static final String TAG = "ChapterPrefetcher";
+
+	public ChapterPrefetcher() {
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, TAG);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/** render the next and previous chapters of the bible shown in the window
+	 */
+	public synchronized void prefetchAdjacentChapters(Window window) {
+		cancel(window);
+
+		CurrentPage currentPage = window.getPageManager().getCurrentPage();
+		if (!(currentPage instanceof CurrentBiblePage)) {
+			return;
+		}
+
+		try {
+			Book document = currentPage.getCurrentDocument();
+			Key currentChapter = currentPage.getKey();
+			WindowPrefetches windowPrefetches = new WindowPrefetches();
+			pendingPrefetches.put(window, windowPrefetches);
+			// next is more likely than previous so do it first
+			schedule(windowPrefetches, document, currentChapter, currentPage.getPagePlus(1));
+			schedule(windowPrefetches, document, currentChapter, currentPage.getPagePlus(-1));
+		} catch (Exception e) {
+			Log.e(TAG, "Error preparing prefetch", e);
+		}
+	}
+
+	/** the user has jumped elsewhere in the window so any prefetch in progress for it is no longer useful
+	 */
+	public synchronized void cancel(Window window) {
+		WindowPrefetches windowPrefetches = pendingPrefetches.remove(window);
+		if (windowPrefetches!=null) {
+			windowPrefetches.cancel();
+		}
+	}
+
+	private void schedule(final WindowPrefetches windowPrefetches, final Book document, Key currentChapter, final Key chapter) {
+		// first or last chapter
+		if (chapter==null || document==null || chapter.equals(currentChapter)) {
+			return;
+		}
+
+		windowPrefetches.futures.add(executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				if (windowPrefetches.cancelled || !isEnoughFreeMemory()) {
+					return;
+				}
+				try {
+					Log.d(TAG, "Prefetching "+chapter.getName());
+					// result is cached by SwordContentFacade ready for when the user navigates to this chapter
+					SwordContentFacade.getInstance().readHtmlText(document, chapter);
+				} catch (Exception e) {
+					Log.w(TAG, "Error prefetching "+chapter.getName(), e);
+				} catch (OutOfMemoryError oom) {
+					Log.e(TAG, "Out of memory prefetching", oom);
+				}
+			}
+		}));
+	}
+
+	private boolean isEnoughFreeMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		long maxMemory = runtime.maxMemory();
+		long usedMemory = runtime.totalMemory()-runtime.freeMemory();
+		return maxMemory-usedMemory > maxMemory*MIN_FREE_HEAP_RATIO;
+	}
+
+	/** prefetches scheduled for a single window */
+	private static class WindowPrefetches {
+		private final List<Future<?>> futures = new ArrayList<>();
+
+		// set when the user moves elsewhere in the window so that in-progress prefetches can be abandoned
+		private volatile boolean cancelled;
+
+		private void cancel() {
+			cancelled = true;
+			for (Future<?> future : futures) {
+				future.cancel(false);
+			}
+		}
+	}
+}
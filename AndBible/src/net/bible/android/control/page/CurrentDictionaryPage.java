@@ -1,8 +1,13 @@
 package net.bible.android.control.page;
 
+import java.util.List;
+
 import net.bible.android.activity.R;
+import net.bible.android.control.ControlFactory;
+import net.bible.android.control.dictionary.DictionaryKeyIndex;
 import net.bible.android.view.activity.navigation.ChooseDictionaryWord;
 
+import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookCategory;
 import org.crosswire.jsword.passage.Key;
 
@@ -35,6 +40,23 @@ public class CurrentDictionaryPage extends CachedKeyPage implements CurrentPage
 		return ChooseDictionaryWord.class;
 	}
 	
+	/** dictionaries can contain many thousands of keys so use a compact index of key names rather than a list of keys
+	 */
+	@Override
+	protected List<Key> createGlobalKeyList(Book document) {
+		return getKeyIndex(document).asKeyList();
+	}
+
+	/** index of all keys in the current dictionary, allowing fast prefix searches
+	 */
+	public DictionaryKeyIndex getKeyIndex() {
+		return getKeyIndex(getCurrentDocument());
+	}
+
+	private DictionaryKeyIndex getKeyIndex(Book document) {
+		return ControlFactory.getInstance().getDictionaryKeyIndexFactory().getKeyIndex(document);
+	}
+
 	/** set key without notification
 	 * 
 	 * @param key
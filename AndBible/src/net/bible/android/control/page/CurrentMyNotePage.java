@@ -6,6 +6,7 @@ import net.bible.android.activity.R;
 import net.bible.android.control.ControlFactory;
 import net.bible.service.common.ParseException;
 import net.bible.service.download.FakeSwordBookFactory;
+import net.bible.service.format.osistohtml.HtmlChunkListener;
 
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookCategory;
@@ -37,6 +38,12 @@ public class CurrentMyNotePage extends CurrentCommentaryPage implements CurrentP
 	public String getCurrentPageContent() throws ParseException {
         return ControlFactory.getInstance().getMyNoteControl().getMyNoteTextByKey(getKey());
 	}
+
+	/** notes are short so are never split */
+	@Override
+	public String getCurrentPageContent(HtmlChunkListener chunkListener) throws ParseException {
+		return getCurrentPageContent();
+	}
 	
 	@Override
 	public void updateContextMenu(Menu menu) {
@@ -4,6 +4,7 @@ import java.util.List;
 
 import net.bible.service.common.ParseException;
 import net.bible.service.format.Note;
+import net.bible.service.format.osistohtml.HtmlChunkListener;
 
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookCategory;
@@ -69,6 +70,11 @@ public interface CurrentPage {
 	/** get a page to display */
 	public String getCurrentPageContent() throws ParseException;
 
+	/** get a page to display passing long pages to the listener in pieces
+	 * @return the whole page if nothing was passed to the listener, otherwise the end of the page not yet passed on
+	 */
+	public String getCurrentPageContent(HtmlChunkListener chunkListener) throws ParseException;
+
 	/** get footnotes */
 	public List<Note> getCurrentPageFootnotesAndReferences() throws ParseException;
 
@@ -8,6 +8,7 @@ import net.bible.android.control.PassageChangeMediator;
 import net.bible.service.common.ParseException;
 import net.bible.service.format.HtmlMessageFormatter;
 import net.bible.service.format.Note;
+import net.bible.service.format.osistohtml.HtmlChunkListener;
 import net.bible.service.sword.SwordContentFacade;
 import net.bible.service.sword.SwordDocumentFacade;
 
@@ -104,7 +105,12 @@ abstract class CurrentPageBase implements CurrentPage {
 
 	@Override
 	public String getCurrentPageContent() throws ParseException {
-        String htmlText = SwordContentFacade.getInstance().readHtmlText(getCurrentDocument(), getKey());
+		return getCurrentPageContent(null);
+	}
+
+	@Override
+	public String getCurrentPageContent(HtmlChunkListener chunkListener) throws ParseException {
+        String htmlText = SwordContentFacade.getInstance().readHtmlText(getCurrentDocument(), getKey(), chunkListener);
                 
         if (StringUtils.isEmpty(htmlText)) {
         	htmlText = HtmlMessageFormatter.format(R.string.error_no_content);
@@ -4,6 +4,7 @@ import net.bible.android.SharedConstants;
 import net.bible.android.activity.R;
 import net.bible.android.control.page.window.Window;
 import net.bible.service.format.HtmlMessageFormatter;
+import net.bible.service.format.osistohtml.HtmlChunkListener;
 
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.passage.Key;
@@ -16,17 +17,30 @@ import android.util.Log;
  * @see gnu.lgpl.License for license details.<br>
  *      The copyright to this program is held by it's author.
  */
-abstract public class UpdateTextTask extends AsyncTask<Window, Integer, String> {
+abstract public class UpdateTextTask extends AsyncTask<Window, UpdateTextTask.HtmlChunk, String> {
 
 	private Window window;
 	private int verseNo = SharedConstants.NO_VALUE;
 	private float yScreenOffsetRatio = SharedConstants.NO_VALUE;
 	
+	// true once the first piece of a long page has been shown
+	private boolean isPageStarted = false;
+	
 	private static final String TAG = "UpdateTextTask";
 	
     /** callbacks from base class when result is ready */
 	abstract protected void showText(String text, Window screenToUpdate, int verseNo, float yOffsetRatio);
 	
+	/** callback when more of a page started by showText is ready, only called if isShowInPiecesSupported() */
+	protected void appendText(String text, Window screenToUpdate, boolean isFinished) {
+		Log.w(TAG, "Page shown in pieces but appending is not supported");
+	}
+	
+	/** long pages can be shown as each piece is ready rather than waiting for the whole page */
+	protected boolean isShowInPiecesSupported() {
+		return false;
+	}
+	
 	@Override
 	protected void onPreExecute() {
 		//NOOP
@@ -51,7 +65,21 @@ abstract public class UpdateTextTask extends AsyncTask<Window, Integer, String>
 
             Log.d(TAG, "Loading document:"+document.getInitials()+" key:"+key.getOsisRef());
             
-            text = currentPage.getCurrentPageContent();
+            // pieces are only useful if the page is shown from the top, otherwise the target verse or offset may not have been generated yet
+            if (isShowInPiecesSupported() && verseNo<=1 && yScreenOffsetRatio<=0) {
+            	text = currentPage.getCurrentPageContent(new HtmlChunkListener() {
+					@Override
+					public void pageStarted(String html) {
+						publishProgress(new HtmlChunk(html, true));
+					}
+					@Override
+					public void pageContinued(String html) {
+						publishProgress(new HtmlChunk(html, false));
+					}
+				});
+            } else {
+            	text = currentPage.getCurrentPageContent();
+            }
             
     	} catch (Exception e) {
     		Log.e(TAG, "Error getting bible text", e);
@@ -65,8 +93,43 @@ abstract public class UpdateTextTask extends AsyncTask<Window, Integer, String>
     	return text;
     }
 
+	@Override
+	protected void onProgressUpdate(HtmlChunk... chunks) {
+		for (HtmlChunk chunk : chunks) {
+			// a newer page may have been requested
+			if (isCancelled()) {
+				return;
+			}
+			if (chunk.isStartOfPage) {
+				isPageStarted = true;
+				showText(chunk.html, window, verseNo, yScreenOffsetRatio);
+			} else {
+				appendText(chunk.html, window, false);
+			}
+		}
+	}
+
     protected void onPostExecute(String htmlFromDoInBackground) {
         Log.d(TAG, "Got html length "+htmlFromDoInBackground.length());
-        showText(htmlFromDoInBackground, window, verseNo, yScreenOffsetRatio);
+        if (isPageStarted) {
+        	appendText(htmlFromDoInBackground, window, true);
+        } else {
+        	showText(htmlFromDoInBackground, window, verseNo, yScreenOffsetRatio);
+        }
     }
+
+	protected Window getWindow() {
+		return window;
+	}
+
+	/** a piece of a long page */
+	static class HtmlChunk {
+		private String html;
+		private boolean isStartOfPage;
+
+		HtmlChunk(String html, boolean isStartOfPage) {
+			this.html = html;
+			this.isStartOfPage = isStartOfPage;
+		}
+	}
 }
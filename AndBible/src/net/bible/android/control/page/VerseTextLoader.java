@@ -0,0 +1,116 @@
+package net.bible.android.control.page;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.bible.service.common.CommonUtils;
+import net.bible.service.sword.SwordContentFacade;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.passage.Key;
+
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+/**
+ * Load the short verse text shown under each key in lists like search results and bookmarks.
+ * Text for the rows around those currently visible is fetched in a single batch in the background
+ * so scrolling a long list does not read each verse on the UI thread.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class VerseTextLoader {
+
+	public interface VerseTextLoadedListener {
+		/** called on a background thread after more verse text has been loaded
+		 */
+		void verseTextLoaded();
+	}
+
+	// should be larger than the number of rows that can be visible at once
+	private static final int CACHE_SIZE = 500;
+
+	// keys requested but not yet loaded, to prevent repeated requests while scrolling
+	private final Set<String> pendingKeys = new HashSet<String>();
+
+	private final LruCache<String, String> verseTextCache = new LruCache<String, String>(CACHE_SIZE);
+
+	private final ExecutorService executor;
+
+	private static final String TAG = "VerseTextLoader";
+
+	public VerseTextLoader() {
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, TAG);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return previously loaded text, or null if it has not been loaded yet
+	 */
+	public String getLoadedText(Book book, Key key) {
+		return verseTextCache.get(getCacheKey(book, key));
+	}
+
+	/**
+	 * Get the text of all keys not already loaded in one batch, in the background
+	 */
+	public void loadAsync(final Book book, List<? extends Key> keys, final VerseTextLoadedListener listener) {
+		final List<Key> keysToLoad = new ArrayList<Key>();
+		synchronized (pendingKeys) {
+			for (Key key : keys) {
+				String cacheKey = getCacheKey(book, key);
+				if (verseTextCache.get(cacheKey)==null && pendingKeys.add(cacheKey)) {
+					keysToLoad.add(key);
+				}
+			}
+		}
+		if (keysToLoad.isEmpty()) {
+			return;
+		}
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Map<Key, String> plainTextMap = SwordContentFacade.getInstance().getPlainText(book, keysToLoad);
+					for (Entry<Key, String> entry : plainTextMap.entrySet()) {
+						verseTextCache.put(getCacheKey(book, entry.getKey()), CommonUtils.limitTextLength(entry.getValue()));
+					}
+				} catch (Exception e) {
+					Log.e(TAG, "Error loading verse text", e);
+				} finally {
+					synchronized (pendingKeys) {
+						for (Key key : keysToLoad) {
+							String cacheKey = getCacheKey(book, key);
+							pendingKeys.remove(cacheKey);
+							// prevent rows that failed being requested repeatedly
+							if (verseTextCache.get(cacheKey)==null) {
+								verseTextCache.put(cacheKey, "");
+							}
+						}
+					}
+				}
+				listener.verseTextLoaded();
+			}
+		});
+	}
+
+	private String getCacheKey(Book book, Key key) {
+		return book.getInitials()+":"+key.getOsisRef();
+	}
+}
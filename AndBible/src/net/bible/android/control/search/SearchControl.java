@@ -1,15 +1,19 @@
 package net.bible.android.control.search;
 
+import java.util.List;
+
 import net.bible.android.SharedConstants;
 import net.bible.android.activity.R;
 import net.bible.android.control.ControlFactory;
 import net.bible.android.control.navigation.DocumentBibleBooksFactory;
 import net.bible.android.control.page.CurrentBiblePage;
-import net.bible.android.control.versification.Scripture;
+import net.bible.android.control.page.VerseTextLoader;
+import net.bible.android.control.page.VerseTextLoader.VerseTextLoadedListener;
 import net.bible.android.view.activity.base.CurrentActivityHolder;
 import net.bible.android.view.activity.base.Dialogs;
 import net.bible.android.view.activity.search.Search;
 import net.bible.android.view.activity.search.SearchIndex;
+import net.bible.android.view.activity.search.SearchIndexProgressStatus;
 import net.bible.service.common.CommonUtils;
 import net.bible.service.sword.SwordContentFacade;
 import net.bible.service.sword.SwordDocumentFacade;
@@ -22,7 +26,6 @@ import org.crosswire.jsword.index.IndexStatus;
 import org.crosswire.jsword.index.lucene.LuceneIndex;
 import org.crosswire.jsword.index.search.SearchType;
 import org.crosswire.jsword.passage.Key;
-import org.crosswire.jsword.passage.Verse;
 import org.crosswire.jsword.versification.BibleBook;
 import org.crosswire.jsword.versification.Versification;
 
@@ -56,10 +59,10 @@ public class SearchControl {
 	private static final String STRONG_COLON_STRING = LuceneIndex.FIELD_STRONG+":";
 	private static final String STRONG_COLON_STRING_PLACE_HOLDER = LuceneIndex.FIELD_STRONG+"COLON";
 	
-	public static final int MAX_SEARCH_RESULTS = 1000;
-
 	private DocumentBibleBooksFactory documentBibleBooksFactory;
 	
+	private VerseTextLoader verseTextLoader = new VerseTextLoader();
+	
 	private static final String TAG = "SearchControl";
 	
 	/** if current document is indexed then go to search else go to download index page
@@ -74,6 +77,11 @@ public class SearchControl {
     	if (indexStatus.equals(IndexStatus.DONE)) {
     		Log.d(TAG, "Index status is DONE");
     	    return new Intent(currentActivity, Search.class);
+    	} else if (isIndexCreationInProgress(document) || resumeIndexCreationIfInterrupted(document)) {
+    		Log.d(TAG, "Index creation is in progress");
+    		Intent intent = new Intent(currentActivity, SearchIndexProgressStatus.class);
+    		intent.putExtra(SEARCH_DOCUMENT, document.getInitials());
+    		return intent;
     	} else {
     		Log.d(TAG, "Index status is NOT DONE");
     	    return new Intent(currentActivity, SearchIndex.class);
@@ -83,6 +91,25 @@ public class SearchControl {
     public boolean validateIndex(Book document) {
     	return document.getIndexStatus().equals(IndexStatus.DONE);
     }
+
+    /** @return true if the index is scheduled or being created
+     */
+    public boolean isIndexCreationInProgress(Book document) {
+    	IndexStatus indexStatus = document.getIndexStatus();
+    	return indexStatus.equals(IndexStatus.CREATING) || indexStatus.equals(IndexStatus.SCHEDULED);
+    }
+
+    /** restart index creation if it was interrupted, e.g. by the app being killed, and has not been restarted yet
+     * 
+     * @return true if index creation was restarted
+     */
+    public boolean resumeIndexCreationIfInterrupted(Book document) {
+    	if (document.getIndexStatus().equals(IndexStatus.UNDONE) && SwordDocumentFacade.getInstance().isIndexCreationResumable(document)) {
+    		Log.d(TAG, "Resuming interrupted index creation");
+    		return createIndex(document);
+    	}
+    	return false;
+    }
     
     public String getCurrentBookName() {
     	try {
@@ -117,34 +144,42 @@ public class SearchControl {
     	return decorated;
     }
 
-    /** do the search query and prepare results in lists ready for display
+    /** do the search query and return results that are read a page at a time as they are displayed
      * 
      */
     public SearchResultsDto getSearchResults(String document, String searchText) throws BookException {
     	Log.d(TAG, "Preparing search results");
-    	SearchResultsDto searchResults = new SearchResultsDto();
     	
     	// search the current book
         Book book = SwordDocumentFacade.getInstance().getDocumentByInitials(document);
     	Key result = SwordContentFacade.getInstance().search(book, searchText);
-    	if (result!=null) {
-    		int resNum = result.getCardinality();
-        	Log.d(TAG, "Number of results:"+resNum);
-        	
-        	//if Bible or commentary then filter out any non Scripture keys, otherwise don't filter
-        	boolean isBibleOrCommentary = book instanceof AbstractPassageBook;
-    		for (int i=0; i<Math.min(resNum, MAX_SEARCH_RESULTS+1); i++) {
-    			Key key = result.get(i);
-    			boolean isMain = (!isBibleOrCommentary || Scripture.isScripture(((Verse)key).getBook()));
-   				searchResults.add(key, isMain);
-    		}
+    	if (result==null) {
+    		return new SearchResultsDto();
     	}
-    	
-    	return searchResults;
+    	Log.d(TAG, "Number of results:"+result.getCardinality());
+
+    	//if Bible or commentary then separate any non Scripture keys, otherwise don't filter
+    	return new SearchResultsDto(result, book instanceof AbstractPassageBook);
     }
 
-    /** get the verse for a search result
-     */
+	/** 
+	 * @return verse text if it has already been loaded by loadSearchResultVerseText, otherwise null
+	 */
+	public String getLoadedSearchResultVerseText(Key key) {
+		return verseTextLoader.getLoadedText(getCurrentBibleDocument(), key);
+	}
+
+	/** 
+	 * Load the verse text of many search results in one batch, in the background
+	 */
+	public void loadSearchResultVerseText(List<Key> keys, VerseTextLoadedListener listener) {
+		verseTextLoader.loadAsync(getCurrentBibleDocument(), keys, listener);
+	}
+
+	private Book getCurrentBibleDocument() {
+		return ControlFactory.getInstance().getCurrentPageControl().getCurrentBible().getCurrentDocument();
+	}
+
 	public String getSearchResultVerseText(Key key) {
 		// There is similar functionality in BookmarkControl
 		String verseText = "";
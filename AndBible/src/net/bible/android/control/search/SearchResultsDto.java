@@ -1,33 +1,93 @@
 package net.bible.android.control.search;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
+import net.bible.android.control.versification.Scripture;
+
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Verse;
 
+/** Search results read from the result of a search a page at a time, in the order of the result, as they are displayed.
+ * Reading through the result with an iterator avoids the cost of get(i) on large results and no key is created until its page is needed.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
 public class SearchResultsDto {
-	
+
+	private final Iterator<Key> resultIterator;
+
+	// if Bible or commentary then non Scripture keys are separated from the main results
+	private final boolean isBibleOrCommentary;
+
+	private final int totalCount;
+
     private List<Key> mainSearchResults = new ArrayList<Key>();
-    
+
     private List<Key> otherSearchResults = new ArrayList<Key>();
-    
-    public void add(Key resultKey, boolean isMain) {
+
+    public static final int PAGE_SIZE = 100;
+
+    public SearchResultsDto() {
+    	this.resultIterator = Collections.<Key>emptyList().iterator();
+    	this.isBibleOrCommentary = false;
+    	this.totalCount = 0;
+    }
+
+    public SearchResultsDto(Key result, boolean isBibleOrCommentary) {
+    	this.resultIterator = result.iterator();
+    	this.isBibleOrCommentary = isBibleOrCommentary;
+    	this.totalCount = result.getCardinality();
+    }
+
+    /** read the next page of main or other results
+     *
+     * @return the results added to the main or other list
+     */
+    public List<Key> loadNextPage(boolean isMain) {
+    	List<Key> results = isMain ? mainSearchResults : otherSearchResults;
+    	int from = results.size();
+    	while (results.size()-from<PAGE_SIZE && resultIterator.hasNext()) {
+    		Key key = resultIterator.next();
+    		boolean isKeyMain = (!isBibleOrCommentary || Scripture.isScripture(((Verse)key).getBook()));
+    		add(key, isKeyMain);
+    	}
+    	return new ArrayList<Key>(results.subList(from, results.size()));
+    }
+
+    /** @return true if there are results that have not been read yet
+     */
+    public boolean hasMore() {
+    	return resultIterator.hasNext();
+    }
+
+    private void add(Key resultKey, boolean isMain) {
     	if (isMain) {
     		mainSearchResults.add(resultKey);
     	} else {
     		otherSearchResults.add(resultKey);
     	}
     }
-    
+
+	/** @return main results read so far
+	 */
 	public List<Key> getMainSearchResults() {
 		return mainSearchResults;
 	}
 
+	/** @return other results read so far
+	 */
 	public List<Key> getOtherSearchResults() {
 		return otherSearchResults;
 	}
-	
+
+	/** @return the number of results found by the search, including those not read yet
+	 */
 	public int size() {
-		return mainSearchResults.size()+otherSearchResults.size();
+		return totalCount;
 	}
 }
@@ -63,7 +63,7 @@ public class BibleTraverser {
 		BibleBook book = verse.getBook();
 		int chapter = verse.getChapter();
 		// if past last chapter of book then go to next book - algorithm not foolproof but we only move one chapter at a time like this
-		if (chapter<v11n.getLastChapter(book)) {
+		if (chapter<getLastChapter(document, v11n, book)) {
 			chapter += 1;
 		} else {
 			BibleBook nextBook = getNextBook(document, v11n, book);
@@ -90,12 +90,20 @@ public class BibleTraverser {
 			// if there was a next book then go to it's first chapter
 			if (prevBook!=null) {
 				book = prevBook;
-				chapter=v11n.getLastChapter(book);
+				chapter=getLastChapter(document, v11n, prevBook);
 			}
 		}
 		return new Verse(v11n, book, chapter, 1);
 	}
 
+	/** 
+	 * Partial documents may end before the last chapter in the versification
+	 */
+	private int getLastChapter(AbstractPassageBook document, Versification v11n, BibleBook book) {
+		int lastChapter = documentBibleBooksFactory.getDocumentBibleBooksFor(document).getLastChapter(book);
+		return lastChapter>0 ? lastChapter : v11n.getLastChapter(book);
+	}
+
 	/** 
 	 * Get next book but separate scripture from other books to prevent unintentional jumping between Scripture and other
 	 */
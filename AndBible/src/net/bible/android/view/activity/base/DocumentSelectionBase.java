@@ -75,6 +75,9 @@ abstract public class DocumentSelectionBase extends ListActivityBase {
 	//TODO just use displayedDocuments with a model giving 2 lines in list
 	private List<Book> displayedDocuments;
 
+	// partial lists may be shown while the full list is being loaded e.g. as each download repository responds
+	private boolean isLoadingDocuments;
+
 	private boolean isDeletePossible;
 	// We only show installed ticks beside documents if in Document Downloads screen
 	private boolean isInstallStatusIconsShown;
@@ -179,6 +182,10 @@ abstract public class DocumentSelectionBase extends ListActivityBase {
     		}
 
 	    	selectedLanguageNo = languageList.indexOf(lang);
+	    	// a partial list of documents may not contain the default language
+	    	if (selectedLanguageNo==-1 && languageList.size()>0) {
+	    		selectedLanguageNo = 0;
+	    	}
     	}
     	
     	// if last doc in last lang was just deleted then need to adjust index
@@ -247,6 +254,7 @@ abstract public class DocumentSelectionBase extends ListActivityBase {
 	    	
 	        @Override
 	        protected void onPreExecute() {
+	        	isLoadingDocuments = true;
 	        	showHourglass();
 	        	showPreLoadMessage();
 	        }
@@ -267,12 +275,9 @@ abstract public class DocumentSelectionBase extends ListActivityBase {
 	        @Override
 			protected void onPostExecute(Void result) {
 	        	try {
+	        		isLoadingDocuments = false;
 	        		if (allDocuments!=null) {
-    	        		populateLanguageList();
-    	        		
-    	        		// default language depends on doc availability so must do in onPostExecute
-    	    	    	setDefaultLanguage();
-    	        		filterDocuments();
+	        			showAllDocuments();
 	        		}
 	        	} finally {
 	        		//todo implement this: http://stackoverflow.com/questions/891451/android-dismissdialog-does-not-dismiss-the-dialog
@@ -285,6 +290,39 @@ abstract public class DocumentSelectionBase extends ListActivityBase {
     
     
     
+    /** Show some of the documents before getDocumentsFromSource has returned them all
+     * Subclasses whose documents come from several slow sources can call this, from any thread, as each source responds.
+     */
+    protected void showPartialDocumentList(final List<Book> documents) {
+    	runOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				// ignore partial lists arriving after the full list
+				if (isLoadingDocuments && documents.size()>0) {
+		        	Log.d(TAG, "number of documents so far:"+documents.size());
+					allDocuments = documents;
+					showAllDocuments();
+					// allow the user to look at the documents found so far
+					dismissHourglass();
+				}
+			}
+		});
+    }
+
+    private void showAllDocuments() {
+		// keep the selected language if it is still available because the list may be updated while the user is looking at it
+		Language selectedLanguage = (selectedLanguageNo>=0 && selectedLanguageNo<languageList.size()) ? languageList.get(selectedLanguageNo) : null;
+
+		populateLanguageList();
+		if (selectedLanguage!=null) {
+			selectedLanguageNo = languageList.indexOf(selectedLanguage);
+		}
+		
+		// default language depends on doc availability so must do after documents are loaded
+    	setDefaultLanguage();
+		filterDocuments();
+    }
+
     /** a spinner has changed so refilter the doc list
      */
     private void filterDocuments() {
@@ -17,6 +17,9 @@ public interface DocumentView {
 
 	public abstract void show(String html, int jumpToVerse, float jumpToYOffsetRatio);
 
+	/** add the next piece of a long page to the end of the page started by show() */
+	public abstract void append(String html, boolean isFinished);
+
 	public abstract void applyPreferenceSettings();
 
 	/** may need updating depending on environmental brightness
@@ -195,7 +195,7 @@ public class ProgressActivityBase extends CustomTitlebarActivityBase {
 	 * @param prog
 	 * @return
 	 */
-	protected ProgressUIControl findOrCreateUIControl(Progress prog) {
+	protected ProgressUIControl findOrCreateUIControl(final Progress prog) {
 		ProgressUIControl uiControl = progressMap.get(prog);
 		if (uiControl == null) {
 			uiControl = new ProgressUIControl();
@@ -203,10 +203,32 @@ public class ProgressActivityBase extends CustomTitlebarActivityBase {
 			progressControlContainer.addView(uiControl.parent);
 			uiControl.showMsg(prog.getJobName());
 			uiControl.showPercent(prog.getWork());
+
+			// allow the user to stop a task e.g. a download that keeps failing
+			uiControl.parent.setOnClickListener(new View.OnClickListener() {
+				@Override
+				public void onClick(View view) {
+					confirmCancel(prog);
+				}
+			});
 		}
 		
 		return uiControl;
 	}
+
+	private void confirmCancel(final Progress prog) {
+		if (prog.isFinished() || !prog.isCancelable()) {
+			return;
+		}
+		String msg = prog.getJobName()+SharedConstants.LINE_SEPARATOR+getString(R.string.stop_task_confirmation);
+		Dialogs.getInstance().showMsg(msg, true, new Callback() {
+			@Override
+			public void okay() {
+				Log.i(TAG, "Cancelling job:"+prog.getJobName());
+				prog.cancel();
+			}
+		});
+	}
 	
     @Override
 	protected void onPause() {
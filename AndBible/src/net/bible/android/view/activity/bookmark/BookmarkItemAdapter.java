@@ -1,12 +1,15 @@
 package net.bible.android.view.activity.bookmark;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import net.bible.android.control.ControlFactory;
 import net.bible.android.control.bookmark.Bookmark;
+import net.bible.android.control.page.VerseTextLoader.VerseTextLoadedListener;
 import net.bible.service.db.bookmark.BookmarkDto;
 
 import android.content.Context;
+import android.os.Handler;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -26,6 +29,12 @@ public class BookmarkItemAdapter extends ArrayAdapter<BookmarkDto> {
 	private int resource;
 	private Bookmark bookmarkControl;
 	
+	private Handler uiHandler = new Handler();
+	
+	// number of rows to load before and after the row being shown
+	private static final int LOAD_BEHIND = 10;
+	private static final int LOAD_AHEAD = 30;
+	
 	private static final String TAG = "BookmarkItemAdapter";
 
 	public BookmarkItemAdapter(Context _context, int _resource, List<BookmarkDto> _items) {
@@ -57,7 +66,12 @@ public class BookmarkItemAdapter extends ArrayAdapter<BookmarkDto> {
 		// set value for the second text field
 		if (view.getText2() != null) {
 			try {
-				String verseText = bookmarkControl.getBookmarkVerseText(item);
+				// verse text is loaded in batches in the background to allow smooth scrolling
+				String verseText = bookmarkControl.getLoadedBookmarkVerseText(item);
+				if (verseText==null) {
+					verseText = "";
+					loadVerseTextAround(position);
+				}
 				view.getText2().setText(verseText);
 			} catch (Exception e) {
 				Log.e(TAG, "Error loading label verse text", e);
@@ -67,4 +81,27 @@ public class BookmarkItemAdapter extends ArrayAdapter<BookmarkDto> {
 
 		return view;
 	}
+
+	/**
+	 * Start loading the text of this row and the rows around it in one batch
+	 */
+	private void loadVerseTextAround(int position) {
+		int from = Math.max(0, position-LOAD_BEHIND);
+		int to = Math.min(getCount(), position+LOAD_AHEAD);
+		List<BookmarkDto> items = new ArrayList<BookmarkDto>();
+		for (int i=from; i<to; i++) {
+			items.add(getItem(i));
+		}
+		bookmarkControl.loadBookmarkVerseText(items, new VerseTextLoadedListener() {
+			@Override
+			public void verseTextLoaded() {
+				uiHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						notifyDataSetChanged();
+					}
+				});
+			}
+		});
+	}
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import java.util.List;
 import net.bible.android.activity.R;
 import net.bible.android.control.ControlFactory;
 import net.bible.android.control.comparetranslations.CompareTranslationsControl;
+import net.bible.android.control.comparetranslations.TranslationComparer.TranslationsListener;
 import net.bible.android.control.comparetranslations.TranslationDto;
 import net.bible.android.control.page.CurrentBiblePage;
 import net.bible.android.view.activity.base.ListActivityBase;
@@ -41,6 +42,9 @@ public class CompareTranslations extends ListActivityBase implements SwipeGestur
 	// detect swipe left/right
 	private GestureDetector gestureDetector;
 
+	// incremented, on the ui thread, whenever a comparison is started or cancelled so results of an earlier comparison can be ignored
+	private int comparisonNo;
+
 	private CompareTranslationsControl compareTranslationsControl = ControlFactory.getInstance().getCompareTranslationsControl();
 
     public static final String VERSE = "net.bible.android.view.activity.comparetranslations.Verse";
@@ -68,11 +72,11 @@ public class CompareTranslations extends ListActivityBase implements SwipeGestur
 			Log.e(TAG, "Error getting compare verse, using default");
 		}
 
-		prepareScreenData();
-
     	mKeyArrayAdapter = new ItemAdapter(this, LIST_ITEM_TYPE, mTranslations);
         setListAdapter(mKeyArrayAdapter);
 
+		prepareScreenData();
+
         // create gesture related objects
         gestureDetector = new GestureDetector( new SwipeGestureListener(this) );
     }
@@ -81,14 +85,48 @@ public class CompareTranslations extends ListActivityBase implements SwipeGestur
 
         setTitle(compareTranslationsControl.getTitle());
 
-        mTranslations.clear();
-        mTranslations.addAll(compareTranslationsControl.getAllTranslations());
-        
-        notifyDataSetChanged();
+        final int thisComparisonNo = ++comparisonNo;
+        // translations are shown as they are fetched so slow documents do not delay the rest
+        compareTranslationsControl.getAllTranslations(new TranslationsListener() {
+			@Override
+			public void translationsUpdated(List<TranslationDto> translations) {
+				showTranslations(translations, thisComparisonNo);
+			}
+
+			@Override
+			public void comparisonComplete(List<TranslationDto> translations) {
+				showTranslations(translations, thisComparisonNo);
+		        Log.d(TAG, "Finished displaying Compare Translations view");
+			}
+		});
+    }
 
-        Log.d(TAG, "Finished displaying Compare Translations view");
+    /** called on a background thread
+     */
+    private void showTranslations(final List<TranslationDto> translations, final int translationsComparisonNo) {
+    	runOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				// the user may have moved to another verse, or closed the screen, since these results were posted
+				if (translationsComparisonNo!=comparisonNo) {
+					Log.d(TAG, "Ignoring translations from an earlier comparison");
+					return;
+				}
+		        mTranslations.clear();
+		        mTranslations.addAll(translations);
+		        
+		        notifyDataSetChanged();
+			}
+		});
     }
 
+    @Override
+	protected void onDestroy() {
+    	compareTranslationsControl.cancel();
+    	comparisonNo++;
+		super.onDestroy();
+	}
+
     /** swiped left
      */
     @Override
@@ -10,6 +10,7 @@ import net.bible.android.view.activity.base.Callback;
 import net.bible.android.view.activity.base.Dialogs;
 import net.bible.android.view.activity.base.DocumentSelectionBase;
 import net.bible.service.common.CommonUtils;
+import net.bible.service.download.CatalogueRefresher.CatalogueListener;
 import net.bible.service.sword.SwordDocumentFacade;
 
 import org.crosswire.common.progress.JobManager;
@@ -106,7 +107,21 @@ public class Download extends DocumentSelectionBase {
     
     @Override
     protected List<Book> getDocumentsFromSource(boolean refresh) {
-    	return downloadControl.getDownloadableDocuments(refresh);
+    	// show the documents from each repository as it responds
+    	CatalogueListener partialListListener = new CatalogueListener() {
+			@Override
+			public void catalogueUpdated(List<Book> books) {
+				showPartialDocumentList(books);
+			}
+		};
+
+    	if (refresh && downloadControl.isDownloadableDocumentListCached()) {
+    		// show the previous document list straight away and replace it when every repository has been checked for changes
+    		showPartialDocumentList(downloadControl.getDownloadableDocuments(false, partialListListener));
+    		return downloadControl.getDownloadableDocuments(true);
+    	}
+
+    	return downloadControl.getDownloadableDocuments(refresh, partialListListener);
     }
     
     /** user selected a document so download it
@@ -117,7 +132,7 @@ public class Download extends DocumentSelectionBase {
     protected void handleDocumentSelection(Book document) {
     	Log.d(TAG, "Document selected:"+document.getInitials());
     	try {
-    		if (JobManager.getJobCount()>=2) {
+    		if (downloadControl.isDownloadQueueFull()) {
     			showTooManyJobsDialog();
     		} else {
     			manageDownload(document);
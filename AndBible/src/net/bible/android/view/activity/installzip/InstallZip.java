@@ -1,24 +1,27 @@
 package net.bible.android.view.activity.installzip;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import net.bible.android.SharedConstants;
 import net.bible.android.activity.R;
+import net.bible.service.download.StagedModuleInstaller;
 
 import org.crosswire.common.util.NetUtil;
 import org.crosswire.jsword.book.BookDriver;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.sword.SwordBookDriver;
 import org.crosswire.jsword.book.sword.SwordBookMetaData;
-import org.crosswire.jsword.book.sword.SwordBookPath;
 import org.crosswire.jsword.book.sword.SwordConstants;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.content.res.AssetFileDescriptor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -48,110 +51,155 @@ class ZipHandler extends AsyncTask<Void, Integer, Integer> {
 	private static final int R_MODULE_EXISTS = 3;
 	private static final int R_OK = 4;
 
+	// the module is unpacked here before being moved into the module dir so it must be on the same file system
+	private static final File STAGING_DIR = new File(SharedConstants.FRONTEND_DATA_DIR, "installzip");
+
 	private Uri uri;
 	private InstallZip parent;
-	private int total_entries = 0;
+	private long total_bytes = AssetFileDescriptor.UNKNOWN_LENGTH;
+	private long bytes_read = 0;
+	private int last_progress = -1;
+	private int progress_max;
+	private boolean extracting = false;
 
 	public ZipHandler(Uri _uri, InstallZip _parent) {
 		uri = _uri;
 		parent = _parent;
+		progress_max = parent.progressBar.getMax();
 	}
 
-	private void checkZipFile() throws IOException, ModuleExists, InvalidModule {
+	/**
+	 * Check and unpack the zip file in a single pass, then move the module
+	 * into place so a failed install leaves nothing behind
+	 */
+	private void installZipFile() throws IOException, BookException, ModuleExists, InvalidModule {
 		boolean mods_d_found = false;
 		boolean modules_found = false;
-		ZipEntry entry;
-
-		File targetDirectory = SwordBookPath.getSwordDownloadDir();
+		ArrayList<String> confNames = new ArrayList<String>();
 
-		ZipInputStream zin = new ZipInputStream(parent.getContentResolver()
-				.openInputStream(uri));
+		File targetDirectory = SharedConstants.MODULE_DIR;
+		StagedModuleInstaller stagedModule = new StagedModuleInstaller(STAGING_DIR);
+		stagedModule.delete();
 
-		while ((entry = zin.getNextEntry()) != null) {
-			total_entries++;
-			String name = entry.getName().replace('\\', '/');
-			File targetFile = new File(targetDirectory, name);
-			if (!entry.isDirectory() && targetFile.exists())
-			{
-				zin.close();
-				throw new ModuleExists();
-			}
-			if (name.startsWith(SwordConstants.DIR_CONF + "/")
-					&& name.endsWith(SwordConstants.EXTENSION_CONF))
-				mods_d_found = true;
-			else if (name.startsWith(SwordConstants.DIR_CONF + "/")){}
-			else if (name.startsWith(SwordConstants.DIR_DATA + "/"))
-				modules_found = true;
-			else {
-				{
-					zin.close();
-					throw new InvalidModule();
+		total_bytes = getZipFileLength();
+		ZipInputStream zin = new ZipInputStream(new CountingInputStream(parent.getContentResolver()
+				.openInputStream(uri)));
+		try {
+			ZipEntry entry;
+			while ((entry = zin.getNextEntry()) != null) {
+				String name = entry.getName().replace('\\', '/');
+				File targetFile = new File(targetDirectory, name);
+				if (!entry.isDirectory() && targetFile.exists())
+					throw new ModuleExists();
+				if (name.startsWith(SwordConstants.DIR_CONF + "/")
+						&& name.endsWith(SwordConstants.EXTENSION_CONF)) {
+					mods_d_found = true;
+					confNames.add(name);
 				}
+				else if (name.startsWith(SwordConstants.DIR_CONF + "/")){}
+				else if (name.startsWith(SwordConstants.DIR_DATA + "/"))
+					modules_found = true;
+				else
+					throw new InvalidModule();
+
+				if (entry.isDirectory())
+					continue;
+				stagedModule.unpackEntry(name, zin);
 			}
-		}
 
-		if (!(mods_d_found && modules_found))
-		{	
+			if (!(mods_d_found && modules_found))
+				throw new InvalidModule();
+
+			// the zip only contains mods.d and modules so no files go to the front end dir
+			stagedModule.install(targetDirectory, targetDirectory);
+		} finally {
 			zin.close();
-			throw new InvalidModule();
+			stagedModule.delete();
 		}
 
-		zin.close();
+		// Load configuration files & register books
+		BookDriver book_driver = SwordBookDriver.instance();
+		for (String confName : confNames) {
+			SwordBookMetaData me = new SwordBookMetaData(new File(targetDirectory, confName), NetUtil.getURI(targetDirectory));
+			me.setDriver(book_driver);
+			SwordBookDriver.registerNewBook(me);
+		}
 	}
 
-	private void installZipFile() throws IOException, BookException {
-		ZipInputStream zin = new ZipInputStream(parent.getContentResolver()
-				.openInputStream(uri));
-
-		ArrayList<File> confFiles = new ArrayList<File>();
-		File targetDirectory = SwordBookPath.getSwordDownloadDir();
+	/**
+	 * @return the size of the zip file or UNKNOWN_LENGTH
+	 */
+	private long getZipFileLength() {
+		AssetFileDescriptor fd = null;
 		try {
-			ZipEntry ze;
-			int count;
-			int entry_num = 0;
-			byte[] buffer = new byte[8192];
-			while ((ze = zin.getNextEntry()) != null) {
-
-				String name = ze.getName().replace('\\','/');
+			fd = parent.getContentResolver().openAssetFileDescriptor(uri, "r");
+			return fd != null ? fd.getLength() : AssetFileDescriptor.UNKNOWN_LENGTH;
+		} catch (IOException e) {
+			return AssetFileDescriptor.UNKNOWN_LENGTH;
+		} finally {
+			if (fd != null) {
+				try {
+					fd.close();
+				} catch (IOException e) {
+					Log.w(InstallZip.TAG, "Error closing zip file", e);
+				}
+			}
+		}
+	}
 
-				File file = new File(targetDirectory, name);
-				if (name.startsWith(SwordConstants.DIR_CONF)
-						&& name.endsWith(SwordConstants.EXTENSION_CONF))
-					confFiles.add(file);
+	/**
+	 * Publish progress in bytes of the zip file read, only when the
+	 * progress bar would change
+	 */
+	private void updateProgress() {
+		int progress_now;
+		if (total_bytes > 0)
+			progress_now = (int) (bytes_read * progress_max / total_bytes);
+		else
+			progress_now = 0;
+		if (progress_now != last_progress) {
+			last_progress = progress_now;
+			publishProgress(progress_now);
+		}
+	}
 
-				File dir = ze.isDirectory() ? file : file.getParentFile();
+	/**
+	 * Counts the compressed bytes read from the zip file
+	 */
+	private class CountingInputStream extends FilterInputStream {
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
 
-				if (!dir.isDirectory() && !(dir.mkdirs() || dir.isDirectory()))
-					throw new IOException();
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1)
+				bytes_read++;
+			return b;
+		}
 
-				if (ze.isDirectory())
-					continue;
-				FileOutputStream fout = new FileOutputStream(file);
-				try {
-					while ((count = zin.read(buffer)) != -1)
-						fout.write(buffer, 0, count);
-				} finally {
-					fout.close();
-				}
-				publishProgress(++entry_num);
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int count = super.read(buffer, offset, length);
+			if (count > 0) {
+				bytes_read += count;
+				updateProgress();
 			}
-		} finally {
-			zin.close();
-		}
-		// Load configuration files & register books
-		BookDriver book_driver = SwordBookDriver.instance();
-		for (File confFile : confFiles) {
-			SwordBookMetaData me = new SwordBookMetaData(confFile, NetUtil.getURI(targetDirectory));
-			me.setDriver(book_driver);
-			SwordBookDriver.registerNewBook(me);
+			return count;
 		}
 
+		@Override
+		public long skip(long n) throws IOException {
+			long count = super.skip(n);
+			bytes_read += count;
+			return count;
+		}
 	}
 
 	@Override
 	protected Integer doInBackground(Void... params) {
 		try {
-			checkZipFile();
 			installZipFile();
 		} catch (IOException | BookException e) {
 			Log.e(parent.TAG, "Error occurred", e);
@@ -189,12 +237,14 @@ class ZipHandler extends AsyncTask<Void, Integer, Integer> {
 
 	@Override
 	protected void onProgressUpdate(Integer... values) {
-		if (values[0] == 1)
+		if (!extracting) {
+			extracting = true;
 			parent.setTitle(R.string.extracting_zip_file);
-		int progress_now = (int) Math
-				.round(((float) values[0] / (float) total_entries)
-						* parent.progressBar.getMax());
-		parent.progressBar.setProgress(progress_now);
+		}
+		if (total_bytes > 0)
+			parent.progressBar.setProgress(values[0]);
+		else
+			parent.progressBar.setIndeterminate(true);
 	}
 }
 
@@ -80,6 +80,11 @@ public class MyNoteEditTextView extends EditText implements DocumentView {
 		setText(html);
 	}
 
+	@Override
+	public void append(String html, boolean isFinished) {
+		// notes are short so are never shown in pieces
+	}
+
 	@Override
 	public void applyPreferenceSettings() {
 		changeBackgroundColour();
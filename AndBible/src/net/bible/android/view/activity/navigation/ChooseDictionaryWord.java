@@ -1,11 +1,13 @@
 package net.bible.android.view.activity.navigation;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import net.bible.android.activity.R;
 import net.bible.android.control.ControlFactory;
+import net.bible.android.control.dictionary.DictionaryKeyIndex;
+import net.bible.android.control.dictionary.DictionaryKeySearcher;
+import net.bible.android.control.dictionary.DictionaryKeySearcher.KeysFoundListener;
 import net.bible.android.view.activity.base.Dialogs;
 import net.bible.android.view.activity.base.ListActivityBase;
 
@@ -19,6 +21,8 @@ import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.Log;
 import android.view.View;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.ArrayAdapter;
 import android.widget.EditText;
 import android.widget.ListView;
@@ -33,10 +37,23 @@ import android.widget.ListView;
 public class ChooseDictionaryWord extends ListActivityBase {
 	private static final String TAG = "ChooseDictionaryWord";
 	
-	private List<Key> mDictionaryGlobalList;
+	// created in a background thread
+	private volatile DictionaryKeySearcher mKeySearcher;
+	private volatile boolean mIsDestroyed;
 	private List<Key> mMatchingKeyList;
+
+	// incremented for each search so results of a superseded search are ignored
+	private int mSearchNo;
+	private KeysFoundListener mKeysFoundListener;
+	private int mTotalMatches;
+	private boolean mIsLoadingMore;
+
+	private EditText mSearchEditText;
 	
 	private static final int LIST_ITEM_TYPE = android.R.layout.simple_list_item_1; 
+
+	// fetch more matches when scrolled to within this many rows of the last match shown
+	private static final int LOAD_MORE_THRESHOLD = 20;
 	
     /** Called when the activity is first created. */
     @Override
@@ -53,8 +70,8 @@ public class ChooseDictionaryWord extends ListActivityBase {
         
         initialise();
         
-        EditText searcheditText = (EditText)findViewById(R.id.searchText);
-        searcheditText.addTextChangedListener(new TextWatcher() {
+        mSearchEditText = (EditText)findViewById(R.id.searchText);
+        mSearchEditText.addTextChangedListener(new TextWatcher() {
 			@Override
 			public void onTextChanged(CharSequence searchText, int arg1, int arg2, int arg3) {
 				showPossibleDictionaryKeys(searchText.toString());
@@ -67,7 +84,29 @@ public class ChooseDictionaryWord extends ListActivityBase {
 			public void beforeTextChanged(CharSequence arg0, int arg1,	int arg2, int arg3) {
 			}
         });
-        searcheditText.requestFocus();
+        mSearchEditText.requestFocus();
+
+        getListView().setOnScrollListener(new OnScrollListener() {
+			@Override
+			public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+				if (firstVisibleItem+visibleItemCount+LOAD_MORE_THRESHOLD >= totalItemCount) {
+					loadMoreDictionaryKeys();
+				}
+			}
+
+			@Override
+			public void onScrollStateChanged(AbsListView view, int scrollState) {
+			}
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+    	mIsDestroyed = true;
+    	if (mKeySearcher!=null) {
+    		mKeySearcher.shutdown();
+    	}
+    	super.onDestroy();
     }
 
     /**
@@ -91,11 +130,14 @@ public class ChooseDictionaryWord extends ListActivityBase {
 			@Override
 			public void run() {
 				try {
-					// getting all dictionary keys is slow so do in another thread in order to show hourglass
-					//TODO need to optimise this using binary search of globalkeylist without caching
-					
+					// the key index must be created the first time a dictionary is used which is slow so do in another thread in order to show hourglass
 			    	//already checked a dictionary exists
-			    	mDictionaryGlobalList = ControlFactory.getInstance().getCurrentPageControl().getCurrentDictionary().getCachedGlobalKeyList(); 
+			    	DictionaryKeyIndex keyIndex = ControlFactory.getInstance().getCurrentPageControl().getCurrentDictionary().getKeyIndex();
+			    	mKeySearcher = new DictionaryKeySearcher(keyIndex);
+			    	// the activity may have been closed while the index was loading
+			    	if (mIsDestroyed) {
+			    		mKeySearcher.shutdown();
+			    	}
 			    	
 			    	Log.d(TAG, "Finished Initialising");
 				} catch (Throwable t) {
@@ -107,6 +149,10 @@ public class ChooseDictionaryWord extends ListActivityBase {
 						@Override
 						public void run() {
 							dismissHourglass();
+							// the user may have typed while the index was loading
+							if (mSearchEditText.length()>0) {
+								showPossibleDictionaryKeys(mSearchEditText.getText().toString());
+							}
 						}
 			    	});
 				}
@@ -117,30 +163,55 @@ public class ChooseDictionaryWord extends ListActivityBase {
     /** user has typed something so show keys starting with user's text
      * @param searchText
      */
-    private void showPossibleDictionaryKeys(String searchText) {
+    private void showPossibleDictionaryKeys(final String searchText) {
 		Log.d(TAG, "Search for:"+searchText);
-		try {
-			if (mDictionaryGlobalList!=null) {
-				searchText = searchText.toLowerCase();
-		
-				Iterator<Key> iter = mDictionaryGlobalList.iterator();
-				mMatchingKeyList.clear();
-				while (iter.hasNext()) {
-					Key key = iter.next();
-					if (key.getName().toLowerCase().startsWith(searchText)) {
-						mMatchingKeyList.add(key);
+		if (mKeySearcher==null) {
+			Log.d(TAG, "Dictionary key index is not ready");
+			return;
+		}
+
+		final int thisSearchNo = ++mSearchNo;
+		final Handler uiHandler = new Handler();
+		mIsLoadingMore = false;
+		mKeysFoundListener = new KeysFoundListener() {
+			@Override
+			public void keysFound(final List<Key> keys, final boolean isFirstPage, final int totalMatches) {
+				uiHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						if (thisSearchNo==mSearchNo) {
+							showMatchingKeys(keys, isFirstPage, totalMatches);
+						}
 					}
-				}
-				Log.d(TAG, "matches found:"+mMatchingKeyList.size());
-		
-		    	notifyDataSetChanged();
-				Log.d(TAG, "Finished searching for:"+searchText);
-			} else {
-				Log.d(TAG, "Cached global key list is null");
+				});
 			}
-		} catch (Throwable e) {
-			Log.e(TAG, "Error finding matching keys", e);
-			showErrorMsg(R.string.error_occurred);
+		};
+		// search in the background so typing is never delayed
+		mKeySearcher.search(searchText, mKeysFoundListener);
+    }
+
+    /** add a page of keys matching the search to the list
+     */
+    private void showMatchingKeys(List<Key> keys, boolean isFirstPage, int totalMatches) {
+		if (isFirstPage) {
+			mMatchingKeyList.clear();
+			Log.d(TAG, "matches found:"+totalMatches);
+		}
+		mMatchingKeyList.addAll(keys);
+		mTotalMatches = totalMatches;
+		mIsLoadingMore = false;
+		notifyDataSetChanged();
+		if (isFirstPage) {
+			getListView().setSelection(0);
+		}
+    }
+
+    /** the user has scrolled near the last match shown
+     */
+    private void loadMoreDictionaryKeys() {
+		if (mKeySearcher!=null && mKeysFoundListener!=null && !mIsLoadingMore && mMatchingKeyList.size()<mTotalMatches) {
+			mIsLoadingMore = true;
+			mKeySearcher.loadMore(mKeysFoundListener);
 		}
     }
     
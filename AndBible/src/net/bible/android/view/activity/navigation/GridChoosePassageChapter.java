@@ -65,7 +65,7 @@ public class GridChoosePassageChapter extends CustomTitlebarActivityBase impleme
     private List<ButtonInfo> getBibleChaptersButtonInfo(BibleBook book) {
     	int chapters = -1;
     	try {
-	    	chapters = navigationControl.getVersification().getLastChapter(book);
+	    	chapters = navigationControl.getLastChapter(book);
 		} catch (Exception nsve) {
 			chapters = -1;
 		}
@@ -38,15 +38,13 @@ public class BibleJavascriptInterface {
 		}
 	}
 	
+	/** all verse positions are passed in one call because each call from js to java is slow
+	 * 
+	 * @param positions verse number and offset pairs e.g. "1:20,2:85"
+	 */
 	@JavascriptInterface
-	public void clearVersePositionCache() {
-		Log.d(TAG, "clear verse positions");
-		verseCalculator.init();
-	}
-
-	@JavascriptInterface
-	public void registerVersePosition(String verseId, int offset) {
-		verseCalculator.registerVersePosition(Integer.valueOf(verseId), offset);
+	public void registerVersePositions(String positions) {
+		verseCalculator.registerVersePositions(positions);
 	}
 	
 	@JavascriptInterface
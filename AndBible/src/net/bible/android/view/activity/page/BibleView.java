@@ -1,6 +1,8 @@
 package net.bible.android.view.activity.page;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 import net.bible.android.SharedConstants;
 import net.bible.android.control.ControlFactory;
@@ -48,6 +50,10 @@ public class BibleView extends WebView implements DocumentView {
 
 	private boolean mIsVersePositionRecalcRequired = true;
 	
+	// pieces of a long page can only be appended after the start of the page has loaded
+	private boolean mIsPageLoaded = false;
+	private List<String> mPendingAppendScripts = new ArrayList<String>();
+	
 	private PageTiltScroller mPageTiltScroller;
 	private boolean hideScrollBar;
 	
@@ -98,6 +104,16 @@ public class BibleView extends WebView implements DocumentView {
 				}
 			}
 
+			@Override
+			public void onPageFinished(WebView view, String url) {
+				super.onPageFinished(view, url);
+				mIsPageLoaded = true;
+				for (String script : mPendingAppendScripts) {
+					loadUrl(script);
+				}
+				mPendingAppendScripts.clear();
+			}
+
 			@Override
 			public void onLoadResource(WebView view, String url) {
 				Log.d(TAG, "onLoadResource:"+url);
@@ -196,6 +212,10 @@ public class BibleView extends WebView implements DocumentView {
 		// allow zooming if map
 		enableZoomForMap(ControlFactory.getInstance().getCurrentPageControl().isMapShown());
 		
+		// any pieces of a previous page not yet appended are no longer relevant
+		mIsPageLoaded = false;
+		mPendingAppendScripts.clear();
+		
 		loadDataWithBaseURL("file:///android_asset/", html, "text/html", "UTF-8", "http://historyUrl");
 
 		// ensure jumpToOffset is eventually called during initialisation.  It will normally be called automatically but sometimes is not i.e. after jump to verse 1 at top of screen then press back.
@@ -204,6 +224,56 @@ public class BibleView extends WebView implements DocumentView {
 		invokeJumpToOffsetIfRequired(CommonUtils.isSlowDevice()? 500 : 250);
 	}
 
+	/** add the next piece of a long page to the end of the page
+	 */
+	@Override
+	public void append(String html, boolean isFinished) {
+		Log.d(TAG, "Append html length "+html.length()+" finished:"+isFinished);
+		String script = "javascript:appendHtml('"+toJavascriptString(html)+"', "+isFinished+")";
+		if (mIsPageLoaded) {
+			loadUrl(script);
+		} else {
+			mPendingAppendScripts.add(script);
+		}
+	}
+
+	/** escape html for use as a single quoted javascript string in a javascript: url
+	 */
+	private static String toJavascriptString(String text) {
+		StringBuilder escaped = new StringBuilder(text.length()+text.length()/8);
+		for (int i=0; i<text.length(); i++) {
+			char ch = text.charAt(i);
+			switch (ch) {
+			case '\\':
+				escaped.append("\\\\");
+				break;
+			case '\'':
+				escaped.append("\\'");
+				break;
+			case '\n':
+				escaped.append("\\n");
+				break;
+			case '\r':
+				escaped.append("\\r");
+				break;
+			// javascript: urls may be url decoded before being run
+			case '%':
+				escaped.append("\\u0025");
+				break;
+			// line and paragraph separators end a javascript string
+			case '\u2028':
+				escaped.append("\\u2028");
+				break;
+			case '\u2029':
+				escaped.append("\\u2029");
+				break;
+			default:
+				escaped.append(ch);
+			}
+		}
+		return escaped.toString();
+	}
+
 	/**
 	 * Enable or disable zoom controls depending on whether map is currently shown
 	 */
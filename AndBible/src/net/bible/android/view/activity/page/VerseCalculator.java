@@ -1,58 +1,100 @@
 package net.bible.android.view.activity.page;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import net.bible.android.control.ControlFactory;
 import net.bible.android.control.page.CurrentPageManager;
 import net.bible.android.control.page.window.Window;
 
+import org.apache.commons.lang.StringUtils;
+
+import android.util.Log;
+
 /** Automatically find current verse at top of display to aid quick movement to Commentary.
- * todo: ensure last verse is selectable 
- * 
+ * todo: ensure last verse is selectable
+ *
  * @author Martin Denham [mjdenham at gmail dot com]
  * @see gnu.lgpl.License for license details.<br>
  *      The copyright to this program is held by it's author.
  */
 public class VerseCalculator {
 
-	private List<Integer> versePositionList = new LinkedList<Integer>();
+	// offset of each verse indexed by verse number, never decreasing so it can be binary searched
+	// replaced, not updated, when new positions are registered because js and scroll calls may arrive on different threads
+	private volatile int[] versePositions = new int[0];
 
 	private int prevCurrentVerse = -1;
+	// reset on the ui thread when new positions are registered and read by scroll calls from js
+	private volatile int prevScrollOffset = -1;
 
 	// used in logging, but none currently done
 //	private Window screen;
-	
+
 	// going to a verse pushes the offset a couple of pixels past the verse position on large screens i.e. going to Judg 5:11 will show Judg 5:12
 	private static final int SLACK_FOR_JUMP_TO_VERSE = 5;
-	@SuppressWarnings("unused")
+
+	// missed verse but need to put some offset so make it off screen
+	private static final int MISSING_VERSE_POSITION = -1000;
+
+	private static final String POSITION_SEPARATOR = ",";
+	private static final String VERSE_OFFSET_SEPARATOR = ":";
+
 	private static final String TAG = "VerseCalculator";
 
 	public VerseCalculator(Window window) {
 		super();
 //		this.screen = screen;
 	}
-	
-	public void init() {
-		versePositionList = new LinkedList<Integer>();
-	}
-	
-	/** when a page is displayed js calls this function to recored the position of all verses to enable current verse calculation
-	 * 
-	 * @param verse
-	 * @param offset
+
+	/** when a page is displayed js calls this function once to record the position of all verses to enable current verse calculation
+	 *
+	 * @param positions verse number and offset pairs in page order e.g. "1:20,2:85,4:130"
 	 */
-	public void registerVersePosition(int verse, int offset) {
+	public void registerVersePositions(String positions) {
+		String[] verseOffsets = StringUtils.split(positions, POSITION_SEPARATOR);
+		int[] verses = new int[verseOffsets.length];
+		int[] offsets = new int[verseOffsets.length];
+		int count = 0;
+		int maxVerse = -1;
+		for (String verseOffset : verseOffsets) {
+			try {
+				int separator = verseOffset.indexOf(VERSE_OFFSET_SEPARATOR);
+				verses[count] = Integer.parseInt(verseOffset.substring(0, separator));
+				offsets[count] = Integer.parseInt(verseOffset.substring(separator+1));
+				maxVerse = Math.max(maxVerse, verses[count]);
+				count++;
+			} catch (Exception e) {
+				Log.w(TAG, "Invalid verse position:"+verseOffset);
+			}
+		}
+
 		// cope with missing verses
-		while (verse>versePositionList.size()) {
-			// missed verse but need to put some offset so make it off screen
-			// commentaries will have all missing verses except current verse but don't know if it is a commentary
-			versePositionList.add(-1000);
+		// commentaries will have all missing verses except current verse but don't know if it is a commentary
+		int[] newVersePositions = new int[maxVerse+1];
+		for (int i=0; i<newVersePositions.length; i++) {
+			newVersePositions[i] = MISSING_VERSE_POSITION;
+		}
+		for (int i=0; i<count; i++) {
+			if (verses[i]>=0) {
+				newVersePositions[verses[i]] = offsets[i];
+			}
 		}
-		versePositionList.add(offset);
+
+		// a verse can never be at the top of the screen before an earlier verse so raising a position to that of the previous verse
+		// does not change the result of calculateCurrentVerse but does allow a binary search
+		for (int i=1; i<newVersePositions.length; i++) {
+			newVersePositions[i] = Math.max(newVersePositions[i], newVersePositions[i-1]);
+		}
+
+		versePositions = newVersePositions;
+		prevScrollOffset = -1;
 	}
-	
+
 	public void newPosition(int scrollOffset) {
+		// js reports the final position of every scroll even if nothing moved
+		if (scrollOffset==prevScrollOffset) {
+			return;
+		}
+		prevScrollOffset = scrollOffset;
+
 		// it is only bibles that have dynamic verse update on scroll
 		CurrentPageManager currentPageControl = ControlFactory.getInstance().getCurrentPageControl();
 		if (currentPageControl.isBibleShown()) {
@@ -63,21 +105,28 @@ public class VerseCalculator {
 			prevCurrentVerse = currentVerse;
 		}
 	}
-	
-	/** compare scrollOffset to the versePositionList to find which verse is at the top of the screen
-	 * 
+
+	/** compare scrollOffset to the verse positions to find which verse is at the top of the screen
+	 *
 	 * @param scrollOffset	distance from the top of the screen.
 	 * @return
 	 */
-	private int calculateCurrentVerse(int scrollOffset) {
+	int calculateCurrentVerse(int scrollOffset) {
+		int[] positions = versePositions;
 		int adjustedScrollOffset = scrollOffset - SLACK_FOR_JUMP_TO_VERSE;
-		for (int verseIndex=0; verseIndex<versePositionList.size(); verseIndex++) {
-			int pos = versePositionList.get(verseIndex);
-			if (pos>adjustedScrollOffset) {
-				return verseIndex;
+
+		// find the first verse below the adjusted scroll offset
+		int low = 0;
+		int high = positions.length;
+		while (low<high) {
+			int mid = (low+high) >>> 1;
+			if (positions[mid]>adjustedScrollOffset) {
+				high = mid;
+			} else {
+				low = mid+1;
 			}
 		}
 		// maybe scrolled off botttom
-		return versePositionList.size()-1;
+		return low<positions.length ? low : positions.length-1;
 	}
 }
@@ -1,13 +1,16 @@
 package net.bible.android.view.activity.search;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import net.bible.android.control.ControlFactory;
+import net.bible.android.control.page.VerseTextLoader.VerseTextLoadedListener;
 import net.bible.android.control.search.SearchControl;
 
 import org.crosswire.jsword.passage.Key;
 
 import android.content.Context;
+import android.os.Handler;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -25,6 +28,12 @@ public class SearchItemAdapter extends ArrayAdapter<Key> {
 
 	private int resource;
 	private SearchControl searchControl;
+	
+	private Handler uiHandler = new Handler();
+	
+	// number of rows to load before and after the row being shown
+	private static final int LOAD_BEHIND = 10;
+	private static final int LOAD_AHEAD = 30;
 
 	public SearchItemAdapter(Context _context, int _resource, List<Key> _items) {
 		super(_context, _resource, _items);
@@ -54,10 +63,38 @@ public class SearchItemAdapter extends ArrayAdapter<Key> {
 
 		// set value for the second text field
 		if (view.getText2() != null) {
-			String verseText = searchControl.getSearchResultVerseText(item);
+			// verse text is loaded in batches in the background to allow smooth scrolling
+			String verseText = searchControl.getLoadedSearchResultVerseText(item);
+			if (verseText==null) {
+				verseText = "";
+				loadVerseTextAround(position);
+			}
 			view.getText2().setText(verseText);
 		}
 
 		return view;
 	}
+
+	/**
+	 * Start loading the text of this row and the rows around it in one batch
+	 */
+	private void loadVerseTextAround(int position) {
+		int from = Math.max(0, position-LOAD_BEHIND);
+		int to = Math.min(getCount(), position+LOAD_AHEAD);
+		List<Key> items = new ArrayList<Key>();
+		for (int i=from; i<to; i++) {
+			items.add(getItem(i));
+		}
+		searchControl.loadSearchResultVerseText(items, new VerseTextLoadedListener() {
+			@Override
+			public void verseTextLoaded() {
+				uiHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						notifyDataSetChanged();
+					}
+				});
+			}
+		});
+	}
 }
\ No newline at end of file
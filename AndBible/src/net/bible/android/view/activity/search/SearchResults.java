@@ -21,6 +21,8 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
 import android.view.View.OnClickListener;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.Toast;
@@ -68,6 +70,9 @@ public class SearchResults extends ListActivityBase {
             setListAdapter(mKeyArrayAdapter);
 
 			populateViewResultsAdapter();
+
+			// read more results from the search result as the user scrolls towards the end of those read so far
+			getListView().setOnScrollListener(loadMoreScrollListener);
         }
     }
 
@@ -89,12 +94,7 @@ public class SearchResults extends ListActivityBase {
 			mSearchResultsHolder = searchControl.getSearchResults(searchDocument, searchText);
 			
 			// tell user how many results were returned
-			String msg;
-			if (mCurrentlyDisplayedSearchResults.size()>=SearchControl.MAX_SEARCH_RESULTS) {
-				msg = getString(R.string.search_showing_first, SearchControl.MAX_SEARCH_RESULTS);
-			} else {
-				msg = getString(R.string.search_result_count, mSearchResultsHolder.size());
-			}
+			String msg = getString(R.string.search_result_count, mSearchResultsHolder.size());
 			Toast.makeText(this, msg, Toast.LENGTH_SHORT).show();
 			isOk = true;
     	} catch (Exception e) {
@@ -125,7 +125,23 @@ public class SearchResults extends ListActivityBase {
 		for (Key key : mCurrentlyDisplayedSearchResults) {
 			mKeyArrayAdapter.add(key);	
 		}
-		
+
+		// the first page of the list being shown may not have been read yet
+		if (mCurrentlyDisplayedSearchResults.size()<SearchResultsDto.PAGE_SIZE) {
+			loadNextPage();
+		}
+	}
+
+	/**
+	 * Read the next page of results of the type being shown from the search result
+	 */
+	private void loadNextPage() {
+		if (mSearchResultsHolder.hasMore()) {
+			// addAll is only supported in Api 11+
+			for (Key key : mSearchResultsHolder.loadNextPage(isScriptureResultsCurrentlyShown)) {
+				mKeyArrayAdapter.add(key);
+			}
+		}
 	}
     
     @Override
@@ -157,6 +173,23 @@ public class SearchResults extends ListActivityBase {
     	}
     }
 
+    /**
+     * Read more results when the end of those read so far is nearly visible
+     */
+    private OnScrollListener loadMoreScrollListener = new OnScrollListener() {
+
+		@Override
+		public void onScrollStateChanged(AbsListView view, int scrollState) {
+		}
+
+		@Override
+		public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+			if (firstVisibleItem+visibleItemCount >= totalItemCount-SearchResultsDto.PAGE_SIZE/2) {
+				loadNextPage();
+			}
+		}
+	};
+
     /**
      * Handle scripture/Appendix toggle
      */
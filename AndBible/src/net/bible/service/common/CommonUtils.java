@@ -2,11 +2,14 @@ package net.bible.service.common;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Properties;
@@ -257,6 +260,61 @@ public class CommonUtils {
 		return false;
 	}
 
+	/** Write to a temp file and rename it over the file so a partially written file is never read.
+	 * The temp file is removed if writing fails.
+	 */
+	public static void writeAtomically(File file, FileContentWriter writer) throws IOException {
+		File dir = file.getParentFile();
+		ensureDirExists(dir);
+		File tempFile = new File(dir, file.getName()+".tmp");
+		FileOutputStream out = null;
+		boolean isSaved = false;
+		try {
+			out = new FileOutputStream(tempFile);
+			writer.write(out);
+			out.close();
+			out = null;
+			if (!replaceFile(tempFile, file)) {
+				throw new IOException("Failed to replace "+file);
+			}
+			isSaved = true;
+		} finally {
+			IOUtil.close(out);
+			if (!isSaved) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	/** Write the remaining content of the buffer to a temp file and rename it over the file so a partially written file is never read
+	 */
+	public static void writeAtomically(File file, final ByteBuffer buffer) throws IOException {
+		writeAtomically(file, new FileContentWriter() {
+			@Override
+			public void write(FileOutputStream out) throws IOException {
+				FileChannel channel = out.getChannel();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		});
+	}
+
+	/** Move a file, replacing any existing target
+	 */
+	public static boolean replaceFile(File file, File target) {
+		// renameTo does not replace an existing file on all platforms
+		return file.renameTo(target) || (target.delete() && file.renameTo(target));
+	}
+
+	/** Writes the content for {@link CommonUtils#writeAtomically(File, FileContentWriter)}
+	 */
+	public interface FileContentWriter {
+		/** write the whole content, flushing any stream wrapped around out before returning
+		 */
+		void write(FileOutputStream out) throws IOException;
+	}
+
 	public static Properties loadProperties(File propertiesFile) {
 		Properties properties = new Properties();
 		if (propertiesFile.exists()) {
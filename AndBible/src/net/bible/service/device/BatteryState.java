@@ -0,0 +1,78 @@
+package net.bible.service.device;
+
+import net.bible.android.BibleApplication;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.util.Log;
+
+/**
+ * Current charge, charging and temperature state of the battery, used to avoid heavy background work that would drain or overheat the device.
+ * The battery temperature is the best indication of the thermal state available on all supported versions of Android.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class BatteryState {
+
+	private final boolean isCharging;
+	private final int levelPercent;
+	// tenths of a degree centigrade
+	private final int temperature;
+
+	private static final int UNKNOWN = -1;
+
+	private static final String TAG = "BatteryState";
+
+	/**
+	 * @param levelPercent remaining charge, -1 if unknown
+	 * @param temperature tenths of a degree centigrade, -1 if unknown
+	 */
+	public BatteryState(boolean isCharging, int levelPercent, int temperature) {
+		this.isCharging = isCharging;
+		this.levelPercent = levelPercent;
+		this.temperature = temperature;
+	}
+
+	/** read the last battery status broadcast, or assume mains power if it is not available
+	 */
+	public static BatteryState getCurrent() {
+		try {
+			// the battery broadcast is sticky so the latest status is returned without registering a receiver
+			Intent batteryStatus = BibleApplication.getApplication().registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+			if (batteryStatus!=null) {
+				boolean isCharging = batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0)!=0;
+				int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, UNKNOWN);
+				int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, UNKNOWN);
+				int levelPercent = level>=0 && scale>0 ? level*100/scale : UNKNOWN;
+				int temperature = batteryStatus.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, UNKNOWN);
+				return new BatteryState(isCharging, levelPercent, temperature);
+			}
+		} catch (Exception e) {
+			Log.w(TAG, "Battery state not available", e);
+		}
+		return new BatteryState(true, UNKNOWN, UNKNOWN);
+	}
+
+	public boolean isCharging() {
+		return isCharging;
+	}
+
+	/** @return true if not charging and the remaining charge is no more than the given percentage
+	 */
+	public boolean isLow(int percent) {
+		return !isCharging && levelPercent!=UNKNOWN && levelPercent<=percent;
+	}
+
+	/** @return true if the battery is at least the given temperature in degrees centigrade
+	 */
+	public boolean isHot(int degrees) {
+		return temperature!=UNKNOWN && temperature>=degrees*10;
+	}
+
+	@Override
+	public String toString() {
+		return "BatteryState[charging="+isCharging+" level="+levelPercent+"% temperature="+temperature/10f+"C]";
+	}
+}
@@ -0,0 +1,106 @@
+package net.bible.service.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import net.bible.service.common.Logger;
+
+import org.crosswire.common.progress.Progress;
+import org.crosswire.common.util.CWProject;
+import org.crosswire.common.util.NetUtil;
+import org.crosswire.jsword.JSMsg;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookCategory;
+import org.crosswire.jsword.book.sword.SwordBookDriver;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.book.sword.SwordBookPath;
+
+/** Download a book's zip and install it in the same way as JSword's AbstractSwordInstaller.install
+ * The zip is unpacked as it is downloaded and the book is only moved into place once all of it has been received.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+class BookDownloadTask extends StreamedDownloadTask {
+
+	static final String TYPE = "book";
+
+	private final String repoName;
+	private final Book book;
+	private final URI source;
+
+	private static final Logger log = new Logger(BookDownloadTask.class.getName());
+
+	BookDownloadTask(String repoName, Book book, URI source) {
+		super(BookCategory.BIBLE.equals(book.getBookCategory()) ? PRIORITY_BIBLE : PRIORITY_BOOK);
+		this.repoName = repoName;
+		this.book = book;
+		this.source = source;
+	}
+
+	@Override
+	String getJobID() {
+		return String.format(Progress.INSTALL_BOOK, book.getInitials());
+	}
+
+	@Override
+	String getJobName() {
+		return JSMsg.gettext("Installing book: {0}", book.getName());
+	}
+
+	@Override
+	URI getSource() {
+		return source;
+	}
+
+	@Override
+	void receive(InputStream in, File workDir, Progress job) throws IOException {
+		new StagedModuleInstaller(workDir).unpack(in);
+	}
+
+	@Override
+	void install(File downloadedFile, Progress job) throws Exception {
+		SwordBookMetaData sbmd = (SwordBookMetaData)book.getBookMetaData();
+
+		File dldir = SwordBookPath.getSwordDownloadDir();
+		// anything other than mods.d and modules in the zip belongs to the front end
+		new StagedModuleInstaller(downloadedFile).install(dldir, NetUtil.getAsFile(CWProject.instance().getWritableProjectDir()));
+
+		job.setSectionName(JSMsg.gettext("Copying config file"));
+		sbmd.setLibrary(NetUtil.getURI(dldir));
+		SwordBookDriver.registerNewBook(sbmd);
+	}
+
+	@Override
+	String[] getQueueFields() {
+		return new String[] {TYPE, repoName, book.getInitials()};
+	}
+
+	/** download the book again through its repository so any repository specific handling is repeated
+	 */
+	static void restore(String[] fields) throws Exception {
+		String repoName = fields[1];
+		String initials = fields[2];
+		RepoBase repo = RepoFactory.getInstance().getRepo(repoName);
+		if (repo==null) {
+			log.warn("Unknown repository "+repoName);
+			return;
+		}
+
+		for (Book book : repo.getRepoBooks(false)) {
+			if (book.getInitials().equals(initials)) {
+				log.info("Restarting download of "+initials);
+				XiphosRepo xiphosRepo = RepoFactory.getInstance().getXiphosRepo();
+				if (xiphosRepo.needsPostDownloadAction(book)) {
+					xiphosRepo.addHandler(book);
+				}
+				repo.downloadDocument(book);
+				return;
+			}
+		}
+		log.warn("Book "+initials+" is no longer in "+repoName);
+	}
+}
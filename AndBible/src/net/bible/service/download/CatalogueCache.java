@@ -0,0 +1,346 @@
+package net.bible.service.download;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.bible.service.common.CommonUtils;
+import net.bible.service.common.CommonUtils.FileContentWriter;
+import net.bible.service.common.Logger;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.install.InstallException;
+import org.crosswire.jsword.book.sword.NullBackend;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookDriver;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+
+/** Persistent copy of the book list (mods.d.tar.gz) of each repository so the list is available without downloading it and is only downloaded again if it has changed.
+ * The ETag and Last-Modified headers of the last download are sent with each refresh so an unchanged list is not downloaded.
+ * If a list has changed then only the confs that differ from the previous list are parsed.
+ * The previous list is used if a repository cannot be reached.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class CatalogueCache {
+
+	private final File cacheDir;
+
+	// catalogues that have been loaded in this process, by repository name
+	private final Map<String, RepoCatalogue> catalogues = new HashMap<String, RepoCatalogue>();
+
+	private final AtomicLong notModifiedCount = new AtomicLong();
+	private final AtomicLong downloadCount = new AtomicLong();
+	private final AtomicLong parsedConfCount = new AtomicLong();
+	private final AtomicLong unchangedConfCount = new AtomicLong();
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+	private static final int READ_TIMEOUT_MILLIS = 30000;
+
+	private static final String CONF_DIR = "mods.d/";
+	private static final String DOT_CONF = ".conf";
+	private static final String DOT_CATALOGUE = ".catalogue";
+
+	// increment if the file layout changes
+	private static final int CATALOGUE_FORMAT = 1;
+
+	private static final Logger log = new Logger(CatalogueCache.class.getName());
+
+	/** the confs of one repository and the validators of the download they came from
+	 */
+	private static class RepoCatalogue {
+		private String eTag = "";
+		private String lastModified = "";
+		// conf file contents and the book parsed from it, by internal name
+		private Map<String, ConfEntry> entries = new LinkedHashMap<String, ConfEntry>();
+
+		private List<Book> getBooks() {
+			List<Book> books = new ArrayList<Book>();
+			for (ConfEntry entry : entries.values()) {
+				books.add(entry.book);
+			}
+			return books;
+		}
+	}
+
+	private static class ConfEntry {
+		private final byte[] conf;
+		private final Book book;
+
+		private ConfEntry(byte[] conf, Book book) {
+			this.conf = conf;
+			this.book = book;
+		}
+	}
+
+	public CatalogueCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	/** get the books in a repository, downloading the book list only if there is no previous list or refresh is requested and the list has changed
+	 *
+	 * @param catalogueUri the repository's mods.d.tar.gz
+	 */
+	public List<Book> getBooks(String repoName, URI catalogueUri, boolean refresh) throws InstallException {
+		RepoCatalogue catalogue = getCatalogue(repoName);
+		synchronized (catalogue) {
+			if (refresh || catalogue.entries.isEmpty()) {
+				try {
+					revalidate(repoName, catalogueUri, catalogue);
+				} catch (IOException e) {
+					if (catalogue.entries.isEmpty()) {
+						throw new InstallException("Error downloading book list from "+repoName, e);
+					}
+					// flaky connections are common so the previous list is better than nothing
+					log.error("Error refreshing book list from "+repoName+" so using previous list", e);
+				}
+			}
+			return catalogue.getBooks();
+		}
+	}
+
+	/** @return true if a list of books has been stored for the repository
+	 */
+	public boolean isCached(String repoName) {
+		synchronized (catalogues) {
+			RepoCatalogue catalogue = catalogues.get(repoName);
+			if (catalogue!=null && !catalogue.entries.isEmpty()) {
+				return true;
+			}
+		}
+		return getCatalogueFile(repoName).exists();
+	}
+
+	/** use a book list that has already been downloaded e.g. by JSword
+	 * There are no validators so the next refresh will download the list again.
+	 */
+	public void importCatalogue(String repoName, File catalogueTarGz) {
+		RepoCatalogue catalogue = getCatalogue(repoName);
+		synchronized (catalogue) {
+			InputStream in = null;
+			try {
+				in = new FileInputStream(catalogueTarGz);
+				catalogue.entries = readConfs(repoName, in, catalogue.entries);
+				catalogue.eTag = "";
+				catalogue.lastModified = "";
+				save(repoName, catalogue);
+			} catch (IOException e) {
+				log.error("Error importing book list of "+repoName, e);
+			} finally {
+				IOUtil.close(in);
+			}
+		}
+	}
+
+	public long getNotModifiedCount() {
+		return notModifiedCount.get();
+	}
+
+	public long getDownloadCount() {
+		return downloadCount.get();
+	}
+
+	public long getParsedConfCount() {
+		return parsedConfCount.get();
+	}
+
+	public long getUnchangedConfCount() {
+		return unchangedConfCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogueCache[notModified="+getNotModifiedCount()+" downloads="+getDownloadCount()+" parsedConfs="+getParsedConfCount()+" unchangedConfs="+getUnchangedConfCount()+"]";
+	}
+
+	/** conditionally download the book list and update the catalogue if it has changed
+	 */
+	private void revalidate(String repoName, URI catalogueUri, RepoCatalogue catalogue) throws IOException {
+		HttpURLConnection connection = null;
+		InputStream in = null;
+		try {
+			connection = (HttpURLConnection)catalogueUri.toURL().openConnection();
+			connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+			connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+			if (!catalogue.entries.isEmpty()) {
+				if (catalogue.eTag.length()>0) {
+					connection.setRequestProperty("If-None-Match", catalogue.eTag);
+				}
+				if (catalogue.lastModified.length()>0) {
+					connection.setRequestProperty("If-Modified-Since", catalogue.lastModified);
+				}
+			}
+
+			int responseCode = connection.getResponseCode();
+			if (responseCode==HttpURLConnection.HTTP_NOT_MODIFIED) {
+				log.debug("Book list of "+repoName+" has not changed");
+				notModifiedCount.incrementAndGet();
+			} else if (responseCode==HttpURLConnection.HTTP_OK) {
+				downloadCount.incrementAndGet();
+				in = connection.getInputStream();
+				catalogue.entries = readConfs(repoName, in, catalogue.entries);
+				catalogue.eTag = getHeader(connection, "ETag");
+				catalogue.lastModified = getHeader(connection, "Last-Modified");
+				save(repoName, catalogue);
+			} else {
+				throw new IOException("Unexpected response "+responseCode+" from "+catalogueUri);
+			}
+		} finally {
+			IOUtil.close(in);
+			if (connection!=null) {
+				connection.disconnect();
+			}
+		}
+	}
+
+	/** read the confs in a mods.d.tar.gz, reusing the books of confs that have not changed
+	 */
+	private Map<String, ConfEntry> readConfs(String repoName, InputStream catalogueTarGz, Map<String, ConfEntry> previousEntries) throws IOException {
+		Map<String, ConfEntry> entries = new LinkedHashMap<String, ConfEntry>();
+		TarArchiveInputStream tin = new TarArchiveInputStream(new GzipCompressorInputStream(new BufferedInputStream(catalogueTarGz)));
+		TarArchiveEntry tarEntry;
+		while ((tarEntry = tin.getNextTarEntry())!=null) {
+			String name = tarEntry.getName();
+			if (tarEntry.isDirectory() || !name.endsWith(DOT_CONF)) {
+				continue;
+			}
+			String internal = name.substring(0, name.length()-DOT_CONF.length());
+			if (internal.startsWith(CONF_DIR)) {
+				internal = internal.substring(CONF_DIR.length());
+			}
+
+			byte[] conf = readFully(tin);
+			ConfEntry previous = previousEntries.get(internal);
+			if (previous!=null && Arrays.equals(previous.conf, conf)) {
+				entries.put(internal, previous);
+				unchangedConfCount.incrementAndGet();
+			} else {
+				addEntry(repoName, entries, internal, conf);
+			}
+		}
+		return entries;
+	}
+
+	private void addEntry(String repoName, Map<String, ConfEntry> entries, String internal, byte[] conf) {
+		try {
+			SwordBookMetaData sbmd = new SwordBookMetaData(conf, internal);
+			sbmd.setDriver(SwordBookDriver.instance());
+			entries.put(internal, new ConfEntry(conf, new SwordBook(sbmd, new NullBackend())));
+			parsedConfCount.incrementAndGet();
+		} catch (IOException e) {
+			log.error("Failed to load config "+internal+" from "+repoName, e);
+		}
+	}
+
+	private RepoCatalogue getCatalogue(String repoName) {
+		synchronized (catalogues) {
+			RepoCatalogue catalogue = catalogues.get(repoName);
+			if (catalogue==null) {
+				catalogue = load(repoName);
+				catalogues.put(repoName, catalogue);
+			}
+			return catalogue;
+		}
+	}
+
+	/** load the catalogue saved by a previous process or return an empty catalogue
+	 */
+	private RepoCatalogue load(String repoName) {
+		RepoCatalogue catalogue = new RepoCatalogue();
+		File file = getCatalogueFile(repoName);
+		if (!file.exists()) {
+			return catalogue;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt()!=CATALOGUE_FORMAT) {
+				log.debug("Ignoring old format book list of "+repoName);
+				return catalogue;
+			}
+			String eTag = in.readUTF();
+			String lastModified = in.readUTF();
+			int confCount = in.readInt();
+			Map<String, ConfEntry> entries = new LinkedHashMap<String, ConfEntry>();
+			for (int i=0; i<confCount; i++) {
+				String internal = in.readUTF();
+				byte[] conf = new byte[in.readInt()];
+				in.readFully(conf);
+				addEntry(repoName, entries, internal, conf);
+			}
+			catalogue.eTag = eTag;
+			catalogue.lastModified = lastModified;
+			catalogue.entries = entries;
+		} catch (Exception e) {
+			log.error("Error loading book list of "+repoName, e);
+		} finally {
+			IOUtil.close(in);
+		}
+		return catalogue;
+	}
+
+	private void save(String repoName, final RepoCatalogue catalogue) {
+		try {
+			CommonUtils.writeAtomically(getCatalogueFile(repoName), new FileContentWriter() {
+				@Override
+				public void write(FileOutputStream fileOut) throws IOException {
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+					out.writeInt(CATALOGUE_FORMAT);
+					out.writeUTF(catalogue.eTag);
+					out.writeUTF(catalogue.lastModified);
+					out.writeInt(catalogue.entries.size());
+					for (Map.Entry<String, ConfEntry> entry : catalogue.entries.entrySet()) {
+						out.writeUTF(entry.getKey());
+						out.writeInt(entry.getValue().conf.length);
+						out.write(entry.getValue().conf);
+					}
+					out.flush();
+				}
+			});
+		} catch (IOException e) {
+			log.error("Error saving book list of "+repoName, e);
+		}
+	}
+
+	private File getCatalogueFile(String repoName) {
+		return new File(cacheDir, repoName.replaceAll("[^A-Za-z0-9]", "_")+DOT_CATALOGUE);
+	}
+
+	private static String getHeader(HttpURLConnection connection, String name) {
+		String value = connection.getHeaderField(name);
+		return value!=null ? value : "";
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		while ((count = in.read(buffer))!=-1) {
+			bytes.write(buffer, 0, count);
+		}
+		return bytes.toByteArray();
+	}
+}
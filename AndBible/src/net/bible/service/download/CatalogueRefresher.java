@@ -0,0 +1,143 @@
+package net.bible.service.download;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.bible.service.common.Logger;
+
+import org.crosswire.jsword.book.Book;
+
+/** Fetch the book lists of several repositories at the same time so a slow or unavailable repository does not delay the others.
+ * The lists are merged in repository priority order so if a book is in more than one repository the copy in the first repository is used,
+ * whichever repository responds first.
+ * A repository that does not respond within the timeout is left out of the result.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class CatalogueRefresher {
+
+	/** receives the merged list of books each time another repository responds
+	 * Called on a background thread.
+	 */
+	public interface CatalogueListener {
+		void catalogueUpdated(List<Book> books);
+	}
+
+	private final List<? extends RepoBase> reposInPriorityOrder;
+
+	private final long repoTimeoutMillis;
+
+	private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "CatalogueRefresher");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static final Logger log = new Logger(CatalogueRefresher.class.getName());
+
+	/**
+	 * @param reposInPriorityOrder highest priority repository first
+	 * @param repoTimeoutMillis maximum time to wait for any repository, all repositories are fetched at the same time
+	 */
+	public CatalogueRefresher(List<? extends RepoBase> reposInPriorityOrder, long repoTimeoutMillis) {
+		this.reposInPriorityOrder = reposInPriorityOrder;
+		this.repoTimeoutMillis = repoTimeoutMillis;
+	}
+
+	/**
+	 * @param refresh reload the book list of each repository from the internet
+	 * @param listener optional listener to be sent the books found so far each time a repository responds
+	 * @return the books found in all repositories that responded before the timeout, sorted
+	 */
+	public List<Book> getBooks(final boolean refresh, CatalogueListener listener) {
+		int repoCount = reposInPriorityOrder.size();
+		CompletionService<List<Book>> completionService = new ExecutorCompletionService<List<Book>>(executor);
+		List<Future<List<Book>>> futures = new ArrayList<Future<List<Book>>>();
+		for (final RepoBase repo : reposInPriorityOrder) {
+			futures.add(completionService.submit(new Callable<List<Book>>() {
+				@Override
+				public List<Book> call() throws Exception {
+					long start = System.currentTimeMillis();
+					List<Book> repoBooks = repo.getRepoBooks(refresh);
+					log.debug(repo.getRepoName()+" returned "+repoBooks.size()+" books in "+(System.currentTimeMillis()-start)+"ms");
+					return repoBooks;
+				}
+			}));
+		}
+
+		// each repository's books, in priority order, or null if the repository has not responded
+		List<List<Book>> repoBooks = new ArrayList<List<Book>>(Collections.<List<Book>>nCopies(repoCount, null));
+		List<Book> books = new ArrayList<Book>();
+
+		long deadline = System.currentTimeMillis()+repoTimeoutMillis;
+		try {
+			for (int i=0; i<repoCount; i++) {
+				long remainingMillis = deadline-System.currentTimeMillis();
+				Future<List<Book>> completed = remainingMillis>0 ? completionService.poll(remainingMillis, TimeUnit.MILLISECONDS) : completionService.poll();
+				if (completed==null) {
+					break;
+				}
+				int repoNo = futures.indexOf(completed);
+				try {
+					repoBooks.set(repoNo, completed.get());
+				} catch (Exception e) {
+					log.error("Error getting book list from "+reposInPriorityOrder.get(repoNo).getRepoName(), e);
+					repoBooks.set(repoNo, Collections.<Book>emptyList());
+				}
+
+				books = merge(repoBooks);
+				if (listener!=null) {
+					// the listener is given its own copy because it may be passed to another thread
+					listener.catalogueUpdated(new ArrayList<Book>(books));
+				}
+			}
+		} catch (InterruptedException e) {
+			log.warn("Interrupted waiting for repository book lists");
+			Thread.currentThread().interrupt();
+		}
+
+		// do not wait any longer for repositories that have not responded
+		for (int i=0; i<repoCount; i++) {
+			if (repoBooks.get(i)==null) {
+				log.warn("No response from "+reposInPriorityOrder.get(i).getRepoName()+" within "+repoTimeoutMillis+"ms");
+				futures.get(i).cancel(true);
+			}
+		}
+
+		return books;
+	}
+
+	/** combine the books of the repositories that have responded, in priority order
+	 */
+	static List<Book> merge(List<List<Book>> repoBooksInPriorityOrder) {
+		// store books in a Set to ensure only one of each type and allow override from a higher priority repo
+		// First added to set gets priority
+		Set<Book> allBooks = new HashSet<Book>();
+		for (List<Book> repoBooks : repoBooksInPriorityOrder) {
+			if (repoBooks!=null) {
+				allBooks.addAll(repoBooks);
+			}
+		}
+
+		// get them in the correct order
+		List<Book> bookList = new ArrayList<Book>(allBooks);
+		Collections.sort(bookList);
+		return bookList;
+	}
+}
@@ -21,15 +21,22 @@
  */
 package net.bible.service.download;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import net.bible.android.SharedConstants;
 import net.bible.android.activity.R;
 import net.bible.android.view.activity.base.Dialogs;
 import net.bible.service.common.Logger;
 
+import org.crosswire.common.util.CWProject;
+import org.crosswire.common.util.NetUtil;
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookFilter;
@@ -38,6 +45,7 @@ import org.crosswire.jsword.book.Books;
 import org.crosswire.jsword.book.install.InstallException;
 import org.crosswire.jsword.book.install.InstallManager;
 import org.crosswire.jsword.book.install.Installer;
+import org.crosswire.jsword.book.install.sword.HttpSwordInstaller;
 
 /**
  * Originally copied from BookInstaller it calls Sword routines related to installation and removal of books and indexes
@@ -51,6 +59,15 @@ public class DownloadManager {
 
 	public static final String REPOSITORY_KEY = "repository";
 
+    // the persistent book lists of all repositories, shared by all DownloadManagers
+    private static CatalogueCache catalogueCache;
+
+    private static final String CATALOGUE_DIR_NAME = "catalogue";
+    private static final String FILE_LIST_GZ = "mods.d.tar.gz";
+    // location of JSword search indexes in a repository, as used by JSword's IndexDownloader
+    private static final String SEARCH_INDEX_DIR = "/search/jsword/L1/";
+    private static final String ZIP_SUFFIX = ".zip";
+
     private static final Logger log = new Logger(DownloadManager.class.getName());
 	
     public DownloadManager() {
@@ -76,14 +93,18 @@ public class DownloadManager {
 	        } else {
 		        // Now we can get the list of books
 		    	log.debug("getting downloadable books");
-		    	if (installer.getBooks().size()==0 || refresh) {
-		    		//todo should warn user of implications of downloading book list e.g. from persecuted country
-		    		log.warn("Reloading book list");
-		    		installer.reloadBookList();
-		    	}
-		
-		        // Get a list of all the available books
-		        documents = installer.getBooks(filter); //$NON-NLS-1$
+	        	if (installer instanceof HttpSwordInstaller) {
+	        		documents = getBooksFromCatalogueCache((HttpSwordInstaller)installer, repo, filter, refresh);
+	        	} else {
+			    	if (installer.getBooks().size()==0 || refresh) {
+			    		//todo should warn user of implications of downloading book list e.g. from persecuted country
+			    		log.warn("Reloading book list");
+			    		installer.reloadBookList();
+			    	}
+			
+			        // Get a list of all the available books
+			        documents = installer.getBooks(filter); //$NON-NLS-1$
+	        	}
 	        }
 	
 	        //free memory
@@ -97,6 +118,61 @@ public class DownloadManager {
     	log.info("number of documents available:"+documents.size());
 		return documents;
 	}
+
+	/** @return true if the book list of the repository has been downloaded before and can be used without the internet
+	 */
+	public static boolean isBookListCached(String repo) {
+		return getCatalogueCache().isCached(repo);
+	}
+
+	/** use the persistent book list of the repository which is only downloaded again if refresh is requested and it has changed
+	 */
+	private List<Book> getBooksFromCatalogueCache(HttpSwordInstaller installer, String repo, BookFilter filter, boolean refresh) throws InstallException {
+		CatalogueCache catalogueCache = getCatalogueCache();
+		if (!catalogueCache.isCached(repo)) {
+			// reuse a book list downloaded by a previous version of And Bible
+			File jswordIndexFile = getJSwordCachedIndexFile(installer);
+			if (jswordIndexFile!=null && jswordIndexFile.isFile()) {
+				catalogueCache.importCatalogue(repo, jswordIndexFile);
+			}
+		}
+
+		URI catalogueUri;
+		try {
+			catalogueUri = new URI(NetUtil.PROTOCOL_HTTP, installer.getHost(), installer.getCatalogDirectory()+"/"+FILE_LIST_GZ, null);
+		} catch (URISyntaxException e) {
+			throw new InstallException("Invalid book list location for "+repo, e);
+		}
+		//todo should warn user of implications of downloading book list e.g. from persecuted country
+		List<Book> books = catalogueCache.getBooks(repo, catalogueUri, refresh);
+
+		List<Book> documents = new ArrayList<Book>();
+		for (Book book : books) {
+			if (filter==null || filter.test(book)) {
+				documents.add(book);
+			}
+		}
+		return documents;
+	}
+
+	/** the file JSword downloads the book list of a repository to, in the same way as AbstractSwordInstaller.getCachedIndexFile
+	 */
+	private File getJSwordCachedIndexFile(HttpSwordInstaller installer) {
+		try {
+			URI dir = CWProject.instance().getWritableProjectSubdir("download-"+installer.getHost()+installer.getCatalogDirectory().replace('/', '_'), false);
+			return new File(NetUtil.getAsFile(dir), FILE_LIST_GZ);
+		} catch (IOException e) {
+			log.error("Error finding JSword book list file", e);
+			return null;
+		}
+	}
+
+	private static synchronized CatalogueCache getCatalogueCache() {
+		if (catalogueCache==null) {
+			catalogueCache = new CatalogueCache(new File(SharedConstants.FRONTEND_DATA_DIR, CATALOGUE_DIR_NAME));
+		}
+		return catalogueCache;
+	}
 	
     /**
      * Install a book, overwriting it if the book to be installed is newer.
@@ -120,25 +196,8 @@ public class DownloadManager {
         }
 
         // Now install it in the background
-        final Thread worker = new Thread("BookDownloader") {
-            /* (non-Javadoc)
-             * @see java.lang.Thread#run()
-             */
-            @Override
-            public void run() {
-                try {
-                    // An installer knows how to install books
-                    Installer installer = installManager.getInstaller(repositoryName);
-
-                    installer.install(book);
-                } catch (InstallException ex) {
-                    Dialogs.getInstance().showErrorMsg(R.string.error_occurred);
-                }
-            }
-        };
-
-        // this actually starts the thread off
-        worker.start();
+        HttpSwordInstaller installer = getHttpInstaller(repositoryName);
+        DownloadScheduler.getInstance().schedule(new BookDownloadTask(repositoryName, book, installer.toRemoteURI(book)));
     }
 
     /**
@@ -152,11 +211,26 @@ public class DownloadManager {
      * @throws InstallException
      */
     public void installIndex(String repositoryName, Book book) throws BookException, InstallException {
-    	// An installer knows how to install indexes
+    	// An installer knows where to find indexes
         log.debug("installIndex");
+        HttpSwordInstaller installer = getHttpInstaller(repositoryName);
+        URI source;
+        try {
+            source = new URI(NetUtil.PROTOCOL_HTTP, installer.getHost(), installer.getPackageDirectory()+SEARCH_INDEX_DIR+book.getInitials()+ZIP_SUFFIX, null);
+        } catch (URISyntaxException e) {
+            throw new InstallException("Invalid index location for "+book.getInitials(), e);
+        }
+        DownloadScheduler.getInstance().schedule(new IndexDownloadTask(repositoryName, book, source));
+    }
+
+    /** all the repositories used are http repositories whose files the DownloadScheduler can download and resume
+     */
+    private HttpSwordInstaller getHttpInstaller(String repositoryName) throws InstallException {
         Installer installer = installManager.getInstaller(repositoryName);
-    	IndexDownloadThread idt = new IndexDownloadThread();
-    	idt.downloadIndex(installer, book);
+        if (!(installer instanceof HttpSwordInstaller)) {
+            throw new InstallException("Unable to download from "+repositoryName);
+        }
+        return (HttpSwordInstaller)installer;
     }
 
     /**
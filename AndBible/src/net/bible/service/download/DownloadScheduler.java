@@ -0,0 +1,446 @@
+package net.bible.service.download;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipException;
+
+import net.bible.android.SharedConstants;
+import net.bible.service.common.CommonUtils;
+import net.bible.service.common.CommonUtils.FileContentWriter;
+import net.bible.service.common.Logger;
+
+import org.crosswire.common.progress.JobManager;
+import org.crosswire.common.progress.Progress;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.common.util.Reporter;
+import org.crosswire.jsword.JSMsg;
+
+/** Runs all downloads of books, indexes, fonts and other files so only a few download at once and the rest wait in a queue.
+ * Bibles are downloaded first and indexes last.  Priority only decides which waiting download starts next when a download thread becomes free;
+ * a running download is not paused so, when all threads are busy with large downloads such as indexes, a Bible waits for one of them to finish.
+ * A failed transfer is retried, after an increasing delay, from where it stopped.
+ * The queue is saved so downloads that were waiting or running when the app was killed, or whose transfer failed in a way that may succeed later,
+ * are restarted the next time the app starts, up to MAX_RESTARTS times.
+ * Each download reports its progress through a JSword Progress job.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class DownloadScheduler {
+
+	private final ThreadPoolExecutor executor;
+
+	// folder for partial downloads and the saved queue
+	private final File downloadDir;
+
+	// tasks waiting or running, by job id
+	private final Map<String, DownloadTask> queuedTasks = new LinkedHashMap<String, DownloadTask>();
+	// tasks whose transfer failed, which are saved with the queue so they continue after a restart
+	private final Map<String, DownloadTask> failedTasks = new LinkedHashMap<String, DownloadTask>();
+	// restart counts of tasks in the saved queue, by job id, until they are scheduled again
+	private final Map<String, Integer> restoredRestartCounts = new HashMap<String, Integer>();
+
+	private final AtomicLong sequenceNo = new AtomicLong();
+
+	private final AtomicLong retryCount = new AtomicLong();
+	private final AtomicLong failureCount = new AtomicLong();
+
+	// more simultaneous downloads only share the same bandwidth
+	private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+
+	// the user is asked to wait if more downloads than this are requested
+	private static final int MAX_QUEUED_DOWNLOADS = 20;
+
+	private static final int MAX_ATTEMPTS = 4;
+	private static final long INITIAL_RETRY_DELAY_MILLIS = 2000;
+
+	// a download that has not completed after this many app restarts is abandoned
+	static final int MAX_RESTARTS = 5;
+
+	private static final String QUEUE_FILE_NAME = "queue";
+	private static final String DOWNLOAD_DIR_NAME = "downloads";
+	private static final String DOT_PART = ".part";
+	private static final String DOT_STAGING = ".staging";
+
+	private static DownloadScheduler singleton;
+
+	private static final Logger log = new Logger(DownloadScheduler.class.getName());
+
+	public static synchronized DownloadScheduler getInstance() {
+		if (singleton==null) {
+			singleton = new DownloadScheduler(new File(SharedConstants.FRONTEND_DATA_DIR, DOWNLOAD_DIR_NAME), MAX_CONCURRENT_DOWNLOADS);
+		}
+		return singleton;
+	}
+
+	DownloadScheduler(File downloadDir, int maxConcurrentDownloads) {
+		this.downloadDir = downloadDir;
+		// the queue orders tasks by priority so tasks must be passed to execute, not submit which would wrap them.
+		// Tasks only wait in the queue, and so are reordered, once all the core threads are busy.
+		executor = new ThreadPoolExecutor(maxConcurrentDownloads, maxConcurrentDownloads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "DownloadScheduler");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	/** add a download to the queue unless the same download is already queued
+	 */
+	void schedule(DownloadTask task) {
+		if (addToQueue(task)) {
+			log.debug("Scheduled download "+task);
+			executor.execute(new ScheduledDownload(task));
+		}
+	}
+
+	/** download in the current thread, for callers that need the file before they can continue.
+	 * If the same download is already queued or running then wait for it to finish instead.
+	 */
+	void downloadNow(DownloadTask task) {
+		if (addToQueue(task)) {
+			new ScheduledDownload(task).run();
+		} else {
+			waitUntilFinished(task.getJobID());
+		}
+	}
+
+	private void waitUntilFinished(String jobID) {
+		synchronized (queuedTasks) {
+			try {
+				while (queuedTasks.containsKey(jobID)) {
+					queuedTasks.wait();
+				}
+			} catch (InterruptedException e) {
+				log.info("Interrupted waiting for download "+jobID);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private boolean addToQueue(DownloadTask task) {
+		synchronized (queuedTasks) {
+			if (queuedTasks.containsKey(task.getJobID())) {
+				log.debug("Already downloading "+task);
+				return false;
+			}
+			task.setSequenceNo(sequenceNo.incrementAndGet());
+			Integer restartCount = restoredRestartCounts.remove(task.getJobID());
+			if (restartCount!=null) {
+				task.setRestartCount(restartCount);
+			}
+			queuedTasks.put(task.getJobID(), task);
+			failedTasks.remove(task.getJobID());
+			saveQueue();
+			return true;
+		}
+	}
+
+	/** @return true if no more downloads should be requested until some have finished
+	 */
+	public boolean isQueueFull() {
+		return getQueuedCount()>=MAX_QUEUED_DOWNLOADS;
+	}
+
+	public int getQueuedCount() {
+		synchronized (queuedTasks) {
+			return queuedTasks.size();
+		}
+	}
+
+	public long getRetryCount() {
+		return retryCount.get();
+	}
+
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "DownloadScheduler[queued="+getQueuedCount()+" retries="+getRetryCount()+" failures="+getFailureCount()+"]";
+	}
+
+	/** schedule downloads that were waiting, running, or had failed when the app was last killed
+	 * Restoring a book may fetch its repository's book list so the queue is restored on a download thread, before any other download starts.
+	 */
+	public void resumeQueuedDownloads() {
+		executor.execute(new QueueRestorer());
+	}
+
+	/** @return true if a failed download may succeed if it is tried again later
+	 */
+	static boolean isRetryable(Exception e) {
+		if (e instanceof HttpResponseException) {
+			return ((HttpResponseException)e).isRetryable();
+		}
+		// an invalid module zip will not become valid
+		return e instanceof IOException && !(e instanceof ZipException);
+	}
+
+	/** work for the executor, which runs restoring the queue before any download
+	 */
+	private static abstract class QueuedWork implements Runnable, Comparable<QueuedWork> {
+
+		/** @return the task that is downloaded or null when restoring the queue
+		 */
+		abstract DownloadTask getTask();
+
+		@Override
+		public int compareTo(QueuedWork other) {
+			DownloadTask task = getTask();
+			DownloadTask otherTask = other.getTask();
+			if (task==null || otherTask==null) {
+				return task==otherTask ? 0 : (task==null ? -1 : 1);
+			}
+			return task.compareTo(otherTask);
+		}
+	}
+
+	/** schedules the tasks in the saved queue, dropping those that have been restarted too often
+	 */
+	private class QueueRestorer extends QueuedWork {
+
+		@Override
+		DownloadTask getTask() {
+			return null;
+		}
+
+		@Override
+		public void run() {
+			for (String[] line : loadQueue()) {
+				if (line.length<3) {
+					continue;
+				}
+				int restartCount;
+				try {
+					restartCount = Integer.parseInt(line[0])+1;
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				String jobID = line[1];
+				String[] fields = Arrays.copyOfRange(line, 2, line.length);
+				if (restartCount>MAX_RESTARTS) {
+					log.warn("Abandoning download "+jobID+" after "+MAX_RESTARTS+" restarts");
+					deleteWorkFiles(jobID);
+					continue;
+				}
+
+				synchronized (queuedTasks) {
+					restoredRestartCounts.put(jobID, restartCount);
+				}
+				try {
+					String type = fields[0];
+					if (BookDownloadTask.TYPE.equals(type)) {
+						BookDownloadTask.restore(fields);
+					} else if (IndexDownloadTask.TYPE.equals(type)) {
+						IndexDownloadTask.restore(fields);
+					} else if (FileDownloadTask.TYPE.equals(type)) {
+						schedule(FileDownloadTask.restore(fields));
+					}
+				} catch (Exception e) {
+					log.error("Error restarting download "+jobID, e);
+				}
+			}
+
+			// remove downloads that were abandoned or could not be restored from the saved queue
+			synchronized (queuedTasks) {
+				restoredRestartCounts.clear();
+				saveQueue();
+			}
+		}
+	}
+
+	/** runs a task with retries and its own Progress job
+	 */
+	private class ScheduledDownload extends QueuedWork {
+		private final DownloadTask task;
+
+		private ScheduledDownload(DownloadTask task) {
+			this.task = task;
+		}
+
+		@Override
+		DownloadTask getTask() {
+			return task;
+		}
+
+		@Override
+		public void run() {
+			Progress job = JobManager.createJob(task.getJobID(), task.getJobName(), Thread.currentThread());
+			job.beginJob(task.getJobName());
+			// allow displays to show the new job
+			Thread.yield();
+
+			File workFile = getWorkFile(task);
+			boolean isDownloaded = false;
+			boolean isTransferFailed = false;
+			try {
+				downloadWithRetries(workFile, job);
+				isDownloaded = true;
+				job.setCancelable(false);
+				task.install(workFile, job);
+				log.debug("Finished download "+task);
+			} catch (InterruptedException e) {
+				log.info("Download cancelled "+task);
+			} catch (Exception e) {
+				// a cancelled job is finished
+				if (job.isFinished()) {
+					log.info("Download cancelled "+task);
+				} else {
+					// the partial file of a failed transfer is kept so the download can continue after a restart unless it can never succeed
+					isTransferFailed = !isDownloaded && isRetryable(e);
+					failureCount.incrementAndGet();
+					log.error("Download failed "+task, e);
+					Reporter.informUser(DownloadScheduler.this, e);
+					job.cancel();
+				}
+			} finally {
+				if (task.isStreamed()) {
+					// a streamed download cannot be continued so nothing is kept
+					CommonUtils.deleteDirectory(workFile);
+				} else if (!isTransferFailed) {
+					ResumableDownload.delete(workFile);
+				}
+				synchronized (queuedTasks) {
+					queuedTasks.remove(task.getJobID());
+					if (isTransferFailed) {
+						failedTasks.put(task.getJobID(), task);
+					}
+					saveQueue();
+					// callers of downloadNow may be waiting for this download
+					queuedTasks.notifyAll();
+				}
+				job.done();
+				// cancelling a job interrupts its thread which is reused for the next task
+				Thread.interrupted();
+			}
+		}
+
+		private void downloadWithRetries(File workFile, Progress job) throws IOException, InterruptedException {
+			job.setSectionName(JSMsg.gettext("Downloading files"));
+			for (int attempt=1; ; attempt++) {
+				try {
+					if (task.isStreamed()) {
+						InputStream in = ResumableDownload.openStream(task.getSource(), job);
+						try {
+							((StreamedDownloadTask)task).receive(in, workFile, job);
+						} finally {
+							IOUtil.close(in);
+						}
+					} else {
+						ResumableDownload.download(task.getSource(), workFile, job);
+					}
+					return;
+				} catch (IOException e) {
+					// a cancelled job is finished
+					if (job.isFinished() || attempt>=MAX_ATTEMPTS || !isRetryable(e)) {
+						throw e;
+					}
+					long delay = INITIAL_RETRY_DELAY_MILLIS<<(attempt-1);
+					log.warn("Download of "+task+" failed, retrying in "+delay+"ms: "+e.getMessage());
+					retryCount.incrementAndGet();
+					Thread.sleep(delay);
+				}
+			}
+		}
+
+	}
+
+	/** @return the partial file of a download or the staging directory of a streamed download
+	 */
+	private File getWorkFile(DownloadTask task) {
+		downloadDir.mkdirs();
+		return new File(downloadDir, getWorkFileName(task.getJobID())+(task.isStreamed() ? DOT_STAGING : DOT_PART));
+	}
+
+	private String getWorkFileName(String jobID) {
+		return jobID.replaceAll("[^A-Za-z0-9_.-]", "_");
+	}
+
+	/** delete anything kept from a download that will not be restarted
+	 */
+	private void deleteWorkFiles(String jobID) {
+		String name = getWorkFileName(jobID);
+		ResumableDownload.delete(new File(downloadDir, name+DOT_PART));
+		CommonUtils.deleteDirectory(new File(downloadDir, name+DOT_STAGING));
+	}
+
+	/** save the tasks in the queue, one per line with tab separated fields: the restart count, the job id, and the task's queue fields
+	 */
+	private void saveQueue() {
+		List<DownloadTask> tasks = new ArrayList<DownloadTask>(queuedTasks.values());
+		tasks.addAll(failedTasks.values());
+		final List<String> lines = new ArrayList<String>();
+		for (DownloadTask task : tasks) {
+			StringBuilder line = new StringBuilder();
+			line.append(task.getRestartCount());
+			line.append(DownloadTask.FIELD_SEPARATOR).append(task.getJobID());
+			for (String field : task.getQueueFields()) {
+				line.append(DownloadTask.FIELD_SEPARATOR).append(field);
+			}
+			lines.add(line.toString());
+		}
+
+		try {
+			CommonUtils.writeAtomically(new File(downloadDir, QUEUE_FILE_NAME), new FileContentWriter() {
+				@Override
+				public void write(FileOutputStream fileOut) throws IOException {
+					Writer out = new OutputStreamWriter(fileOut, "UTF-8");
+					for (String line : lines) {
+						out.write(line);
+						out.write('\n');
+					}
+					out.flush();
+				}
+			});
+		} catch (IOException e) {
+			log.error("Error saving download queue", e);
+		}
+	}
+
+	private List<String[]> loadQueue() {
+		List<String[]> queue = new ArrayList<String[]>();
+		File queueFile = new File(downloadDir, QUEUE_FILE_NAME);
+		if (!queueFile.exists()) {
+			return queue;
+		}
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(queueFile), "UTF-8"));
+			String line;
+			while ((line = in.readLine())!=null) {
+				if (line.length()>0) {
+					queue.add(line.split(DownloadTask.FIELD_SEPARATOR));
+				}
+			}
+		} catch (IOException e) {
+			log.error("Error loading download queue", e);
+		} finally {
+			IOUtil.close(in);
+		}
+		return queue;
+	}
+}
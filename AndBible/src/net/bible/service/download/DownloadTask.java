@@ -0,0 +1,88 @@
+package net.bible.service.download;
+
+import java.io.File;
+import java.net.URI;
+
+import org.crosswire.common.progress.Progress;
+
+/** A file to be downloaded by the DownloadScheduler and what to do with it once it has been downloaded.
+ * Tasks with a lower priority number are downloaded first and tasks with equal priority are downloaded in the order they were scheduled.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+abstract class DownloadTask implements Comparable<DownloadTask> {
+
+	// a Bible is needed before anything else, and before its index
+	static final int PRIORITY_BIBLE = 0;
+	static final int PRIORITY_BOOK = 1;
+	static final int PRIORITY_FILE = 2;
+	static final int PRIORITY_INDEX = 3;
+
+	// separates the fields of a task in the persistent queue
+	static final String FIELD_SEPARATOR = "\t";
+
+	private final int priority;
+
+	// order of scheduling, set by the scheduler
+	private long sequenceNo;
+
+	// number of times the app has restarted the task after it failed or was interrupted, set by the scheduler
+	private int restartCount;
+
+	DownloadTask(int priority) {
+		this.priority = priority;
+	}
+
+	/** unique id of the task which is also the id of its Progress job so a task is not scheduled twice
+	 */
+	abstract String getJobID();
+
+	abstract String getJobName();
+
+	abstract URI getSource();
+
+	/** install or move the downloaded file, or the directory passed to receive if the task is streamed
+	 */
+	abstract void install(File downloadedFile, Progress job) throws Exception;
+
+	/** @return true if this is a StreamedDownloadTask which unpacks the download as it arrives
+	 */
+	boolean isStreamed() {
+		return false;
+	}
+
+	/** @return the fields needed to schedule this task again after a restart, the first being the task type
+	 */
+	abstract String[] getQueueFields();
+
+	int getPriority() {
+		return priority;
+	}
+
+	void setSequenceNo(long sequenceNo) {
+		this.sequenceNo = sequenceNo;
+	}
+
+	int getRestartCount() {
+		return restartCount;
+	}
+
+	void setRestartCount(int restartCount) {
+		this.restartCount = restartCount;
+	}
+
+	@Override
+	public int compareTo(DownloadTask other) {
+		if (priority!=other.priority) {
+			return priority<other.priority ? -1 : 1;
+		}
+		return sequenceNo<other.sequenceNo ? -1 : (sequenceNo>other.sequenceNo ? 1 : 0);
+	}
+
+	@Override
+	public String toString() {
+		return getJobID();
+	}
+}
@@ -0,0 +1,67 @@
+package net.bible.service.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+import net.bible.service.common.FileManager;
+
+import org.crosswire.common.progress.Progress;
+import org.crosswire.jsword.JSMsg;
+
+/** Download any file e.g. a font to a target file, replacing the target if it exists
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+class FileDownloadTask extends DownloadTask {
+
+	static final String TYPE = "file";
+
+	private static final String DOWNLOAD_FILE = "DOWNLOAD_FILE-%s";
+
+	private final URI source;
+	private final File target;
+	private final String description;
+
+	FileDownloadTask(URI source, File target, String description) {
+		super(PRIORITY_FILE);
+		this.source = source;
+		this.target = target;
+		this.description = description;
+	}
+
+	@Override
+	String getJobID() {
+		return String.format(DOWNLOAD_FILE, target.getPath());
+	}
+
+	@Override
+	String getJobName() {
+		return JSMsg.gettext("Downloading : {0}", target.getName()+" "+description);
+	}
+
+	@Override
+	URI getSource() {
+		return source;
+	}
+
+	@Override
+	void install(File downloadedFile, Progress job) throws Exception {
+		target.getParentFile().mkdirs();
+		target.delete();
+		if (!downloadedFile.renameTo(target) && !FileManager.copyFile(downloadedFile, target)) {
+			throw new IOException("Error moving downloaded file to "+target);
+		}
+	}
+
+	@Override
+	String[] getQueueFields() {
+		return new String[] {TYPE, source.toString(), target.getPath(), description};
+	}
+
+	static FileDownloadTask restore(String[] fields) throws Exception {
+		return new FileDownloadTask(new URI(fields[1]), new File(fields[2]), fields[3]);
+	}
+}
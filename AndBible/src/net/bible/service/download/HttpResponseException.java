@@ -0,0 +1,34 @@
+package net.bible.service.download;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/** The server answered a download request with a response that cannot be used
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+class HttpResponseException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+	private final int responseCode;
+
+	HttpResponseException(int responseCode, String detailMessage) {
+		super(detailMessage);
+		this.responseCode = responseCode;
+	}
+
+	int getResponseCode() {
+		return responseCode;
+	}
+
+	/** @return true if a later request may succeed e.g. because the server is busy, false if the file is missing or refused
+	 */
+	boolean isRetryable() {
+		return responseCode>=500 || responseCode==HttpURLConnection.HTTP_CLIENT_TIMEOUT || responseCode==HTTP_TOO_MANY_REQUESTS;
+	}
+}
@@ -0,0 +1,87 @@
+package net.bible.service.download;
+
+import java.io.File;
+import java.net.URI;
+
+import net.bible.service.common.Logger;
+
+import org.crosswire.common.progress.Progress;
+import org.crosswire.common.util.NetUtil;
+import org.crosswire.jsword.JSMsg;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.bridge.BookIndexer;
+import org.crosswire.jsword.index.IndexManagerFactory;
+import org.crosswire.jsword.index.IndexStatus;
+
+/** Download a book's search index and install it in the same way as JSword's IndexDownloader
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+class IndexDownloadTask extends DownloadTask {
+
+	static final String TYPE = "index";
+
+	private final String repoName;
+	private final Book book;
+	private final URI source;
+
+	private static final Logger log = new Logger(IndexDownloadTask.class.getName());
+
+	IndexDownloadTask(String repoName, Book book, URI source) {
+		super(PRIORITY_INDEX);
+		this.repoName = repoName;
+		this.book = book;
+		this.source = source;
+	}
+
+	@Override
+	String getJobID() {
+		return String.format(Progress.DOWNLOAD_SEARCH_INDEX, book.getInitials());
+	}
+
+	@Override
+	String getJobName() {
+		return JSMsg.gettext("Downloading files");
+	}
+
+	@Override
+	URI getSource() {
+		return source;
+	}
+
+	@Override
+	void install(File downloadedFile, Progress job) throws Exception {
+		// the old index is kept until the new one has been downloaded
+		BookIndexer bookIndexer = new BookIndexer(book);
+		if (bookIndexer.isIndexed()) {
+			log.debug("deleting index");
+			bookIndexer.deleteIndex();
+		}
+
+		book.setIndexStatus(IndexStatus.CREATING);
+		try {
+			IndexManagerFactory.getIndexManager().installDownloadedIndex(book, NetUtil.getURI(downloadedFile));
+			book.setIndexStatus(IndexStatus.DONE);
+		} catch (Exception e) {
+			book.setIndexStatus(IndexStatus.UNDONE);
+			throw e;
+		}
+	}
+
+	@Override
+	String[] getQueueFields() {
+		return new String[] {TYPE, repoName, book.getInitials()};
+	}
+
+	static void restore(String[] fields) throws Exception {
+		String repoName = fields[1];
+		Book book = Books.installed().getBook(fields[2]);
+		if (book!=null) {
+			log.info("Restarting index download of "+book.getInitials());
+			new DownloadManager().installIndex(repoName, book);
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package net.bible.service.download;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.crosswire.jsword.book.Book;
 
 /**
@@ -29,29 +32,34 @@ public class RepoFactory {
 	}
 	
 
+	/** repositories that books are offered from, highest priority first
+	 * If a book is in more than one repository then the first is used so AB > IBT > CW > X > Wycliffe > CWB
+	 */
+	public List<RepoBase> getReposInPriorityOrder() {
+		return Arrays.<RepoBase>asList(andBibleRepo, ibtRepo, crosswireRepo, xiphosRepo, wycliffeRepo, betaRepo);
+	}
+
 	public RepoBase getRepoForBook(Book document) {
 		String repoName = (String)document.getProperty(DownloadManager.REPOSITORY_KEY);
 
-		RepoBase repoForBook;
-		if (crosswireRepo.getRepoName().equals(repoName)) {
-			repoForBook = crosswireRepo;
-		} else if (xiphosRepo.getRepoName().equals(repoName)) {
-			repoForBook = xiphosRepo;
-		} else if (andBibleRepo.getRepoName().equals(repoName)) {
-			repoForBook = andBibleRepo;
-		} else if (betaRepo.getRepoName().equals(repoName)) {
-			repoForBook = betaRepo;
-		} else if (ibtRepo.getRepoName().equals(repoName)) {
-			repoForBook = ibtRepo;
-		} else if (wycliffeRepo.getRepoName().equals(repoName)) {
-			repoForBook = wycliffeRepo;
-		} else if (eBibleRepo.getRepoName().equals(repoName)) {
-			repoForBook = eBibleRepo;
-		} else {
+		RepoBase repoForBook = getRepo(repoName);
+		if (repoForBook==null) {
 			repoForBook = crosswireRepo;
 		}
 		return repoForBook;
 	}
+
+	/** @return the repository with the given name or null if there is none
+	 */
+	public RepoBase getRepo(String repoName) {
+		for (RepoBase repo : Arrays.<RepoBase>asList(crosswireRepo, xiphosRepo, andBibleRepo, betaRepo, ibtRepo, wycliffeRepo, eBibleRepo)) {
+			if (repo.getRepoName().equals(repoName)) {
+				return repo;
+			}
+		}
+		return null;
+	}
+
 	public CrosswireRepo getCrosswireRepo() {
 		return crosswireRepo;
 	}
@@ -0,0 +1,238 @@
+package net.bible.service.download;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+import org.crosswire.common.progress.Progress;
+import org.crosswire.common.util.IOUtil;
+
+/** Download a file over http into a partial file which is continued with a Range request if the transfer is interrupted.
+ * The ETag or Last-Modified of the file is stored beside the partial file and sent with If-Range so a file that has changed on the server is downloaded again from the start.
+ * Files that are unpacked as they arrive are read through openStream instead and start again from the beginning if interrupted.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+class ResumableDownload {
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+	private static final int READ_TIMEOUT_MILLIS = 30000;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+	private static final String DOT_VALIDATOR = ".validator";
+
+	/** download source into partFile, continuing from the end of partFile if it was partly downloaded from the same version of source
+	 *
+	 * @throws IOException if the transfer fails, partFile keeps the bytes received so far
+	 */
+	static void download(URI source, File partFile, Progress job) throws IOException {
+		File validatorFile = getValidatorFile(partFile);
+		long existingLength = partFile.length();
+		String validator = existingLength>0 ? readValidator(validatorFile) : null;
+		boolean isResume = validator!=null && validator.length()>0;
+
+		HttpURLConnection connection = null;
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			connection = openConnection(source);
+			if (isResume) {
+				connection.setRequestProperty("Range", "bytes="+existingLength+"-");
+				connection.setRequestProperty("If-Range", validator);
+			}
+
+			int responseCode = connection.getResponseCode();
+			boolean append;
+			if (responseCode==HttpURLConnection.HTTP_PARTIAL && isResume) {
+				append = true;
+			} else if (responseCode==HttpURLConnection.HTTP_OK) {
+				// a new download or the file has changed since the partial download
+				append = false;
+				existingLength = 0;
+				saveValidator(connection, validatorFile);
+			} else if (responseCode==HTTP_RANGE_NOT_SATISFIABLE && isResume) {
+				// the partial file cannot be part of the current file so start again on the next attempt
+				delete(partFile);
+				throw new IOException("Partial download of "+source+" is invalid");
+			} else {
+				throw new HttpResponseException(responseCode, "Unexpected response "+responseCode+" from "+source);
+			}
+
+			long remainingLength = getContentLength(connection);
+			long totalLength = remainingLength>=0 ? existingLength+remainingLength : -1;
+			if (job!=null && totalLength>0) {
+				job.setTotalWork((int)totalLength);
+				job.setWorkDone((int)existingLength);
+			}
+
+			in = connection.getInputStream();
+			out = new FileOutputStream(partFile, append);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long receivedLength = existingLength;
+			int count;
+			while ((count = in.read(buffer))!=-1) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new InterruptedIOException("Download of "+source+" cancelled");
+				}
+				out.write(buffer, 0, count);
+				receivedLength += count;
+				if (job!=null && totalLength>0) {
+					job.setWorkDone((int)receivedLength);
+				}
+			}
+
+			if (totalLength>=0 && receivedLength<totalLength) {
+				throw new IOException("Connection closed after "+receivedLength+" of "+totalLength+" bytes of "+source);
+			}
+		} finally {
+			IOUtil.close(out);
+			IOUtil.close(in);
+			if (connection!=null) {
+				connection.disconnect();
+			}
+		}
+	}
+
+	/** open source to be read as it arrives, updating job with the number of bytes read
+	 * Closing the stream releases the connection.
+	 *
+	 * @throws InterruptedIOException from read if the thread is interrupted
+	 */
+	static InputStream openStream(final URI source, final Progress job) throws IOException {
+		final HttpURLConnection connection = openConnection(source);
+		try {
+			int responseCode = connection.getResponseCode();
+			if (responseCode!=HttpURLConnection.HTTP_OK) {
+				throw new HttpResponseException(responseCode, "Unexpected response "+responseCode+" from "+source);
+			}
+			final long totalLength = getContentLength(connection);
+			if (job!=null && totalLength>0) {
+				job.setTotalWork((int)totalLength);
+				job.setWorkDone(0);
+			}
+
+			return new FilterInputStream(connection.getInputStream()) {
+				private long receivedLength;
+
+				@Override
+				public int read() throws IOException {
+					byte[] single = new byte[1];
+					return read(single, 0, 1)==-1 ? -1 : single[0]&0xff;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length) throws IOException {
+					if (Thread.currentThread().isInterrupted()) {
+						throw new InterruptedIOException("Download of "+source+" cancelled");
+					}
+					int count = super.read(buffer, offset, length);
+					if (count>0) {
+						receivedLength += count;
+						if (job!=null && totalLength>0) {
+							job.setWorkDone((int)receivedLength);
+						}
+					} else if (count==-1 && totalLength>=0 && receivedLength<totalLength) {
+						throw new IOException("Connection closed after "+receivedLength+" of "+totalLength+" bytes of "+source);
+					}
+					return count;
+				}
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						connection.disconnect();
+					}
+				}
+			};
+		} catch (IOException e) {
+			connection.disconnect();
+			throw e;
+		}
+	}
+
+	private static HttpURLConnection openConnection(URI source) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)source.toURL().openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+		connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+		// byte ranges and lengths refer to the file, not a compressed transfer of it
+		connection.setRequestProperty("Accept-Encoding", "identity");
+		return connection;
+	}
+
+	/** delete a partial download and the validator stored with it
+	 */
+	static void delete(File partFile) {
+		partFile.delete();
+		getValidatorFile(partFile).delete();
+	}
+
+	/** store the validator used to check that the file has not changed before resuming
+	 * Weak ETags cannot be used with If-Range.
+	 */
+	private static void saveValidator(HttpURLConnection connection, File validatorFile) throws IOException {
+		String validator = connection.getHeaderField("ETag");
+		if (validator==null || validator.startsWith("W/")) {
+			validator = connection.getHeaderField("Last-Modified");
+		}
+		if (validator==null) {
+			validatorFile.delete();
+		} else {
+			OutputStream out = null;
+			try {
+				out = new FileOutputStream(validatorFile);
+				out.write(validator.getBytes("UTF-8"));
+			} finally {
+				IOUtil.close(out);
+			}
+		}
+	}
+
+	private static String readValidator(File validatorFile) {
+		if (!validatorFile.exists()) {
+			return null;
+		}
+		InputStream in = null;
+		try {
+			in = new FileInputStream(validatorFile);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[256];
+			int count;
+			while ((count = in.read(buffer))!=-1) {
+				bytes.write(buffer, 0, count);
+			}
+			return new String(bytes.toByteArray(), "UTF-8");
+		} catch (IOException e) {
+			return null;
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	private static long getContentLength(HttpURLConnection connection) {
+		String contentLength = connection.getHeaderField("Content-Length");
+		try {
+			return contentLength!=null ? Long.parseLong(contentLength.trim()) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static File getValidatorFile(File partFile) {
+		return new File(partFile.getPath()+DOT_VALIDATOR);
+	}
+}
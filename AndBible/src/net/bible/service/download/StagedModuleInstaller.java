@@ -0,0 +1,241 @@
+package net.bible.service.download;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+import net.bible.service.common.CommonUtils;
+import net.bible.service.common.Logger;
+
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.sword.SwordConstants;
+
+/** Unpack a module zip from a stream into a staging directory and then move the module into place.
+ * The module's data directory is swapped in as a whole and its conf file is moved last so a partly installed module is never seen.
+ * Only one copy of the module is stored during installation and the zip itself is never stored.
+ * The staging directory must be on the same file system as the module directory so the module can be moved by renaming.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class StagedModuleInstaller {
+
+	private final File stagingDir;
+
+	// entries are written in large blocks
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	// modules/<category>/<driver>/<module> is the shallowest directory that belongs to a single module
+	private static final int MODULE_DIR_DEPTH = 3;
+
+	private static final int BUFFER_SIZE = 64*1024;
+
+	private static final String SWORD_DIR_NAME = "sword";
+	private static final String FRONTEND_DIR_NAME = "frontend";
+	private static final String DOT_OLD = ".old";
+
+	private static final Logger log = new Logger(StagedModuleInstaller.class.getName());
+
+	public StagedModuleInstaller(File stagingDir) {
+		this.stagingDir = stagingDir;
+	}
+
+	/** unpack the zip into the staging directory, replacing anything previously staged
+	 * mods.d and modules entries are for Sword and any other entries are for the front end, as in JSword's AbstractSwordInstaller.
+	 * ZipInputStream checks the CRC and size of each entry as it is read.
+	 *
+	 * @throws IOException if the stream fails or the zip is not a valid module
+	 */
+	public void unpack(InputStream in) throws IOException {
+		delete();
+		int confCount = 0;
+		int dataCount = 0;
+
+		ZipInputStream zip = new ZipInputStream(in);
+		ZipEntry entry;
+		while ((entry = zip.getNextEntry())!=null) {
+			String name = entry.getName().replace('\\', '/');
+			if (!entry.isDirectory()) {
+				if (name.startsWith(SwordConstants.DIR_CONF+"/") && name.endsWith(SwordConstants.EXTENSION_CONF)) {
+					confCount++;
+				} else if (name.startsWith(SwordConstants.DIR_DATA+"/")) {
+					dataCount++;
+				}
+				unpackEntry(name, zip);
+			}
+		}
+
+		if (confCount==0 || dataCount==0) {
+			throw new ZipException("Module zip has no conf file or no data");
+		}
+		log.debug("Unpacked "+dataCount+" module files into "+stagingDir);
+	}
+
+	/** write one file of a module into the staging directory
+	 * Files outside mods.d and modules are for the front end.
+	 *
+	 * @param name path of the file in the zip
+	 * @param in the content of the file which is read to the end
+	 */
+	public void unpackEntry(String name, InputStream in) throws IOException {
+		name = getValidName(name);
+		File stagedFile;
+		if (name.startsWith(SwordConstants.DIR_CONF+"/") || name.startsWith(SwordConstants.DIR_DATA+"/")) {
+			stagedFile = new File(getSwordStagingDir(), name);
+		} else {
+			stagedFile = new File(getFrontendStagingDir(), name);
+		}
+
+		File dir = stagedFile.getParentFile();
+		if (!dir.isDirectory() && !(dir.mkdirs() || dir.isDirectory())) {
+			throw new IOException("Unable to create "+dir);
+		}
+		FileOutputStream out = new FileOutputStream(stagedFile);
+		try {
+			FileChannel channel = out.getChannel();
+			ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+			int length;
+			while ((length = fillBuffer(in))>0) {
+				byteBuffer.clear();
+				byteBuffer.limit(length);
+				while (byteBuffer.hasRemaining()) {
+					channel.write(byteBuffer);
+				}
+			}
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+	/** inflating streams return little at a time so read until the buffer is full to write large blocks
+	 * @return the number of bytes in the buffer, 0 at the end of the stream
+	 */
+	private int fillBuffer(InputStream in) throws IOException {
+		int length = 0;
+		int count;
+		while (length<buffer.length && (count = in.read(buffer, length, buffer.length-length))!=-1) {
+			length += count;
+		}
+		return length;
+	}
+
+	/** move the unpacked module into swordDir and any other files into frontendDir
+	 * If the module cannot be moved into place any previous version is restored.
+	 */
+	public void install(File swordDir, File frontendDir) throws IOException {
+		moveFiles(getFrontendStagingDir(), frontendDir);
+
+		File stagedDataDir = new File(getSwordStagingDir(), SwordConstants.DIR_DATA);
+		File dataDir = new File(swordDir, SwordConstants.DIR_DATA);
+		String moduleDirPath = getModuleDirPath();
+
+		File moduleDir = null;
+		File oldModuleDir = null;
+		boolean isModuleDirMoved = false;
+		try {
+			if (moduleDirPath!=null) {
+				moduleDir = new File(dataDir, moduleDirPath);
+				oldModuleDir = new File(moduleDir.getPath()+DOT_OLD);
+				CommonUtils.deleteDirectory(oldModuleDir);
+				moduleDir.getParentFile().mkdirs();
+				if (moduleDir.exists() && !moduleDir.renameTo(oldModuleDir)) {
+					throw new IOException("Unable to move previous module "+moduleDir);
+				}
+				if (!new File(stagedDataDir, moduleDirPath).renameTo(moduleDir)) {
+					throw new IOException("Unable to move module to "+moduleDir);
+				}
+				isModuleDirMoved = true;
+			} else {
+				// the files do not share a module directory so move them one at a time
+				moveFiles(stagedDataDir, dataDir);
+			}
+
+			// the conf is moved last because a module is only found once its conf exists
+			moveFiles(new File(getSwordStagingDir(), SwordConstants.DIR_CONF), new File(swordDir, SwordConstants.DIR_CONF));
+		} catch (IOException e) {
+			// a module without its conf would never be found so remove it
+			if (isModuleDirMoved) {
+				CommonUtils.deleteDirectory(moduleDir);
+			}
+			if (oldModuleDir!=null && oldModuleDir.exists()) {
+				log.warn("Restoring previous module "+moduleDir);
+				oldModuleDir.renameTo(moduleDir);
+			}
+			throw e;
+		}
+
+		if (oldModuleDir!=null) {
+			CommonUtils.deleteDirectory(oldModuleDir);
+		}
+		delete();
+	}
+
+	/** delete the staging directory and everything in it
+	 */
+	public void delete() {
+		if (stagingDir.exists()) {
+			CommonUtils.deleteDirectory(stagingDir);
+		}
+	}
+
+	/** @return the directory below modules/ containing all the staged module files, or null if it would contain other modules
+	 */
+	private String getModuleDirPath() {
+		File dir = new File(getSwordStagingDir(), SwordConstants.DIR_DATA);
+		StringBuilder moduleDirPath = new StringBuilder();
+		int depth = 0;
+		File[] files;
+		while ((files = dir.listFiles())!=null && files.length==1 && files[0].isDirectory()) {
+			dir = files[0];
+			if (depth>0) {
+				moduleDirPath.append('/');
+			}
+			moduleDirPath.append(dir.getName());
+			depth++;
+		}
+		return depth>=MODULE_DIR_DEPTH ? moduleDirPath.toString() : null;
+	}
+
+	/** @return the entry name with / separators, rejecting names that would be unpacked outside the staging directory
+	 */
+	private String getValidName(String entryName) throws ZipException {
+		String name = entryName.replace('\\', '/');
+		if (name.startsWith("/") || name.equals("..") || name.startsWith("../") || name.contains("/../") || name.endsWith("/..")) {
+			throw new ZipException("Invalid path in module zip "+entryName);
+		}
+		return name;
+	}
+
+	private void moveFiles(File fromDir, File toDir) throws IOException {
+		File[] files = fromDir.listFiles();
+		if (files==null) {
+			return;
+		}
+		for (File file : files) {
+			File target = new File(toDir, file.getName());
+			if (file.isDirectory()) {
+				moveFiles(file, target);
+			} else {
+				toDir.mkdirs();
+				if (!CommonUtils.replaceFile(file, target)) {
+					throw new IOException("Unable to move "+file+" to "+target);
+				}
+			}
+		}
+	}
+
+	private File getSwordStagingDir() {
+		return new File(stagingDir, SWORD_DIR_NAME);
+	}
+
+	private File getFrontendStagingDir() {
+		return new File(stagingDir, FRONTEND_DIR_NAME);
+	}
+}
@@ -0,0 +1,30 @@
+package net.bible.service.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.crosswire.common.progress.Progress;
+
+/** A download that is unpacked as it arrives instead of being stored in a file first.
+ * A streamed download that is interrupted starts again from the beginning.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+abstract class StreamedDownloadTask extends DownloadTask {
+
+	StreamedDownloadTask(int priority) {
+		super(priority);
+	}
+
+	@Override
+	final boolean isStreamed() {
+		return true;
+	}
+
+	/** unpack the download into workDir which is then passed to install
+	 */
+	abstract void receive(InputStream in, File workDir, Progress job) throws IOException;
+}
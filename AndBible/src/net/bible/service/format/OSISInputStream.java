@@ -6,6 +6,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.Iterator;
 
 import net.bible.service.common.Logger;
+import net.bible.service.sword.ztext.RawTextReader;
 
 import org.apache.commons.lang.StringUtils;
 import org.crosswire.jsword.book.Book;
@@ -127,7 +128,7 @@ public class OSISInputStream extends InputStream {
 			while (keyIterator.hasNext() && !isNextVerseLoaded) {
 				Key currentVerse = keyIterator.next();
 				//get the actual verse text and tidy it up, 
-				String rawText = book.getRawText(currentVerse);
+				String rawText = RawTextReader.getInstance().getRawText(book, currentVerse);
 				
 				// do not output empty verses (commonly verse 0 is empty)
 				if (!StringUtils.isWhitespace(rawText)) {
@@ -0,0 +1,173 @@
+package net.bible.service.format;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+import net.bible.service.common.Logger;
+import net.bible.service.sword.ztext.RawTextReader;
+
+import org.apache.commons.lang.StringUtils;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.passage.Key;
+
+/** Character based equivalent of OSISInputStream which avoids encoding each verse to UTF-8 only for the SAX parser to decode it again.
+ * The verse wrapper tags and document start/end are streamed directly from constant Strings rather than being concatenated with the verse text,
+ * so the raw verse text returned by JSword is the only String created for most verses.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.
+ *      The copyright to this program is held by it's author.
+ */
+public class OSISReader extends Reader {
+	// requested passage
+	private Book book;
+
+	// iterator
+	private boolean isFirstVerse = true;
+	private Iterator<Key> keyIterator;
+	private boolean isClosingTagWritten = false;
+
+	// allow avoidance of repeated text due to merged verses
+	private String previousVerseRawText = "";
+
+	// the pieces of text making up the current verse which are read in order
+	private static final int MAX_SEGMENTS = 5;
+	private final String[] segments = new String[MAX_SEGMENTS];
+	private int segmentCount = 0;
+	private int currentSegment = 0;
+	private int currentSegmentOffset = 0;
+
+	private static final String DOC_START =	"<!DOCTYPE div [<!ENTITY nbsp \"&#160;\"><!ENTITY copy \"&#169;\">]><div>";
+	private static final String DOC_END =	"</div>";
+
+	private OSISVerseTidy osisVerseTidy;
+
+	private static final Logger log = new Logger("OSISReader");
+
+	/** Constructor to create a reader of raw OSIS input
+	 * @param book
+	 * @param key
+	 */
+	public OSISReader(Book book, Key key) {
+		this.book = book;
+		osisVerseTidy  = new OSISVerseTidy(book);
+		keyIterator = key.iterator();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Reader#read(char[], int, int)
+	 */
+	@Override
+	public int read(char[] buffer, int offset, int lenToRead) throws IOException {
+		if ((offset < 0) || (offset > buffer.length) || (lenToRead < 0)
+				|| ((offset + lenToRead) > buffer.length) || ((offset + lenToRead) < 0)) {
+			throw new IndexOutOfBoundsException();
+		} else if (lenToRead == 0) {
+			return 0;
+		}
+
+		int lenCopied = 0;
+		while (lenCopied<lenToRead) {
+			if (currentSegment>=segmentCount) {
+				// only block to load more text if nothing has been returned yet
+				if (lenCopied>0 || !loadNextVerse()) {
+					break;
+				}
+			}
+
+			String segment = segments[currentSegment];
+			int lenToCopy = Math.min(segment.length()-currentSegmentOffset, lenToRead-lenCopied);
+			segment.getChars(currentSegmentOffset, currentSegmentOffset+lenToCopy, buffer, offset+lenCopied);
+			lenCopied += lenToCopy;
+			currentSegmentOffset += lenToCopy;
+
+			if (currentSegmentOffset>=segment.length()) {
+				segments[currentSegment] = null;
+				currentSegment++;
+				currentSegmentOffset = 0;
+			}
+		}
+
+		// have we reached the end of the chapter
+		return lenCopied>0 ? lenCopied : -1;
+	}
+
+	@Override
+	public void close() throws IOException {
+		segmentCount = 0;
+		currentSegment = 0;
+	}
+
+	/** load the next verse, or opening or closing <div> into the segment list
+	 *
+	 * @return false if there is no more text
+	 */
+	private boolean loadNextVerse() throws IOException {
+		segmentCount = 0;
+		currentSegment = 0;
+		currentSegmentOffset = 0;
+
+		if (isFirstVerse) {
+			addSegment(DOC_START);
+			isFirstVerse = false;
+			return true;
+		}
+
+		try {
+			while (keyIterator.hasNext()) {
+				Key currentVerse = keyIterator.next();
+				//get the actual verse text
+				String rawText = RawTextReader.getInstance().getRawText(book, currentVerse);
+
+				// do not output empty verses (commonly verse 0 is empty)
+				if (!StringUtils.isWhitespace(rawText)) {
+
+					// merged verses can cause duplicates so if dup then skip immediately to next verse
+					if (!previousVerseRawText.equals(rawText)) {
+						previousVerseRawText = rawText;
+						addVerse(currentVerse, rawText);
+						return true;
+					} else {
+						log.debug("Duplicate verse:"+currentVerse);
+					}
+
+				} else {
+					log.debug("Empty or missing verse:"+currentVerse);
+				}
+			}
+		} catch (BookException be) {
+			throw new IOException("Error reading verse", be);
+		}
+
+		if (!isClosingTagWritten) {
+			addSegment(DOC_END);
+			isClosingTagWritten = true;
+			return true;
+		}
+		return false;
+	}
+
+	/** Equivalent to OSISVerseTidy.tidy but the verse tag is added as separate segments instead of by concatenation
+	 */
+	private void addVerse(Key verse, String rawText) {
+		String verseText = osisVerseTidy.checkVerseText(verse, rawText);
+		if (osisVerseTidy.isVerseTagRequired(verseText)) {
+			addSegment(OSISVerseTidy.VERSE_OPENING_TAG_START);
+			addSegment(verse.getOsisID());
+			addSegment(OSISVerseTidy.VERSE_OPENING_TAG_END);
+			addSegment(verseText);
+			addSegment(OSISVerseTidy.VERSE_CLOSING_TAG);
+		} else {
+			addSegment(verseText);
+		}
+	}
+
+	private void addSegment(String text) {
+		// getChars is not required for empty strings
+		if (text.length()>0) {
+			segments[segmentCount++] = text;
+		}
+	}
+}
@@ -19,10 +19,15 @@ public class OSISVerseTidy {
 
 	private Book book;
 	
-    private static final String VERSE_OPENING_TAG_START = "<"+OSISUtil.OSIS_ELEMENT_VERSE+" "+OSISUtil.OSIS_ATTR_OSISID+"='";
-    private static final String VERSE_OPENING_TAG_END = "'>";
+    /* package */ static final String VERSE_OPENING_TAG_START = "<"+OSISUtil.OSIS_ELEMENT_VERSE+" "+OSISUtil.OSIS_ATTR_OSISID+"='";
+    /* package */ static final String VERSE_OPENING_TAG_END = "'>";
     // WEB has <l> tags that span verses so avoid errors by using empty verse tags
-    private static final String VERSE_CLOSING_TAG = "</"+OSISUtil.OSIS_ELEMENT_VERSE+">";
+    /* package */ static final String VERSE_CLOSING_TAG = "</"+OSISUtil.OSIS_ELEMENT_VERSE+">";
+    
+    private static final String VERSE_TAG_START = "<"+OSISUtil.OSIS_ELEMENT_VERSE;
+
+    // only these books require their verse text to be fixed up
+    private final boolean isFixRequired;
     
     private static final Logger log = new Logger(OSISVerseTidy.class.getName()); 
 
@@ -32,6 +37,8 @@ public class OSISVerseTidy {
      */
     public OSISVerseTidy(Book book) {
     	this.book = book;
+    	String initials = book.getInitials();
+    	isFixRequired = initials.startsWith("NET") || initials.startsWith("WEB");
     }
 	
     
@@ -53,7 +60,11 @@ public class OSISVerseTidy {
 	 * @param key
 	 * @return
 	 */
-	private String checkVerseText(Key key, String verseText) {
+	/* package */ String checkVerseText(Key key, String verseText) {
+		if (!isFixRequired) {
+			return verseText;
+		}
+
         // FIXME(dms): this is a major HACK handling a problem with a badly
         // encoded module.
 		
@@ -105,7 +116,7 @@ public class OSISVerseTidy {
      */
     private String addVerseTag(Key verse, String plain) {
     	String ret = plain;
-    	if (!plain.contains("<"+OSISUtil.OSIS_ELEMENT_VERSE)) {
+    	if (isVerseTagRequired(plain)) {
     		StringBuffer buff = new StringBuffer();
     		buff.append(VERSE_OPENING_TAG_START).append(verse.getOsisID()).append(VERSE_OPENING_TAG_END).append(plain).append(VERSE_CLOSING_TAG);
     		ret = buff.toString();
@@ -113,4 +124,9 @@ public class OSISVerseTidy {
     	return ret;
     }
 
+    /** true if the verse text does not already contain a verse tag
+     */
+    /* package */ boolean isVerseTagRequired(String verseText) {
+    	return !verseText.contains(VERSE_TAG_START);
+    }
 }
@@ -0,0 +1,19 @@
+package net.bible.service.format.osistohtml;
+
+/**
+ * Receive a long page of html in pieces as it is generated so the start can be shown before the whole page has been converted
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public interface HtmlChunkListener {
+
+	/** the first piece of a page including the html head, replaces any page previously started
+	 */
+	void pageStarted(String html);
+
+	/** more html to be added to the end of the page
+	 */
+	void pageContinued(String html);
+}
@@ -1,18 +1,37 @@
 package net.bible.service.format.osistohtml;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import net.bible.service.common.Logger;
 import net.bible.service.format.osistohtml.osishandlers.OsisToHtmlSaxHandler.VerseInfo;
 
 /**
  * Write characters out to a StringBuilder - used while creating html for display
  * 
+ * The html is held in a list of segments so that titles etc. can be inserted before a verse by starting a new segment
+ * at the insertion point rather than by removing and rewriting all the html after it.
+ * Segments are only joined once, when the html is requested.
+ * 
  * @see gnu.lgpl.License for license details.<br>
  *      The copyright to this program is held by it's authors.
  * @author Martin Denham [mjdenham at gmail dot com]
  */
 public class HtmlTextWriter {
 
+    // the html in order, always at least one segment
+    private List<StringBuilder> segments = new ArrayList<StringBuilder>();
+    
+    // segment currently written to, the last segment unless inserting
     private StringBuilder writer;
+    private int writerIndex;
+    
+    // total length of all segments
+    private int length;
+    
+    // position of the start of the current segment while inserting
+    private int insertionSegmentStart;
     
     private int dontWriteRequestCount = 0;
     
@@ -22,14 +41,14 @@ public class HtmlTextWriter {
     // Prevent multiple conflicting preverse attempts
     private int insertionRequestCount = 0;
     
-    // allow insert at a certain position
-    private String overwrittenString = "";
+    private static final int MAX_RETAINED_CAPACITY = 64*1024;
     
     @SuppressWarnings("unused")
     private static final Logger log = new Logger("HtmlTextWriter");
     
     public HtmlTextWriter() {
         writer = new StringBuilder();
+        segments.add(writer);
     }
 
     public void write(String htmlText) {
@@ -37,6 +56,7 @@ public class HtmlTextWriter {
     		// ignore all text
     	} else if (writeTempStoreRequestCount==0) {
 			writer.append(htmlText);
+			length += htmlText.length();
         } else {
         	tempStore.append(htmlText); 
         }
@@ -60,30 +80,123 @@ public class HtmlTextWriter {
     public void beginInsertAt(int insertOffset) {
 		insertionRequestCount++;
     	if (insertionRequestCount==1) {
-	    	overwrittenString = writer.substring(insertOffset);
-	    	writer.delete(insertOffset, writer.length());
+    		// search back from the end because insertions are normally near the end
+    		int index = segments.size()-1;
+    		int segmentStart = length-segments.get(index).length();
+    		// prefer the end of the previous segment to the start of a segment so that nothing needs to be split
+    		while (segmentStart>=insertOffset && index>0) {
+    			index--;
+    			segmentStart -= segments.get(index).length();
+    		}
+
+    		StringBuilder segment = segments.get(index);
+    		int offsetInSegment = insertOffset-segmentStart;
+    		if (offsetInSegment==0) {
+    			writerIndex = index;
+    		} else {
+    			// split the segment if the insertion point is not at its end, which only copies the rest of this one segment
+    			if (offsetInSegment<segment.length()) {
+    				segments.add(index+1, new StringBuilder(segment.subSequence(offsetInSegment, segment.length())));
+    				segment.setLength(offsetInSegment);
+    			}
+    			writerIndex = index+1;
+    		}
+    		writer = new StringBuilder();
+    		segments.add(writerIndex, writer);
+    		insertionSegmentStart = insertOffset;
     	}
     }
-    /** finish inserting and restore overwritten tail of string
+    /** finish inserting and continue writing at the end
      */
     public void finishInserting() {
     	if (insertionRequestCount==1) {
-	    	writer.append(overwrittenString);
-	    	overwrittenString = "";
+    		writerIndex = segments.size()-1;
+    		writer = segments.get(writerIndex);
     	}
     	insertionRequestCount--;
     }
 
+    /** mark the current position as one which html may be inserted at later, so that inserting there requires no copying
+     * 
+     * @return the current position
+     */
+    public int getInsertionPoint() {
+    	if (insertionRequestCount==0 && writer.length()>0) {
+    		writer = new StringBuilder();
+    		segments.add(writer);
+    		writerIndex = segments.size()-1;
+    	}
+    	return getPosition();
+    }
+
+    /** the position in the final html of the next text written
+     */
     public int getPosition() {
-    	return writer.length();
+    	if (insertionRequestCount>0) {
+    		return insertionSegmentStart+writer.length();
+    	} else {
+    		return length;
+    	}
     }
 
+    /** remove everything written since position
+     */
     public void removeAfter(int position) {
-    	writer.delete(position, writer.length());
+    	int toRemove = getPosition()-position;
+    	for (int index=writerIndex; toRemove>0 && index>=0; index--) {
+    		StringBuilder segment = segments.get(index);
+    		int removeFromSegment = Math.min(toRemove, segment.length());
+    		segment.setLength(segment.length()-removeFromSegment);
+    		toRemove -= removeFromSegment;
+    		length -= removeFromSegment;
+    	}
     }
     
+	/** prepare to write a new document, also used when a handler is reused
+	 */
 	public void reset() {
-		writer.setLength(0);
+		clearSegments();
+		dontWriteRequestCount = 0;
+		writeTempStoreRequestCount = 0;
+		clearTempStore();
+		insertionRequestCount = 0;
+	}
+
+	private void clearSegments() {
+		// keep the first segment, unless it is very large after a long page has been written
+		StringBuilder first = segments.get(0);
+		if (first.capacity()>MAX_RETAINED_CAPACITY) {
+			first = new StringBuilder();
+		} else {
+			first.setLength(0);
+		}
+		segments.clear();
+		segments.add(first);
+		writer = first;
+		writerIndex = 0;
+		length = 0;
+	}
+
+	/** nothing is being held back to be inserted or written later so the html written so far can be passed on
+	 */
+	public boolean isFlushable() {
+		return insertionRequestCount==0 && writeTempStoreRequestCount==0 && dontWriteRequestCount==0;
+	}
+
+	/** return all html written so far and continue writing from the start of an empty buffer
+	 */
+	public String flush() {
+		String html = getHtml();
+		clearSegments();
+		return html;
+	}
+
+	/** write all html written so far to a Writer or StringBuilder without first joining the segments
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		for (StringBuilder segment : segments) {
+			out.append(segment);
+		}
 	}
     
     public void writeToTempStore() {
@@ -99,7 +212,14 @@ public class HtmlTextWriter {
     	return tempStore.toString();
     }
     public String getHtml() {
-    	return writer.toString();
+    	if (segments.size()==1) {
+    		return writer.toString();
+    	}
+    	StringBuilder html = new StringBuilder(length);
+    	for (StringBuilder segment : segments) {
+    		html.append(segment);
+    	}
+    	return html.toString();
     }
     public void setDontWrite(boolean dontWrite) {
     	if (dontWrite) {
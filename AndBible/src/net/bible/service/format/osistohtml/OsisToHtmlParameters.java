@@ -1,8 +1,11 @@
 package net.bible.service.format.osistohtml;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
+import net.bible.service.format.osistohtml.preprocessor.TextPreprocessorStage;
+
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.Verse;
@@ -41,6 +44,64 @@ public class OsisToHtmlParameters {
     private List<Verse> versesWithBookmarks;
     private URI moduleBasePath;
     private int indentDepth = 2;
+    // applied to text after the standard preprocessors
+    private List<TextPreprocessorStage> extraTextPreprocessorStages = new ArrayList<TextPreprocessorStage>();
+
+	/**
+	 * All the values that affect the html generated from a document so that cached html is only reused if it would be identical
+	 */
+	public String getFingerprint() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(languageCode).append('|')
+				.append(isLeftToRight).append(isShowTitles).append(isShowVerseNumbers).append(isVersePerline)
+				.append(isShowMyNotes).append(isShowBookmarks).append(isShowNotes).append(isAutoWrapUnwrappedRefsInNote)
+				.append(isShowStrongs).append(isShowMorphology).append(isRedLetter).append(convertStrongsRefsToLinks).append('|')
+				.append(basisRef!=null ? basisRef.getOsisID() : "").append('|')
+				.append(documentVersification!=null ? documentVersification.getName() : "").append('|')
+				.append(font).append('|')
+				.append(cssClassForCustomFont).append('|')
+				.append(cssStylesheetList).append('|')
+				.append(extraFooter).append('|')
+				.append(versesWithNotes).append('|')
+				.append(versesWithBookmarks).append('|')
+				.append(moduleBasePath).append('|')
+				.append(indentDepth);
+		for (TextPreprocessorStage stage : extraTextPreprocessorStages) {
+			builder.append('|').append(stage.getFingerprint());
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Take all values from another set of parameters so that handlers holding this object can be reused for a different document
+	 */
+	public void copyFrom(OsisToHtmlParameters other) {
+		languageCode = other.languageCode;
+		isLeftToRight = other.isLeftToRight;
+		isShowTitles = other.isShowTitles;
+		isShowVerseNumbers = other.isShowVerseNumbers;
+		isVersePerline = other.isVersePerline;
+		isShowMyNotes = other.isShowMyNotes;
+		isShowBookmarks = other.isShowBookmarks;
+		isShowNotes = other.isShowNotes;
+		isAutoWrapUnwrappedRefsInNote = other.isAutoWrapUnwrappedRefsInNote;
+		basisRef = other.basisRef;
+		documentVersification = other.documentVersification;
+		font = other.font;
+		cssClassForCustomFont = other.cssClassForCustomFont;
+		isShowStrongs = other.isShowStrongs;
+		isShowMorphology = other.isShowMorphology;
+		isRedLetter = other.isRedLetter;
+		cssStylesheetList = other.cssStylesheetList;
+		extraFooter = other.extraFooter;
+		convertStrongsRefsToLinks = other.convertStrongsRefsToLinks;
+		versesWithNotes = other.versesWithNotes;
+		versesWithBookmarks = other.versesWithBookmarks;
+		moduleBasePath = other.moduleBasePath;
+		indentDepth = other.indentDepth;
+		extraTextPreprocessorStages.clear();
+		extraTextPreprocessorStages.addAll(other.extraTextPreprocessorStages);
+	}
 
 	public String getCssStylesheets() {
 		StringBuilder builder = new StringBuilder();
@@ -194,4 +255,12 @@ public class OsisToHtmlParameters {
 	public int getIndentDepth() {
 		return indentDepth; 
 	}
+	/** add a stage to the text preprocessing without replacing the standard stages e.g. Hebrew adjustments and Strong's links
+	 */
+	public void addTextPreprocessorStage(TextPreprocessorStage stage) {
+		extraTextPreprocessorStages.add(stage);
+	}
+	public List<TextPreprocessorStage> getExtraTextPreprocessorStages() {
+		return extraTextPreprocessorStages;
+	}
 }
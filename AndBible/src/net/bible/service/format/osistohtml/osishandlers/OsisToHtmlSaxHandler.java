@@ -1,6 +1,7 @@
 package net.bible.service.format.osistohtml.osishandlers;
 
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -12,9 +13,11 @@ import net.bible.service.common.Logger;
 import net.bible.service.device.ScreenSettings;
 import net.bible.service.font.FontControl;
 import net.bible.service.format.Note;
+import net.bible.service.format.osistohtml.HtmlChunkListener;
 import net.bible.service.format.osistohtml.OsisToHtmlParameters;
 import net.bible.service.format.osistohtml.preprocessor.HebrewCharacterPreprocessor;
-import net.bible.service.format.osistohtml.preprocessor.TextPreprocessor;
+import net.bible.service.format.osistohtml.preprocessor.TextPreprocessorChain;
+import net.bible.service.format.osistohtml.preprocessor.TextPreprocessorStage;
 import net.bible.service.format.osistohtml.strongs.StrongsHandler;
 import net.bible.service.format.osistohtml.strongs.StrongsLinkCreator;
 import net.bible.service.format.osistohtml.taghandler.BookmarkMarker;
@@ -88,9 +91,14 @@ public class OsisToHtmlSaxHandler extends OsisSaxHandler {
 	private Map<String, OsisTagHandler> osisTagHandlers;
 	
 	private NoteHandler noteHandler;
+	private BookmarkMarker bookmarkMarker;
+	private MyNoteMarker myNoteMarker;
 	
 	// processor for the tag content
-	private TextPreprocessor textPreprocessor;
+	private final TextPreprocessorChain textPreprocessor = new TextPreprocessorChain();
+	private final List<TextPreprocessorStage> textPreprocessorStages = new ArrayList<TextPreprocessorStage>();
+	private final TextPreprocessorStage hebrewCharacterPreprocessor = new HebrewCharacterPreprocessor();
+	private final TextPreprocessorStage strongsLinkCreator = new StrongsLinkCreator();
 
 	// internal logic
 	private VerseInfo verseInfo = new VerseInfo();
@@ -105,6 +113,15 @@ public class OsisToHtmlSaxHandler extends OsisSaxHandler {
 		public boolean isAnyTextWritten = false;
 	}
 	
+	// optionally pass long pages on in pieces as they are generated
+	private HtmlChunkListener chunkListener;
+	private boolean isPageStarted = false;
+	private int elementDepth = 0;
+	
+	// the first piece only needs to fill the screen but later pieces are larger to limit the number of appends
+	private static final int FIRST_CHUNK_MIN_LENGTH = 16*1024;
+	private static final int CHUNK_MIN_LENGTH = 64*1024;
+	
 	private static final String HEBREW_LANGUAGE_CODE = "he";
 	
 	private static final Set<String> IGNORED_TAGS = new HashSet<>(Arrays.asList(OSISUtil.OSIS_ELEMENT_CHAPTER));
@@ -117,8 +134,8 @@ public class OsisToHtmlSaxHandler extends OsisSaxHandler {
 		
 		osisTagHandlers = new HashMap<>();
 		
-		BookmarkMarker bookmarkMarker = new BookmarkMarker(parameters, verseInfo, getWriter());
-		MyNoteMarker myNoteMarker = new MyNoteMarker(parameters, verseInfo, getWriter());
+		bookmarkMarker = new BookmarkMarker(parameters, verseInfo, getWriter());
+		myNoteMarker = new MyNoteMarker(parameters, verseInfo, getWriter());
 		registerHandler( new VerseHandler(parameters, verseInfo, bookmarkMarker, myNoteMarker, getWriter()) );
 		
 		noteHandler = new NoteHandler(parameters, verseInfo, getWriter());
@@ -147,11 +164,57 @@ public class OsisToHtmlSaxHandler extends OsisSaxHandler {
 		registerHandler( new ListHandler(getWriter()) );
 		registerHandler( new ListItemHandler(getWriter()) );
 
-		//TODO at the moment we can only have a single TextPreprocesor, need to chain them and maybe make the writer a TextPreprocessor and put it at the end of the chain
-		if (HEBREW_LANGUAGE_CODE.equals(parameters.getLanguageCode())) {
-			textPreprocessor = new HebrewCharacterPreprocessor();
-		} else if (parameters.isConvertStrongsRefsToLinks()) {
-			textPreprocessor = new StrongsLinkCreator();
+		configureTextPreprocessor();
+	}
+	
+	/**
+	 * Prepare to convert another document so that this handler and all its tag handlers can be reused.
+	 * Only valid after a document has been parsed completely because tag handlers expect every start tag to have been ended.
+	 */
+	public void reset(OsisToHtmlParameters parameters) {
+		// tag handlers all hold the same parameters object
+		if (parameters!=this.parameters) {
+			this.parameters.copyFrom(parameters);
+		}
+		reset();
+		
+		verseInfo.currentVerseNo = 0;
+		verseInfo.positionToInsertBeforeVerse = 0;
+		verseInfo.isTextSinceVerse = false;
+		passageInfo.isAnyTextWritten = false;
+		
+		noteHandler.reset();
+		bookmarkMarker.reset();
+		myNoteMarker.reset();
+		
+		chunkListener = null;
+		isPageStarted = false;
+		elementDepth = 0;
+		
+		configureTextPreprocessor();
+	}
+	
+	private void configureTextPreprocessor() {
+		textPreprocessorStages.clear();
+		if (HEBREW_LANGUAGE_CODE.equals(parameters.getLanguageCode()) && HebrewCharacterPreprocessor.isRequired()) {
+			textPreprocessorStages.add(hebrewCharacterPreprocessor);
+		}
+		if (parameters.isConvertStrongsRefsToLinks()) {
+			textPreprocessorStages.add(strongsLinkCreator);
+		}
+		textPreprocessorStages.addAll(parameters.getExtraTextPreprocessorStages());
+		// stages are usually the same as for the previous document so the chain can keep its trigger lookup
+		textPreprocessor.setStages(textPreprocessorStages);
+	}
+	
+	/**
+	 * Pass the html to the listener in pieces as it is generated.
+	 * Any html not yet passed on when parsing finishes is returned by toString().
+	 * Verse per line and rtl pages wrap all verses in elements which can not be split so are never passed on in pieces.
+	 */
+	public void setChunkListener(HtmlChunkListener chunkListener) {
+		if (parameters.isLeftToRight() && !parameters.isVersePerline()) {
+			this.chunkListener = chunkListener;
 		}
 	}
 	
@@ -226,6 +289,9 @@ public class OsisToHtmlSaxHandler extends OsisSaxHandler {
 
 		debug(name, attrs, true);
 
+		flushChunkIfRequired();
+		elementDepth++;
+
 		OsisTagHandler tagHandler = osisTagHandlers.get(name);
 		if (tagHandler!=null) {
 			tagHandler.start(attrs);
@@ -252,6 +318,29 @@ public class OsisToHtmlSaxHandler extends OsisSaxHandler {
 		if (tagHandler!=null) {
 			tagHandler.end();
 		}
+
+		elementDepth--;
+		flushChunkIfRequired();
+	}
+
+	/**
+	 * Html can only be passed on between elements directly below the root element because then all html elements written have been closed.
+	 * Titles following the start of a verse are moved before the verse so nothing is passed on until text has been written after the verse.
+	 */
+	private void flushChunkIfRequired() {
+		if (chunkListener!=null && elementDepth==1 && verseInfo.isTextSinceVerse && getWriter().isFlushable() &&
+				getWriter().getPosition() >= (isPageStarted ? CHUNK_MIN_LENGTH : FIRST_CHUNK_MIN_LENGTH)) {
+			String html = getWriter().flush();
+			// pre-verse titles are inserted relative to the start of the buffer
+			verseInfo.positionToInsertBeforeVerse = 0;
+			
+			if (isPageStarted) {
+				chunkListener.pageContinued(html);
+			} else {
+				isPageStarted = true;
+				chunkListener.pageStarted(html);
+			}
+		}
 	}
 
 	/*
@@ -270,9 +359,7 @@ public class OsisToHtmlSaxHandler extends OsisSaxHandler {
 										StringUtils.isNotBlank(s);
 		passageInfo.isAnyTextWritten = passageInfo.isAnyTextWritten || verseInfo.isTextSinceVerse;
 		
-		if (textPreprocessor!=null) {
-			s = textPreprocessor.process(s);
-		}
+		s = textPreprocessor.process(s);
 		
 		write(s);
 	}
@@ -0,0 +1,50 @@
+package net.bible.service.format.osistohtml.osishandlers;
+
+import java.util.LinkedList;
+
+import net.bible.service.format.osistohtml.OsisToHtmlParameters;
+
+/**
+ * Reuse html handlers because each one creates a full set of tag handlers.
+ * Handlers may be used by several threads at once e.g. 2 windows and prefetching so each caller obtains its own handler.
+ * A handler must only be released after a document has been parsed without error, otherwise it is simply discarded.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class OsisToHtmlSaxHandlerPool {
+
+	private final LinkedList<OsisToHtmlSaxHandler> availableHandlers = new LinkedList<OsisToHtmlSaxHandler>();
+
+	// more handlers than concurrent renders would just waste memory
+	private static final int MAX_POOL_SIZE = 4;
+
+	/**
+	 * @return a handler ready to convert a document using the specified parameters
+	 */
+	public OsisToHtmlSaxHandler obtain(OsisToHtmlParameters parameters) {
+		OsisToHtmlSaxHandler handler;
+		synchronized (availableHandlers) {
+			handler = availableHandlers.poll();
+		}
+
+		if (handler==null) {
+			// the handler owns its parameters so callers can not change them while it is in use
+			handler = new OsisToHtmlSaxHandler(new OsisToHtmlParameters());
+		}
+		handler.reset(parameters);
+		return handler;
+	}
+
+	/**
+	 * Return a handler after use.  Any results e.g. toString() must have been fetched before calling this.
+	 */
+	public void release(OsisToHtmlSaxHandler handler) {
+		synchronized (availableHandlers) {
+			if (availableHandlers.size()<MAX_POOL_SIZE && !availableHandlers.contains(handler)) {
+				availableHandlers.add(handler);
+			}
+		}
+	}
+}
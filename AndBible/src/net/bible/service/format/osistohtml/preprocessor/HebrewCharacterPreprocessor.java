@@ -1,6 +1,5 @@
 package net.bible.service.format.osistohtml.preprocessor;
 
-import net.bible.service.common.CommonUtils;
 import android.os.Build;
 
 /**
@@ -8,12 +7,12 @@ import android.os.Build;
  * @see gnu.lgpl.License for license details.<br>
  *      The copyright to this program is held by it's author.
  */
-public class HebrewCharacterPreprocessor implements TextPreprocessor {
+public class HebrewCharacterPreprocessor extends TextPreprocessorStage {
 
 	// the following characters are not handled well in Android 2.2 & 2.3 and
 	// need special processing which for all except Sof Pasuq means removal
 	// puctuation char at the end of hebrew verses that looks like a ':'
-	private static final String HEBREW_SOF_PASUQ_CHAR = "\u05C3";
+	private static final char HEBREW_SOF_PASUQ_CHAR = '\u05C3';
 	// vowels are on the first row and cantillations on the second
 	private static final char[] HEBREW_VOWELS_AND_CANTILLATIONS = new char[] {
 			'\u05B0', '\u05B1', '\u05B2', '\u05B3', '\u05B4', '\u05B5',
@@ -25,40 +24,48 @@ public class HebrewCharacterPreprocessor implements TextPreprocessor {
 			'\u05A4', '\u05A5', '\u05A6', '\u05A7', '\u05A8', '\u05A9',
 			'\u05AA', '\u05AB', '\u05AC', '\u05AD', '\u05AE', '\u05AF' };
 
+	// even without vowel points the : at the end of each verse confuses
+	// Android's bidi but specifying the char as rtl helps
+	private static final String HEBREW_SOF_PASUQ_HTML = "<span dir='rtl'>"+HEBREW_SOF_PASUQ_CHAR+"</span> ";
+
+	private static final char[] TRIGGER_CHARACTERS = new char[HEBREW_VOWELS_AND_CANTILLATIONS.length+1];
+	static {
+		System.arraycopy(HEBREW_VOWELS_AND_CANTILLATIONS, 0, TRIGGER_CHARACTERS, 0, HEBREW_VOWELS_AND_CANTILLATIONS.length);
+		TRIGGER_CHARACTERS[HEBREW_VOWELS_AND_CANTILLATIONS.length] = HEBREW_SOF_PASUQ_CHAR;
+	}
+
 
 	/**
 	 * Some characters are not handled well in Android 2.2 & 2.3 and need
 	 * special processing which for all except Sof Pasuq means removal
 	 * 
-	 * @param s
-	 * @return adjusted string
+	 * @return true if this device needs Hebrew text to be adjusted
 	 */
+	public static boolean isRequired() {
+		return !isVowelsBugFixed();
+	}
+
+	@Override
+	public char[] getTriggerCharacters() {
+		return TRIGGER_CHARACTERS;
+	}
+
 	@Override
-	public String process(String text) {
-		if (isVowelsBugFixed()) {
-			return text;
-		} else {
-			return doHebrewCharacterAdjustments(text);
+	public int process(String text, int position, StringBuilder output) {
+		if (text.charAt(position)==HEBREW_SOF_PASUQ_CHAR) {
+			output.append(HEBREW_SOF_PASUQ_HTML);
 		}
+		// remove Hebrew vowels because i) they confuse bidi and ii) they are
+		// not positioned correctly under/over the appropriate letter
+		// http://groups.google.com/group/android-contrib/browse_thread/thread/5b6b079f9ec7792a?pli=1
+		return 1;
 	}
 	
 	/** vowels rtl problem fixed in recent cyanogenmod and 4.0.3 */
-	private boolean isVowelsBugFixed() {
+	private static boolean isVowelsBugFixed() {
 		return Build.VERSION.SDK_INT >= 15 || //Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1;
 			   (Build.VERSION.SDK_INT >= 10 &&System.getProperty("os.version").contains("cyanogenmod")); // 10 is GINGERBREAD_MR1 (2.3.3) 	
 	}
 
-	private String doHebrewCharacterAdjustments(String s) {
-		// remove Hebrew vowels because i) they confuse bidi and ii) they are
-		// not positioned correctly under/over the appropriate letter
-		// http://groups.google.com/group/android-contrib/browse_thread/thread/5b6b079f9ec7792a?pli=1
-		s = CommonUtils.remove(s, HEBREW_VOWELS_AND_CANTILLATIONS);
-
-		// even without vowel points the : at the end of each verse confuses
-		// Android's bidi but specifying the char as rtl helps
-		s = s.replace(HEBREW_SOF_PASUQ_CHAR, "<span dir='rtl'>"
-				+ HEBREW_SOF_PASUQ_CHAR + "</span> ");
-		return s;
-	}
 
 }
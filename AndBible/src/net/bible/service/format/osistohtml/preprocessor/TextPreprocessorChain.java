@@ -0,0 +1,129 @@
+package net.bible.service.format.osistohtml.preprocessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Apply several preprocessors to text in a single scan.
+ * Each character is checked against the trigger characters of all stages at once and only the stages interested in that
+ * character are called, so the text is only copied if a trigger character is found.
+ * Stages are called in the order they were added when several share a trigger character.
+ * Not thread safe because the same StringBuilder is used for every conversion.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class TextPreprocessorChain implements TextPreprocessor {
+
+	private final List<TextPreprocessorStage> stages = new ArrayList<TextPreprocessorStage>();
+
+	// stages interested in each trigger character indexed by character-minTriggerChar, created when first required
+	private TextPreprocessorStage[][] stagesByTrigger;
+	private char minTriggerChar;
+
+	private final StringBuilder output = new StringBuilder();
+
+	public TextPreprocessorChain add(TextPreprocessorStage stage) {
+		stages.add(stage);
+		stagesByTrigger = null;
+		return this;
+	}
+
+	/** replace all stages, but keep the trigger lookup if the stages have not changed
+	 */
+	public void setStages(List<TextPreprocessorStage> newStages) {
+		if (!stages.equals(newStages)) {
+			stages.clear();
+			stages.addAll(newStages);
+			stagesByTrigger = null;
+		}
+	}
+
+	public boolean isEmpty() {
+		return stages.isEmpty();
+	}
+
+	@Override
+	public String process(String text) {
+		if (stages.isEmpty()) {
+			return text;
+		}
+		if (stagesByTrigger==null) {
+			createTriggerLookup();
+		}
+
+		int triggerPosition = findNextTrigger(text, 0);
+		if (triggerPosition==-1) {
+			return text;
+		}
+
+		output.setLength(0);
+		int copiedTo = 0;
+		while (triggerPosition!=-1) {
+			// copy unchanged text up to the trigger
+			output.append(text, copiedTo, triggerPosition);
+			copiedTo = triggerPosition;
+
+			int replacedLength = 0;
+			for (TextPreprocessorStage stage : stagesByTrigger[text.charAt(triggerPosition)-minTriggerChar]) {
+				replacedLength = stage.process(text, triggerPosition, output);
+				if (replacedLength>0) {
+					break;
+				}
+			}
+
+			if (replacedLength>0) {
+				copiedTo += replacedLength;
+				triggerPosition = findNextTrigger(text, copiedTo);
+			} else {
+				triggerPosition = findNextTrigger(text, triggerPosition+1);
+			}
+		}
+		output.append(text, copiedTo, text.length());
+		return output.toString();
+	}
+
+	private int findNextTrigger(String text, int from) {
+		int length = text.length();
+		for (int i=from; i<length; i++) {
+			int index = text.charAt(i)-minTriggerChar;
+			if (index>=0 && index<stagesByTrigger.length && stagesByTrigger[index]!=null) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void createTriggerLookup() {
+		char min = Character.MAX_VALUE;
+		char max = Character.MIN_VALUE;
+		for (TextPreprocessorStage stage : stages) {
+			for (char trigger : stage.getTriggerCharacters()) {
+				min = (char)Math.min(min, trigger);
+				max = (char)Math.max(max, trigger);
+			}
+		}
+		if (min>max) {
+			minTriggerChar = 0;
+			stagesByTrigger = new TextPreprocessorStage[0][];
+			return;
+		}
+
+		TextPreprocessorStage[][] lookup = new TextPreprocessorStage[max-min+1][];
+		for (TextPreprocessorStage stage : stages) {
+			for (char trigger : stage.getTriggerCharacters()) {
+				TextPreprocessorStage[] existing = lookup[trigger-min];
+				if (existing==null) {
+					lookup[trigger-min] = new TextPreprocessorStage[] {stage};
+				} else if (existing[existing.length-1]!=stage) {
+					TextPreprocessorStage[] extended = new TextPreprocessorStage[existing.length+1];
+					System.arraycopy(existing, 0, extended, 0, existing.length);
+					extended[existing.length] = stage;
+					lookup[trigger-min] = extended;
+				}
+			}
+		}
+		minTriggerChar = min;
+		stagesByTrigger = lookup;
+	}
+}
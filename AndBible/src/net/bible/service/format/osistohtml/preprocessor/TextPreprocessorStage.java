@@ -0,0 +1,39 @@
+package net.bible.service.format.osistohtml.preprocessor;
+
+/** One step in a {@link TextPreprocessorChain}.
+ * A stage is only called at characters it declares as triggers so text without any trigger characters is never copied.
+ * Stages may be shared by several chains at once so must not keep any state between calls.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public abstract class TextPreprocessorStage implements TextPreprocessor {
+
+	/** characters which can start text changed by this stage
+	 */
+	public abstract char[] getTriggerCharacters();
+
+	/** convert text starting at a trigger character
+	 *
+	 * @param text the whole of the current text
+	 * @param position position of a trigger character in text
+	 * @param output where replacement text is appended
+	 * @return number of characters of text replaced, or 0 without appending anything if this stage does not change the text at this position
+	 */
+	public abstract int process(String text, int position, StringBuilder output);
+
+	/** identifies the conversion done by this stage so that html produced with different stages is cached separately.
+	 * Stages whose output depends on their configuration must include that configuration.
+	 */
+	public String getFingerprint() {
+		return getClass().getName();
+	}
+
+	/** convert text using only this stage
+	 */
+	@Override
+	public String process(String text) {
+		return new TextPreprocessorChain().add(this).process(text);
+	}
+}
@@ -1,9 +1,6 @@
 package net.bible.service.format.osistohtml.strongs;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import net.bible.service.format.osistohtml.preprocessor.TextPreprocessor;
+import net.bible.service.format.osistohtml.preprocessor.TextPreprocessorStage;
 
 /** Used with StrongsGreek and StrongsHebrew to find text like 'see HEBREW for 0433' and 'see GREEK for 1223' and converts to links
  * 
@@ -11,30 +8,59 @@ import net.bible.service.format.osistohtml.preprocessor.TextPreprocessor;
  * @see gnu.lgpl.License for license details.<br>
  *      The copyright to this program is held by it's author.
  */
-public class StrongsLinkCreator implements TextPreprocessor {
+public class StrongsLinkCreator extends TextPreprocessorStage {
 	
-	static Pattern patt = Pattern.compile( "see (HEBREW|GREEK) for (\\d{1,5})"); //".*see ([HEBREW|GREEK]) for (\\d{1,5}).*");
-
-	public String process(String text) {
-		StringBuffer result=new StringBuffer();
-		Matcher m = patt.matcher(text);
-		
-		while (m.find()) {
-			String lang = m.group(1);
-			String refNo = m.group(2);
-			
-			// select Hebrew or Greek protocol
-			String protocol = StrongsUtil.getStrongsProtocol(lang);
-
-			// append the actual link to the Strongs ref
-			String refLink = StrongsUtil.createStrongsLink(protocol, refNo, m.group(), "");
-			m.appendReplacement(result, refLink);
+	// matches "see (HEBREW|GREEK) for (\d{1,5})" without a regular expression
+	private static final String SEE = "see ";
+	private static final String[] LANGUAGES = {"HEBREW", "GREEK"};
+	private static final String FOR = " for ";
+	private static final int MAX_DIGITS = 5;
+
+	private static final char[] TRIGGER_CHARACTERS = {'s'};
+
+	@Override
+	public char[] getTriggerCharacters() {
+		return TRIGGER_CHARACTERS;
+	}
+
+	@Override
+	public int process(String text, int position, StringBuilder output) {
+		if (!text.startsWith(SEE, position)) {
+			return 0;
+		}
+		int end = position+SEE.length();
+
+		String lang = null;
+		for (String language : LANGUAGES) {
+			if (text.startsWith(language, end)) {
+				lang = language;
+				break;
+			}
 		}
-		
-		// append any trailing space after the last match, or if no match then the whole string
-		m.appendTail(result);
+		if (lang==null || !text.startsWith(FOR, end+lang.length())) {
+			return 0;
+		}
+		end += lang.length()+FOR.length();
+
+		int refNoStart = end;
+		while (end<text.length() && end-refNoStart<MAX_DIGITS && isDigit(text.charAt(end))) {
+			end++;
+		}
+		if (end==refNoStart) {
+			return 0;
+		}
+		String refNo = text.substring(refNoStart, end);
+
+		// select Hebrew or Greek protocol
+		String protocol = StrongsUtil.getStrongsProtocol(lang);
+
+		// append the actual link to the Strongs ref
+		output.append(StrongsUtil.createStrongsLink(protocol, refNo, text.substring(position, end), ""));
+		return end-position;
+	}
 
-		return result.toString();
+	private boolean isDigit(char ch) {
+		return ch>='0' && ch<='9';
 	}
 	
 
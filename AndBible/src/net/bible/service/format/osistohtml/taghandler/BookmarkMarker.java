@@ -37,6 +37,14 @@ public class BookmarkMarker implements OsisTagHandler {
 		this.verseInfo = verseInfo;
 		this.writer = writer;
 		
+		reset();
+	}
+	
+	/** parameters may have changed because the handler is being reused for another document
+	 */
+	public void reset() {
+		bookmarkOpenTagWritten = false;
+
 		// create hashset of verses to optimise verse note lookup
 		bookmarkedVerses.clear();
 		if (parameters.getVersesWithBookmarks()!=null) {
@@ -29,20 +29,19 @@ public class LHandler implements OsisTagHandler {
 
 	private HtmlTextWriter writer;
 	
-	@SuppressWarnings("unused")
 	private OsisToHtmlParameters parameters;
 	
 	private Stack<LType> stack = new Stack<LType>();
 	
-	private static String indent_html = HTML.NBSP+HTML.NBSP;
+	// parameters may be changed when a pooled handler is reused so the indent is recalculated if the depth changes
+	private String indent_html;
+	private int indentDepth = -1;
 	
 	private static final Logger log = new Logger("LHandler");
 
 	public LHandler(OsisToHtmlParameters parameters, HtmlTextWriter writer) {
 		this.parameters = parameters;
 		this.writer = writer;
-		int indentCharCount = parameters.getIndentDepth();
-		indent_html = StringUtils.repeat(HTML.NBSP, indentCharCount);
 	}
 	
 	
@@ -65,6 +64,7 @@ public class LHandler implements OsisTagHandler {
 		// make numIndents default to zero
 		int numIndents = Math.max(0, level-1);
 		
+		String indent_html = getIndentHtml();
 		LType ltype = LType.IGNORE;
 		if (TagHandlerHelper.isAttr(OSISUtil.OSIS_ATTR_EID, attrs)) {
 			// e.g. Isaiah 40:12
@@ -94,6 +94,14 @@ public class LHandler implements OsisTagHandler {
 		stack.push(ltype);
 	}
 
+	private String getIndentHtml() {
+		if (indentDepth!=parameters.getIndentDepth()) {
+			indentDepth = parameters.getIndentDepth();
+			indent_html = StringUtils.repeat(HTML.NBSP, indentDepth);
+		}
+		return indent_html;
+	}
+
 	/* (non-Javadoc)
 	 * @see net.bible.service.format.osistohtml.Handler#end()
 	 */
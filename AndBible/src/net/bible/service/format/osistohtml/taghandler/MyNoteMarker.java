@@ -37,6 +37,12 @@ public class MyNoteMarker implements OsisTagHandler {
 		this.verseInfo = verseInfo;
 		this.writer = writer;
 		
+		reset();
+	}
+	
+	/** parameters may have changed because the handler is being reused for another document
+	 */
+	public void reset() {
 		// create hashmap of verses to optimise verse note lookup
 		myNoteVerses.clear();
 		if (parameters.getVersesWithNotes()!=null) {
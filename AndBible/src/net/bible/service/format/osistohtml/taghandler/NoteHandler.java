@@ -140,6 +140,15 @@ public class NoteHandler implements OsisTagHandler {
 		return isInNote;
 	}
 
+	/** start a new list of notes for another document, the previous list is left unchanged for any caller still using it
+	 */
+	public void reset() {
+		noteCount = 0;
+		notesList = new ArrayList<Note>();
+		isInNote = false;
+		currentNoteRef = null;
+	}
+
 	public List<Note> getNotesList() {
 		return notesList;
 	}
@@ -83,7 +83,7 @@ public class TitleHandler implements OsisTagHandler {
 			writer.write("</h1>");
 			if (isMoveBeforeVerse) {
 				// move positionToInsertBeforeVerse forward to after this title otherwise any subtitle will be above the title
-				verseInfo.positionToInsertBeforeVerse = writer.getPosition();
+				verseInfo.positionToInsertBeforeVerse = writer.getInsertionPoint();
 				writer.finishInserting();
 			}
 		} else {
@@ -88,7 +88,7 @@ public class VerseHandler implements OsisTagHandler {
 	}
 
 	private void writeVerse(int verseNo) {
-		verseInfo.positionToInsertBeforeVerse = writer.getPosition();
+		verseInfo.positionToInsertBeforeVerse = writer.getInsertionPoint();
 		
 		// The id is used to 'jump to' the verse using javascript so always need the verse tag with an id
 		// Do not show verse 0
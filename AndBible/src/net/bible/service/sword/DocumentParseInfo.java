@@ -0,0 +1,133 @@
+package net.bible.service.sword;
+
+import java.util.BitSet;
+
+/** What is known about whether the chapters of one version of a document can be parsed by the fast SAX parser.
+ * Chapters are identified by the ordinal of verse 0 of the chapter in the document's versification.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+class DocumentParseInfo {
+
+	private final String version;
+
+	private final BitSet failedChapters = new BitSet();
+	private final BitSet okChapters = new BitSet();
+
+	// set when every chapter has been checked so chapters not recorded can be assumed to be okay
+	private boolean isValidated;
+
+	// a failure in the middle of a book normally means the whole document is misformed
+	private boolean isMiddleChapterFailure;
+	// many documents only have extra tags in the first or last chapters of books
+	private boolean isStartOrEndChapterFailure;
+
+	static final int NO_CHAPTER = -1;
+
+	DocumentParseInfo(String version) {
+		this.version = version;
+	}
+
+	/** @return true or false if the chapter has been parsed before, otherwise null
+	 */
+	Boolean isChapterOkay(int chapter) {
+		if (chapter!=NO_CHAPTER) {
+			if (failedChapters.get(chapter)) {
+				return Boolean.FALSE;
+			} else if (okChapters.get(chapter)) {
+				return Boolean.TRUE;
+			}
+		}
+		return null;
+	}
+
+	void setChapterFailed(int chapter, boolean isStartOrEndOfBook) {
+		if (chapter!=NO_CHAPTER) {
+			failedChapters.set(chapter);
+			okChapters.clear(chapter);
+		}
+		if (isStartOrEndOfBook) {
+			isStartOrEndChapterFailure = true;
+		} else {
+			isMiddleChapterFailure = true;
+		}
+	}
+
+	void setChapterOkay(int chapter) {
+		if (chapter!=NO_CHAPTER && !okChapters.get(chapter)) {
+			okChapters.set(chapter);
+			failedChapters.clear(chapter);
+		}
+	}
+
+	String getVersion() {
+		return version;
+	}
+
+	int[] getFailedChapters() {
+		return toArray(failedChapters);
+	}
+
+	int[] getOkChapters() {
+		return toArray(okChapters);
+	}
+
+	void setFailedChapters(int[] chapters) {
+		for (int chapter : chapters) {
+			failedChapters.set(chapter);
+		}
+	}
+
+	void setOkChapters(int[] chapters) {
+		for (int chapter : chapters) {
+			okChapters.set(chapter);
+		}
+	}
+
+	void setFailedChapters(BitSet chapters) {
+		failedChapters.or(chapters);
+	}
+
+	void setOkChapters(BitSet chapters) {
+		okChapters.or(chapters);
+	}
+
+	int getFailedChapterCount() {
+		return failedChapters.cardinality();
+	}
+
+	boolean isValidated() {
+		return isValidated;
+	}
+
+	void setValidated(boolean isValidated) {
+		this.isValidated = isValidated;
+	}
+
+	boolean isMiddleChapterFailure() {
+		return isMiddleChapterFailure;
+	}
+
+	void setMiddleChapterFailure(boolean isMiddleChapterFailure) {
+		this.isMiddleChapterFailure = isMiddleChapterFailure;
+	}
+
+	boolean isStartOrEndChapterFailure() {
+		return isStartOrEndChapterFailure;
+	}
+
+	void setStartOrEndChapterFailure(boolean isStartOrEndChapterFailure) {
+		this.isStartOrEndChapterFailure = isStartOrEndChapterFailure;
+	}
+
+	private int[] toArray(BitSet bitSet) {
+		int[] values = new int[bitSet.cardinality()];
+		int i = 0;
+		for (int bit=bitSet.nextSetBit(0); bit>=0; bit=bitSet.nextSetBit(bit+1)) {
+			values[i++] = bit;
+		}
+		return values;
+	}
+}
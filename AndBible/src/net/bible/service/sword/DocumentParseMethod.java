@@ -1,19 +1,25 @@
 package net.bible.service.sword;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
+import net.bible.service.common.Logger;
+
 import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookCategory;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.BooksEvent;
+import org.crosswire.jsword.book.BooksListener;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.Verse;
 import org.crosswire.jsword.passage.VerseKey;
 import org.crosswire.jsword.versification.BibleBook;
 
-import android.util.Log;
-
 /** Record which documents have bad xml, normally in first or last chapters and use slightly slower JSword parser with error recovery
- *		we have a fast way of handling OSIS zText docs but the following need the superior JSword error recovery for mismatching tags 
+ *		we have a fast way of handling OSIS zText docs but the following need the superior JSword error recovery for mismatching tags
  *			FreCrampon
  *			AB
  *			FarsiOPV
@@ -21,27 +27,50 @@ import android.util.Log;
  *			UKJV
  *			WEB
  *			HNV
- * 
+ * Success or failure is recorded per chapter and saved for each version of a document so a failure is not repeated after a restart.
+ * Newly installed documents are checked chapter by chapter in the background by {@link FastParseValidator}.
+ *
  * @author Martin Denham [mjdenham at gmail dot com]
  * @see gnu.lgpl.License for license details.<br>
  *      The copyright to this program is held by it's author.
  */
 public class DocumentParseMethod {
-	
-	private enum FailPosition {	NONE, 
-//								FIRST_BIBLE_CHAPTER, LAST_BIBLE_CHAPTER, FIRST_AND_LAST_BIBLE_CHAPTER, 
-//								FIRST_BOOK_CHAPTER,  LAST_BOOK_CHAPTER,  
-								FIRST_AND_LAST_BOOK_CHAPTER, 
+
+	private enum FailPosition {	NONE,
+//								FIRST_BIBLE_CHAPTER, LAST_BIBLE_CHAPTER, FIRST_AND_LAST_BIBLE_CHAPTER,
+//								FIRST_BOOK_CHAPTER,  LAST_BOOK_CHAPTER,
+								FIRST_AND_LAST_BOOK_CHAPTER,
 								ALL}
-	
+
+	// known problems used until a document has been validated
 	private Map<String, FailPosition> failureInfoMap = new HashMap<String, FailPosition>();
-	
+
+	// parse info of each document loaded from disk when first required
+	private Map<String, DocumentParseInfo> parseInfoMap = new HashMap<String, DocumentParseInfo>();
+
+	private DocumentParseMethodDao documentParseMethodDao;
+
+	private FastParseValidator fastParseValidator;
+
+	// how often the fallback parser is required
+	private long fastParseCount;
+	private long fallbackCount;
+	private long fastParseFailureCount;
+
 	private static final String TAG = "DocumentParseMethod";
-	
+
+	private static final Logger log = new Logger(TAG);
+
 	public DocumentParseMethod() {
-		failureInfoMap.put("FreCrampon", FailPosition.FIRST_AND_LAST_BOOK_CHAPTER);		
-		failureInfoMap.put("AB", FailPosition.ALL);	
-		failureInfoMap.put("FarsiOPV", FailPosition.ALL);	
+		this(new DocumentParseMethodDao());
+	}
+
+	DocumentParseMethod(DocumentParseMethodDao documentParseMethodDao) {
+		this.documentParseMethodDao = documentParseMethodDao;
+
+		failureInfoMap.put("FreCrampon", FailPosition.FIRST_AND_LAST_BOOK_CHAPTER);
+		failureInfoMap.put("AB", FailPosition.ALL);
+		failureInfoMap.put("FarsiOPV", FailPosition.ALL);
 		//Afr1953 only has trouble with Gen 1 and Rev 22
 		failureInfoMap.put("Afr1953", FailPosition.FIRST_AND_LAST_BOOK_CHAPTER);
 		failureInfoMap.put("UKJV", FailPosition.FIRST_AND_LAST_BOOK_CHAPTER);
@@ -52,60 +81,195 @@ public class DocumentParseMethod {
 		failureInfoMap.put("BulVeren", FailPosition.FIRST_AND_LAST_BOOK_CHAPTER);
 		failureInfoMap.put("BulCarigradNT", FailPosition.FIRST_AND_LAST_BOOK_CHAPTER);
 	}
-	
+
+	/** validate documents as they are installed and forget about documents that are removed
+	 */
+	public void initialise() {
+		Books.installed().addBooksListener(new BooksListener() {
+			@Override
+			public void bookAdded(BooksEvent ev) {
+				Book document = ev.getBook();
+				forget(document.getInitials());
+				if (isFastParseDocument(document) && BookCategory.BIBLE.equals(document.getBookCategory())) {
+					getFastParseValidator().validate(document);
+				}
+			}
+			@Override
+			public void bookRemoved(BooksEvent ev) {
+				Book document = ev.getBook();
+				getFastParseValidator().cancel(document);
+				forget(document.getInitials());
+				documentParseMethodDao.delete(document.getInitials());
+			}
+		});
+	}
+
+	/** only OSIS zText documents can be read by the fast parser
+	 */
+	public static boolean isFastParseDocument(Book document) {
+		return "OSIS".equals(document.getBookMetaData().getProperty("SourceType")) &&
+				"zText".equals(document.getBookMetaData().getProperty("ModDrv"));
+	}
+
 	/** return true if this book's chapter is believed to have a good xml structure and not require recovery fallback
 	 */
-	public boolean isFastParseOkay(Book document, Key key) {
-		boolean isFastParseOkay = false;
-		FailPosition documentFailPosition = failureInfoMap.get(document.getInitials());
-		if (documentFailPosition==null) {
+	public synchronized boolean isFastParseOkay(Book document, Key key) {
+		DocumentParseInfo parseInfo = getParseInfo(document);
+		Boolean isChapterOkay = parseInfo.isChapterOkay(getChapter(key));
+
+		boolean isFastParseOkay;
+		if (isChapterOkay!=null) {
+			isFastParseOkay = isChapterOkay.booleanValue();
+		} else if (parseInfo.isValidated()) {
+			// every chapter was checked and only failures are certain to be recorded
 			isFastParseOkay = true;
 		} else {
-			
-			switch (documentFailPosition) {
-			case NONE:
-				// should never come here
-				isFastParseOkay = true;
-				break;
-			case ALL:
-				isFastParseOkay = false;
-				break;
-			case FIRST_AND_LAST_BOOK_CHAPTER:
-				isFastParseOkay = !isStartOrEndOfBook(key);
-				break;
-			}
+			isFastParseOkay = isFastParseExpectedToWork(document, key, parseInfo);
+		}
+
+		if (isFastParseOkay) {
+			fastParseCount++;
+		} else {
+			fallbackCount++;
 		}
 		return isFastParseOkay;
 	}
 
+	/** the fast parser was used successfully so record the fact to avoid guessing in future
+	 * it is not worth writing to disk for this alone so it is saved along with the next failure
+	 */
+	public synchronized void parsedOk(Book document, Key key) {
+		getParseInfo(document).setChapterOkay(getChapter(key));
+	}
+
 	/** a document has bad xml structure so record the fact so the default fault tolerant parser isd used in the future
 	 * many books have extra tags in first and/or last chapters hence the graded level of failures
 	 */
-	public void failedToParse(Book document, Key key) {
+	public synchronized void failedToParse(Book document, Key key) {
+		fastParseFailureCount++;
+
+		DocumentParseInfo parseInfo = getParseInfo(document);
+		parseInfo.setChapterFailed(getChapter(key), isStartOrEndOfBook(key));
+		documentParseMethodDao.save(document.getInitials(), parseInfo);
+	}
+
+	/** record the result of checking every chapter of a document
+	 */
+	synchronized void validated(Book document, BitSet failedChapters, BitSet okChapters) {
+		DocumentParseInfo parseInfo = new DocumentParseInfo(getVersion(document));
+		parseInfo.setFailedChapters(failedChapters);
+		parseInfo.setOkChapters(okChapters);
+		parseInfo.setValidated(true);
+		parseInfoMap.put(document.getInitials(), parseInfo);
+		documentParseMethodDao.save(document.getInitials(), parseInfo);
+
+		log.info(document.getInitials()+" validated with "+parseInfo.getFailedChapterCount()+" chapters requiring fallback parser. "+toString());
+	}
+
+	public synchronized long getFastParseCount() {
+		return fastParseCount;
+	}
+
+	/** number of times the fallback parser was used because the fast parser was known or expected to fail
+	 */
+	public synchronized long getFallbackCount() {
+		return fallbackCount;
+	}
+
+	/** number of times the fast parser was tried but failed and the fallback parser was then required
+	 */
+	public synchronized long getFastParseFailureCount() {
+		return fastParseFailureCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "DocumentParseMethod[fast="+fastParseCount+" fallback="+fallbackCount+" fastFailures="+fastParseFailureCount+"]";
+	}
+
+	/** until every chapter has been checked assume that documents with problems in the middle of a book have problems everywhere
+	 */
+	private boolean isFastParseExpectedToWork(Book document, Key key, DocumentParseInfo parseInfo) {
+		if (parseInfo.isMiddleChapterFailure()) {
+			return false;
+		}
+
+		FailPosition documentFailPosition = failureInfoMap.get(document.getInitials());
+		if (documentFailPosition==null) {
+			documentFailPosition = parseInfo.isStartOrEndChapterFailure() ? FailPosition.FIRST_AND_LAST_BOOK_CHAPTER : FailPosition.NONE;
+		}
+
+		boolean isFastParseOkay = false;
+		switch (documentFailPosition) {
+		case NONE:
+			isFastParseOkay = true;
+			break;
+		case ALL:
+			isFastParseOkay = false;
+			break;
+		case FIRST_AND_LAST_BOOK_CHAPTER:
+			isFastParseOkay = !isStartOrEndOfBook(key);
+			break;
+		}
+		return isFastParseOkay;
+	}
+
+	private DocumentParseInfo getParseInfo(Book document) {
 		String initials = document.getInitials();
-		FailPosition documentFailPosition = failureInfoMap.get(initials);
+		DocumentParseInfo parseInfo = parseInfoMap.get(initials);
+		if (parseInfo==null) {
+			String version = getVersion(document);
+			parseInfo = documentParseMethodDao.load(initials, version);
+			if (parseInfo==null) {
+				parseInfo = new DocumentParseInfo(version);
+			}
+			parseInfoMap.put(initials, parseInfo);
+		}
+		return parseInfo;
+	}
 
-		if (isStartOrEndOfBook(key)) {
-			documentFailPosition = FailPosition.FIRST_AND_LAST_BOOK_CHAPTER;
-		} else {
-			documentFailPosition = FailPosition.ALL;
+	private synchronized void forget(String initials) {
+		parseInfoMap.remove(initials);
+	}
+
+	private synchronized FastParseValidator getFastParseValidator() {
+		if (fastParseValidator==null) {
+			fastParseValidator = new FastParseValidator(this);
+		}
+		return fastParseValidator;
+	}
+
+	private String getVersion(Book document) {
+		String version = document.getBookMetaData().getProperty(SwordBookMetaData.KEY_VERSION);
+		return version!=null ? version : "";
+	}
+
+	/** chapters are identified by the ordinal of verse 0 which is unique within a versification
+	 */
+	static int getChapter(Key key) {
+		try {
+			if (key instanceof VerseKey) {
+				Verse verse = KeyUtil.getVerse(key);
+				return new Verse(verse.getVersification(), verse.getBook(), verse.getChapter(), 0).getOrdinal();
+			}
+		} catch (Exception e) {
+			log.error("Verse error", e);
 		}
-		
-		failureInfoMap.put(initials, documentFailPosition);
+		return DocumentParseInfo.NO_CHAPTER;
 	}
-	
+
 	private boolean isStartOrEndOfBook(Key key) {
 		boolean isStartOrEnd = false;
 		try {
 			if (key instanceof VerseKey) {
 				Verse verse = KeyUtil.getVerse(key);
-				
+
 				int chapter = verse.getChapter();
 				BibleBook book = verse.getBook();
 				isStartOrEnd = 	chapter == 1 || chapter == verse.getVersification().getLastChapter(book);
 			}
 		} catch (Exception e) {
-			Log.e(TAG, "Verse error", e);
+			log.error("Verse error", e);
 			isStartOrEnd = false;
 		}
 		return isStartOrEnd;
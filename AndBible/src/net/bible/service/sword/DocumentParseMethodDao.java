@@ -0,0 +1,147 @@
+package net.bible.service.sword;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import net.bible.android.SharedConstants;
+import net.bible.service.common.CommonUtils;
+
+import org.crosswire.common.util.IOUtil;
+
+import android.util.Log;
+
+/**
+ * Persist which chapters of each document can be parsed by the fast parser so misformed documents do not have to fail again after every restart.
+ * Information is only valid for the version of the document it was recorded for.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class DocumentParseMethodDao {
+
+	private File parseInfoDir;
+
+	private static final String PARSE_INFO_DIR_NAME = "parsemethod";
+	private static final String DOT_PARSE = ".parse";
+
+	// increment if the file layout or the way chapters are numbered changes
+	private static final int PARSE_INFO_FORMAT = 1;
+
+	private static final int VALIDATED_FLAG = 1;
+	private static final int MIDDLE_CHAPTER_FAILURE_FLAG = 2;
+	private static final int START_OR_END_CHAPTER_FAILURE_FLAG = 4;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String TAG = "DocumentParseMethodDao";
+
+	public DocumentParseMethodDao() {
+		this(new File(SharedConstants.FRONTEND_DATA_DIR, PARSE_INFO_DIR_NAME));
+	}
+
+	DocumentParseMethodDao(File parseInfoDir) {
+		this.parseInfoDir = parseInfoDir;
+	}
+
+	/**
+	 * @return previously saved information for this version of the document or null if not available
+	 */
+	DocumentParseInfo load(String initials, String version) {
+		File parseInfoFile = getParseInfoFile(initials);
+		if (!parseInfoFile.exists()) {
+			return null;
+		}
+
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(parseInfoFile);
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer)==-1) {
+					throw new IOException("Unexpected end of parse info");
+				}
+			}
+			buffer.flip();
+
+			if (buffer.getInt()!=PARSE_INFO_FORMAT ||
+				!version.equals(getString(buffer))) {
+				Log.d(TAG, "Stale parse info for "+initials);
+				return null;
+			}
+
+			DocumentParseInfo parseInfo = new DocumentParseInfo(version);
+			int flags = buffer.getInt();
+			parseInfo.setValidated((flags & VALIDATED_FLAG)!=0);
+			parseInfo.setMiddleChapterFailure((flags & MIDDLE_CHAPTER_FAILURE_FLAG)!=0);
+			parseInfo.setStartOrEndChapterFailure((flags & START_OR_END_CHAPTER_FAILURE_FLAG)!=0);
+			parseInfo.setFailedChapters(getInts(buffer));
+			parseInfo.setOkChapters(getInts(buffer));
+			return parseInfo;
+		} catch (Exception e) {
+			Log.e(TAG, "Error loading parse info for "+initials, e);
+			return null;
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	void save(String initials, DocumentParseInfo parseInfo) {
+		byte[] version = parseInfo.getVersion().getBytes(UTF_8);
+		int[] failedChapters = parseInfo.getFailedChapters();
+		int[] okChapters = parseInfo.getOkChapters();
+		int flags = (parseInfo.isValidated() ? VALIDATED_FLAG : 0) |
+					(parseInfo.isMiddleChapterFailure() ? MIDDLE_CHAPTER_FAILURE_FLAG : 0) |
+					(parseInfo.isStartOrEndChapterFailure() ? START_OR_END_CHAPTER_FAILURE_FLAG : 0);
+
+		ByteBuffer buffer = ByteBuffer.allocate(4*5+version.length+4*(failedChapters.length+okChapters.length));
+		buffer.putInt(PARSE_INFO_FORMAT);
+		buffer.putInt(version.length);
+		buffer.put(version);
+		buffer.putInt(flags);
+		putInts(buffer, failedChapters);
+		putInts(buffer, okChapters);
+		buffer.flip();
+
+		try {
+			CommonUtils.writeAtomically(getParseInfoFile(initials), buffer);
+		} catch (Exception e) {
+			Log.e(TAG, "Error saving parse info for "+initials, e);
+		}
+	}
+
+	void delete(String initials) {
+		File parseInfoFile = getParseInfoFile(initials);
+		if (parseInfoFile.exists()) {
+			parseInfoFile.delete();
+		}
+	}
+
+	private File getParseInfoFile(String initials) {
+		return new File(parseInfoDir, initials+DOT_PARSE);
+	}
+
+	private String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private int[] getInts(ByteBuffer buffer) {
+		int[] ints = new int[buffer.getInt()];
+		buffer.asIntBuffer().get(ints);
+		buffer.position(buffer.position()+ints.length*4);
+		return ints;
+	}
+
+	private void putInts(ByteBuffer buffer, int[] ints) {
+		buffer.putInt(ints.length);
+		buffer.asIntBuffer().put(ints);
+		buffer.position(buffer.position()+ints.length*4);
+	}
+}
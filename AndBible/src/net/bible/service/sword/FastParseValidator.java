@@ -0,0 +1,130 @@
+package net.bible.service.sword;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import net.bible.service.format.OSISReader;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import android.util.Log;
+
+/**
+ * Check every chapter of a newly installed OSIS zText document with the fast parser so it is known in advance which chapters need the fallback parser.
+ * Checking a whole Bible takes a while so it is done on a low priority thread and abandoned if the document is removed.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class FastParseValidator {
+
+	private final DocumentParseMethod documentParseMethod;
+
+	private final ExecutorService executor;
+
+	// initials of documents removed while waiting to be, or being, validated
+	private final Set<String> cancelled = Collections.synchronizedSet(new HashSet<String>());
+
+	private static final String TAG = "FastParseValidator";
+
+	public FastParseValidator(DocumentParseMethod documentParseMethod) {
+		this.documentParseMethod = documentParseMethod;
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, TAG);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/** check each chapter of the document in the background and record the results in DocumentParseMethod
+	 */
+	public void validate(final Book document) {
+		cancelled.remove(document.getInitials());
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					validateNow(document);
+				} catch (Exception e) {
+					Log.e(TAG, "Error validating "+document.getInitials(), e);
+				}
+			}
+		});
+	}
+
+	/** stop validating the document if it has not been finished yet
+	 */
+	public void cancel(Book document) {
+		cancelled.add(document.getInitials());
+	}
+
+	private void validateNow(Book document) throws Exception {
+		String initials = document.getInitials();
+		if (!(document instanceof AbstractPassageBook) || isCancelled(document)) {
+			return;
+		}
+		Log.d(TAG, "Start validating "+initials);
+		long start = System.currentTimeMillis();
+
+		Versification v11n = ((AbstractPassageBook)document).getVersification();
+		BitSet failedChapters = new BitSet();
+		BitSet okChapters = new BitSet();
+		SAXParser parser = createSAXParser();
+		// only well formed xml matters so nothing needs to be done with the content
+		DefaultHandler handler = new DefaultHandler();
+
+		for (BibleBook book : ((AbstractPassageBook)document).getBibleBooks()) {
+			if (isCancelled(document)) {
+				Log.d(TAG, "Validation cancelled for "+initials);
+				return;
+			}
+			int lastChapter = v11n.getLastChapter(book);
+			for (int chapter=1; chapter<=lastChapter; chapter++) {
+				Verse chapterStart = new Verse(v11n, book, chapter, 0);
+				VerseRange wholeChapter = new VerseRange(v11n, chapterStart, new Verse(v11n, book, chapter, v11n.getLastVerse(book, chapter)));
+				try {
+					parser.parse(new InputSource(new OSISReader(document, wholeChapter)), handler);
+					okChapters.set(chapterStart.getOrdinal());
+				} catch (Exception e) {
+					failedChapters.set(chapterStart.getOrdinal());
+					// a parser may be left in an unusable state after an error
+					parser = createSAXParser();
+				}
+			}
+		}
+
+		documentParseMethod.validated(document, failedChapters, okChapters);
+		Log.d(TAG, "Finished validating "+initials+" in "+(System.currentTimeMillis()-start)+"ms");
+	}
+
+	private boolean isCancelled(Book document) {
+		return cancelled.contains(document.getInitials()) || Books.installed().getBook(document.getInitials())==null;
+	}
+
+	private SAXParser createSAXParser() throws Exception {
+		SAXParserFactory spf = SAXParserFactory.newInstance();
+		spf.setValidating(false);
+		return spf.newSAXParser();
+	}
+}
@@ -0,0 +1,65 @@
+package net.bible.service.sword;
+
+import android.content.SharedPreferences;
+
+/**
+ * Snapshot of the preferences which affect how a document is converted to html.
+ * The snapshot is kept until a preference changes to avoid reading every preference for every page.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+class RenderPreferences {
+
+	private final boolean showNotes;
+	private final boolean redLetter;
+	private final boolean showVerseNumbers;
+	private final boolean versePerLine;
+	private final boolean showMyNotes;
+	private final boolean showBookmarks;
+	private final boolean showTitles;
+	private final boolean showStrongs;
+	private final boolean showMorphology;
+
+	RenderPreferences(SharedPreferences preferences) {
+		showNotes = preferences.getBoolean("show_notes_pref", true);
+		redLetter = preferences.getBoolean("red_letter_pref", false);
+		showVerseNumbers = preferences.getBoolean("show_verseno_pref", true);
+		versePerLine = preferences.getBoolean("verse_per_line_pref", false);
+		showMyNotes = preferences.getBoolean("show_mynotes_pref", true);
+		showBookmarks = preferences.getBoolean("show_bookmarks_pref", true);
+		showTitles = preferences.getBoolean("section_title_pref", true);
+		// showMorphology depends on showStrongs to allow the toolbar toggle button to affect both strongs and morphology
+		showStrongs = preferences.getBoolean("show_strongs_pref", true);
+		showMorphology = showStrongs && preferences.getBoolean("show_morphology_pref", false);
+	}
+
+	public boolean isShowNotes() {
+		return showNotes;
+	}
+	public boolean isRedLetter() {
+		return redLetter;
+	}
+	public boolean isShowVerseNumbers() {
+		return showVerseNumbers;
+	}
+	public boolean isVersePerLine() {
+		return versePerLine;
+	}
+	public boolean isShowMyNotes() {
+		return showMyNotes;
+	}
+	public boolean isShowBookmarks() {
+		return showBookmarks;
+	}
+	public boolean isShowTitles() {
+		return showTitles;
+	}
+	public boolean isShowStrongs() {
+		return showStrongs;
+	}
+	public boolean isShowMorphology() {
+		return showMorphology;
+	}
+}
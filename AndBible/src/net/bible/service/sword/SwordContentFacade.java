@@ -1,11 +1,15 @@
 package net.bible.service.sword;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -19,14 +23,20 @@ import net.bible.service.common.Constants;
 import net.bible.service.common.Logger;
 import net.bible.service.common.ParseException;
 import net.bible.service.css.CssControl;
+import net.bible.service.device.ScreenSettings;
 import net.bible.service.font.FontControl;
 import net.bible.service.format.HtmlMessageFormatter;
 import net.bible.service.format.Note;
-import net.bible.service.format.OSISInputStream;
+import net.bible.service.format.OSISReader;
+import net.bible.service.format.osistohtml.HtmlChunkListener;
 import net.bible.service.format.osistohtml.OsisToHtmlParameters;
 import net.bible.service.format.osistohtml.osishandlers.OsisToCanonicalTextSaxHandler;
 import net.bible.service.format.osistohtml.osishandlers.OsisToHtmlSaxHandler;
+import net.bible.service.format.osistohtml.osishandlers.OsisToHtmlSaxHandlerPool;
 import net.bible.service.format.osistohtml.osishandlers.OsisToSpeakTextSaxHandler;
+import net.bible.service.sword.cache.HtmlCacheKey;
+import net.bible.service.sword.cache.RenderedHtmlCache;
+import net.bible.service.sword.cache.SearchResultCache;
 
 import org.crosswire.common.xml.SAXEventProvider;
 import org.crosswire.jsword.book.Book;
@@ -35,14 +45,21 @@ import org.crosswire.jsword.book.BookData;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.BooksEvent;
+import org.crosswire.jsword.book.BooksListener;
 import org.crosswire.jsword.book.FeatureType;
 import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.NoSuchKeyException;
 import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.Verse;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 
 import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.util.Log;
 
 /** JSword facade
@@ -56,6 +73,39 @@ public class SwordContentFacade {
 	private DocumentParseMethod documentParseMethod = new DocumentParseMethod();
 	
 	private CssControl cssControl = new CssControl();
+
+	private volatile RenderedHtmlCache htmlCache;
+
+	private volatile SearchResultCache searchResultCache;
+	
+	// creating a handler also creates all the tag handlers so reuse them
+	private OsisToHtmlSaxHandlerPool osisToHtmlSaxHandlerPool = new OsisToHtmlSaxHandlerPool();
+	
+	// SAX parsers are not thread safe but pages may be rendered concurrently e.g. 2 windows and prefetching
+	private static final ThreadLocal<SAXParser> saxParser = new ThreadLocal<SAXParser>();
+	
+	// reread when any preference changes
+	private RenderPreferences renderPreferences;
+	private boolean isListeningForPreferenceChanges = false;
+	
+	// SharedPreferences only keeps a weak reference to listeners
+	private OnSharedPreferenceChangeListener preferenceChangeListener = new OnSharedPreferenceChangeListener() {
+		@Override
+		public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+			synchronized (SwordContentFacade.this) {
+				renderPreferences = null;
+			}
+		}
+	};
+	
+	private static final int HTML_CACHE_FRACTION_OF_HEAP = 32;
+	private static final long MAX_HTML_DISK_CACHE_BYTES = 4*1024*1024;
+	private static final String HTML_CACHE_DIR_NAME = "html";
+	private static final int SEARCH_CACHE_FRACTION_OF_HEAP = 128;
+	private static final long MAX_SEARCH_DISK_CACHE_BYTES = 1024*1024;
+	private static final String SEARCH_CACHE_DIR_NAME = "search";
+	// pages passed on in pieces are only reassembled for the cache if they are not too large
+	private static final int MAX_CACHEABLE_CHUNKED_HTML_LENGTH = 256*1024;
 	
 	private static final String TAG = "SwordContentFacade";
 	private static SwordContentFacade singleton;
@@ -93,6 +143,16 @@ public class SwordContentFacade {
 	 * @throws ParserConfigurationException
 	 */
 	public String readHtmlText(Book book, Key key) throws ParseException
+	{
+		return readHtmlText(book, key, null);
+	}
+
+	/** fetch html passing long pages to the listener in pieces as they are generated so the start of the page can be shown quickly
+	 * 
+	 * @param chunkListener optional listener for pieces of long pages
+	 * @return the whole page if nothing was passed to the listener, otherwise the end of the page not yet passed on
+	 */
+	public String readHtmlText(Book book, Key key, HtmlChunkListener chunkListener) throws ParseException
 	{
 		String retVal = "";
 		if (book==null || key==null) {
@@ -107,29 +167,135 @@ public class SwordContentFacade {
 			String htmlMsg = HtmlMessageFormatter.format(R.string.error_key_not_in_document);
 			retVal = htmlMsg;
 		} else {
+			OsisToHtmlParameters osisToHtmlParameters = getOsisToHtmlParameters(book, key);
+
+			// reuse html if exactly the same page has been shown recently
+			HtmlCacheKey htmlCacheKey = new HtmlCacheKey(book.getInitials(), getBookVersion(book), key, osisToHtmlParameters.getFingerprint(), isAndroid && ScreenSettings.isNightMode());
+			String cachedHtml = getHtmlCache().get(htmlCacheKey);
+			if (cachedHtml!=null) {
+				log.debug("Using cached html "+getHtmlCache());
+				return cachedHtml;
+			}
+
+			ReassemblingChunkListener reassemblingChunkListener = chunkListener!=null ? new ReassemblingChunkListener(chunkListener) : null;
 
 			// we have a fast way of handling OSIS zText docs but some docs need the superior JSword error recovery for mismatching tags 
 			// try to parse using optimised method first if a suitable document and it has not failed previously
 			boolean isParsedOk = false;
-			if ("OSIS".equals(book.getBookMetaData().getProperty("SourceType")) &&
-				"zText".equals(book.getBookMetaData().getProperty("ModDrv")) &&
-				documentParseMethod.isFastParseOkay(book, key)) {
+			if (isFastParseSuitable(book, key)) {
 				try {
-					retVal = readHtmlTextOptimizedZTextOsis(book, key);
+					retVal = readHtmlTextOptimizedZTextOsis(book, key, osisToHtmlParameters, reassemblingChunkListener);
 					isParsedOk = true;
+					documentParseMethod.parsedOk(book, key);
 				} catch (ParseException pe) {
 					documentParseMethod.failedToParse(book, key);
 				}
 			} 
 			
 			// fall back to slightly slower JSword method with JSword's fallback approach of removing all tags
+			// any part of the page already passed on is replaced when the page is started again
 			if (!isParsedOk) {
-				retVal = readHtmlTextStandardJSwordMethod(book, key);
+				if (reassemblingChunkListener!=null) {
+					reassemblingChunkListener.restartPage();
+				}
+				retVal = readHtmlTextStandardJSwordMethod(book, key, osisToHtmlParameters, reassemblingChunkListener);
+			}
+			if (reassemblingChunkListener!=null) {
+				retVal = reassemblingChunkListener.finishPage(retVal);
+			}
+
+			if (reassemblingChunkListener==null || !reassemblingChunkListener.isPageStarted()) {
+				getHtmlCache().put(htmlCacheKey, retVal);
+			} else {
+				String wholePage = reassemblingChunkListener.getWholePage(retVal);
+				if (wholePage!=null) {
+					getHtmlCache().put(htmlCacheKey, wholePage);
+				}
 			}
 		}
 		return retVal;
 	}
 
+	/** Bookmarks or notes in this verse have changed so any cached html containing the verse is out of date
+	 */
+	public void invalidateHtmlCache(Verse verse) {
+		if (verse!=null) {
+			getHtmlCache().invalidate(verse);
+		}
+	}
+
+	/** Records which documents need the fallback parser and how often it is used
+	 */
+	public DocumentParseMethod getDocumentParseMethod() {
+		return documentParseMethod;
+	}
+
+	/** Cache of recently rendered pages which also exposes hit/miss/eviction counts
+	 */
+	public RenderedHtmlCache getHtmlCache() {
+		if (htmlCache==null) {
+			synchronized(this) {
+				if (htmlCache==null) {
+					htmlCache = createHtmlCache();
+				}
+			}
+		}
+		return htmlCache;
+	}
+
+	private RenderedHtmlCache createHtmlCache() {
+		final RenderedHtmlCache cache = new RenderedHtmlCache((int)Math.min(Runtime.getRuntime().maxMemory()/HTML_CACHE_FRACTION_OF_HEAP, Integer.MAX_VALUE));
+		if (isAndroid) {
+			cache.enableDiskCache(new File(BibleApplication.getApplication().getCacheDir(), HTML_CACHE_DIR_NAME), MAX_HTML_DISK_CACHE_BYTES, CommonUtils.getApplicationVersionName());
+		}
+
+		// a reinstalled book may have different content
+		Books.installed().addBooksListener(new BooksListener() {
+			@Override
+			public void bookAdded(BooksEvent ev) {
+				cache.invalidate(ev.getBook().getInitials());
+			}
+			@Override
+			public void bookRemoved(BooksEvent ev) {
+				cache.invalidate(ev.getBook().getInitials());
+			}
+		});
+		return cache;
+	}
+
+	/** Cache of recent search results which also exposes hit/miss/eviction counts
+	 */
+	public SearchResultCache getSearchResultCache() {
+		if (searchResultCache==null) {
+			synchronized(this) {
+				if (searchResultCache==null) {
+					searchResultCache = createSearchResultCache();
+				}
+			}
+		}
+		return searchResultCache;
+	}
+
+	private SearchResultCache createSearchResultCache() {
+		final SearchResultCache cache = new SearchResultCache((int)Math.min(Runtime.getRuntime().maxMemory()/SEARCH_CACHE_FRACTION_OF_HEAP, Integer.MAX_VALUE));
+		if (isAndroid) {
+			cache.enableDiskCache(new File(BibleApplication.getApplication().getCacheDir(), SEARCH_CACHE_DIR_NAME), MAX_SEARCH_DISK_CACHE_BYTES);
+		}
+
+		// a reinstalled book may have different content
+		Books.installed().addBooksListener(new BooksListener() {
+			@Override
+			public void bookAdded(BooksEvent ev) {
+				cache.invalidate(ev.getBook().getInitials());
+			}
+			@Override
+			public void bookRemoved(BooksEvent ev) {
+				cache.invalidate(ev.getBook().getInitials());
+			}
+		});
+		return cache;
+	}
+
 	/** Get Footnotes and references from specified document page
 	 */
 	public List<Note> readFootnotesAndReferences(Book book, Key key) throws ParseException {
@@ -139,11 +305,12 @@ public class SwordContentFacade {
 			BookData data = new BookData(book, key);		
 			SAXEventProvider osissep = data.getSAXEventProvider();
 			if (osissep != null) {
-				OsisToHtmlSaxHandler osisToHtml = getSaxHandler(book, key);
+				OsisToHtmlSaxHandler osisToHtml = osisToHtmlSaxHandlerPool.obtain(getOsisToHtmlParameters(book, key));
 		
 				osissep.provideSAXEvents(osisToHtml);
 		
 				retVal = osisToHtml.getNotesList();
+				osisToHtmlSaxHandlerPool.release(osisToHtml);
 			} else {
 				Log.e(TAG, "No osis SEP returned");
 			}
@@ -156,33 +323,69 @@ public class SwordContentFacade {
 	}
 	
 	/**
-	 * Use OSISInputStream which loads a single verse at a time as required.
+	 * Use OSISReader which loads a single verse at a time as required.
 	 * This reduces memory requirements compared to standard JDom SaxEventProvider 
 	 */
-	private String readHtmlTextOptimizedZTextOsis(Book book, Key key) throws ParseException
+	private String readHtmlTextOptimizedZTextOsis(Book book, Key key, OsisToHtmlParameters osisToHtmlParameters, HtmlChunkListener chunkListener) throws ParseException
 	{
 		log.debug("Using fast method to fetch document data");
 		/**
-		 * When you supply an InputStream, the SAX implementation wraps the stream in an InputStreamReader; 
-		 * then SAX automatically detects the correct character encoding from the stream. You can then omit the setEncoding() step, 
-		 * reducing the method invocations once again. The result is an application that is faster, and always has the correct character encoding.
+		 * Supply a Reader rather than an InputStream so that verse text fetched from JSword as a String 
+		 * is passed straight to the parser without being encoded to UTF-8 and then decoded again.
 		 */
-		InputStream is = new OSISInputStream(book, key);
+		InputSource is = new InputSource(new OSISReader(book, key));
 
-		OsisToHtmlSaxHandler osisToHtml = getSaxHandler(book, key);
+		OsisToHtmlSaxHandler osisToHtml = osisToHtmlSaxHandlerPool.obtain(osisToHtmlParameters);
+		osisToHtml.setChunkListener(chunkListener);
 	
 		SAXParser parser = getSAXParser();
 		try {
 			parser.parse(is, osisToHtml);
 		} catch (Exception e) {
 			log.error("Parsing error", e);
+			discardSAXParser();
+			throw new ParseException("Parsing error", e);
+		}
+		
+		String html = osisToHtml.toString();
+		osisToHtmlSaxHandlerPool.release(osisToHtml);
+		return html;
+	}
+
+	/**
+	 * Parse raw OSIS text read via the shared zText block cache directly to canonical text, avoiding JSword's JDom based BookData
+	 */
+	private String readCanonicalTextOptimizedZTextOsis(Book book, Key key) throws ParseException
+	{
+		OsisToCanonicalTextSaxHandler osisToCanonicalText = new OsisToCanonicalTextSaxHandler();
+	
+		SAXParser parser = getSAXParser();
+		try {
+			parser.parse(new InputSource(new OSISReader(book, key)), osisToCanonicalText);
+		} catch (Exception e) {
+			log.error("Parsing error", e);
+			discardSAXParser();
 			throw new ParseException("Parsing error", e);
 		}
 		
-		return osisToHtml.toString();
+		return osisToCanonicalText.toString();
+	}
+
+	/** a new version of a module may render differently
+	 */
+	private String getBookVersion(Book book) {
+		String version = book.getBookMetaData().getProperty(SwordBookMetaData.KEY_VERSION);
+		return version!=null ? version : "";
 	}
 
-	private String readHtmlTextStandardJSwordMethod(Book book, Key key) throws ParseException
+	/** we have a fast way of handling OSIS zText docs but some docs need the superior JSword error recovery for mismatching tags
+	 */
+	private boolean isFastParseSuitable(Book book, Key key) {
+		return DocumentParseMethod.isFastParseDocument(book) &&
+				documentParseMethod.isFastParseOkay(book, key);
+	}
+
+	private String readHtmlTextStandardJSwordMethod(Book book, Key key, OsisToHtmlParameters osisToHtmlParameters, HtmlChunkListener chunkListener) throws ParseException
 	{
 		log.debug("Using standard JSword to fetch document data");
 		String retVal;
@@ -194,11 +397,13 @@ public class SwordContentFacade {
 				Log.e(TAG, "No osis SEP returned");
 				retVal = "Error fetching osis SEP";
 			} else {
-				OsisToHtmlSaxHandler osisToHtml = getSaxHandler(book, key);
+				OsisToHtmlSaxHandler osisToHtml = osisToHtmlSaxHandlerPool.obtain(osisToHtmlParameters);
+				osisToHtml.setChunkListener(chunkListener);
 		
 				osissep.provideSAXEvents(osisToHtml);
 		
 				retVal = osisToHtml.toString();
+				osisToHtmlSaxHandlerPool.release(osisToHtml);
 			}		
 	        return retVal;
 		} catch (Exception e) {
@@ -290,19 +495,28 @@ public class SwordContentFacade {
     	}
     }
 
-    private SAXParser saxParser;
+    /** each thread has its own parser so no locking is required
+     */
     private SAXParser getSAXParser() throws ParseException {
+    	SAXParser parser = saxParser.get();
     	try {
-	    	if (saxParser==null) {
+	    	if (parser==null) {
 	    		SAXParserFactory spf = SAXParserFactory.newInstance();
 	    		spf.setValidating(false);
-	   			saxParser = spf.newSAXParser();
+	   			parser = spf.newSAXParser();
+	   			saxParser.set(parser);
 	    	}
 		} catch (Exception e) {
 			log.error("SAX parser error", e);
 			throw new ParseException("SAX parser error", e);
 		}
-		return saxParser;
+		return parser;
+    }
+
+    /** a parser may be left in an unusable state after an error
+     */
+    private void discardSAXParser() {
+    	saxParser.remove();
     }
     
     /**
@@ -340,7 +554,20 @@ public class SwordContentFacade {
     	String plainText = "";
     	try {
     		if (book != null) {
-		        plainText = getCanonicalText(book, key);
+    			boolean isParsedOk = false;
+    			if (isFastParseSuitable(book, key)) {
+    				try {
+    					plainText = readCanonicalTextOptimizedZTextOsis(book, key);
+    					isParsedOk = true;
+    					documentParseMethod.parsedOk(book, key);
+    				} catch (ParseException pe) {
+    					documentParseMethod.failedToParse(book, key);
+    				}
+    			}
+    			
+    			if (!isParsedOk) {
+    				plainText = getCanonicalText(book, key);
+    			}
     		}
     	} catch (Exception e) {
     		Log.e(TAG, "Error getting plain text", e);
@@ -348,6 +575,73 @@ public class SwordContentFacade {
     	return plainText;
     }
 
+    /**
+     * Get the canonical text of many keys e.g. a page of search results, which is much faster than calling getPlainText for each key.
+     * Keys are read in document order so that each compressed block is read and decompressed only once 
+     * and, where possible, all keys are parsed in one pass using a single parser and handler.
+     * 
+     * @return plain text of each key, or "" if the text could not be read
+     */
+    public Map<Key, String> getPlainText(Book book, List<? extends Key> keys) {
+    	Map<Key, String> plainTextMap = new HashMap<Key, String>();
+    	if (book==null || keys.isEmpty()) {
+    		return plainTextMap;
+    	}
+
+    	List<Key> sortedKeys = new ArrayList<Key>(keys);
+    	if (book instanceof AbstractPassageBook) {
+    		// verses in the same block are adjacent in document order
+    		Collections.sort(sortedKeys, new Comparator<Key>() {
+				@Override
+				public int compare(Key key1, Key key2) {
+					return KeyUtil.getVerse(key1).getOrdinal()-KeyUtil.getVerse(key2).getOrdinal();
+				}
+			});
+    	}
+
+    	List<Key> fastParseKeys = new ArrayList<Key>();
+    	for (Key key : sortedKeys) {
+    		if (isFastParseSuitable(book, key)) {
+    			fastParseKeys.add(key);
+    		}
+    	}
+
+    	if (!fastParseKeys.isEmpty()) {
+    		try {
+	    		OsisToCanonicalTextSaxHandler osisToCanonicalText = new OsisToCanonicalTextSaxHandler();
+	    		SAXParser parser = getSAXParser();
+	    		for (Key key : fastParseKeys) {
+	    			try {
+	    				// the handler resets itself at the start of each document
+	    				parser.parse(new InputSource(new OSISReader(book, key)), osisToCanonicalText);
+	    				plainTextMap.put(key, osisToCanonicalText.toString());
+	    			} catch (Exception e) {
+	    				log.error("Parsing error", e);
+	    				documentParseMethod.failedToParse(book, key);
+	    				discardSAXParser();
+	    				parser = getSAXParser();
+	    			}
+	    		}
+    		} catch (ParseException pe) {
+    			log.error("No parser available", pe);
+    		}
+    	}
+
+    	// anything not handled above is done the slow way
+    	for (Key key : sortedKeys) {
+    		if (!plainTextMap.containsKey(key)) {
+    			String plainText = "";
+    			try {
+    				plainText = getCanonicalText(book, key);
+    			} catch (Exception e) {
+    				Log.e(TAG, "Error getting plain text", e);
+    			}
+    			plainTextMap.put(key, plainText);
+    		}
+    	}
+    	return plainTextMap;
+    }
+
     public Key search(Book bible, String searchText) throws BookException {
 // 		  example of fetching Strongs ref - only works with downloaded indexes!
 //        Book book = getDocumentByInitials("KJV");
@@ -358,7 +652,8 @@ public class SwordContentFacade {
 		
 		// This does a standard operator search. See the search
 		// documentation for more examples of how to search
-		Key key = bible.find(searchText); //$NON-NLS-1$
+		// Results are cached so repeated searches and searches of a different part of the Bible do not search the index again
+		Key key = getSearchResultCache().find(bible, searchText);
 
 		Log.d(TAG,	"There are "+key.getCardinality()+" verses containing " + searchText);
 
@@ -366,7 +661,7 @@ public class SwordContentFacade {
 
 	}
 
-	private OsisToHtmlSaxHandler getSaxHandler(Book book, Key key) {
+	private OsisToHtmlParameters getOsisToHtmlParameters(Book book, Key key) {
 		OsisToHtmlParameters osisToHtmlParameters = new OsisToHtmlParameters();
 		BookCategory bookCategory = book.getBookCategory();
 		BookMetaData bmd = book.getBookMetaData();
@@ -384,27 +679,26 @@ public class SwordContentFacade {
 	    	// HunUj has an error in that refs are not wrapped so automatically add notes around refs
 	    	osisToHtmlParameters.setAutoWrapUnwrappedRefsInNote("HunUj".equals(book.getInitials()));
 	    	
-			SharedPreferences preferences = CommonUtils.getSharedPreferences();
+			RenderPreferences preferences = getRenderPreferences();
 			if (preferences!=null) {
 				// prefs applying to any doc type
-				osisToHtmlParameters.setShowNotes(preferences.getBoolean("show_notes_pref", true));
-				osisToHtmlParameters.setRedLetter(preferences.getBoolean("red_letter_pref", false));
+				osisToHtmlParameters.setShowNotes(preferences.isShowNotes());
+				osisToHtmlParameters.setRedLetter(preferences.isRedLetter());
 				osisToHtmlParameters.setCssStylesheetList( cssControl.getAllStylesheetLinks() );
 
 				// show verse numbers if user has selected to show verse numbers AND the book is a bible (so don't even try to show verses in a Dictionary)
 				if (BookCategory.BIBLE.equals(bookCategory)) {
-					osisToHtmlParameters.setShowVerseNumbers(preferences.getBoolean("show_verseno_pref", true) && BookCategory.BIBLE.equals(bookCategory));
-					osisToHtmlParameters.setVersePerline(preferences.getBoolean("verse_per_line_pref", false));
-					osisToHtmlParameters.setShowMyNotes(preferences.getBoolean("show_mynotes_pref", true));
-					osisToHtmlParameters.setShowBookmarks(preferences.getBoolean("show_bookmarks_pref", true));
-					osisToHtmlParameters.setShowTitles(preferences.getBoolean("section_title_pref", true));
+					osisToHtmlParameters.setShowVerseNumbers(preferences.isShowVerseNumbers() && BookCategory.BIBLE.equals(bookCategory));
+					osisToHtmlParameters.setVersePerline(preferences.isVersePerLine());
+					osisToHtmlParameters.setShowMyNotes(preferences.isShowMyNotes());
+					osisToHtmlParameters.setShowBookmarks(preferences.isShowBookmarks());
+					osisToHtmlParameters.setShowTitles(preferences.isShowTitles());
 					osisToHtmlParameters.setVersesWithNotes(ControlFactory.getInstance().getMyNoteControl().getVersesWithNotesInPassage(key));
 					osisToHtmlParameters.setVersesWithBookmarks(ControlFactory.getInstance().getBookmarkControl().getVersesWithBookmarksInPassage(key));
 
 					// showMorphology depends on showStrongs to allow the toolbar toggle button to affect both strongs and morphology
-					boolean showStrongs = preferences.getBoolean("show_strongs_pref", true);
-					osisToHtmlParameters.setShowStrongs(showStrongs);
-					osisToHtmlParameters.setShowMorphology(showStrongs && preferences.getBoolean("show_morphology_pref", false));
+					osisToHtmlParameters.setShowStrongs(preferences.isShowStrongs());
+					osisToHtmlParameters.setShowMorphology(preferences.isShowMorphology());
 				}
 				
 				if (BookCategory.DICTIONARY.equals(bookCategory)) {
@@ -433,11 +727,26 @@ public class SwordContentFacade {
 				osisToHtmlParameters.setIndentDepth(CommonUtils.getResourceInteger(R.integer.poetry_indent_chars));
 			}
 		}
-		OsisToHtmlSaxHandler osisToHtml = new OsisToHtmlSaxHandler(osisToHtmlParameters);
-		
-		return osisToHtml;
+		return osisToHtmlParameters;
 	}
 	
+	/**
+	 * @return current preferences affecting html, or null if preferences are not available
+	 */
+	private synchronized RenderPreferences getRenderPreferences() {
+		if (renderPreferences==null) {
+			SharedPreferences preferences = CommonUtils.getSharedPreferences();
+			if (preferences!=null) {
+				if (!isListeningForPreferenceChanges) {
+					preferences.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+					isListeningForPreferenceChanges = true;
+				}
+				renderPreferences = new RenderPreferences(preferences);
+			}
+		}
+		return renderPreferences;
+	}
+
 	public static void setAndroid(boolean isAndroid) {
 		SwordContentFacade.isAndroid = isAndroid;
 	}
@@ -461,4 +770,79 @@ public class SwordContentFacade {
         
         return false;
     }
+
+	/**
+	 * Keep a copy of the pieces of a page passed to the listener so the whole page can still be cached
+	 */
+	static class ReassemblingChunkListener implements HtmlChunkListener {
+		private HtmlChunkListener listener;
+		private StringBuilder html = new StringBuilder();
+		private boolean isPageStarted = false;
+		private boolean isTooLarge = false;
+		// part of a page has been passed on but the page is being generated again from the start
+		private boolean isRestartRequired = false;
+
+		ReassemblingChunkListener(HtmlChunkListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void pageStarted(String chunk) {
+			isPageStarted = true;
+			isRestartRequired = false;
+			isTooLarge = false;
+			html.setLength(0);
+			keep(chunk);
+			listener.pageStarted(chunk);
+		}
+
+		@Override
+		public void pageContinued(String chunk) {
+			keep(chunk);
+			listener.pageContinued(chunk);
+		}
+
+		private void keep(String chunk) {
+			if (!isTooLarge) {
+				if (html.length()+chunk.length() > MAX_CACHEABLE_CHUNKED_HTML_LENGTH) {
+					isTooLarge = true;
+					html = new StringBuilder();
+				} else {
+					html.append(chunk);
+				}
+			}
+		}
+
+		boolean isPageStarted() {
+			return isPageStarted;
+		}
+
+		/** the page is about to be generated again from the start e.g. after the fast parse failed part way through
+		 */
+		void restartPage() {
+			if (isPageStarted) {
+				isRestartRequired = true;
+				isPageStarted = false;
+				html.setLength(0);
+			}
+		}
+
+		/** ensure any part of an earlier attempt already passed on is replaced, even if the new page was not passed on in pieces
+		 * 
+		 * @param endOfPage html not yet passed on
+		 * @return html still to be added to the end of the page
+		 */
+		String finishPage(String endOfPage) {
+			if (isRestartRequired) {
+				pageStarted(endOfPage);
+				return "";
+			}
+			return endOfPage;
+		}
+
+		/** @return the whole page or null if it was too large to keep */
+		String getWholePage(String endOfPage) {
+			return isTooLarge ? null : html.append(endOfPage).toString();
+		}
+	}
 }
@@ -1,20 +1,20 @@
 package net.bible.service.sword;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import net.bible.android.SharedConstants;
 import net.bible.android.control.versification.VersificationMappingInitializer;
 import net.bible.service.common.CommonUtils;
 import net.bible.service.common.Logger;
+import net.bible.service.download.CatalogueRefresher;
+import net.bible.service.download.CatalogueRefresher.CatalogueListener;
 import net.bible.service.download.DownloadManager;
+import net.bible.service.download.DownloadScheduler;
 import net.bible.service.download.RepoBase;
 import net.bible.service.download.RepoFactory;
 import net.bible.service.sword.index.IndexCreator;
+import net.bible.service.sword.index.ParallelIndexCreator;
 
 import org.crosswire.common.util.CWProject;
 import org.crosswire.common.util.Version;
@@ -46,6 +46,9 @@ public class SwordDocumentFacade {
 	private static SwordDocumentFacade singleton;
 
 	private static final String LUCENE_DIR = "lucene";
+
+	// a repository that takes longer than this to return its book list is left out of the list of downloadable documents
+	private static final long REPO_TIMEOUT_MILLIS = 60*1000;
 	
 	private static BookFilter SUPPORTED_DOCUMENT_TYPES = new AcceptableBookTypeFilter();
 
@@ -215,32 +218,32 @@ public class SwordDocumentFacade {
 	}
 	
 	public List<Book> getDownloadableDocuments(boolean refresh) throws InstallException {
-		log.debug("Getting downloadable documents.  Refresh:"+refresh);
-		RepoFactory repoFactory = RepoFactory.getInstance();
-		
-		// store books in a Set to ensure only one of each type and allow override from AndBible repo if necessary
-		// First added to set gets priority so AB > IBT > CWAV > CW > X > CWB
-        Set<Book> allBooks = new HashSet<Book>();
-
-        allBooks.addAll(repoFactory.getAndBibleRepo().getRepoBooks(refresh));
-        
-        allBooks.addAll(repoFactory.getIBTRepo().getRepoBooks(refresh));
-
-        allBooks.addAll(repoFactory.getCrosswireRepo().getRepoBooks(refresh));
-
-        allBooks.addAll(repoFactory.getXiphosRepo().getRepoBooks(refresh));
+		return getDownloadableDocuments(refresh, null);
+	}
 
-        allBooks.addAll(repoFactory.getWycliffeRepo().getRepoBooks(refresh));
+	/** get the books in all repositories, which are fetched at the same time
+	 * 
+	 * @param listener optional listener to be sent the books found so far as each repository responds
+	 */
+	public List<Book> getDownloadableDocuments(boolean refresh, CatalogueListener listener) throws InstallException {
+		log.debug("Getting downloadable documents.  Refresh:"+refresh);
 
-        allBooks.addAll(repoFactory.getBetaRepo().getRepoBooks(refresh));
+		// First repo gets priority so AB > IBT > CW > X > CWB
+		List<RepoBase> repos = RepoFactory.getInstance().getReposInPriorityOrder();
+//		repos.add(RepoFactory.getInstance().getEBibleRepo());
 
-//        allBooks.addAll(repoFactory.getEBibleRepo().getRepoBooks(refresh));
-        
-        // get them in the correct order
-        List<Book> bookList = new ArrayList<Book>(allBooks);
-        Collections.sort(bookList);
+		return new CatalogueRefresher(repos, REPO_TIMEOUT_MILLIS).getBooks(refresh, listener);
+	}
 
-		return bookList;	
+	/** @return true if a list of downloadable documents is available without the internet
+	 */
+	public boolean isDownloadableDocumentListCached() {
+		for (RepoBase repo : RepoFactory.getInstance().getReposInPriorityOrder()) {
+			if (DownloadManager.isBookListCached(repo.getRepoName())) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public void downloadDocument(Book document) throws InstallException, BookException {
@@ -279,6 +282,7 @@ public class SwordDocumentFacade {
 			// just log index delete error, deleting doc is the important thing
 			log.error("Error deleting document index", e);
 		}
+		ParallelIndexCreator.deleteCheckpoint(realDocument);
 
         document.getDriver().delete(realDocument);
 	}
@@ -291,6 +295,7 @@ public class SwordDocumentFacade {
         if (imanager.isIndexed(realDocument)) {
             imanager.deleteIndex(realDocument);
         }
+		ParallelIndexCreator.deleteCheckpoint(realDocument);
 	}
 	
 
@@ -310,6 +315,30 @@ public class SwordDocumentFacade {
 	        ic.scheduleIndexCreation(book);
 		}
 	}
+
+	/** @return true if creation of the book's index was interrupted, e.g. because the app was killed, and can continue from where it stopped
+	 */
+	public boolean isIndexCreationResumable(Book book) {
+		return IndexCreator.isResumable(book);
+	}
+
+	/** continue creating any indexes that were interrupted when the app was last killed
+	 */
+	public void resumeInterruptedIndexCreation() {
+		new IndexCreator().resumeInterruptedIndexCreation(getDocuments());
+	}
+
+	/** continue any downloads that were waiting or running when the app was last killed
+	 */
+	public void resumeInterruptedDownloads() {
+		DownloadScheduler.getInstance().resumeQueuedDownloads();
+	}
+
+	/** @return true if enough downloads are waiting that no more should be requested
+	 */
+	public boolean isDownloadQueueFull() {
+		return DownloadScheduler.getInstance().isQueueFull();
+	}
 	
 	private String getPaths() {
 		String text = "Paths:";
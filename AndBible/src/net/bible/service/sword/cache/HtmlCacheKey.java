@@ -0,0 +1,141 @@
+package net.bible.service.sword.cache;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseKey;
+import org.crosswire.jsword.versification.BibleBook;
+
+/**
+ * Identify a page of rendered html.  Html can only be reused if the document, key, and all parameters affecting the output are identical.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class HtmlCacheKey {
+
+	// increment when a change to html rendering means previously cached pages must not be reused
+	public static final int HTML_FORMAT_VERSION = 2;
+
+	private final String bookInitials;
+	private final String bookVersion;
+	private final String osisRef;
+	private final String parametersFingerprint;
+	private final boolean isNightMode;
+
+	// allow removal of all pages containing a verse whose bookmarks or notes have changed
+	private final BibleBook bibleBook;
+	private final int chapter;
+
+	private final String asString;
+
+	private static final String FILE_NAME_SEPARATOR = "-";
+	private static final String NO_CHAPTER_TAG = "0";
+	private static final String FILE_NAME_SUFFIX = ".html";
+
+	/**
+	 * @param bookVersion version of the installed module so pages are not reused after the module is upgraded
+	 */
+	public HtmlCacheKey(String bookInitials, String bookVersion, Key key, String parametersFingerprint, boolean isNightMode) {
+		this.bookInitials = bookInitials;
+		this.bookVersion = bookVersion;
+		this.osisRef = key.getOsisRef();
+		this.parametersFingerprint = parametersFingerprint;
+		this.isNightMode = isNightMode;
+
+		if (key instanceof VerseKey) {
+			Verse verse = KeyUtil.getVerse(key);
+			bibleBook = verse.getBook();
+			chapter = verse.getChapter();
+		} else {
+			bibleBook = null;
+			chapter = -1;
+		}
+
+		asString = HTML_FORMAT_VERSION+"|"+bookInitials+"|"+bookVersion+"|"+osisRef+"|"+isNightMode+"|"+parametersFingerprint;
+	}
+
+	/** true if this page may display the specified verse
+	 */
+	public boolean isSameChapter(Verse verse) {
+		return bibleBook!=null && bibleBook.equals(verse.getBook()) && chapter==verse.getChapter();
+	}
+
+	/** a file name that is safe to use on any file system, starting with getFileNamePrefix and containing getFileNameChapter if the page is a chapter
+	 */
+	public String getFileName() {
+		String chapterTag = bibleBook!=null ? getChapterTag(bibleBook, chapter) : NO_CHAPTER_TAG;
+		return getFileNamePrefix(bookInitials)+chapterTag+FILE_NAME_SEPARATOR+Integer.toHexString(asString.hashCode())+FILE_NAME_SUFFIX;
+	}
+
+	/** the start of the file names of all pages of a book which cannot be the start of the file names of any other book
+	 */
+	public static String getFileNamePrefix(String bookInitials) {
+		// the separator is encoded in initials so initials that start with other initials have a different prefix
+		StringBuilder prefix = new StringBuilder();
+		for (int i=0; i<bookInitials.length(); i++) {
+			char c = bookInitials.charAt(i);
+			if ((c>='A' && c<='Z') || (c>='a' && c<='z') || (c>='0' && c<='9')) {
+				prefix.append(c);
+			} else {
+				prefix.append('_').append(Integer.toHexString(c)).append('_');
+			}
+		}
+		return prefix.append(FILE_NAME_SEPARATOR).toString();
+	}
+
+	/** the part of the file names of all pages that may display the verse
+	 */
+	public static String getFileNameChapter(Verse verse) {
+		return FILE_NAME_SEPARATOR+getChapterTag(verse.getBook(), verse.getChapter())+FILE_NAME_SEPARATOR;
+	}
+
+	/** true if the file holds a page
+	 */
+	public static boolean isHtmlFileName(String fileName) {
+		return fileName.endsWith(FILE_NAME_SUFFIX);
+	}
+
+	private static String getChapterTag(BibleBook bibleBook, int chapter) {
+		return bibleBook.getOSIS()+"."+chapter;
+	}
+
+	public String getBookInitials() {
+		return bookInitials;
+	}
+
+	public String getBookVersion() {
+		return bookVersion;
+	}
+
+	public String getOsisRef() {
+		return osisRef;
+	}
+
+	public boolean isNightMode() {
+		return isNightMode;
+	}
+
+	@Override
+	public int hashCode() {
+		return asString.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		HtmlCacheKey other = (HtmlCacheKey) obj;
+		return asString.equals(other.asString);
+	}
+
+	@Override
+	public String toString() {
+		return asString;
+	}
+}
@@ -0,0 +1,321 @@
+package net.bible.service.sword.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.bible.service.common.Logger;
+
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.passage.Verse;
+
+import android.support.v4.util.LruCache;
+
+/**
+ * Cache of rendered html pages to prevent repeated parsing when returning to recently viewed pages e.g. via back, history, or window synchronisation.
+ * There is a byte limited in-memory LRU tier and an optional on-disk tier which is checked if a page is not found in memory.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class RenderedHtmlCache {
+
+	private final LruCache<HtmlCacheKey, String> memoryCache;
+
+	// optional disk tier
+	private File diskCacheDir;
+	private long maxDiskBytes;
+	private long diskBytes = -1;
+
+	private final AtomicLong diskHitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong diskEvictionCount = new AtomicLong();
+
+	private static final String DISK_FILE_ENCODING = "UTF-8";
+
+	// records the html format and app version of the pages on disk
+	private static final String FORMAT_FILE_NAME = "format";
+
+	private static final FilenameFilter ALL_PAGES = new FilenameFilter() {
+		@Override
+		public boolean accept(File dir, String fileName) {
+			return HtmlCacheKey.isHtmlFileName(fileName);
+		}
+	};
+
+	private static final Logger log = new Logger("RenderedHtmlCache");
+
+	/**
+	 * @param maxMemoryBytes approximate maximum memory to be used by cached html
+	 */
+	public RenderedHtmlCache(int maxMemoryBytes) {
+		memoryCache = new LruCache<HtmlCacheKey, String>(maxMemoryBytes) {
+			/** Java Strings use 2 bytes per char
+			 */
+			@Override
+			protected int sizeOf(HtmlCacheKey key, String html) {
+				return html.length()*2;
+			}
+		};
+	}
+
+	/** enable the disk tier which is used if html is not found in memory
+	 * Pages on disk from a different html format or app version are deleted because the renderer may have changed.
+	 */
+	public synchronized void enableDiskCache(File diskCacheDir, long maxDiskBytes, String appVersion) {
+		this.diskCacheDir = diskCacheDir;
+		this.maxDiskBytes = maxDiskBytes;
+		this.diskBytes = -1;
+
+		String format = HtmlCacheKey.HTML_FORMAT_VERSION+" "+appVersion;
+		File formatFile = new File(diskCacheDir, FORMAT_FILE_NAME);
+		if (!format.equals(readFormat(formatFile))) {
+			log.info("Html format or app version changed so deleting cached pages");
+			deleteFromDisk(ALL_PAGES);
+			writeFormat(formatFile, format);
+		}
+	}
+
+	/** return cached html or null if not cached
+	 */
+	public String get(HtmlCacheKey key) {
+		String html = memoryCache.get(key);
+		if (html==null) {
+			html = getFromDisk(key);
+			if (html!=null) {
+				diskHitCount.incrementAndGet();
+				memoryCache.put(key, html);
+			} else {
+				missCount.incrementAndGet();
+			}
+		}
+		return html;
+	}
+
+	public void put(HtmlCacheKey key, String html) {
+		memoryCache.put(key, html);
+		putOnDisk(key, html);
+	}
+
+	/** a book has been installed, reinstalled, or deleted so remove any pages from it
+	 */
+	public void invalidate(String bookInitials) {
+		for (HtmlCacheKey key : memoryCache.snapshot().keySet()) {
+			if (key.getBookInitials().equals(bookInitials)) {
+				memoryCache.remove(key);
+			}
+		}
+		final String fileNamePrefix = HtmlCacheKey.getFileNamePrefix(bookInitials);
+		deleteFromDisk(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String fileName) {
+				return HtmlCacheKey.isHtmlFileName(fileName) && fileName.startsWith(fileNamePrefix);
+			}
+		});
+	}
+
+	/** bookmarks or notes have changed for this verse so remove any pages displaying it
+	 */
+	public void invalidate(Verse verse) {
+		for (HtmlCacheKey key : memoryCache.snapshot().keySet()) {
+			if (key.isSameChapter(verse)) {
+				memoryCache.remove(key);
+			}
+		}
+		final String fileNameChapter = HtmlCacheKey.getFileNameChapter(verse);
+		deleteFromDisk(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String fileName) {
+				return HtmlCacheKey.isHtmlFileName(fileName) && fileName.contains(fileNameChapter);
+			}
+		});
+	}
+
+	public void clear() {
+		memoryCache.evictAll();
+		deleteFromDisk(ALL_PAGES);
+	}
+
+	public long getHitCount() {
+		return memoryCache.hitCount()+diskHitCount.get();
+	}
+
+	public long getMemoryHitCount() {
+		return memoryCache.hitCount();
+	}
+
+	public long getDiskHitCount() {
+		return diskHitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return memoryCache.evictionCount()+diskEvictionCount.get();
+	}
+
+	public int getMemorySize() {
+		return memoryCache.size();
+	}
+
+	@Override
+	public String toString() {
+		return "RenderedHtmlCache[hits="+getHitCount()+" (disk "+getDiskHitCount()+") misses="+getMissCount()+" evictions="+getEvictionCount()+" memoryBytes="+getMemorySize()+"]";
+	}
+
+	private synchronized String getFromDisk(HtmlCacheKey key) {
+		if (diskCacheDir==null) {
+			return null;
+		}
+		File file = new File(diskCacheDir, key.getFileName());
+		if (!file.exists()) {
+			return null;
+		}
+
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), DISK_FILE_ENCODING));
+			// the first line holds the full key to protect against file name hash collisions
+			String storedKey = reader.readLine();
+			if (!key.toString().equals(storedKey)) {
+				return null;
+			}
+			StringBuilder html = new StringBuilder((int)file.length());
+			char[] buffer = new char[4096];
+			int len;
+			while ((len = reader.read(buffer))!=-1) {
+				html.append(buffer, 0, len);
+			}
+			// allow LRU-like disk eviction
+			file.setLastModified(System.currentTimeMillis());
+			return html.toString();
+		} catch (Exception e) {
+			log.error("Error reading cached html", e);
+			return null;
+		} finally {
+			IOUtil.close(reader);
+		}
+	}
+
+	private synchronized void putOnDisk(HtmlCacheKey key, String html) {
+		if (diskCacheDir==null) {
+			return;
+		}
+		// the key is written on the first line so it must not contain line breaks
+		if (key.toString().indexOf('\n')!=-1) {
+			return;
+		}
+
+		BufferedWriter writer = null;
+		try {
+			diskCacheDir.mkdirs();
+			File file = new File(diskCacheDir, key.getFileName());
+			long previousLength = file.length();
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), DISK_FILE_ENCODING));
+			writer.write(key.toString());
+			writer.write('\n');
+			writer.write(html);
+			writer.close();
+			writer = null;
+
+			diskBytes = getDiskBytes()-previousLength+file.length();
+			trimDiskCache();
+		} catch (Exception e) {
+			log.error("Error writing cached html", e);
+		} finally {
+			IOUtil.close(writer);
+		}
+	}
+
+	private synchronized void deleteFromDisk(FilenameFilter filter) {
+		if (diskCacheDir==null) {
+			return;
+		}
+		File[] files = diskCacheDir.listFiles(filter);
+		if (files!=null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		diskBytes = -1;
+	}
+
+	private String readFormat(File formatFile) {
+		if (!formatFile.exists()) {
+			return null;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(formatFile), DISK_FILE_ENCODING));
+			return reader.readLine();
+		} catch (Exception e) {
+			log.error("Error reading html cache format", e);
+			return null;
+		} finally {
+			IOUtil.close(reader);
+		}
+	}
+
+	private void writeFormat(File formatFile, String format) {
+		BufferedWriter writer = null;
+		try {
+			diskCacheDir.mkdirs();
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(formatFile), DISK_FILE_ENCODING));
+			writer.write(format);
+		} catch (Exception e) {
+			log.error("Error writing html cache format", e);
+		} finally {
+			IOUtil.close(writer);
+		}
+	}
+
+	/** delete least recently used files until the disk cache is within its limit
+	 */
+	private void trimDiskCache() {
+		if (diskBytes<=maxDiskBytes) {
+			return;
+		}
+		File[] files = diskCacheDir.listFiles(ALL_PAGES);
+		if (files==null) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				long diff = lhs.lastModified()-rhs.lastModified();
+				return diff<0 ? -1 : (diff>0 ? 1 : 0);
+			}
+		});
+		for (int i=0; i<files.length && diskBytes>maxDiskBytes; i++) {
+			long length = files[i].length();
+			if (files[i].delete()) {
+				diskBytes -= length;
+				diskEvictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	private long getDiskBytes() {
+		if (diskBytes<0) {
+			diskBytes = 0;
+			File[] files = diskCacheDir.listFiles(ALL_PAGES);
+			if (files!=null) {
+				for (File file : files) {
+					diskBytes += file.length();
+				}
+			}
+		}
+		return diskBytes;
+	}
+}
@@ -0,0 +1,428 @@
+package net.bible.service.sword.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.bible.service.common.Logger;
+import net.bible.service.sword.index.ParallelIndexCreator;
+
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.index.IndexStatusEvent;
+import org.crosswire.jsword.index.IndexStatusListener;
+import org.crosswire.jsword.passage.BitwisePassage;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.RestrictionType;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.Versification;
+
+import android.support.v4.util.LruCache;
+
+/**
+ * Cache of the results of searching Bibles and commentaries, stored as bitsets of verse ordinals, to prevent repeated Lucene searches
+ * e.g. for Strong's 'all occurrences' links or when returning to a previous search.
+ * A query restricted to part of the Bible e.g. "+[Mat-Rev] love" is answered by intersecting the cached result of the unrestricted query with the range
+ * so changing the Bible section being searched does not search the index again.
+ * There is a byte limited in-memory LRU tier and an optional on-disk tier which is checked if a result is not found in memory.
+ * Results are discarded if the index of their book changes because a new index may contain different fields e.g. Strong's numbers.
+ * Results on disk are saved with the timestamp of the index they came from so they are not reused if the index changed while the app was not watching it.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class SearchResultCache {
+
+	private final LruCache<String, BitSet> memoryCache;
+
+	// optional disk tier
+	private File diskCacheDir;
+	private long maxDiskBytes;
+	private long diskBytes = -1;
+
+	private final AtomicLong diskHitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong diskEvictionCount = new AtomicLong();
+
+	// books whose index status is watched so their results can be discarded if the index changes
+	private final Map<Book, IndexStatusListener> watchedBooks = new HashMap<Book, IndexStatusListener>();
+	// index timestamps of watched books, by initials, which only change when the book is invalidated
+	private final Map<String, Long> indexTimestamps = new HashMap<String, Long>();
+
+	// a leading restriction added to a query by SearchControl e.g. "+[Gen-Mal] "
+	private static final Pattern RESTRICTED_QUERY = Pattern.compile("^\\+\\[([^\\]]+)\\]\\s+(.+)$");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final String DOT_BITS = ".bits";
+
+	private static final Logger log = new Logger("SearchResultCache");
+
+	/**
+	 * @param maxMemoryBytes approximate maximum memory to be used by cached results
+	 */
+	public SearchResultCache(int maxMemoryBytes) {
+		memoryCache = new LruCache<String, BitSet>(maxMemoryBytes) {
+			@Override
+			protected int sizeOf(String key, BitSet verses) {
+				// size() is not used because it changes when a BitSet is cloned
+				return verses.length()/8+key.length()*2;
+			}
+		};
+	}
+
+	/** enable the disk tier which is used if a result is not found in memory
+	 */
+	public synchronized void enableDiskCache(File diskCacheDir, long maxDiskBytes) {
+		this.diskCacheDir = diskCacheDir;
+		this.maxDiskBytes = maxDiskBytes;
+		this.diskBytes = -1;
+	}
+
+	/** search the book or return a cached result
+	 * Only Bibles and commentaries are cached because the results of other books are not verses
+	 */
+	public Key find(Book book, String query) throws BookException {
+		if (!(book instanceof AbstractPassageBook)) {
+			return book.find(query);
+		}
+		Versification v11n = ((AbstractPassageBook)book).getVersification();
+		watchIndexStatus(book);
+
+		String normalisedQuery = WHITESPACE.matcher(query.trim()).replaceAll(" ");
+		String restriction = null;
+		Matcher matcher = RESTRICTED_QUERY.matcher(normalisedQuery);
+		if (matcher.matches()) {
+			restriction = matcher.group(1);
+			normalisedQuery = matcher.group(2);
+		}
+
+		String cacheKey = getCacheKey(book, normalisedQuery);
+		BitSet verses = get(book, cacheKey);
+		if (verses==null) {
+			verses = toBitSet(book.find(normalisedQuery));
+			put(book, cacheKey, verses);
+		}
+
+		if (restriction!=null) {
+			verses = (BitSet)verses.clone();
+			verses.and(getRestrictionBitSet(book, restriction));
+		}
+		return toPassage(v11n, verses);
+	}
+
+	/** a book has been installed, reinstalled, or deleted so remove any results from it
+	 * The book is no longer watched until it is searched again so deleted books are not kept.
+	 */
+	public void invalidate(String bookInitials) {
+		String keyPrefix = bookInitials+"|";
+		for (String key : memoryCache.snapshot().keySet()) {
+			if (key.startsWith(keyPrefix)) {
+				memoryCache.remove(key);
+			}
+		}
+		deleteFromDisk(HtmlCacheKey.getFileNamePrefix(bookInitials));
+		unwatchIndexStatus(bookInitials);
+	}
+
+	public void clear() {
+		memoryCache.evictAll();
+		deleteFromDisk("");
+	}
+
+	private void watchIndexStatus(final Book book) {
+		synchronized (watchedBooks) {
+			if (!watchedBooks.containsKey(book)) {
+				IndexStatusListener listener = new IndexStatusListener() {
+					@Override
+					public void statusChanged(IndexStatusEvent ev) {
+						invalidate(book.getInitials());
+					}
+				};
+				watchedBooks.put(book, listener);
+				book.addIndexStatusListener(listener);
+			}
+		}
+	}
+
+	private void unwatchIndexStatus(String bookInitials) {
+		synchronized (watchedBooks) {
+			Iterator<Map.Entry<Book, IndexStatusListener>> entries = watchedBooks.entrySet().iterator();
+			while (entries.hasNext()) {
+				Map.Entry<Book, IndexStatusListener> entry = entries.next();
+				if (entry.getKey().getInitials().equals(bookInitials)) {
+					entry.getKey().removeIndexStatusListener(entry.getValue());
+					entries.remove();
+				}
+			}
+			indexTimestamps.remove(bookInitials);
+		}
+	}
+
+	/** the timestamp is only looked up once per book because the book's index status is watched for changes from then on
+	 */
+	private long getCachedIndexTimestamp(Book book) {
+		synchronized (watchedBooks) {
+			Long timestamp = indexTimestamps.get(book.getInitials());
+			if (timestamp==null) {
+				timestamp = getIndexTimestamp(book);
+				indexTimestamps.put(book.getInitials(), timestamp);
+			}
+			return timestamp;
+		}
+	}
+
+	/* package */ long getIndexTimestamp(Book book) {
+		return ParallelIndexCreator.getIndexTimestamp(book);
+	}
+
+	/* package */ int getWatchedBookCount() {
+		synchronized (watchedBooks) {
+			return watchedBooks.size();
+		}
+	}
+
+	public long getHitCount() {
+		return memoryCache.hitCount()+diskHitCount.get();
+	}
+
+	public long getDiskHitCount() {
+		return diskHitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return memoryCache.evictionCount()+diskEvictionCount.get();
+	}
+
+	public int getMemorySize() {
+		return memoryCache.size();
+	}
+
+	@Override
+	public String toString() {
+		return "SearchResultCache[hits="+getHitCount()+" (disk "+getDiskHitCount()+") misses="+getMissCount()+" evictions="+getEvictionCount()+" memoryBytes="+getMemorySize()+"]";
+	}
+
+	private BitSet get(Book book, String cacheKey) {
+		BitSet verses = memoryCache.get(cacheKey);
+		if (verses==null) {
+			verses = getFromDisk(cacheKey, book);
+			if (verses!=null) {
+				diskHitCount.incrementAndGet();
+				memoryCache.put(cacheKey, verses);
+			} else {
+				missCount.incrementAndGet();
+			}
+		}
+		return verses;
+	}
+
+	private void put(Book book, String cacheKey, BitSet verses) {
+		memoryCache.put(cacheKey, verses);
+		putOnDisk(cacheKey, book, verses);
+	}
+
+	/** the version is included so results are not reused after a book is upgraded
+	 */
+	private String getCacheKey(Book book, String normalisedQuery) {
+		String version = book.getBookMetaData().getProperty(SwordBookMetaData.KEY_VERSION);
+		return book.getInitials()+"|"+version+"|"+normalisedQuery;
+	}
+
+	/** file names of a book start with the same prefix as its html pages so books with similar initials are kept apart
+	 */
+	private String getFileName(String cacheKey) {
+		String bookInitials = cacheKey.substring(0, cacheKey.indexOf('|'));
+		return HtmlCacheKey.getFileNamePrefix(bookInitials)+Integer.toHexString(cacheKey.hashCode())+DOT_BITS;
+	}
+
+	/** @return verses in the restriction, which is empty if the restriction is not in the book's versification
+	 */
+	private BitSet getRestrictionBitSet(Book book, String restriction) {
+		BitSet verses = new BitSet();
+		try {
+			Key restrictionKey = book.getKey(restriction);
+			if (restrictionKey instanceof Passage) {
+				Iterator<VerseRange> ranges = ((Passage)restrictionKey).rangeIterator(RestrictionType.NONE);
+				while (ranges.hasNext()) {
+					VerseRange range = ranges.next();
+					verses.set(range.getStart().getOrdinal(), range.getEnd().getOrdinal()+1);
+				}
+			} else {
+				verses.or(toBitSet(restrictionKey));
+			}
+		} catch (NoSuchKeyException nske) {
+			log.warn("Search range not in "+book.getInitials()+":"+restriction);
+		}
+		return verses;
+	}
+
+	private BitSet toBitSet(Key verses) {
+		BitSet bits = new BitSet();
+		for (Key key : verses) {
+			bits.set(((Verse)key).getOrdinal());
+		}
+		return bits;
+	}
+
+	private Key toPassage(Versification v11n, BitSet verses) {
+		BitwisePassage passage = new BitwisePassage(v11n);
+		for (int ordinal=verses.nextSetBit(0); ordinal>=0; ordinal=verses.nextSetBit(ordinal+1)) {
+			passage.addVersifiedOrdinal(ordinal);
+		}
+		return passage;
+	}
+
+	/** the full key stored in a file, which includes the index timestamp so results from an older index are not used
+	 */
+	private String getDiskKey(String cacheKey, Book book) {
+		return cacheKey+"|"+getCachedIndexTimestamp(book);
+	}
+
+	private synchronized BitSet getFromDisk(String cacheKey, Book book) {
+		if (diskCacheDir==null) {
+			return null;
+		}
+		File file = new File(diskCacheDir, getFileName(cacheKey));
+		if (!file.exists()) {
+			return null;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			// the full key is stored to protect against file name hash collisions and to recognise results from a different index
+			if (!getDiskKey(cacheKey, book).equals(in.readUTF())) {
+				return null;
+			}
+			BitSet verses = new BitSet();
+			int longCount = in.readInt();
+			for (int i=0; i<longCount; i++) {
+				long word = in.readLong();
+				for (int bit=0; bit<64; bit++) {
+					if ((word & (1L<<bit))!=0) {
+						verses.set(i*64+bit);
+					}
+				}
+			}
+			// allow LRU-like disk eviction
+			file.setLastModified(System.currentTimeMillis());
+			return verses;
+		} catch (Exception e) {
+			log.error("Error reading cached search result", e);
+			return null;
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	private synchronized void putOnDisk(String cacheKey, Book book, BitSet verses) {
+		if (diskCacheDir==null) {
+			return;
+		}
+
+		DataOutputStream out = null;
+		try {
+			diskCacheDir.mkdirs();
+			File file = new File(diskCacheDir, getFileName(cacheKey));
+			long previousLength = file.length();
+			long[] words = new long[(verses.length()+63)/64];
+			for (int bit=verses.nextSetBit(0); bit>=0; bit=verses.nextSetBit(bit+1)) {
+				words[bit/64] |= 1L<<(bit%64);
+			}
+
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeUTF(getDiskKey(cacheKey, book));
+			out.writeInt(words.length);
+			for (long word : words) {
+				out.writeLong(word);
+			}
+			out.close();
+			out = null;
+
+			diskBytes = getDiskBytes()-previousLength+file.length();
+			trimDiskCache();
+		} catch (Exception e) {
+			log.error("Error writing cached search result", e);
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+	private synchronized void deleteFromDisk(String fileNamePrefix) {
+		if (diskCacheDir==null) {
+			return;
+		}
+		File[] files = diskCacheDir.listFiles();
+		if (files!=null) {
+			for (File file : files) {
+				if (file.getName().startsWith(fileNamePrefix)) {
+					file.delete();
+				}
+			}
+		}
+		diskBytes = -1;
+	}
+
+	/** delete least recently used files until the disk cache is within its limit
+	 */
+	private void trimDiskCache() {
+		if (diskBytes<=maxDiskBytes) {
+			return;
+		}
+		File[] files = diskCacheDir.listFiles();
+		if (files==null) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				long diff = lhs.lastModified()-rhs.lastModified();
+				return diff<0 ? -1 : (diff>0 ? 1 : 0);
+			}
+		});
+		for (int i=0; i<files.length && diskBytes>maxDiskBytes; i++) {
+			long length = files[i].length();
+			if (files[i].delete()) {
+				diskBytes -= length;
+				diskEvictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	private long getDiskBytes() {
+		if (diskBytes<0) {
+			diskBytes = 0;
+			File[] files = diskCacheDir.listFiles();
+			if (files!=null) {
+				for (File file : files) {
+					diskBytes += file.length();
+				}
+			}
+		}
+		return diskBytes;
+	}
+}
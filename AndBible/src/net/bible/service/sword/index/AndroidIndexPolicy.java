@@ -1,21 +1,76 @@
 package net.bible.service.sword.index;
 
+import net.bible.service.device.BatteryState;
+
 import org.crosswire.jsword.index.IndexPolicyAdapter;
 
-/**
+/** Decide how much of the device to use for creating an index.
+ * Only part of the heap is used for indexing and the number of threads is reduced if the battery is low or hot.
+ * Only one index is created at a time.
+ *
  * @author Martin Denham [mjdenham at gmail dot com]
  * @see gnu.lgpl.License for license details.<br>
  *      The copyright to this program is held by it's author.
  */
 public class AndroidIndexPolicy extends IndexPolicyAdapter {
 
+	// proportion of the heap that may be used by index writer buffers
+	private static final int HEAP_FRACTION_FOR_INDEXING = 4;
+
+	private static final int MIN_RAM_BUFFER_MB = 1;
+	private static final int MAX_RAM_BUFFER_MB = 16;
+
+	// memory used by each indexing thread in addition to its buffer e.g. to parse each verse
+	private static final int THREAD_OVERHEAD_MB = 2;
+
+	// more threads than this gain little because writing and merging the index is done by one thread
+	private static final int MAX_THREADS = 4;
+
+	private static final int LOW_BATTERY_PERCENT = 30;
+	private static final int HOT_BATTERY_DEGREES = 40;
+
+	private static final int MB = 1024*1024;
+
+	/** buffer size of each index writer
+	 */
 	@Override
 	public int getRAMBufferSize() {
-		return 1;
+		return getRAMBufferSize(getThreadCount());
+	}
+
+	/** buffer size of each index writer if threadCount writers are used at once
+	 */
+	public int getRAMBufferSize(int threadCount) {
+		return getRAMBufferSize(threadCount, Runtime.getRuntime().maxMemory());
+	}
+
+	/* package */ int getRAMBufferSize(int threadCount, long maxMemory) {
+		int bufferMB = getIndexingMemoryMB(maxMemory)/threadCount - THREAD_OVERHEAD_MB;
+		return Math.max(MIN_RAM_BUFFER_MB, Math.min(bufferMB, MAX_RAM_BUFFER_MB));
 	}
 
 	@Override
 	public boolean isSerial() {
 		return true;
 	}
+
+	/** number of threads to analyse documents with, which may change while an index is being created
+	 */
+	public int getThreadCount() {
+		return getThreadCount(BatteryState.getCurrent(), Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory());
+	}
+
+	/* package */ int getThreadCount(BatteryState batteryState, int processorCount, long maxMemory) {
+		if (batteryState.isLow(LOW_BATTERY_PERCENT) || batteryState.isHot(HOT_BATTERY_DEGREES)) {
+			return 1;
+		}
+
+		int threadsForMemory = getIndexingMemoryMB(maxMemory)/(MIN_RAM_BUFFER_MB+THREAD_OVERHEAD_MB);
+		int threads = Math.min(processorCount, Math.min(threadsForMemory, MAX_THREADS));
+		return Math.max(1, threads);
+	}
+
+	private int getIndexingMemoryMB(long maxMemory) {
+		return (int)(maxMemory/MB/HEAP_FRACTION_FOR_INDEXING);
+	}
 }
@@ -0,0 +1,188 @@
+package net.bible.service.sword.index;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+
+import net.bible.service.common.CommonUtils;
+import net.bible.service.common.CommonUtils.FileContentWriter;
+import net.bible.service.common.Logger;
+
+import org.crosswire.common.util.IOUtil;
+
+/** Record of the index segments that have been committed to disk while creating an index so creation can resume after the process is killed.
+ * A checkpoint only applies to the version of the book and the list of keys it was created for.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+class IndexCheckpoint {
+
+	private final File checkpointFile;
+
+	private final String bookVersion;
+	private final int keyCount;
+
+	// ranges of keys that are in a committed segment
+	private final BitSet completedRanges = new BitSet();
+	// numbers of the committed segment directories
+	private final BitSet segments = new BitSet();
+
+	// osisRef of the last key committed, for logging
+	private String lastKey = "";
+
+	private static final String CHECKPOINT_FILE_NAME = "checkpoint";
+
+	// increment if the file layout, the way keys are split into ranges or the index fields change
+	private static final int CHECKPOINT_FORMAT = 1;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Logger log = new Logger("IndexCheckpoint");
+
+	IndexCheckpoint(File partsDir, String bookVersion, int keyCount) {
+		this.checkpointFile = new File(partsDir, CHECKPOINT_FILE_NAME);
+		this.bookVersion = bookVersion;
+		this.keyCount = keyCount;
+	}
+
+	static boolean exists(File partsDir) {
+		return new File(partsDir, CHECKPOINT_FILE_NAME).exists();
+	}
+
+	/**
+	 * @return the checkpoint previously saved for this version of the book and number of keys or null if there is none
+	 */
+	static IndexCheckpoint load(File partsDir, String bookVersion, int keyCount) {
+		IndexCheckpoint checkpoint = new IndexCheckpoint(partsDir, bookVersion, keyCount);
+		if (!checkpoint.checkpointFile.exists()) {
+			return null;
+		}
+
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(checkpoint.checkpointFile);
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer)==-1) {
+					throw new IOException("Unexpected end of index checkpoint");
+				}
+			}
+			buffer.flip();
+
+			if (buffer.getInt()!=CHECKPOINT_FORMAT ||
+				!bookVersion.equals(getString(buffer)) ||
+				buffer.getInt()!=keyCount) {
+				log.debug("Stale index checkpoint in "+partsDir);
+				return null;
+			}
+
+			checkpoint.lastKey = getString(buffer);
+			getBits(buffer, checkpoint.completedRanges);
+			getBits(buffer, checkpoint.segments);
+			return checkpoint;
+		} catch (Exception e) {
+			log.error("Error loading index checkpoint from "+partsDir, e);
+			return null;
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	/** record a segment that has been committed to disk and the ranges of keys it contains, then save the checkpoint
+	 */
+	synchronized void segmentCommitted(int segmentNo, BitSet ranges, String lastKey) throws IOException {
+		segments.set(segmentNo);
+		completedRanges.or(ranges);
+		this.lastKey = lastKey;
+		save();
+	}
+
+	synchronized boolean isRangeCompleted(int range) {
+		return completedRanges.get(range);
+	}
+
+	synchronized int getCompletedRangeCount() {
+		return completedRanges.cardinality();
+	}
+
+	/** @return a copy of the numbers of the committed segments
+	 */
+	synchronized BitSet getSegments() {
+		return (BitSet)segments.clone();
+	}
+
+	synchronized String getLastKey() {
+		return lastKey;
+	}
+
+	private void save() throws IOException {
+		byte[] version = bookVersion.getBytes(UTF_8);
+		byte[] key = lastKey.getBytes(UTF_8);
+		long[] rangeBits = toLongs(completedRanges);
+		long[] segmentBits = toLongs(segments);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(4*6+version.length+key.length+8*(rangeBits.length+segmentBits.length));
+		buffer.putInt(CHECKPOINT_FORMAT);
+		buffer.putInt(version.length);
+		buffer.put(version);
+		buffer.putInt(keyCount);
+		buffer.putInt(key.length);
+		buffer.put(key);
+		putLongs(buffer, rangeBits);
+		putLongs(buffer, segmentBits);
+		buffer.flip();
+
+		CommonUtils.writeAtomically(checkpointFile, new FileContentWriter() {
+			@Override
+			public void write(FileOutputStream out) throws IOException {
+				FileChannel channel = out.getChannel();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				// the checkpoint must not claim segments that are lost if the device stops
+				channel.force(true);
+			}
+		});
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void getBits(ByteBuffer buffer, BitSet bits) {
+		int longCount = buffer.getInt();
+		for (int i=0; i<longCount; i++) {
+			long word = buffer.getLong();
+			for (int bit=0; bit<64; bit++) {
+				if ((word & (1L<<bit))!=0) {
+					bits.set(i*64+bit);
+				}
+			}
+		}
+	}
+
+	private static long[] toLongs(BitSet bits) {
+		long[] words = new long[(bits.length()+63)/64];
+		for (int bit=bits.nextSetBit(0); bit>=0; bit=bits.nextSetBit(bit+1)) {
+			words[bit/64] |= 1L<<(bit%64);
+		}
+		return words;
+	}
+
+	private static void putLongs(ByteBuffer buffer, long[] longs) {
+		buffer.putInt(longs.length);
+		for (long word : longs) {
+			buffer.putLong(word);
+		}
+	}
+}
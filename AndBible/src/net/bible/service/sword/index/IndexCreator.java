@@ -21,11 +21,20 @@
  */
 package net.bible.service.sword.index;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.crosswire.common.util.Reporter;
 import org.crosswire.jsword.book.Book;
-import org.crosswire.jsword.index.IndexManager;
-import org.crosswire.jsword.index.IndexManagerFactory;
+import org.crosswire.jsword.index.IndexStatus;
+
+import android.util.Log;
 
 /** Optimise Lucene index creation
+ * Indexes are created by ParallelIndexCreator which uses several threads so only one index is created at a time.
+ * Index creation interrupted by the app being killed is resumed when the app next starts.
  * 
  * @author Martin Denham [mjdenham at gmail dot com]
  * @see gnu.lgpl.License for license details.<br>
@@ -33,6 +42,17 @@ import org.crosswire.jsword.index.IndexManagerFactory;
  */
 public class IndexCreator  {
 
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, TAG);
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static final String TAG = "IndexCreator";
+
     /*
      * (non-Javadoc)
      * 
@@ -41,13 +61,42 @@ public class IndexCreator  {
      * .crosswire.common.progress.Job)
      */
     public void scheduleIndexCreation(final Book book) {
-        Thread work = new Thread(new Runnable() {
+    	book.setIndexStatus(IndexStatus.SCHEDULED);
+        executor.execute(new Runnable() {
             public void run() {
-            	IndexManager indexManager = IndexManagerFactory.getIndexManager();
-            	indexManager.setIndexPolicy(new AndroidIndexPolicy());
-                indexManager.scheduleIndexCreation(book);
+            	try {
+            		// the index may have been created by an earlier request e.g. one resuming an interrupted index
+            		if (IndexStatus.DONE.equals(book.getIndexStatus())) {
+            			return;
+            		}
+            		new ParallelIndexCreator(book, new AndroidIndexPolicy()).createIndex();
+            	} catch (Exception e) {
+            		Log.e(TAG, "Error creating index for "+book.getInitials(), e);
+            		Reporter.informUser(this, e);
+            	}
             }
         });
-        work.start();
+    }
+
+    /** resume creation of any indexes that were interrupted, checking for them in the background
+     */
+    public void resumeInterruptedIndexCreation(final List<Book> books) {
+        executor.execute(new Runnable() {
+            public void run() {
+            	for (Book book : books) {
+            		IndexStatus indexStatus = book.getIndexStatus();
+            		if (IndexStatus.UNDONE.equals(indexStatus) && isResumable(book)) {
+            			Log.i(TAG, "Resuming index creation for "+book.getInitials());
+            			scheduleIndexCreation(book);
+            		}
+            	}
+            }
+        });
+    }
+
+    /** @return true if index creation was interrupted and will continue from where it stopped
+     */
+    public static boolean isResumable(Book book) {
+    	return ParallelIndexCreator.isResumable(book);
     }
 }
@@ -0,0 +1,558 @@
+package net.bible.service.sword.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.bible.service.common.CommonUtils;
+import net.bible.service.common.Logger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.crosswire.common.progress.JobManager;
+import org.crosswire.common.progress.Progress;
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.NetUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookData;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.FeatureType;
+import org.crosswire.jsword.book.OSISUtil;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.index.lucene.InstalledIndex;
+import org.crosswire.jsword.index.lucene.LuceneIndex;
+import org.crosswire.jsword.index.lucene.LuceneIndexManager;
+import org.crosswire.jsword.index.lucene.analysis.LuceneAnalyzer;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.jdom2.Element;
+
+/** Create the Lucene index of a book using several threads.
+ * The keys of the book are split into ranges which are analysed by a pool of threads, each writing its own segments,
+ * and the segments are then merged into the final index.
+ * Each segment is committed to disk after a short time and recorded in a checkpoint so if the process is killed
+ * index creation resumes from the checkpoint instead of starting again.
+ * The index contains the same fields as one created by JSword's LuceneIndex so it is searched in the same way.
+ * Threads stop taking new ranges if the policy decides fewer threads should be used e.g. because the battery is getting low.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class ParallelIndexCreator {
+
+	private final Book book;
+
+	private final AndroidIndexPolicy policy;
+
+	private Progress job;
+
+	private List<Key> keys;
+	private int rangeCount;
+	private final AtomicInteger nextRange = new AtomicInteger();
+
+	private File partsDir;
+	private IndexCheckpoint checkpoint;
+	private final AtomicInteger nextSegmentNo = new AtomicInteger();
+
+	// keys not indexed because they could not be read
+	private final List<Key> errors = new ArrayList<Key>();
+
+	// the number of threads allowed to take more key ranges, may be reduced while indexing
+	private volatile int allowedThreadCount;
+
+	private volatile boolean isCancelled;
+
+	// number of keys in each range given to a thread
+	private static final int KEYS_PER_RANGE = 100;
+
+	// how often to check if fewer threads should be used
+	private static final int THROTTLE_CHECK_SECS = 10;
+
+	// how often each thread commits its segment, which is the most work lost if the process is killed
+	private static final int CHECKPOINT_SECS = 30;
+
+	private static final int NO_RANGE = -1;
+
+	// proportion of the progress bar used by merging the segments
+	private static final int MERGE_WORK_PERCENT = 2;
+
+	private static final String PARTS_DIR_SUFFIX = ".parts";
+
+	private static final Logger log = new Logger("ParallelIndexCreator");
+
+	public ParallelIndexCreator(Book book, AndroidIndexPolicy policy) {
+		this.book = book;
+		this.policy = policy;
+	}
+
+	/** create the index, replacing any existing index, and report progress via a JSword Progress job
+	 * If a previous attempt was interrupted then the segments it committed are reused.
+	 */
+	public void createIndex() throws BookException {
+		String initials = book.getInitials();
+		job = JobManager.createJob(String.format(Progress.CREATE_INDEX, initials), "Creating index. Processing "+initials, Thread.currentThread());
+		job.beginJob("Creating index. Processing "+initials);
+
+		IndexStatus finalStatus = IndexStatus.UNDONE;
+		IndexLocator indexLocator = new IndexLocator();
+		File tempDir = null;
+		ExecutorService executor = null;
+		try {
+			URI storage = indexLocator.getStorageArea(book);
+			File indexDir = NetUtil.getAsFile(storage);
+			tempDir = new File(indexDir.getCanonicalPath()+"."+IndexStatus.CREATING);
+			partsDir = getPartsDir(indexDir);
+			deleteIfExists(tempDir);
+
+			book.setIndexStatus(IndexStatus.CREATING);
+			long start = System.currentTimeMillis();
+
+			keys = new ArrayList<Key>();
+			addLeafKeys(book.getGlobalKeyList(), keys);
+			rangeCount = (keys.size()+KEYS_PER_RANGE-1)/KEYS_PER_RANGE;
+			job.setTotalWork(Math.max(1, keys.size()*(100+MERGE_WORK_PERCENT)/100));
+
+			String version = getVersion();
+			checkpoint = IndexCheckpoint.load(partsDir, version, keys.size());
+			if (checkpoint==null) {
+				deleteIfExists(partsDir);
+				checkpoint = new IndexCheckpoint(partsDir, version, keys.size());
+			} else {
+				deleteUncommittedSegments();
+				job.setWork(Math.min(keys.size(), checkpoint.getCompletedRangeCount()*KEYS_PER_RANGE));
+				log.info("Resuming index of "+initials+" after "+checkpoint.getLastKey());
+			}
+			CommonUtils.ensureDirExists(partsDir);
+			nextSegmentNo.set(checkpoint.getSegments().length());
+
+			int remainingRangeCount = rangeCount-checkpoint.getCompletedRangeCount();
+			int threadCount = Math.max(1, Math.min(policy.getThreadCount(), remainingRangeCount));
+			allowedThreadCount = threadCount;
+			int ramBufferSize = policy.getRAMBufferSize(threadCount);
+			log.debug("Indexing "+remainingRangeCount+" of "+rangeCount+" key ranges of "+initials+" with "+threadCount+" threads and "+ramBufferSize+"MB buffers");
+
+			// index ranges of keys on several threads
+			executor = createExecutor(threadCount);
+			List<Future<Void>> segmentFutures = new ArrayList<Future<Void>>();
+			for (int threadNo=0; threadNo<threadCount; threadNo++) {
+				segmentFutures.add(executor.submit(new SegmentIndexer(threadNo, ramBufferSize)));
+			}
+			waitForSegments(segmentFutures);
+
+			// merge committed segments into the final index
+			job.setSectionName("Merging");
+			job.setCancelable(false);
+			List<File> segmentDirs = new ArrayList<File>();
+			BitSet segmentNos = checkpoint.getSegments();
+			for (int segmentNo=segmentNos.nextSetBit(0); segmentNo>=0; segmentNo=segmentNos.nextSetBit(segmentNo+1)) {
+				segmentDirs.add(getSegmentDir(segmentNo));
+			}
+			mergeSegments(segmentDirs, tempDir, new LuceneAnalyzer(book), ramBufferSize);
+
+			// replace any old index with the new one
+			indexLocator.closeIndex(book);
+			deleteIfExists(indexDir);
+			if (!tempDir.renameTo(indexDir)) {
+				throw new BookException("Installation failed.");
+			}
+			InstalledIndex.instance().storeLatestVersionAsInstalledIndexMetadata(book);
+			indexLocator.setIndex(book, new LuceneIndex(book, storage));
+			finalStatus = IndexStatus.DONE;
+
+			if (!errors.isEmpty()) {
+				log.warn(errors.size()+" keys could not be indexed e.g. "+errors.get(0));
+			}
+			log.info("Indexed "+initials+" in "+(System.currentTimeMillis()-start)+"ms");
+		} catch (IOException e) {
+			// the job is finished below, cancelling it would interrupt this thread before the index threads have stopped
+			throw new BookException("Failed to initialize Lucene search engine.", e);
+		} catch (InterruptedException e) {
+			log.info("Index creation cancelled for "+initials);
+		} finally {
+			if (executor!=null) {
+				// stop any threads still running after an error or cancellation before their segments are deleted
+				isCancelled = true;
+				executor.shutdownNow();
+				try {
+					executor.awaitTermination(THROTTLE_CHECK_SECS, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					log.warn("Interrupted waiting for index threads to stop");
+				}
+			}
+			// status must be set before the job finishes because the job finishing triggers a check of the index status
+			book.setIndexStatus(finalStatus);
+			job.done();
+			// committed segments are only kept if the process is killed, not if indexing fails or is cancelled
+			deleteIfExists(tempDir);
+			deleteIfExists(partsDir);
+		}
+	}
+
+	/** @return true if creation of the index of this book was interrupted, e.g. by the process being killed, and can be resumed
+	 */
+	public static boolean isResumable(Book book) {
+		try {
+			File indexDir = NetUtil.getAsFile(new IndexLocator().getStorageArea(book));
+			return IndexCheckpoint.exists(getPartsDir(indexDir));
+		} catch (IOException e) {
+			log.error("Error checking for partial index of "+book.getInitials(), e);
+			return false;
+		}
+	}
+
+	/** @return when the index of this book was last changed, or 0 if it has no index, so results from an older index can be recognised
+	 */
+	public static long getIndexTimestamp(Book book) {
+		try {
+			File indexDir = NetUtil.getAsFile(new IndexLocator().getStorageArea(book));
+			// a new index is moved into place as a whole so its files are newer than the directory
+			long timestamp = indexDir.lastModified();
+			File[] files = indexDir.listFiles();
+			if (files!=null) {
+				for (File file : files) {
+					timestamp = Math.max(timestamp, file.lastModified());
+				}
+			}
+			return timestamp;
+		} catch (IOException e) {
+			log.error("Error finding index of "+book.getInitials(), e);
+			return 0;
+		}
+	}
+
+	/** delete segments committed by an interrupted index creation
+	 */
+	public static void deleteCheckpoint(Book book) {
+		try {
+			File partsDir = getPartsDir(NetUtil.getAsFile(new IndexLocator().getStorageArea(book)));
+			if (partsDir.exists()) {
+				FileUtil.delete(partsDir);
+			}
+		} catch (IOException e) {
+			log.error("Error deleting partial index of "+book.getInitials(), e);
+		}
+	}
+
+	/** merge the segments into a new index in indexDir
+	 */
+	static void mergeSegments(List<File> segmentDirs, File indexDir, Analyzer analyzer, int ramBufferSize) throws IOException {
+		List<Directory> segments = new ArrayList<Directory>();
+		Directory index = null;
+		try {
+			for (File segmentDir : segmentDirs) {
+				segments.add(FSDirectory.open(segmentDir));
+			}
+			index = FSDirectory.open(indexDir);
+			IndexWriter writer = new IndexWriter(index, analyzer, true, IndexWriter.MaxFieldLength.UNLIMITED);
+			try {
+				writer.setRAMBufferSizeMB(ramBufferSize);
+				writer.addIndexesNoOptimize(segments.toArray(new Directory[segments.size()]));
+			} finally {
+				writer.close();
+			}
+		} finally {
+			if (index!=null) {
+				index.close();
+			}
+			for (Directory segment : segments) {
+				segment.close();
+			}
+		}
+	}
+
+	private static File getPartsDir(File indexDir) throws IOException {
+		return new File(indexDir.getCanonicalPath()+PARTS_DIR_SUFFIX);
+	}
+
+	private File getSegmentDir(int segmentNo) {
+		return new File(partsDir, Integer.toString(segmentNo));
+	}
+
+	/** segments being written when the process was killed may be incomplete
+	 */
+	private void deleteUncommittedSegments() {
+		BitSet committedSegments = checkpoint.getSegments();
+		File[] segmentDirs = partsDir.listFiles();
+		if (segmentDirs!=null) {
+			for (File segmentDir : segmentDirs) {
+				if (segmentDir.isDirectory()) {
+					try {
+						if (committedSegments.get(Integer.parseInt(segmentDir.getName()))) {
+							continue;
+						}
+					} catch (NumberFormatException nfe) {
+						// not a segment
+					}
+					FileUtil.delete(segmentDir);
+				}
+			}
+		}
+	}
+
+	/** @return the next range of keys not yet indexed or NO_RANGE if all ranges have been given to a thread
+	 */
+	private int takeRange() {
+		int range;
+		while ((range = nextRange.getAndIncrement())<rangeCount) {
+			if (!checkpoint.isRangeCompleted(range)) {
+				return range;
+			}
+		}
+		return NO_RANGE;
+	}
+
+	private String getVersion() {
+		String version = book.getBookMetaData().getProperty(SwordBookMetaData.KEY_VERSION);
+		return version!=null ? version : "";
+	}
+
+	/** wait for each thread to finish its segments, checking periodically if fewer threads should be used
+	 */
+	private void waitForSegments(List<Future<Void>> segmentFutures) throws InterruptedException, IOException {
+		for (Future<Void> segmentFuture : segmentFutures) {
+			while (true) {
+				try {
+					segmentFuture.get(THROTTLE_CHECK_SECS, TimeUnit.SECONDS);
+					break;
+				} catch (TimeoutException te) {
+					int threadCount = policy.getThreadCount();
+					if (threadCount<allowedThreadCount) {
+						log.info("Reducing index threads to "+threadCount);
+						allowedThreadCount = threadCount;
+					}
+				} catch (ExecutionException ee) {
+					Throwable cause = ee.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException)cause;
+					}
+					IOException ioe = new IOException("Error creating index: "+cause);
+					ioe.initCause(cause);
+					throw ioe;
+				}
+			}
+		}
+	}
+
+	/** only keys without children are indexed
+	 */
+	private void addLeafKeys(Key parent, List<Key> leafKeys) {
+		for (Key key : parent) {
+			if (key.canHaveChildren()) {
+				addLeafKeys(key, leafKeys);
+			} else {
+				leafKeys.add(key);
+			}
+		}
+	}
+
+	private ExecutorService createExecutor(int threadCount) {
+		return Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private int threadNo = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "IndexCreator-"+(threadNo++));
+				// leave some cpu for the ui
+				thread.setPriority(Thread.NORM_PRIORITY-1);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private synchronized void addError(Key key) {
+		errors.add(key);
+	}
+
+	private void deleteIfExists(File dir) {
+		if (dir!=null && dir.exists()) {
+			FileUtil.delete(dir);
+		}
+	}
+
+	/** Index ranges of keys into segments until there are no ranges left or this thread is no longer required.
+	 * Each segment is committed and added to the checkpoint after CHECKPOINT_SECS.
+	 */
+	private class SegmentIndexer implements Callable<Void> {
+
+		private final int threadNo;
+		private final int ramBufferSize;
+
+		private final boolean includeStrongs;
+		private final boolean includeXrefs;
+		private final boolean includeNotes;
+		private final boolean includeHeadings;
+		private final boolean includeMorphology;
+		private final Versification v11n;
+
+		// reused for every key like JSword
+		private final Document doc = new Document();
+		private final Field keyField = new Field(LuceneIndex.FIELD_KEY, "", Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO);
+		private final Field bodyField = createAnalyzedField(LuceneIndex.FIELD_BODY, Field.TermVector.NO);
+		private final Field introField = createAnalyzedField(LuceneIndex.FIELD_INTRO, Field.TermVector.NO);
+		private final Field strongField = createAnalyzedField(LuceneIndex.FIELD_STRONG, Field.TermVector.YES);
+		private final Field xrefField = createAnalyzedField(LuceneIndex.FIELD_XREF, Field.TermVector.NO);
+		private final Field noteField = createAnalyzedField(LuceneIndex.FIELD_NOTE, Field.TermVector.NO);
+		private final Field headingField = createAnalyzedField(LuceneIndex.FIELD_HEADING, Field.TermVector.NO);
+		private final Field morphologyField = createAnalyzedField(LuceneIndex.FIELD_MORPHOLOGY, Field.TermVector.NO);
+
+		SegmentIndexer(int threadNo, int ramBufferSize) {
+			this.threadNo = threadNo;
+			this.ramBufferSize = ramBufferSize;
+
+			BookMetaData bmd = book.getBookMetaData();
+			includeStrongs = bmd.hasFeature(FeatureType.STRONGS_NUMBERS) && policy.isStrongsIndexed();
+			includeXrefs = bmd.hasFeature(FeatureType.SCRIPTURE_REFERENCES) && policy.isXrefIndexed();
+			includeNotes = bmd.hasFeature(FeatureType.FOOTNOTES) && policy.isNoteIndexed();
+			includeHeadings = bmd.hasFeature(FeatureType.HEADINGS) && policy.isTitleIndexed();
+			includeMorphology = bmd.hasFeature(FeatureType.MORPHOLOGY) && policy.isMorphIndexed();
+			v11n = Versifications.instance().getVersification(bmd.getProperty("Versification"));
+		}
+
+		@Override
+		public Void call() throws Exception {
+			// each thread has its own analyzer because analyzers reuse token streams
+			LuceneAnalyzer analyzer = new LuceneAnalyzer(book);
+
+			int range;
+			while (isThreadRequired() && (range = takeRange())!=NO_RANGE) {
+				int segmentNo = nextSegmentNo.getAndIncrement();
+				BitSet segmentRanges = new BitSet();
+				long commitTime = System.currentTimeMillis()+CHECKPOINT_SECS*1000;
+
+				Directory segment = FSDirectory.open(getSegmentDir(segmentNo));
+				try {
+					IndexWriter writer = new IndexWriter(segment, analyzer, true, IndexWriter.MaxFieldLength.UNLIMITED);
+					try {
+						writer.setRAMBufferSizeMB(ramBufferSize);
+						do {
+							indexRange(writer, range);
+							segmentRanges.set(range);
+						} while (System.currentTimeMillis()<commitTime && isThreadRequired() && (range = takeRange())!=NO_RANGE);
+					} finally {
+						// closing the writer commits the segment and syncs it to disk
+						writer.close();
+					}
+				} finally {
+					segment.close();
+				}
+
+				// a cancelled segment may not contain all of its last range
+				if (!isCancelled) {
+					int lastKeyIndex = Math.min(segmentRanges.length()*KEYS_PER_RANGE, keys.size())-1;
+					checkpoint.segmentCommitted(segmentNo, segmentRanges, keys.get(lastKeyIndex).getOsisRef());
+				}
+			}
+			return null;
+		}
+
+		private boolean isThreadRequired() {
+			return !isCancelled && threadNo<allowedThreadCount;
+		}
+
+		private void indexRange(IndexWriter writer, int range) throws IOException {
+			int from = range*KEYS_PER_RANGE;
+			int to = Math.min(from+KEYS_PER_RANGE, keys.size());
+			String sectionName = keys.get(from).getRootName();
+			if (!sectionName.equals(job.getSectionName())) {
+				job.setSectionName(sectionName);
+			}
+
+			for (int i=from; i<to && !isCancelled; i++) {
+				Key key = keys.get(i);
+				Element osis;
+				try {
+					osis = new BookData(book, key).getOsisFragment(false);
+				} catch (BookException e) {
+					addError(key);
+					continue;
+				}
+
+				doc.getFields().clear();
+				keyField.setValue(key.getOsisRef());
+				doc.add(keyField);
+
+				String canonicalText = OSISUtil.getCanonicalText(osis);
+				if (key instanceof Verse && ((Verse)key).getVerse()==0) {
+					addField(introField, canonicalText);
+				} else {
+					addField(bodyField, canonicalText);
+				}
+				if (includeStrongs) {
+					addField(strongField, OSISUtil.getStrongsNumbers(osis));
+				}
+				if (includeXrefs) {
+					addField(xrefField, OSISUtil.getReferences(book, key, v11n, osis));
+				}
+				if (includeNotes) {
+					addField(noteField, OSISUtil.getNotes(osis));
+				}
+				if (includeHeadings) {
+					addField(headingField, OSISUtil.getHeadings(osis));
+				}
+				if (includeMorphology) {
+					addField(morphologyField, OSISUtil.getMorphologiesWithStrong(osis));
+				}
+
+				if (doc.getFields().size()>1) {
+					writer.addDocument(doc);
+				}
+			}
+			job.incrementWorkDone(to-from);
+		}
+
+		private void addField(Field field, String text) {
+			if (text!=null && text.length()>0) {
+				field.setValue(text);
+				doc.add(field);
+			}
+		}
+
+		private Field createAnalyzedField(String name, Field.TermVector termVector) {
+			return new Field(name, "", Field.Store.NO, Field.Index.ANALYZED, termVector);
+		}
+	}
+
+	/** Gives access to where JSword keeps each index and to the indexes JSword has open
+	 */
+	private static class IndexLocator extends LuceneIndexManager {
+
+		@Override
+		protected URI getStorageArea(Book book) throws IOException {
+			return super.getStorageArea(book);
+		}
+
+		void closeIndex(Book book) {
+			Index index = INDEXES.remove(book);
+			if (index!=null) {
+				index.close();
+			}
+		}
+
+		void setIndex(Book book, Index index) {
+			INDEXES.put(book, index);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package net.bible.service.sword.ztext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.bible.service.common.Logger;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.BooksEvent;
+import org.crosswire.jsword.book.BooksListener;
+import org.crosswire.jsword.book.basic.AbstractBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * Fetch raw verse text using the shared decompressed block cache for zText and zCom modules,
+ * or JSword for any other type of document.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class RawTextReader {
+
+	private final Map<String, ZTextReader> zTextReaders = new HashMap<>();
+
+	private final ZTextBlockCache blockCache = ZTextBlockCache.getInstance();
+
+	private static RawTextReader singleton;
+
+	private static final Logger log = new Logger("RawTextReader");
+
+	public static RawTextReader getInstance() {
+		if (singleton==null) {
+			synchronized(RawTextReader.class) {
+				if (singleton==null) {
+					singleton = new RawTextReader();
+				}
+			}
+		}
+		return singleton;
+	}
+
+	private RawTextReader() {
+		// a reinstalled book may have different content and files must not be held open for a deleted book
+		Books.installed().addBooksListener(new BooksListener() {
+			@Override
+			public void bookAdded(BooksEvent ev) {
+				bookChanged(ev.getBook());
+			}
+			@Override
+			public void bookRemoved(BooksEvent ev) {
+				bookChanged(ev.getBook());
+			}
+		});
+	}
+
+	/** equivalent to book.getRawText(key) but faster for repeated access to compressed documents
+	 */
+	public String getRawText(Book book, Key key) throws BookException {
+		ZTextReader zTextReader = getZTextReader(book);
+		if (zTextReader!=null) {
+			try {
+				return zTextReader.getRawText(key);
+			} catch (Exception e) {
+				log.error("Error reading "+book.getInitials()+" "+key.getOsisID()+" - using JSword", e);
+			}
+		}
+		return book.getRawText(key);
+	}
+
+	public ZTextBlockCache getBlockCache() {
+		return blockCache;
+	}
+
+	/** @return null if the book is not a compressed verse based module
+	 */
+	private synchronized ZTextReader getZTextReader(Book book) {
+		String initials = book.getInitials();
+		ZTextReader zTextReader = zTextReaders.get(initials);
+		if (zTextReader==null && !zTextReaders.containsKey(initials)) {
+			if (isZVerseModule(book)) {
+				try {
+					zTextReader = new ZTextReader(initials, ((AbstractBook)book).getBackend(), blockCache);
+				} catch (Exception e) {
+					log.error("Unable to read "+initials+" directly", e);
+				}
+			}
+			// also remember if this book can not use a ZTextReader
+			zTextReaders.put(initials, zTextReader);
+		}
+		return zTextReader;
+	}
+
+	private boolean isZVerseModule(Book book) {
+		String modDrv = book.getBookMetaData().getProperty(SwordBookMetaData.KEY_MOD_DRV);
+		return book instanceof AbstractBook &&
+				("zText".equalsIgnoreCase(modDrv) || "zCom".equalsIgnoreCase(modDrv));
+	}
+
+	private synchronized void bookChanged(Book book) {
+		String initials = book.getInitials();
+		ZTextReader zTextReader = zTextReaders.remove(initials);
+		if (zTextReader!=null) {
+			zTextReader.close();
+		}
+		blockCache.invalidate(initials);
+	}
+}
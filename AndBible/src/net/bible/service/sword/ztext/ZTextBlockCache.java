@@ -0,0 +1,202 @@
+package net.bible.service.sword.ztext;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.bible.android.BibleApplication;
+
+import org.crosswire.jsword.versification.Testament;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.support.v4.util.LruCache;
+
+/**
+ * Process wide cache of decompressed zText blocks.
+ * JSword only remembers the last block read for each open book so switching between windows, testaments or documents
+ * e.g. in Compare Translations would repeatedly inflate the same blocks.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class ZTextBlockCache {
+
+	private volatile LruCache<BlockKey, byte[]> cache;
+
+	// the cache grows to hold several of the largest blocks read but not beyond this
+	private int maxGrowthBytes;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	// a block is often a whole book of the Bible, which is a few MB uncompressed in some large modules,
+	// so enough blocks must fit to switch between a few books or windows without inflating them again
+	private static final int MIN_CACHED_BLOCKS = 4;
+
+	// initial and maximum share of the memory the app should use, which leaves most of it for pages, bitmaps and other caches
+	private static final int DEFAULT_FRACTION_OF_MEMORY = 32;
+	private static final int MAX_FRACTION_OF_MEMORY = 8;
+	private static final int MIN_MAX_BYTES = 2*1024*1024;
+
+	public static ZTextBlockCache getInstance() {
+		return SingletonHolder.INSTANCE;
+	}
+
+	/** the class loader creates the instance when it is first used, which is thread safe without locking
+	 */
+	private static class SingletonHolder {
+		private static final ZTextBlockCache INSTANCE = create();
+	}
+
+	private static ZTextBlockCache create() {
+		long memory = getAppMemoryBytes();
+		int maxGrowthBytes = (int)Math.min(Math.max(memory/MAX_FRACTION_OF_MEMORY, MIN_MAX_BYTES), Integer.MAX_VALUE);
+		int maxBytes = (int)Math.min(Math.max(memory/DEFAULT_FRACTION_OF_MEMORY, MIN_MAX_BYTES), maxGrowthBytes);
+		return new ZTextBlockCache(maxBytes, maxGrowthBytes);
+	}
+
+	/** @return the memory class of the device, which is less than the heap if the app has a large heap, or the heap if not running in Android
+	 */
+	private static long getAppMemoryBytes() {
+		long heap = Runtime.getRuntime().maxMemory();
+		BibleApplication application = BibleApplication.getApplication();
+		if (application!=null) {
+			ActivityManager activityManager = (ActivityManager)application.getSystemService(Context.ACTIVITY_SERVICE);
+			if (activityManager!=null) {
+				return Math.min(heap, activityManager.getMemoryClass()*1024L*1024L);
+			}
+		}
+		return heap;
+	}
+
+	/* package */ ZTextBlockCache(int maxBytes, int maxGrowthBytes) {
+		cache = createCache(maxBytes);
+		this.maxGrowthBytes = maxGrowthBytes;
+	}
+
+	/** return the uncompressed block or null if it is not cached
+	 */
+	public byte[] get(String moduleInitials, Testament testament, long blockNum) {
+		byte[] block = cache.get(new BlockKey(moduleInitials, testament, blockNum));
+		if (block!=null) {
+			hitCount.incrementAndGet();
+		} else {
+			missCount.incrementAndGet();
+		}
+		return block;
+	}
+
+	public void put(String moduleInitials, Testament testament, long blockNum, byte[] uncompressedBlock) {
+		ensureCapacity(uncompressedBlock.length);
+		cache.put(new BlockKey(moduleInitials, testament, blockNum), uncompressedBlock);
+	}
+
+	/** a module has been deleted or reinstalled
+	 */
+	public void invalidate(String moduleInitials) {
+		for (BlockKey key : cache.snapshot().keySet()) {
+			if (key.moduleInitials.equals(moduleInitials)) {
+				cache.remove(key);
+			}
+		}
+	}
+
+	/** change the maximum memory used by the cache which also clears the cache
+	 */
+	public synchronized void setMaxBytes(int maxBytes) {
+		cache = createCache(maxBytes);
+		maxGrowthBytes = maxBytes;
+	}
+
+	public int getMaxBytes() {
+		return cache.maxSize();
+	}
+
+	/** grow the cache, keeping its content, if it cannot hold MIN_CACHED_BLOCKS blocks of this size
+	 */
+	private synchronized void ensureCapacity(int blockSize) {
+		long requiredBytes = (long)blockSize*MIN_CACHED_BLOCKS;
+		int maxBytes = cache.maxSize();
+		if (requiredBytes>maxBytes && maxBytes<maxGrowthBytes) {
+			LruCache<BlockKey, byte[]> largerCache = createCache((int)Math.min(requiredBytes, maxGrowthBytes));
+			// the snapshot is ordered from least to most recently used which is the order they must be added
+			for (Map.Entry<BlockKey, byte[]> entry : cache.snapshot().entrySet()) {
+				largerCache.put(entry.getKey(), entry.getValue());
+			}
+			cache = largerCache;
+		}
+	}
+
+	public void clear() {
+		cache.evictAll();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return cache.evictionCount();
+	}
+
+	/** @return the proportion of block requests satisfied by the cache
+	 */
+	public float getHitRate() {
+		long hits = hitCount.get();
+		long total = hits+missCount.get();
+		return total==0 ? 0 : (float)hits/total;
+	}
+
+	@Override
+	public String toString() {
+		return "ZTextBlockCache[hits="+getHitCount()+" misses="+getMissCount()+" hitRate="+getHitRate()+" evictions="+getEvictionCount()+" bytes="+cache.size()+"/"+cache.maxSize()+"]";
+	}
+
+	private LruCache<BlockKey, byte[]> createCache(int maxBytes) {
+		return new LruCache<BlockKey, byte[]>(maxBytes) {
+			@Override
+			protected int sizeOf(BlockKey key, byte[] block) {
+				return block.length;
+			}
+		};
+	}
+
+	private static class BlockKey {
+		private final String moduleInitials;
+		private final Testament testament;
+		private final long blockNum;
+
+		BlockKey(String moduleInitials, Testament testament, long blockNum) {
+			this.moduleInitials = moduleInitials;
+			this.testament = testament;
+			this.blockNum = blockNum;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (int) (blockNum ^ (blockNum >>> 32));
+			result = prime * result + moduleInitials.hashCode();
+			result = prime * result + testament.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			BlockKey other = (BlockKey) obj;
+			return blockNum == other.blockNum && testament == other.testament && moduleInitials.equals(other.moduleInitials);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package net.bible.service.sword.ztext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.crosswire.common.util.IOUtil;
+
+/**
+ * One of the .?zs, .?zv, or .?zz files of a zText module.
+ * Index entries are little-endian and are read by first selecting the entry and then decoding fields relative to the start of the entry.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+abstract class ZTextFile {
+
+	/** open the file either memory mapped, or for seek and read access
+	 */
+	static ZTextFile open(File file, boolean isMemoryMapped) throws IOException {
+		if (isMemoryMapped) {
+			return new MappedZTextFile(file);
+		} else {
+			return new RandomAccessZTextFile(file);
+		}
+	}
+
+	abstract long length();
+
+	/** select the entry at offset for subsequent getInt/getUnsignedShort calls
+	 *
+	 * @return false if the file is too short
+	 */
+	abstract boolean selectEntry(long offset, int entrySize) throws IOException;
+
+	/** little-endian int at offsetInEntry within the selected entry
+	 */
+	abstract int getInt(int offsetInEntry);
+
+	/** little-endian unsigned short at offsetInEntry within the selected entry
+	 */
+	abstract int getUnsignedShort(int offsetInEntry);
+
+	/** fill the buffer from the file
+	 *
+	 * @return false if the file is too short
+	 */
+	abstract boolean read(long offset, byte[] buffer) throws IOException;
+
+	abstract void close();
+
+	/**
+	 * The whole file is mapped into memory when opened so lookups do not require any system calls.
+	 */
+	private static class MappedZTextFile extends ZTextFile {
+		private MappedByteBuffer buffer;
+		private int entryStart;
+
+		MappedZTextFile(File file) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				// the mapping remains valid after the channel is closed
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+			} finally {
+				IOUtil.close(raf);
+			}
+		}
+
+		@Override
+		long length() {
+			return buffer.capacity();
+		}
+
+		@Override
+		boolean selectEntry(long offset, int entrySize) {
+			if (offset<0 || offset+entrySize > buffer.capacity()) {
+				return false;
+			}
+			entryStart = (int)offset;
+			return true;
+		}
+
+		@Override
+		int getInt(int offsetInEntry) {
+			return buffer.getInt(entryStart+offsetInEntry);
+		}
+
+		@Override
+		int getUnsignedShort(int offsetInEntry) {
+			return buffer.getShort(entryStart+offsetInEntry) & 0xFFFF;
+		}
+
+		@Override
+		boolean read(long offset, byte[] data) {
+			if (offset<0 || offset+data.length > buffer.capacity()) {
+				return false;
+			}
+			// there is no absolute bulk get so the buffer position is moved, which is why the owning reader must synchronize access
+			buffer.position((int)offset);
+			buffer.get(data);
+			return true;
+		}
+
+		@Override
+		void close() {
+			// there is no way to unmap a buffer explicitly so allow it to be garbage collected
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Seek and read each entry, like JSword's SwordUtil.readRAF.
+	 */
+	private static class RandomAccessZTextFile extends ZTextFile {
+		private RandomAccessFile raf;
+		private long length;
+
+		// the selected entry, large enough for any zText index entry
+		private final byte[] entry = new byte[16];
+
+		RandomAccessZTextFile(File file) throws IOException {
+			raf = new RandomAccessFile(file, "r");
+			length = raf.length();
+		}
+
+		@Override
+		long length() {
+			return length;
+		}
+
+		@Override
+		boolean selectEntry(long offset, int entrySize) throws IOException {
+			if (offset<0 || offset+entrySize > length) {
+				return false;
+			}
+			raf.seek(offset);
+			raf.readFully(entry, 0, entrySize);
+			return true;
+		}
+
+		@Override
+		int getInt(int offsetInEntry) {
+			return (entry[offsetInEntry] & 0xFF) |
+					((entry[offsetInEntry+1] & 0xFF) << 8) |
+					((entry[offsetInEntry+2] & 0xFF) << 16) |
+					((entry[offsetInEntry+3] & 0xFF) << 24);
+		}
+
+		@Override
+		int getUnsignedShort(int offsetInEntry) {
+			return (entry[offsetInEntry] & 0xFF) | ((entry[offsetInEntry+1] & 0xFF) << 8);
+		}
+
+		@Override
+		boolean read(long offset, byte[] data) throws IOException {
+			if (offset<0 || offset+data.length > length) {
+				return false;
+			}
+			raf.seek(offset);
+			raf.readFully(data);
+			return true;
+		}
+
+		@Override
+		void close() {
+			IOUtil.close(raf);
+			raf = null;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package net.bible.service.sword.ztext;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.bible.service.common.Logger;
+
+import org.crosswire.common.compress.CompressorType;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.sword.Backend;
+import org.crosswire.jsword.book.sword.BlockType;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.book.sword.SwordUtil;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Testament;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * Read raw verse text from a zText/zCom module in the same way as JSword's ZVerseBackend,
+ * but using the process wide ZTextBlockCache for decompressed blocks.
+ * By default the index files, and the compressed text file if not too large, are memory mapped when first needed
+ * so that iterating through many verses does not require any system calls once blocks are cached.
+ *
+ * @author Martin Denham [mjdenham at gmail dot com]
+ * @see gnu.lgpl.License for license details.<br>
+ *      The copyright to this program is held by it's author.
+ */
+public class ZTextReader {
+
+	private final String initials;
+	private final Backend<?> backend;
+	private final Versification versification;
+	private final String charset;
+	private final String compressType;
+	private final File dataDir;
+	private final String blockIndicator;
+
+	private final ZTextBlockCache blockCache;
+
+	private final boolean isMemoryMapped;
+
+	private TestamentFiles otFiles;
+	private TestamentFiles ntFiles;
+
+	// .bzv entries are blockNum(4), verseStart(4), verseSize(2)
+	private static final int VERSE_INDEX_ENTRY_SIZE = 10;
+	// .bzs entries are blockStart(4), blockSize(4), uncompressedSize(4)
+	private static final int BLOCK_INDEX_ENTRY_SIZE = 12;
+
+	// larger text files are read with seek and read to avoid exhausting address space on 32 bit devices
+	private static final long MAX_MAPPED_TEXT_FILE_SIZE = 16*1024*1024;
+
+	private static final Logger log = new Logger("ZTextReader");
+
+	public ZTextReader(String initials, Backend<?> backend, ZTextBlockCache blockCache) throws BookException {
+		this(initials, backend, blockCache, true);
+	}
+
+	/**
+	 * @param isMemoryMapped false to seek and read the files for every lookup, as JSword does
+	 */
+	public ZTextReader(String initials, Backend<?> backend, ZTextBlockCache blockCache, boolean isMemoryMapped) throws BookException {
+		this.initials = initials;
+		this.backend = backend;
+		this.blockCache = blockCache;
+		this.isMemoryMapped = isMemoryMapped;
+
+		SwordBookMetaData bookMetaData = backend.getBookMetaData();
+		versification = Versifications.instance().getVersification(bookMetaData.getProperty(BookMetaData.KEY_VERSIFICATION));
+		charset = bookMetaData.getBookCharset();
+		compressType = bookMetaData.getProperty(SwordBookMetaData.KEY_COMPRESS_TYPE);
+		blockIndicator = String.valueOf(BlockType.fromString(bookMetaData.getProperty(SwordBookMetaData.KEY_BLOCK_TYPE)).getIndicator());
+		dataDir = new File(SwordUtil.getExpandedDataPath(bookMetaData).getPath());
+	}
+
+	/** equivalent to ZVerseBackend.readRawContent
+	 */
+	public synchronized String getRawText(Key key) throws IOException {
+		Verse verse = KeyUtil.getVerse(key);
+
+		int ordinal = verse.getOrdinal();
+		Testament testament = versification.getTestament(ordinal);
+		int testamentOrdinal = versification.getTestamentOrdinal(ordinal);
+
+		TestamentFiles files = getTestamentFiles(testament);
+		// If Bible does not contain the desired testament, return nothing.
+		if (files==null) {
+			return "";
+		}
+
+		// If the Bible does not contain the desired verse, return nothing.
+		if (!selectEntry(files.verseIndex, 1L*testamentOrdinal*VERSE_INDEX_ENTRY_SIZE, VERSE_INDEX_ENTRY_SIZE)) {
+			return "";
+		}
+
+		long blockNum = files.verseIndex.getInt(0) & 0xFFFFFFFFL;
+		int verseStart = files.verseIndex.getInt(4);
+		int verseSize = files.verseIndex.getUnsignedShort(8);
+
+		byte[] uncompressed = getUncompressedBlock(files, testament, blockNum);
+		if (uncompressed==null || verseStart+verseSize>uncompressed.length) {
+			return "";
+		}
+
+		return SwordUtil.decode(key.getName(), uncompressed, verseStart, verseSize, charset);
+	}
+
+	/** release file handles
+	 */
+	public synchronized void close() {
+		if (otFiles!=null) {
+			otFiles.close();
+			otFiles = null;
+		}
+		if (ntFiles!=null) {
+			ntFiles.close();
+			ntFiles = null;
+		}
+	}
+
+	private byte[] getUncompressedBlock(TestamentFiles files, Testament testament, long blockNum) throws IOException {
+		byte[] uncompressed = blockCache.get(initials, testament, blockNum);
+		if (uncompressed==null) {
+			if (!selectEntry(files.blockIndex, blockNum*BLOCK_INDEX_ENTRY_SIZE, BLOCK_INDEX_ENTRY_SIZE)) {
+				return null;
+			}
+
+			int blockStart = files.blockIndex.getInt(0);
+			int blockSize = files.blockIndex.getInt(4);
+			int uncompressedSize = files.blockIndex.getInt(8);
+
+			byte[] data = new byte[blockSize];
+			if (!files.text.read(blockStart & 0xFFFFFFFFL, data)) {
+				log.error("Attempt to read beyond end of "+initials+" text offset="+blockStart);
+				return null;
+			}
+
+			backend.decipher(data);
+
+			uncompressed = CompressorType.fromString(compressType).getCompressor(data).uncompress(uncompressedSize).toByteArray();
+
+			blockCache.put(initials, testament, blockNum, uncompressed);
+		}
+		return uncompressed;
+	}
+
+	private boolean selectEntry(ZTextFile indexFile, long offset, int entrySize) throws IOException {
+		if (!indexFile.selectEntry(offset, entrySize)) {
+			log.error("Attempt to read beyond end of "+initials+" index offset="+offset);
+			return false;
+		}
+		return true;
+	}
+
+	private TestamentFiles getTestamentFiles(Testament testament) throws IOException {
+		if (Testament.OLD.equals(testament)) {
+			if (otFiles==null) {
+				otFiles = openTestamentFiles("ot");
+			}
+			return otFiles;
+		} else {
+			if (ntFiles==null) {
+				ntFiles = openTestamentFiles("nt");
+			}
+			return ntFiles;
+		}
+	}
+
+	/** @return null if the module does not contain this testament
+	 */
+	private TestamentFiles openTestamentFiles(String testamentFilePrefix) throws IOException {
+		String allButLast = testamentFilePrefix+"."+blockIndicator+"z";
+		File blockIndexFile = new File(dataDir, allButLast+"s");
+		if (!blockIndexFile.canRead()) {
+			return null;
+		}
+		File textFile = new File(dataDir, allButLast+"z");
+		boolean isTextMemoryMapped = isMemoryMapped && textFile.length()<=MAX_MAPPED_TEXT_FILE_SIZE;
+		return new TestamentFiles(blockIndexFile, new File(dataDir, allButLast+"v"), textFile, isMemoryMapped, isTextMemoryMapped);
+	}
+
+	private static class TestamentFiles {
+		private ZTextFile blockIndex;
+		private ZTextFile verseIndex;
+		private ZTextFile text;
+
+		TestamentFiles(File blockIndexFile, File verseIndexFile, File textFile, boolean isIndexMemoryMapped, boolean isTextMemoryMapped) throws IOException {
+			try {
+				blockIndex = ZTextFile.open(blockIndexFile, isIndexMemoryMapped);
+				verseIndex = ZTextFile.open(verseIndexFile, isIndexMemoryMapped);
+				text = ZTextFile.open(textFile, isTextMemoryMapped);
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		void close() {
+			if (blockIndex!=null) {
+				blockIndex.close();
+			}
+			if (verseIndex!=null) {
+				verseIndex.close();
+			}
+			if (text!=null) {
+				text.close();
+			}
+		}
+	}
+}
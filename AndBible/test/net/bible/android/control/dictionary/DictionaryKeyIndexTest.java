@@ -0,0 +1,197 @@
+package net.bible.android.control.dictionary;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.bible.android.control.dictionary.DictionaryKeyIndex.PrefixMatch;
+
+import org.crosswire.jsword.passage.DefaultLeafKeyList;
+import org.crosswire.jsword.passage.Key;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DictionaryKeyIndexTest {
+
+	// module order is not necessarily sorted e.g. an introduction is often first
+	private static final List<String> NAMES = Arrays.asList("Introduction", "Aaron", "abba", "Abba", "Abraham", "Bethel", "Élie", "Zion");
+
+	private DictionaryKeyIndex keyIndex;
+
+	@Before
+	public void setUp() {
+		keyIndex = DictionaryKeyIndex.create(NAMES);
+	}
+
+	@Test
+	public void testGetName() {
+		assertThat(keyIndex.size(), is(NAMES.size()));
+		for (int i=0; i<NAMES.size(); i++) {
+			assertThat(keyIndex.getName(i), equalTo(NAMES.get(i)));
+		}
+	}
+
+	@Test
+	public void testIndexOf() {
+		for (int i=0; i<NAMES.size(); i++) {
+			assertThat(keyIndex.indexOf(NAMES.get(i)), is(i));
+		}
+		assertThat(keyIndex.indexOf("ABBA"), is(-1));
+		assertThat(keyIndex.indexOf("Missing"), is(-1));
+	}
+
+	@Test
+	public void testKeyListNextAndPrevious() {
+		List<Key> keyList = keyIndex.asKeyList();
+		int position = keyList.indexOf(new DefaultLeafKeyList("Abraham"));
+		assertThat(position, is(4));
+		assertThat(keyList.get(position+1).getName(), equalTo("Bethel"));
+		assertThat(keyList.get(position-1).getName(), equalTo("Abba"));
+		assertThat(keyList.get(0), equalTo((Key)new DefaultLeafKeyList("Introduction")));
+	}
+
+	@Test
+	public void testGetKeysStartingWith() {
+		assertThat(getNames(keyIndex.getKeysStartingWith("ab")), equalTo(Arrays.asList("abba", "Abba", "Abraham")));
+		assertThat(getNames(keyIndex.getKeysStartingWith("ABR")), equalTo(Arrays.asList("Abraham")));
+		assertThat(getNames(keyIndex.getKeysStartingWith("é")), equalTo(Arrays.asList("Élie")));
+		assertThat(getNames(keyIndex.getKeysStartingWith("eli")), equalTo(Arrays.asList("Élie")));
+		assertThat(keyIndex.getKeysStartingWith("abx").size(), is(0));
+		assertThat(keyIndex.getKeysStartingWith("zz").size(), is(0));
+		assertThat(keyIndex.getKeysStartingWith("").size(), is(NAMES.size()));
+	}
+
+	@Test
+	public void testNarrowPreviousMatch() {
+		PrefixMatch a = keyIndex.findKeysStartingWith("A", null);
+		assertThat(a.size(), is(4));
+		PrefixMatch ab = keyIndex.findKeysStartingWith("Ab", a);
+		assertThat(getNames(ab.getKeys(0, 10)), equalTo(Arrays.asList("abba", "Abba", "Abraham")));
+		assertThat(getNames(ab.getKeys(1, 1)), equalTo(Arrays.asList("Abba")));
+
+		// a shorter search can not use the previous matches
+		PrefixMatch b = keyIndex.findKeysStartingWith("b", ab);
+		assertThat(getNames(b.getKeys(0, 10)), equalTo(Arrays.asList("Bethel")));
+	}
+
+	/**
+	 * Type words into a search of a large random lexicon and check every keystroke finds the same keys as scanning all of them.
+	 */
+	@Test
+	public void testTypingMatchesScan() {
+		Random random = new Random(1);
+		String letters = "abcdefghijklmnopqrstuvwxyz";
+		List<String> names = new ArrayList<String>();
+		for (int i=0; i<20000; i++) {
+			StringBuilder name = new StringBuilder();
+			int length = 1+random.nextInt(8);
+			for (int j=0; j<length; j++) {
+				name.append(letters.charAt(random.nextInt(letters.length())));
+			}
+			name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+			names.add(name.toString());
+		}
+		DictionaryKeyIndex lexicon = DictionaryKeyIndex.create(names);
+
+		for (String word : new String[] {"abr", "elohim", "zion", "qwerty", "m"}) {
+			PrefixMatch previous = null;
+			for (int i=1; i<=word.length(); i++) {
+				String typed = word.substring(0, i);
+				previous = lexicon.findKeysStartingWith(typed, previous);
+
+				// the way keys were found before the index
+				List<String> scanMatches = new ArrayList<String>();
+				for (String name : names) {
+					if (name.toLowerCase().startsWith(typed)) {
+						scanMatches.add(name);
+					}
+				}
+				List<String> found = getNames(previous.getKeys(0, previous.size()));
+				Collections.sort(found);
+				Collections.sort(scanMatches);
+				assertThat("Different keys for "+typed, found, equalTo(scanMatches));
+			}
+		}
+	}
+
+	/**
+	 * Time each keystroke while typing words into a search of a 100,000 key lexicon, compared to scanning every key.
+	 * Takes a while so only runs when the benchmark system property is set e.g. -Dbenchmark=true
+	 */
+	@Test
+	public void benchmarkTypingLatency() {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+
+		Random random = new Random(1);
+		String letters = "abcdefghijklmnopqrstuvwxyzéèâôü";
+		List<String> names = new ArrayList<String>();
+		for (int i=0; i<100000; i++) {
+			StringBuilder name = new StringBuilder();
+			int length = 3+random.nextInt(10);
+			for (int j=0; j<length; j++) {
+				name.append(letters.charAt(random.nextInt(letters.length())));
+			}
+			name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+			names.add(name.toString());
+		}
+
+		long createStart = System.nanoTime();
+		DictionaryKeyIndex lexicon = DictionaryKeyIndex.create(names);
+		System.out.println("Created index of "+lexicon.size()+" keys in "+(System.nanoTime()-createStart)/1000000+"ms");
+
+		List<Key> keys = new ArrayList<Key>();
+		for (String name : names) {
+			keys.add(new DefaultLeafKeyList(name));
+		}
+
+		String[] words = {"abraham", "elohim", "zion", "qwerty", "m"};
+		for (int repeat=0; repeat<3; repeat++) {
+			long indexMax = 0, indexTotal = 0, scanMax = 0, scanTotal = 0;
+			int keystrokes = 0;
+			for (String word : words) {
+				PrefixMatch previous = null;
+				for (int i=1; i<=word.length(); i++) {
+					String typed = word.substring(0, i);
+
+					long start = System.nanoTime();
+					previous = lexicon.findKeysStartingWith(typed, previous);
+					previous.getKeys(0, DictionaryKeySearcher.PAGE_SIZE);
+					long indexNanos = System.nanoTime()-start;
+
+					// the way keys were found before the index
+					start = System.nanoTime();
+					List<Key> scanMatches = new ArrayList<Key>();
+					for (Key key : keys) {
+						if (key.getName().toLowerCase().startsWith(typed)) {
+							scanMatches.add(key);
+						}
+					}
+					long scanNanos = System.nanoTime()-start;
+
+					indexMax = Math.max(indexMax, indexNanos);
+					indexTotal += indexNanos;
+					scanMax = Math.max(scanMax, scanNanos);
+					scanTotal += scanNanos;
+					keystrokes++;
+				}
+			}
+			System.out.println("Index per keystroke avg:"+indexTotal/keystrokes/1000+"us max:"+indexMax/1000+"us");
+			System.out.println("Scan per keystroke avg:"+scanTotal/keystrokes/1000+"us max:"+scanMax/1000+"us");
+		}
+	}
+
+	private List<String> getNames(List<Key> keys) {
+		List<String> names = new ArrayList<String>();
+		for (Key key : keys) {
+			names.add(key.getName());
+		}
+		return names;
+	}
+}
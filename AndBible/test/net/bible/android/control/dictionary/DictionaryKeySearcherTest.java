@@ -0,0 +1,97 @@
+package net.bible.android.control.dictionary;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.bible.android.control.dictionary.DictionaryKeySearcher.KeysFoundListener;
+
+import org.crosswire.jsword.passage.Key;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DictionaryKeySearcherTest {
+
+	private static final int KEY_COUNT = 250;
+
+	private DictionaryKeySearcher keySearcher;
+
+	@Before
+	public void setUp() {
+		List<String> names = new ArrayList<String>();
+		for (int i=0; i<KEY_COUNT; i++) {
+			names.add(String.format("G%04d", i));
+		}
+		names.add("H0001");
+		keySearcher = new DictionaryKeySearcher(DictionaryKeyIndex.create(names));
+	}
+
+	@After
+	public void tearDown() {
+		keySearcher.shutdown();
+	}
+
+	@Test
+	public void testResultsReturnedInPages() throws Exception {
+		RecordingListener listener = new RecordingListener(1);
+		keySearcher.search("g", listener);
+		listener.await();
+		assertThat(listener.keys.size(), is(DictionaryKeySearcher.PAGE_SIZE));
+		assertThat(listener.totalMatches, is(KEY_COUNT));
+		assertThat(listener.keys.get(0).getName(), equalTo("G0000"));
+
+		listener.expect(2);
+		keySearcher.loadMore(listener);
+		keySearcher.loadMore(listener);
+		listener.await();
+		assertThat(listener.keys.size(), is(KEY_COUNT));
+		assertThat(listener.keys.get(KEY_COUNT-1).getName(), equalTo("G0249"));
+	}
+
+	@Test
+	public void testSupersededSearchIgnored() throws Exception {
+		RecordingListener listener = new RecordingListener(1);
+		// earlier searches may be skipped or may return keys but the last search must replace them
+		keySearcher.search("g", listener);
+		keySearcher.search("g0", listener);
+		keySearcher.search("h", listener);
+		listener.await();
+		Thread.sleep(100);
+		assertThat(listener.keys.size(), is(1));
+		assertThat(listener.keys.get(0).getName(), equalTo("H0001"));
+	}
+
+	private static class RecordingListener implements KeysFoundListener {
+		private List<Key> keys = new ArrayList<Key>();
+		private int totalMatches;
+		private CountDownLatch latch;
+
+		RecordingListener(int expectedPages) {
+			expect(expectedPages);
+		}
+
+		void expect(int expectedPages) {
+			latch = new CountDownLatch(expectedPages);
+		}
+
+		void await() throws InterruptedException {
+			assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+		}
+
+		@Override
+		public synchronized void keysFound(List<Key> keys, boolean isFirstPage, int totalMatches) {
+			if (isFirstPage) {
+				this.keys.clear();
+			}
+			this.keys.addAll(keys);
+			this.totalMatches = totalMatches;
+			latch.countDown();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package net.bible.android.control.navigation;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import net.bible.service.common.CommonUtils;
+
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.versification.BibleBook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DocumentBibleBooksDaoTest {
+
+	private File summaryDir;
+	private DocumentBibleBooksDao documentBibleBooksDao;
+	private AbstractPassageBook esv;
+
+	@Before
+	public void setUp() throws Exception {
+		summaryDir = new File(System.getProperty("java.io.tmpdir"), "DocumentBibleBooksDaoTest");
+		documentBibleBooksDao = new DocumentBibleBooksDao(summaryDir);
+		esv = (AbstractPassageBook)Books.installed().getBook("ESV");
+	}
+
+	@After
+	public void tearDown() {
+		CommonUtils.deleteDirectory(summaryDir);
+	}
+
+	@Test
+	public void testSaveAndLoad() {
+		assertThat(documentBibleBooksDao.load(esv), nullValue());
+
+		DocumentBibleBooks calculated = new DocumentBibleBooks(esv);
+		documentBibleBooksDao.save(esv, calculated);
+
+		DocumentBibleBooks loaded = documentBibleBooksDao.load(esv);
+		assertThat(loaded.getBookList(), equalTo(calculated.getBookList()));
+		assertThat(loaded.isOnlyScripture(), is(calculated.isOnlyScripture()));
+		assertThat(loaded.isProbablyIBT(), is(false));
+		assertThat(loaded.contains(BibleBook.OBAD), is(true));
+		assertThat(loaded.contains(BibleBook.PR_AZAR), is(false));
+		assertThat(loaded.getLastChapter(BibleBook.GEN), equalTo(50));
+		assertThat(loaded.getLastChapter(BibleBook.PR_AZAR), equalTo(0));
+	}
+
+	@Test
+	public void testDelete() {
+		documentBibleBooksDao.save(esv, new DocumentBibleBooks(esv));
+		documentBibleBooksDao.delete(esv.getInitials());
+		assertThat(documentBibleBooksDao.load(esv), nullValue());
+	}
+}
@@ -0,0 +1,50 @@
+package net.bible.android.control.search;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchResultsDtoTest {
+
+	private SearchResultsDto searchResults;
+
+	@Before
+	public void setUp() throws Exception {
+		Versification kjvaV11n = Versifications.instance().getVersification("KJVA");
+		// 106 verses in Genesis, 3 in Tobit which is not Scripture, and 1 in Revelation
+		Key result = PassageKeyFactory.instance().getKey(kjvaV11n, "Gen 1:1-31, Gen 2:1-25, Gen 3:1-24, Gen 4:1-26, Tob 1:1-3, Rev 22:21");
+		searchResults = new SearchResultsDto(result, true);
+	}
+
+	@Test
+	public void testSizeIsKnownBeforeResultsAreRead() {
+		assertThat(searchResults.size(), equalTo(110));
+		assertThat(searchResults.getMainSearchResults().size(), equalTo(0));
+		assertThat(searchResults.hasMore(), is(true));
+	}
+
+	@Test
+	public void testLoadNextPage() {
+		List<Key> firstPage = searchResults.loadNextPage(true);
+		assertThat(firstPage.size(), equalTo(SearchResultsDto.PAGE_SIZE));
+		assertThat(firstPage.get(0).getOsisRef(), equalTo("Gen.1.1"));
+
+		List<Key> secondPage = searchResults.loadNextPage(true);
+		assertThat(secondPage.size(), equalTo(7));
+		assertThat(secondPage.get(6).getOsisRef(), equalTo("Rev.22.21"));
+		assertThat(searchResults.hasMore(), is(false));
+
+		assertThat(searchResults.getMainSearchResults().size(), equalTo(107));
+		assertThat(searchResults.getOtherSearchResults().size(), equalTo(3));
+		assertThat(searchResults.loadNextPage(false).size(), equalTo(0));
+	}
+}
@@ -0,0 +1,101 @@
+package net.bible.android.view.activity.page;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class VerseCalculatorTest {
+
+	private VerseCalculator verseCalculator;
+
+	@Before
+	public void setUp() {
+		verseCalculator = new VerseCalculator(null);
+	}
+
+	@Test
+	public void testOrderedPositions() {
+		verseCalculator.registerVersePositions("1:20,2:85,3:130");
+
+		assertThat(verseCalculator.calculateCurrentVerse(50), equalTo(2));
+		assertThat(verseCalculator.calculateCurrentVerse(100), equalTo(3));
+	}
+
+	@Test
+	public void testBeforeFirstVerse() {
+		verseCalculator.registerVersePositions("1:20,2:85,3:130");
+
+		assertThat(verseCalculator.calculateCurrentVerse(0), equalTo(1));
+	}
+
+	@Test
+	public void testAfterLastVerse() {
+		verseCalculator.registerVersePositions("1:20,2:85,3:130");
+
+		assertThat(verseCalculator.calculateCurrentVerse(10000), equalTo(3));
+	}
+
+	@Test
+	public void testEmptyList() {
+		assertThat(verseCalculator.calculateCurrentVerse(100), equalTo(-1));
+
+		verseCalculator.registerVersePositions("");
+		assertThat(verseCalculator.calculateCurrentVerse(100), equalTo(-1));
+	}
+
+	/**
+	 * Verse 2 is reported above verse 1 and verse 3 is missing
+	 */
+	@Test
+	public void testNonMonotonicPositions() {
+		verseCalculator.registerVersePositions("1:100,2:50,4:200");
+
+		assertThat(verseCalculator.calculateCurrentVerse(60), equalTo(1));
+		assertThat(verseCalculator.calculateCurrentVerse(120), equalTo(4));
+	}
+
+	/**
+	 * The binary search must find the same verse as checking every verse in order, as was done before
+	 */
+	@Test
+	public void testSameAsLinearSearch() {
+		Random random = new Random(1);
+		for (int page=0; page<100; page++) {
+			int verseCount = random.nextInt(50);
+			int[] positions = new int[verseCount+1];
+			int lastVerse = -1;
+			StringBuilder registered = new StringBuilder();
+			for (int verse=0; verse<=verseCount; verse++) {
+				positions[verse] = -1000;
+				// some verses are missing and some are positioned above earlier verses
+				if (verse>0 && random.nextInt(5)>0) {
+					positions[verse] = verse*40+random.nextInt(100)-50;
+					registered.append(verse).append(':').append(positions[verse]).append(',');
+					lastVerse = verse;
+				}
+			}
+			// missing verses after the last one are not known about
+			positions = Arrays.copyOf(positions, lastVerse+1);
+			verseCalculator.registerVersePositions(registered.toString());
+
+			for (int scrollOffset=-100; scrollOffset<verseCount*40+200; scrollOffset+=7) {
+				assertThat("Scroll offset "+scrollOffset, verseCalculator.calculateCurrentVerse(scrollOffset), equalTo(calculateCurrentVerseLinear(positions, scrollOffset)));
+			}
+		}
+	}
+
+	private int calculateCurrentVerseLinear(int[] positions, int scrollOffset) {
+		int adjustedScrollOffset = scrollOffset - 5;
+		for (int verseIndex=0; verseIndex<positions.length; verseIndex++) {
+			if (positions[verseIndex]>adjustedScrollOffset) {
+				return verseIndex;
+			}
+		}
+		return positions.length-1;
+	}
+}
@@ -1,7 +1,17 @@
 package net.bible.service.common;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import net.bible.service.common.CommonUtils.FileContentWriter;
 
 import org.crosswire.jsword.passage.Verse;
 import org.crosswire.jsword.versification.BibleBook;
@@ -27,4 +37,67 @@ public class CommonUtilsTest {
 		assertThat(CommonUtils.getKeyDescription(gen1_10), equalTo("Genesis 1:10"));
 	}
 
+	@Test
+	public void testWriteAtomicallyReplacesFile() throws Exception {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "CommonUtilsTest");
+		CommonUtils.deleteDirectory(dir);
+		File file = new File(dir, "test.txt");
+
+		CommonUtils.writeAtomically(file, createWriter("first"));
+		assertThat(readFile(file), equalTo("first"));
+
+		CommonUtils.writeAtomically(file, createWriter("second"));
+		assertThat(readFile(file), equalTo("second"));
+		assertFalse(new File(dir, "test.txt.tmp").exists());
+		CommonUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testWriteAtomicallyKeepsFileIfWriteFails() throws Exception {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "CommonUtilsTest");
+		CommonUtils.deleteDirectory(dir);
+		File file = new File(dir, "test.txt");
+		CommonUtils.writeAtomically(file, createWriter("first"));
+
+		try {
+			CommonUtils.writeAtomically(file, new FileContentWriter() {
+				@Override
+				public void write(FileOutputStream out) throws IOException {
+					out.write("partial".getBytes("UTF-8"));
+					throw new IOException("Disk full");
+				}
+			});
+			fail("Write error not thrown");
+		} catch (IOException e) {
+			// expected
+		}
+		assertThat(readFile(file), equalTo("first"));
+		assertFalse(new File(dir, "test.txt.tmp").exists());
+		CommonUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testWriteAtomicallyByteBuffer() throws Exception {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "CommonUtilsTest");
+		CommonUtils.deleteDirectory(dir);
+		File file = new File(dir, "test.txt");
+
+		CommonUtils.writeAtomically(file, ByteBuffer.wrap("buffered".getBytes("UTF-8")));
+		assertThat(readFile(file), equalTo("buffered"));
+		CommonUtils.deleteDirectory(dir);
+	}
+
+	private String readFile(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+	private FileContentWriter createWriter(final String content) {
+		return new FileContentWriter() {
+			@Override
+			public void write(FileOutputStream out) throws IOException {
+				out.write(content.getBytes("UTF-8"));
+			}
+		};
+	}
+
 }
@@ -0,0 +1,25 @@
+package net.bible.service.device;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class BatteryStateTest {
+
+	@Test
+	public void testIsLow() {
+		assertThat(new BatteryState(false, 30, 250).isLow(30), is(true));
+		assertThat(new BatteryState(false, 31, 250).isLow(30), is(false));
+		assertThat(new BatteryState(true, 5, 250).isLow(30), is(false));
+		// an unknown level is never low
+		assertThat(new BatteryState(false, -1, 250).isLow(30), is(false));
+	}
+
+	@Test
+	public void testIsHot() {
+		assertThat(new BatteryState(true, 50, 400).isHot(40), is(true));
+		assertThat(new BatteryState(true, 50, 399).isHot(40), is(false));
+		assertThat(new BatteryState(true, 50, -1).isHot(40), is(false));
+	}
+}
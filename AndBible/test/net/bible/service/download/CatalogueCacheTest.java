@@ -0,0 +1,154 @@
+package net.bible.service.download;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import net.bible.service.common.CommonUtils;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.crosswire.jsword.book.Book;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+@RunWith(RobolectricTestRunner.class)
+public class CatalogueCacheTest {
+
+	private HttpServer server;
+	private URI catalogueUri;
+	private File cacheDir;
+
+	// the repository's current mods.d.tar.gz and ETag
+	private volatile byte[] catalogue;
+	private volatile String eTag;
+	private volatile int requestCount;
+
+	@Before
+	public void setUp() throws Exception {
+		cacheDir = new File(System.getProperty("java.io.tmpdir"), "CatalogueCacheTest");
+		CommonUtils.deleteDirectory(cacheDir);
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/sword/mods.d.tar.gz", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requestCount++;
+				if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					exchange.sendResponseHeaders(304, -1);
+				} else {
+					exchange.getResponseHeaders().add("ETag", eTag);
+					exchange.sendResponseHeaders(200, catalogue.length);
+					OutputStream out = exchange.getResponseBody();
+					out.write(catalogue);
+					out.close();
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		catalogueUri = new URI("http://localhost:"+server.getAddress().getPort()+"/sword/mods.d.tar.gz");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop(0);
+		CommonUtils.deleteDirectory(cacheDir);
+	}
+
+	@Test
+	public void testOnlyChangedConfsAreParsed() throws Exception {
+		Map<String, String> confs = new LinkedHashMap<String, String>();
+		confs.put("kjv", createConf("KJV", "1.0"));
+		confs.put("web", createConf("WEB", "1.0"));
+		setCatalogue(confs, "\"v1\"");
+
+		CatalogueCache cache = new CatalogueCache(cacheDir);
+		assertThat(cache.getBooks("Test", catalogueUri, false).size(), equalTo(2));
+		assertThat(cache.getParsedConfCount(), equalTo(2L));
+
+		// unchanged so not downloaded again
+		assertThat(cache.getBooks("Test", catalogueUri, true).size(), equalTo(2));
+		assertThat(cache.getNotModifiedCount(), equalTo(1L));
+		assertThat(cache.getDownloadCount(), equalTo(1L));
+
+		// one conf changed and one added
+		confs.put("web", createConf("WEB", "2.0"));
+		confs.put("esv", createConf("ESV", "1.0"));
+		setCatalogue(confs, "\"v2\"");
+		List<Book> books = cache.getBooks("Test", catalogueUri, true);
+		assertThat(books.size(), equalTo(3));
+		assertThat(getVersion(books, "WEB"), equalTo("2.0"));
+		assertThat(cache.getParsedConfCount(), equalTo(4L));
+		assertThat(cache.getUnchangedConfCount(), equalTo(1L));
+	}
+
+	@Test
+	public void testSavedCatalogueUsedWithoutDownloading() throws Exception {
+		Map<String, String> confs = new LinkedHashMap<String, String>();
+		confs.put("kjv", createConf("KJV", "1.0"));
+		setCatalogue(confs, "\"v1\"");
+		new CatalogueCache(cacheDir).getBooks("Test", catalogueUri, true);
+		assertThat(requestCount, equalTo(1));
+
+		// a new process loads the saved catalogue
+		CatalogueCache cache = new CatalogueCache(cacheDir);
+		assertThat(cache.isCached("Test"), equalTo(true));
+		assertThat(cache.getBooks("Test", catalogueUri, false).size(), equalTo(1));
+		assertThat(requestCount, equalTo(1));
+
+		// and revalidates it with the saved ETag
+		cache.getBooks("Test", catalogueUri, true);
+		assertThat(cache.getNotModifiedCount(), equalTo(1L));
+
+		// the previous list is used if the repository cannot be reached
+		server.stop(0);
+		assertThat(cache.getBooks("Test", catalogueUri, true).size(), equalTo(1));
+	}
+
+	private String getVersion(List<Book> books, String initials) {
+		for (Book book : books) {
+			if (book.getInitials().equals(initials)) {
+				return book.getProperty("Version");
+			}
+		}
+		return null;
+	}
+
+	private String createConf(String initials, String version) {
+		return "["+initials+"]\nDescription="+initials+"\nModDrv=zText\nLang=en\nVersion="+version+"\n";
+	}
+
+	private void setCatalogue(Map<String, String> confs, String eTag) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(bytes));
+		for (Map.Entry<String, String> conf : confs.entrySet()) {
+			byte[] content = conf.getValue().getBytes("UTF-8");
+			TarArchiveEntry entry = new TarArchiveEntry("mods.d/"+conf.getKey()+".conf");
+			entry.setSize(content.length);
+			tar.putArchiveEntry(entry);
+			tar.write(content);
+			tar.closeArchiveEntry();
+		}
+		tar.close();
+		this.catalogue = bytes.toByteArray();
+		this.eTag = eTag;
+	}
+}
@@ -0,0 +1,99 @@
+package net.bible.service.download;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.bible.service.download.CatalogueRefresher.CatalogueListener;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.install.InstallException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CatalogueRefresherTest {
+
+	@Test
+	public void testHigherPriorityRepoWinsWhicheverRespondsFirst() throws Exception {
+		// the high priority repo responds last
+		FakeRepo high = new FakeRepo("High", 300, "KJV", "ESV");
+		FakeRepo low = new FakeRepo("Low", 0, "KJV", "WEB");
+
+		final List<Integer> partialSizes = new ArrayList<Integer>();
+		List<Book> books = new CatalogueRefresher(Arrays.asList(high, low), 5000).getBooks(false, new CatalogueListener() {
+			@Override
+			public void catalogueUpdated(List<Book> books) {
+				partialSizes.add(books.size());
+			}
+		});
+
+		assertThat(partialSizes, equalTo(Arrays.asList(2, 3)));
+		assertThat(books.size(), equalTo(3));
+		assertThat(getRepoOf(books, "KJV"), equalTo("High"));
+		assertThat(getRepoOf(books, "WEB"), equalTo("Low"));
+	}
+
+	@Test
+	public void testSlowAndFailingReposAreLeftOut() throws Exception {
+		FakeRepo slow = new FakeRepo("Slow", 10000, "KJV");
+		FakeRepo failing = new FakeRepo("Failing", -1, "ESV");
+		FakeRepo ok = new FakeRepo("Ok", 0, "WEB");
+
+		long start = System.currentTimeMillis();
+		List<Book> books = new CatalogueRefresher(Arrays.asList(slow, failing, ok), 500).getBooks(false, null);
+
+		assertThat(books.size(), equalTo(1));
+		assertThat(books.get(0).getInitials(), equalTo("WEB"));
+		assertThat(System.currentTimeMillis()-start<5000, equalTo(true));
+	}
+
+	private String getRepoOf(List<Book> books, String initials) {
+		for (Book book : books) {
+			if (book.getInitials().equals(initials)) {
+				return book.getProperty(DownloadManager.REPOSITORY_KEY);
+			}
+		}
+		return null;
+	}
+
+	/** stands in for a remote repository, a negative delay makes it fail
+	 */
+	private static class FakeRepo extends RepoBase {
+		private final String name;
+		private final long delayMillis;
+		private final String[] initials;
+
+		FakeRepo(String name, long delayMillis, String... initials) {
+			this.name = name;
+			this.delayMillis = delayMillis;
+			this.initials = initials;
+		}
+
+		@Override
+		public List<Book> getRepoBooks(boolean refresh) throws InstallException {
+			if (delayMillis<0) {
+				throw new InstallException("Repository unavailable");
+			}
+			try {
+				Thread.sleep(delayMillis);
+				List<Book> books = new ArrayList<Book>();
+				for (String bookInitials : initials) {
+					books.add(FakeSwordBookFactory.createFakeRepoBook(bookInitials, "["+bookInitials+"]\nDescription="+bookInitials+"\nModDrv=zText\nLang=en\n", name));
+				}
+				return books;
+			} catch (Exception e) {
+				throw new InstallException(e.getMessage());
+			}
+		}
+
+		@Override
+		public String getRepoName() {
+			return name;
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package net.bible.service.download;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import net.bible.service.common.CommonUtils;
+
+import org.crosswire.common.progress.Progress;
+import org.crosswire.common.util.IOUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+@RunWith(RobolectricTestRunner.class)
+public class DownloadSchedulerTest {
+
+	private static final String ETAG = "\"v1\"";
+
+	private HttpServer server;
+	private URI fileUri;
+	private URI missingFileUri;
+	private File downloadDir;
+
+	private byte[] moduleData;
+	// a module zip
+	private byte[] content;
+	// the server closes the connection half way through the first response
+	private volatile boolean dropNextTransfer;
+	private volatile String lastRange;
+	private volatile long responseDelayMillis;
+
+	@Before
+	public void setUp() throws Exception {
+		downloadDir = new File(System.getProperty("java.io.tmpdir"), "DownloadSchedulerTest");
+		CommonUtils.deleteDirectory(downloadDir);
+
+		// random data does not compress so the zip is large enough to be dropped part way through
+		moduleData = new byte[200000];
+		new Random(1).nextBytes(moduleData);
+		content = createModuleZip();
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/files/module.zip", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (responseDelayMillis>0) {
+					try {
+						Thread.sleep(responseDelayMillis);
+					} catch (InterruptedException e) {
+						throw new IOException(e);
+					}
+				}
+				String range = exchange.getRequestHeaders().getFirst("Range");
+				lastRange = range;
+				int start = 0;
+				exchange.getResponseHeaders().add("ETag", ETAG);
+				if (range!=null && ETAG.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+					start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+					exchange.getResponseHeaders().add("Content-Range", "bytes "+start+"-"+(content.length-1)+"/"+content.length);
+					exchange.sendResponseHeaders(206, content.length-start);
+				} else {
+					exchange.sendResponseHeaders(200, content.length);
+				}
+
+				OutputStream out = exchange.getResponseBody();
+				if (dropNextTransfer) {
+					dropNextTransfer = false;
+					out.write(content, start, (content.length-start)/2);
+					out.flush();
+					// the server drops the connection of a handler that fails
+					throw new IOException("Dropping connection");
+				}
+				out.write(content, start, content.length-start);
+				out.close();
+				exchange.close();
+			}
+		});
+		server.createContext("/files/missing.zip", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+			}
+		});
+		server.start();
+		fileUri = new URI("http://localhost:"+server.getAddress().getPort()+"/files/module.zip");
+		missingFileUri = new URI("http://localhost:"+server.getAddress().getPort()+"/files/missing.zip");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop(0);
+		CommonUtils.deleteDirectory(downloadDir);
+	}
+
+	@Test
+	public void testDroppedConnectionIsResumed() throws Exception {
+		DownloadScheduler scheduler = new DownloadScheduler(downloadDir, 1);
+		File target = new File(downloadDir, "target/module.zip");
+
+		dropNextTransfer = true;
+		scheduler.downloadNow(new FileDownloadTask(fileUri, target, "test"));
+
+		assertThat(scheduler.getRetryCount(), equalTo(1L));
+		assertThat(scheduler.getFailureCount(), equalTo(0L));
+		// only the second half was downloaded again
+		assertThat(lastRange, equalTo("bytes="+(content.length/2)+"-"));
+		assertTrue(Arrays.equals(content, readFile(target)));
+		assertThat(scheduler.getQueuedCount(), equalTo(0));
+	}
+
+	@Test
+	public void testDownloadNowWaitsForQueuedDownload() throws Exception {
+		DownloadScheduler scheduler = new DownloadScheduler(downloadDir, 1);
+		File target = new File(downloadDir, "target/module.zip");
+
+		responseDelayMillis = 500;
+		scheduler.schedule(new FileDownloadTask(fileUri, target, "test"));
+		// the same file is needed before the queued download has finished
+		scheduler.downloadNow(new FileDownloadTask(fileUri, target, "test"));
+
+		assertTrue(Arrays.equals(content, readFile(target)));
+		assertThat(scheduler.getQueuedCount(), equalTo(0));
+	}
+
+	@Test
+	public void testStreamedDownloadIsRestarted() throws Exception {
+		DownloadScheduler scheduler = new DownloadScheduler(downloadDir, 1);
+		final File swordDir = new File(downloadDir, "sword");
+		final File frontendDir = new File(downloadDir, "frontend");
+
+		DownloadTask task = new StreamedDownloadTask(DownloadTask.PRIORITY_BIBLE) {
+			@Override
+			String getJobID() {
+				return "INSTALL_BOOK-Test";
+			}
+			@Override
+			String getJobName() {
+				return getJobID();
+			}
+			@Override
+			URI getSource() {
+				return fileUri;
+			}
+			@Override
+			void receive(InputStream in, File workDir, Progress job) throws IOException {
+				new StagedModuleInstaller(workDir).unpack(in);
+			}
+			@Override
+			void install(File downloadedFile, Progress job) throws IOException {
+				new StagedModuleInstaller(downloadedFile).install(swordDir, frontendDir);
+			}
+			@Override
+			String[] getQueueFields() {
+				return new String[] {"test"};
+			}
+		};
+
+		dropNextTransfer = true;
+		scheduler.downloadNow(task);
+
+		assertThat(scheduler.getRetryCount(), equalTo(1L));
+		assertThat(scheduler.getFailureCount(), equalTo(0L));
+		// a streamed download starts again from the beginning
+		assertThat(lastRange, nullValue());
+		assertTrue(new File(swordDir, "mods.d/test.conf").exists());
+		assertTrue(Arrays.equals(moduleData, readFile(new File(swordDir, "modules/texts/ztext/test/ot.bzz"))));
+		assertFalse(new File(downloadDir, "INSTALL_BOOK-Test.staging").exists());
+	}
+
+	@Test
+	public void testMissingFileIsNotRetriedOrSaved() throws Exception {
+		DownloadScheduler scheduler = new DownloadScheduler(downloadDir, 1);
+		File target = new File(downloadDir, "target/missing.zip");
+
+		scheduler.downloadNow(new FileDownloadTask(missingFileUri, target, "test"));
+
+		assertThat(scheduler.getRetryCount(), equalTo(0L));
+		assertThat(scheduler.getFailureCount(), equalTo(1L));
+		assertFalse(target.exists());
+		// nothing is left to be restarted
+		assertThat(readFile(new File(downloadDir, "queue")).length, equalTo(0));
+	}
+
+	@Test
+	public void testIsRetryable() {
+		assertTrue(DownloadScheduler.isRetryable(new IOException("Connection reset")));
+		assertTrue(DownloadScheduler.isRetryable(new HttpResponseException(503, "Service unavailable")));
+		assertFalse(DownloadScheduler.isRetryable(new HttpResponseException(404, "Not found")));
+		assertFalse(DownloadScheduler.isRetryable(new ZipException("Module zip has no conf file or no data")));
+	}
+
+	@Test
+	public void testQueueIsRestoredUntilMaxRestarts() throws Exception {
+		File target = new File(downloadDir, "target/module.zip");
+		FileDownloadTask restoredTask = new FileDownloadTask(fileUri, target, "test");
+		FileDownloadTask abandonedTask = new FileDownloadTask(fileUri, new File(downloadDir, "target/abandoned.zip"), "test");
+		File abandonedPartFile = new File(downloadDir, abandonedTask.getJobID().replaceAll("[^A-Za-z0-9_.-]", "_")+".part");
+		downloadDir.mkdirs();
+		writeFile(abandonedPartFile, "partial");
+		writeFile(new File(downloadDir, "queue"), getQueueLine(0, restoredTask)+getQueueLine(DownloadScheduler.MAX_RESTARTS, abandonedTask));
+
+		DownloadScheduler scheduler = new DownloadScheduler(downloadDir, 1);
+		scheduler.resumeQueuedDownloads();
+
+		// the queue is restored and the download run on the scheduler's thread
+		for (int i=0; i<100 && !(target.exists() && scheduler.getQueuedCount()==0); i++) {
+			Thread.sleep(100);
+		}
+		assertTrue(Arrays.equals(content, readFile(target)));
+		assertFalse(abandonedPartFile.exists());
+		assertThat(readFile(new File(downloadDir, "queue")).length, equalTo(0));
+	}
+
+	@Test
+	public void testBiblesAreDownloadedBeforeIndexes() {
+		List<DownloadTask> tasks = new ArrayList<DownloadTask>();
+		tasks.add(createTask("index1", DownloadTask.PRIORITY_INDEX, 1));
+		tasks.add(createTask("font1", DownloadTask.PRIORITY_FILE, 2));
+		tasks.add(createTask("bible1", DownloadTask.PRIORITY_BIBLE, 3));
+		tasks.add(createTask("index2", DownloadTask.PRIORITY_INDEX, 4));
+		tasks.add(createTask("bible2", DownloadTask.PRIORITY_BIBLE, 5));
+
+		Collections.sort(tasks);
+
+		assertThat(tasks.toString(), equalTo("[bible1, bible2, font1, index1, index2]"));
+	}
+
+	private DownloadTask createTask(final String id, int priority, long sequenceNo) {
+		DownloadTask task = new DownloadTask(priority) {
+			@Override
+			String getJobID() {
+				return id;
+			}
+			@Override
+			String getJobName() {
+				return id;
+			}
+			@Override
+			URI getSource() {
+				return fileUri;
+			}
+			@Override
+			void install(File downloadedFile, Progress job) {
+			}
+			@Override
+			String[] getQueueFields() {
+				return new String[] {id};
+			}
+		};
+		task.setSequenceNo(sequenceNo);
+		return task;
+	}
+
+	private String getQueueLine(int restartCount, DownloadTask task) {
+		StringBuilder line = new StringBuilder();
+		line.append(restartCount).append(DownloadTask.FIELD_SEPARATOR).append(task.getJobID());
+		for (String field : task.getQueueFields()) {
+			line.append(DownloadTask.FIELD_SEPARATOR).append(field);
+		}
+		return line.append('\n').toString();
+	}
+
+	private void writeFile(File file, String text) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(text.getBytes("UTF-8"));
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+	private byte[] createModuleZip() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ZipOutputStream zip = new ZipOutputStream(bytes);
+		zip.putNextEntry(new ZipEntry("mods.d/test.conf"));
+		zip.write("[Test]\nDataPath=./modules/texts/ztext/test/\nModDrv=zText\n".getBytes("UTF-8"));
+		zip.putNextEntry(new ZipEntry("modules/texts/ztext/test/ot.bzz"));
+		zip.write(moduleData);
+		zip.close();
+		return bytes.toByteArray();
+	}
+
+	private byte[] readFile(File file) throws IOException {
+		byte[] bytes = new byte[(int)file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			int count;
+			while (offset<bytes.length && (count = in.read(bytes, offset, bytes.length-offset))!=-1) {
+				offset += count;
+			}
+		} finally {
+			IOUtil.close(in);
+		}
+		return bytes;
+	}
+}
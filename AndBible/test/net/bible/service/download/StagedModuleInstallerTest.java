@@ -0,0 +1,130 @@
+package net.bible.service.download;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import net.bible.service.common.CommonUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class StagedModuleInstallerTest {
+
+	private File testDir;
+	private File swordDir;
+	private File frontendDir;
+	private StagedModuleInstaller installer;
+
+	@Before
+	public void setUp() throws Exception {
+		testDir = new File(System.getProperty("java.io.tmpdir"), "StagedModuleInstallerTest");
+		CommonUtils.deleteDirectory(testDir);
+		swordDir = new File(testDir, "sword");
+		frontendDir = new File(testDir, "frontend");
+		installer = new StagedModuleInstaller(new File(testDir, "staging"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		CommonUtils.deleteDirectory(testDir);
+	}
+
+	@Test
+	public void testPreviousVersionIsReplaced() throws Exception {
+		// version 1 has a file that version 2 does not
+		File oldFile = new File(swordDir, "modules/texts/ztext/test/nt.bzz");
+		oldFile.getParentFile().mkdirs();
+		writeFile(oldFile, "old");
+
+		installer.unpack(new ByteArrayInputStream(createZip("mods.d/test.conf", "[Test]", "modules/texts/ztext/test/ot.bzz", "new", "fonts/test.ttf", "font")));
+		// nothing is visible until the module is installed
+		assertFalse(new File(swordDir, "mods.d/test.conf").exists());
+		installer.install(swordDir, frontendDir);
+
+		assertTrue(new File(swordDir, "mods.d/test.conf").exists());
+		assertThat(new File(swordDir, "modules/texts/ztext/test/ot.bzz").length(), equalTo(3L));
+		assertFalse(oldFile.exists());
+		assertFalse(new File(swordDir, "modules/texts/ztext/test.old").exists());
+		assertTrue(new File(frontendDir, "fonts/test.ttf").exists());
+		assertFalse(new File(testDir, "staging").exists());
+	}
+
+	@Test
+	public void testFailedInstallIsRolledBack() throws Exception {
+		File oldFile = new File(swordDir, "modules/texts/ztext/test/ot.bzz");
+		oldFile.getParentFile().mkdirs();
+		writeFile(oldFile, "old");
+		// a non empty directory in place of the conf prevents the conf being moved
+		File blockedConf = new File(swordDir, "mods.d/test.conf/blocked");
+		blockedConf.getParentFile().mkdirs();
+		writeFile(blockedConf, "");
+
+		installer.unpack(new ByteArrayInputStream(createZip("mods.d/test.conf", "[Test]", "modules/texts/ztext/test/ot.bzz", "new version")));
+		try {
+			installer.install(swordDir, frontendDir);
+			fail("Install succeeded without its conf");
+		} catch (IOException e) {
+			// expected
+		}
+
+		// the previous version is restored
+		assertThat(oldFile.length(), equalTo(3L));
+		assertFalse(new File(swordDir, "modules/texts/ztext/test.old").exists());
+	}
+
+	@Test
+	public void testInvalidZipIsRejected() throws Exception {
+		try {
+			installer.unpack(new ByteArrayInputStream(createZip("modules/texts/ztext/test/ot.bzz", "new")));
+			fail("Zip without a conf was accepted");
+		} catch (ZipException e) {
+			// expected
+		}
+
+		try {
+			installer.unpack(new ByteArrayInputStream(createZip("mods.d/test.conf", "[Test]", "modules/../../escape.txt", "bad")));
+			fail("Zip with a path outside the module was accepted");
+		} catch (ZipException e) {
+			// expected
+		}
+		assertFalse(new File(testDir, "escape.txt").exists());
+	}
+
+	/** create a zip from pairs of entry names and contents
+	 */
+	private byte[] createZip(String... namesAndContents) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ZipOutputStream zip = new ZipOutputStream(bytes);
+		for (int i=0; i<namesAndContents.length; i+=2) {
+			zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+			zip.write(namesAndContents[i+1].getBytes("UTF-8"));
+		}
+		zip.close();
+		return bytes.toByteArray();
+	}
+
+	private void writeFile(File file, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package net.bible.service.format;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import net.bible.service.format.osistohtml.OsisToHtmlParameters;
+import net.bible.service.format.osistohtml.osishandlers.OsisToHtmlSaxHandler;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+public class OSISReaderTest {
+
+	private Book kjv;
+
+	@Before
+	public void setUp() throws Exception {
+		kjv = Books.installed().getBook("KJV");
+	}
+
+	@Test
+	public void testSameAsOSISInputStream() throws Exception {
+		for (String ref : new String[] {"Ps 117", "Ps 119", "Gen 1", "3 John"}) {
+			Key key = kjv.getKey(ref);
+			String fromStream = readAll(new InputStreamReader(new OSISInputStream(kjv, key), "UTF-8"));
+			String fromReader = readAll(new OSISReader(kjv, key));
+			assertThat("Different text for "+ref, fromReader, equalTo(fromStream));
+		}
+	}
+
+	@Test
+	public void testSmallReads() throws Exception {
+		Key key = kjv.getKey("Ps 117");
+		String expected = readAll(new OSISReader(kjv, key));
+
+		Reader reader = new OSISReader(kjv, key);
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[3];
+		int len;
+		while ((len = reader.read(buffer, 0, buffer.length))!=-1) {
+			builder.append(buffer, 0, len);
+		}
+		assertThat(builder.toString(), equalTo(expected));
+	}
+
+	/**
+	 * The parser must produce the same html from the Reader as from the InputStream, including chapters with titles and notes.
+	 */
+	@Test
+	public void testSameHtmlAsOSISInputStream() throws Exception {
+		SAXParserFactory spf = SAXParserFactory.newInstance();
+		spf.setValidating(false);
+		SAXParser parser = spf.newSAXParser();
+
+		for (String ref : new String[] {"Gen 1", "Ps 3", "Ps 119", "Matt 5", "3 John"}) {
+			Key key = kjv.getKey(ref);
+			OsisToHtmlSaxHandler streamHandler = new OsisToHtmlSaxHandler(createParameters());
+			InputStream is = new OSISInputStream(kjv, key);
+			parser.parse(is, streamHandler);
+
+			OsisToHtmlSaxHandler readerHandler = new OsisToHtmlSaxHandler(createParameters());
+			parser.parse(new InputSource(new OSISReader(kjv, key)), readerHandler);
+
+			assertThat("Different html for "+ref, readerHandler.toString(), equalTo(streamHandler.toString()));
+		}
+	}
+
+	/**
+	 * Render every chapter of the KJV to html with both the InputStream and Reader and compare the memory allocated.
+	 * Takes a while so only runs when the benchmark system property is set e.g. -Dbenchmark=true
+	 */
+	@Test
+	public void benchmarkWholeBibleAllocation() throws Exception {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+
+		SAXParserFactory spf = SAXParserFactory.newInstance();
+		spf.setValidating(false);
+		SAXParser parser = spf.newSAXParser();
+
+		// warm up JSword and the parser
+		renderWholeBible(parser, false);
+		renderWholeBible(parser, true);
+
+		long streamStart = System.currentTimeMillis();
+		long streamBytes = renderWholeBible(parser, false);
+		long streamMillis = System.currentTimeMillis()-streamStart;
+
+		long readerStart = System.currentTimeMillis();
+		long readerBytes = renderWholeBible(parser, true);
+		long readerMillis = System.currentTimeMillis()-readerStart;
+
+		System.out.println("OSISInputStream allocated "+streamBytes/1024+"KB in "+streamMillis+"ms");
+		System.out.println("OSISReader allocated "+readerBytes/1024+"KB in "+readerMillis+"ms");
+	}
+
+	/** @return bytes allocated by this thread while rendering
+	 */
+	private long renderWholeBible(SAXParser parser, boolean useReader) throws Exception {
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+
+		Versification v11n = ((AbstractPassageBook)kjv).getVersification();
+		for (int i=0; i<v11n.getBookCount(); i++) {
+			BibleBook book = v11n.getBook(i);
+			for (int chapter=1; chapter<=v11n.getLastChapter(book); chapter++) {
+				Key key = new VerseRange(v11n, new Verse(v11n, book, chapter, 0), new Verse(v11n, book, chapter, v11n.getLastVerse(book, chapter)));
+				OsisToHtmlSaxHandler handler = new OsisToHtmlSaxHandler(createParameters());
+				if (useReader) {
+					parser.parse(new InputSource(new OSISReader(kjv, key)), handler);
+				} else {
+					InputStream is = new OSISInputStream(kjv, key);
+					parser.parse(is, handler);
+				}
+			}
+		}
+
+		return threadMXBean.getThreadAllocatedBytes(threadId)-startBytes;
+	}
+
+	private OsisToHtmlParameters createParameters() {
+		OsisToHtmlParameters parameters = new OsisToHtmlParameters();
+		parameters.setCssStylesheetList(new ArrayList<String>());
+		return parameters;
+	}
+
+	private String readAll(Reader reader) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[1024];
+		int len;
+		while ((len = reader.read(buffer))!=-1) {
+			builder.append(buffer, 0, len);
+		}
+		reader.close();
+		return builder.toString();
+	}
+}
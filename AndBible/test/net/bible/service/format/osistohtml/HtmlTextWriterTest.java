@@ -3,6 +3,8 @@ package net.bible.service.format.osistohtml;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
+import java.io.StringWriter;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -45,4 +47,71 @@ public class HtmlTextWriterTest {
 		assertThat(htmlTextWriter.getHtml(), equalTo("abcdefghijklmn"));
 	}
 
+	@Test
+	public void testInsertAtInsertionPoints() throws Exception {
+		htmlTextWriter.write("<p>");
+		int verse1 = htmlTextWriter.getInsertionPoint();
+		htmlTextWriter.write("1 a");
+		int verse2 = htmlTextWriter.getInsertionPoint();
+		htmlTextWriter.write("2 b");
+
+		htmlTextWriter.beginInsertAt(verse2);
+		htmlTextWriter.write("[T2]");
+		int afterTitle = htmlTextWriter.getInsertionPoint();
+		htmlTextWriter.finishInserting();
+
+		htmlTextWriter.beginInsertAt(afterTitle);
+		htmlTextWriter.write("[S2]");
+		htmlTextWriter.finishInserting();
+
+		htmlTextWriter.beginInsertAt(verse1);
+		htmlTextWriter.write("[T1]");
+		htmlTextWriter.finishInserting();
+
+		// insert in the middle of a segment
+		htmlTextWriter.beginInsertAt(1);
+		htmlTextWriter.write("!");
+		htmlTextWriter.finishInserting();
+
+		htmlTextWriter.write(" c");
+
+		String expected = "<!p>[T1]1 a[T2][S2]2 b c";
+		assertThat(htmlTextWriter.getHtml(), equalTo(expected));
+		assertThat(htmlTextWriter.getPosition(), equalTo(expected.length()));
+
+		StringWriter out = new StringWriter();
+		htmlTextWriter.writeTo(out);
+		assertThat(out.toString(), equalTo(expected));
+	}
+
+	@Test
+	public void testRemoveAfterAcrossSegments() throws Exception {
+		htmlTextWriter.write("ab");
+		int rollback = htmlTextWriter.getPosition();
+		htmlTextWriter.write("c");
+		htmlTextWriter.getInsertionPoint();
+		htmlTextWriter.write("de");
+
+		htmlTextWriter.removeAfter(rollback);
+		assertThat(htmlTextWriter.getPosition(), equalTo(2));
+		htmlTextWriter.write("f");
+		assertThat(htmlTextWriter.getHtml(), equalTo("abf"));
+	}
+
+	@Test
+	public void testResetAfterIncompleteDocument() throws Exception {
+		htmlTextWriter.write("ab");
+		htmlTextWriter.beginInsertAt(1);
+		htmlTextWriter.writeToTempStore();
+		htmlTextWriter.write("note");
+
+		htmlTextWriter.reset();
+		assertThat(htmlTextWriter.isFlushable(), equalTo(true));
+		assertThat(htmlTextWriter.getTempStoreString(), equalTo(""));
+
+		htmlTextWriter.write("cd");
+		assertThat(htmlTextWriter.flush(), equalTo("cd"));
+		assertThat(htmlTextWriter.getPosition(), equalTo(0));
+	}
+
 }
@@ -0,0 +1,87 @@
+package net.bible.service.format.osistohtml.osishandlers;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import net.bible.service.common.Constants.HTML;
+import net.bible.service.format.osistohtml.OsisToHtmlParameters;
+import net.bible.service.format.osistohtml.preprocessor.TextPreprocessorStage;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.xml.sax.InputSource;
+
+@RunWith(RobolectricTestRunner.class)
+public class OsisToHtmlSaxHandlerPoolTest {
+
+	private static final String INDENTED_LINE = "<div><l type='x-indent'/>Extol him, all peoples!</div>";
+
+	@Test
+	public void testPooledHandlerUsesIndentDepth() throws Exception {
+		OsisToHtmlSaxHandlerPool pool = new OsisToHtmlSaxHandlerPool();
+
+		String defaultHtml = render(pool, 2);
+		String wideHtml = render(pool, 5);
+		// the same handler is reused with a different depth
+		String narrowHtml = render(pool, 2);
+
+		assertTrue(defaultHtml.contains(StringUtils.repeat(HTML.NBSP, 2)+"Extol"));
+		assertTrue(!defaultHtml.contains(StringUtils.repeat(HTML.NBSP, 3)+"Extol"));
+		assertTrue(wideHtml.contains(StringUtils.repeat(HTML.NBSP, 5)+"Extol"));
+		assertTrue(!narrowHtml.contains(StringUtils.repeat(HTML.NBSP, 3)+"Extol"));
+	}
+
+	@Test
+	public void testExtraStageAppliedOnlyWhenAdded() throws Exception {
+		OsisToHtmlSaxHandlerPool pool = new OsisToHtmlSaxHandlerPool();
+
+		OsisToHtmlParameters withStage = createParameters(2);
+		withStage.addTextPreprocessorStage(new ExclamationToQuestionStage());
+		OsisToHtmlParameters withoutStage = createParameters(2);
+
+		assertFalse(withStage.getFingerprint().equals(withoutStage.getFingerprint()));
+		assertTrue(render(pool, withStage).contains("peoples?"));
+		// the reused handler must not keep the stage
+		assertTrue(render(pool, withoutStage).contains("peoples!"));
+	}
+
+	private String render(OsisToHtmlSaxHandlerPool pool, int indentDepth) throws Exception {
+		return render(pool, createParameters(indentDepth));
+	}
+
+	private OsisToHtmlParameters createParameters(int indentDepth) {
+		OsisToHtmlParameters parameters = new OsisToHtmlParameters();
+		parameters.setCssStylesheetList(new ArrayList<String>());
+		parameters.setIndentDepth(indentDepth);
+		return parameters;
+	}
+
+	private String render(OsisToHtmlSaxHandlerPool pool, OsisToHtmlParameters parameters) throws Exception {
+		OsisToHtmlSaxHandler osisToHtml = pool.obtain(parameters);
+		SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(new StringReader(INDENTED_LINE)), osisToHtml);
+		String html = osisToHtml.toString();
+		pool.release(osisToHtml);
+		return html;
+	}
+
+	/** converts ! to ? */
+	private static class ExclamationToQuestionStage extends TextPreprocessorStage {
+		@Override
+		public char[] getTriggerCharacters() {
+			return new char[] {'!'};
+		}
+
+		@Override
+		public int process(String text, int position, StringBuilder output) {
+			output.append('?');
+			return 1;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package net.bible.service.format.osistohtml.osishandlers;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import net.bible.service.format.osistohtml.HtmlChunkListener;
+import net.bible.service.format.osistohtml.OsisToHtmlParameters;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.xml.sax.InputSource;
+
+@RunWith(RobolectricTestRunner.class)
+public class OsisToHtmlSaxHandlerTest {
+
+	/**
+	 * A title after the start of a milestone verse is moved before the verse, so the page must not be split between them
+	 */
+	@Test
+	public void testPageNotSplitBetweenVerseAndPreverseTitle() throws Exception {
+		// the long quote marker fills the first chunk so the page could be split straight after the milestone
+		String osis = "<div>"
+				+ "<verse sID='Gen.1.1' osisID='Gen.1.1'/>"
+				+ "<milestone type='cQuote' marker='"+StringUtils.repeat("x", 20000)+"'/>"
+				+ "<title>Title</title>"
+				+ "Text of verse"
+				+ "<verse eID='Gen.1.1'/>"
+				+ "</div>";
+
+		String wholePage = render(osis, null);
+
+		final StringBuilder chunkedPage = new StringBuilder();
+		String endOfPage = render(osis, new HtmlChunkListener() {
+			@Override
+			public void pageStarted(String html) {
+				chunkedPage.append(html);
+			}
+			@Override
+			public void pageContinued(String html) {
+				chunkedPage.append(html);
+			}
+		});
+		chunkedPage.append(endOfPage);
+
+		assertTrue(wholePage.indexOf("Title")<wholePage.indexOf("xxx"));
+		assertThat(chunkedPage.toString(), equalTo(wholePage));
+	}
+
+	private String render(String osis, HtmlChunkListener chunkListener) throws Exception {
+		OsisToHtmlParameters parameters = new OsisToHtmlParameters();
+		parameters.setCssStylesheetList(new ArrayList<String>());
+		OsisToHtmlSaxHandler osisToHtml = new OsisToHtmlSaxHandler(parameters);
+		osisToHtml.setChunkListener(chunkListener);
+		SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(new StringReader(osis)), osisToHtml);
+		return osisToHtml.toString();
+	}
+}
@@ -0,0 +1,71 @@
+package net.bible.service.format.osistohtml.preprocessor;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import net.bible.service.format.osistohtml.strongs.StrongsLinkCreator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TextPreprocessorChainTest {
+
+	private TextPreprocessorChain textPreprocessorChain;
+
+	@Before
+	public void setUp() {
+		textPreprocessorChain = new TextPreprocessorChain();
+	}
+
+	@Test
+	public void testTextWithoutTriggersIsUnchanged() {
+		textPreprocessorChain.add(new StrongsLinkCreator());
+		String text = "In the beginning God created the heaven and the earth.";
+		assertThat(textPreprocessorChain.process(text), sameInstance(text));
+	}
+
+	@Test
+	public void testAllStagesApplied() {
+		textPreprocessorChain.add(new HebrewCharacterPreprocessor());
+		textPreprocessorChain.add(new StrongsLinkCreator());
+		textPreprocessorChain.add(new DigitToRomanStage());
+		assertThat(textPreprocessorChain.process("בְּרֵאשִ׃ see GREEK for 12 3"),
+				equalTo("בראש<span dir='rtl'>׃</span>  <a href='gdef:00012' class=''>see GREEK for 12</a> III"));
+	}
+
+	@Test
+	public void testLaterStageUsedWhenEarlierStageDoesNotMatch() {
+		textPreprocessorChain.add(new StrongsLinkCreator());
+		textPreprocessorChain.add(new SToDollarStage());
+		assertThat(textPreprocessorChain.process("so see HEBREW for 1"), equalTo("$o <a href='hdef:00001' class=''>see HEBREW for 1</a>"));
+	}
+
+	/** converts 3 to III */
+	private static class DigitToRomanStage extends TextPreprocessorStage {
+		@Override
+		public char[] getTriggerCharacters() {
+			return new char[] {'3'};
+		}
+
+		@Override
+		public int process(String text, int position, StringBuilder output) {
+			output.append("III");
+			return 1;
+		}
+	}
+
+	/** converts s to $ */
+	private static class SToDollarStage extends TextPreprocessorStage {
+		@Override
+		public char[] getTriggerCharacters() {
+			return new char[] {'s'};
+		}
+
+		@Override
+		public int process(String text, int position, StringBuilder output) {
+			output.append('$');
+			return 1;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package net.bible.service.sword;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import net.bible.service.common.CommonUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DocumentParseMethodDaoTest {
+
+	private File parseInfoDir;
+	private DocumentParseMethodDao documentParseMethodDao;
+
+	@Before
+	public void setUp() throws Exception {
+		parseInfoDir = new File(System.getProperty("java.io.tmpdir"), "DocumentParseMethodDaoTest");
+		documentParseMethodDao = new DocumentParseMethodDao(parseInfoDir);
+	}
+
+	@After
+	public void tearDown() {
+		CommonUtils.deleteDirectory(parseInfoDir);
+	}
+
+	@Test
+	public void testSaveAndLoad() {
+		assertThat(documentParseMethodDao.load("WEB", "1.2"), nullValue());
+
+		DocumentParseInfo parseInfo = new DocumentParseInfo("1.2");
+		parseInfo.setChapterOkay(3);
+		parseInfo.setChapterOkay(500);
+		parseInfo.setChapterFailed(27, false);
+		parseInfo.setChapterFailed(1000, true);
+		documentParseMethodDao.save("WEB", parseInfo);
+
+		DocumentParseInfo loaded = documentParseMethodDao.load("WEB", "1.2");
+		assertThat(loaded.getOkChapters(), equalTo(new int[] {3, 500}));
+		assertThat(loaded.getFailedChapters(), equalTo(new int[] {27, 1000}));
+		assertThat(loaded.isChapterOkay(27), is(Boolean.FALSE));
+		assertThat(loaded.isChapterOkay(500), is(Boolean.TRUE));
+		assertThat(loaded.isChapterOkay(4), nullValue());
+		assertThat(loaded.isMiddleChapterFailure(), is(true));
+		assertThat(loaded.isStartOrEndChapterFailure(), is(true));
+		assertThat(loaded.isValidated(), is(false));
+	}
+
+	@Test
+	public void testNewVersionIsNotLoaded() {
+		DocumentParseInfo parseInfo = new DocumentParseInfo("1.2");
+		parseInfo.setValidated(true);
+		documentParseMethodDao.save("WEB", parseInfo);
+		assertThat(documentParseMethodDao.load("WEB", "1.2").isValidated(), is(true));
+
+		assertThat(documentParseMethodDao.load("WEB", "1.3"), nullValue());
+	}
+
+	@Test
+	public void testDelete() {
+		documentParseMethodDao.save("WEB", new DocumentParseInfo("1.2"));
+		documentParseMethodDao.delete("WEB");
+		assertThat(documentParseMethodDao.load("WEB", "1.2"), nullValue());
+	}
+}
@@ -0,0 +1,128 @@
+package net.bible.service.sword;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import net.bible.service.format.osistohtml.HtmlChunkListener;
+import net.bible.service.format.osistohtml.OsisToHtmlParameters;
+import net.bible.service.format.osistohtml.osishandlers.OsisToHtmlSaxHandler;
+import net.bible.service.sword.SwordContentFacade.ReassemblingChunkListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+@RunWith(RobolectricTestRunner.class)
+public class ReassemblingChunkListenerTest {
+
+	private StringBuilder shownPage;
+	private int pageStartedCount;
+	private ReassemblingChunkListener reassemblingChunkListener;
+
+	@Before
+	public void setUp() throws Exception {
+		shownPage = new StringBuilder();
+		pageStartedCount = 0;
+		// like UpdateTextTask, a started page replaces anything shown previously
+		reassemblingChunkListener = new ReassemblingChunkListener(new HtmlChunkListener() {
+			@Override
+			public void pageStarted(String html) {
+				pageStartedCount++;
+				shownPage.setLength(0);
+				shownPage.append(html);
+			}
+			@Override
+			public void pageContinued(String html) {
+				shownPage.append(html);
+			}
+		});
+	}
+
+	@Test
+	public void testFallbackReplacesPartOfFailedPage() throws Exception {
+		failPartWayThroughChunkedPage();
+
+		// the fallback page is too short to be passed on in pieces
+		reassemblingChunkListener.restartPage();
+		String fallbackHtml = render(createOsis(3, "Fallback"));
+		String endOfPage = reassemblingChunkListener.finishPage(fallbackHtml);
+		shownPage.append(endOfPage);
+
+		assertThat(pageStartedCount, equalTo(2));
+		assertThat(shownPage.toString(), equalTo(fallbackHtml));
+		assertThat(reassemblingChunkListener.getWholePage(endOfPage), equalTo(fallbackHtml));
+	}
+
+	@Test
+	public void testChunkedFallbackReplacesPartOfFailedPage() throws Exception {
+		failPartWayThroughChunkedPage();
+
+		// the fallback page is long enough to be passed on in pieces
+		reassemblingChunkListener.restartPage();
+		String expectedHtml = new OsisToHtmlSaxHandlerRenderer().render(createOsis(2000, "Fallback"), null);
+		String endOfPage = reassemblingChunkListener.finishPage(render(createOsis(2000, "Fallback")));
+		shownPage.append(endOfPage);
+
+		assertThat(shownPage.toString(), equalTo(expectedHtml));
+		assertFalse(shownPage.toString().contains("Fast"));
+		assertThat(reassemblingChunkListener.getWholePage(endOfPage), equalTo(expectedHtml));
+	}
+
+	@Test
+	public void testNoRestartIfNothingPassedOn() throws Exception {
+		reassemblingChunkListener.restartPage();
+		String html = render(createOsis(3, "Fallback"));
+
+		assertThat(reassemblingChunkListener.finishPage(html), equalTo(html));
+		assertFalse(reassemblingChunkListener.isPageStarted());
+		assertThat(pageStartedCount, equalTo(0));
+	}
+
+	/** the fast parse passes the start of the page on and then finds invalid xml
+	 */
+	private void failPartWayThroughChunkedPage() throws Exception {
+		String invalidOsis = createOsis(2000, "Fast").replace("</div>", "<verse osisID='Gen.1.1'></div>");
+		try {
+			render(invalidOsis);
+			fail("Invalid xml was parsed");
+		} catch (SAXException e) {
+			// expected
+		}
+		assertTrue(reassemblingChunkListener.isPageStarted());
+		assertTrue(shownPage.toString().contains("Fast"));
+	}
+
+	private String render(String osis) throws Exception {
+		return new OsisToHtmlSaxHandlerRenderer().render(osis, reassemblingChunkListener);
+	}
+
+	private String createOsis(int verseCount, String text) {
+		StringBuilder osis = new StringBuilder("<div>");
+		for (int i=1; i<=verseCount; i++) {
+			osis.append("<verse osisID='Gen.1.").append(i).append("'>").append(text).append(" text of verse ").append(i).append("</verse>");
+		}
+		return osis.append("</div>").toString();
+	}
+
+	private static class OsisToHtmlSaxHandlerRenderer {
+		String render(String osis, HtmlChunkListener chunkListener) throws Exception {
+			OsisToHtmlParameters parameters = new OsisToHtmlParameters();
+			parameters.setCssStylesheetList(new ArrayList<String>());
+			OsisToHtmlSaxHandler osisToHtml = new OsisToHtmlSaxHandler(parameters);
+			osisToHtml.setChunkListener(chunkListener);
+			SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(new StringReader(osis)), osisToHtml);
+			return osisToHtml.toString();
+		}
+	}
+}
@@ -4,6 +4,10 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.Books;
 import org.crosswire.jsword.book.sword.SwordBook;
@@ -48,6 +52,21 @@ public class SwordContentFacadeTest {
 		assertThat("Wrong canonical text", html, equalTo("In the beginning, God created the heavens and the earth. "));
 	}
 
+	@Test
+	public void testReadPlainTextBatch() throws Exception {
+		Book esv = getBook("ESV");
+		List<Key> keys = new ArrayList<Key>();
+		for (String ref : new String[] {"Rev 22:21", "Gen 1:1", "Gen 1:2", "Luke 15:4"}) {
+			keys.add(PassageKeyFactory.instance().getKey(((SwordBook)esv).getVersification(), ref));
+		}
+		
+		Map<Key, String> plainTextMap = swordContentFacade.getPlainText(esv, keys);
+		assertThat(plainTextMap.size(), equalTo(keys.size()));
+		for (Key key : keys) {
+			assertThat("Wrong text for "+key, plainTextMap.get(key), equalTo(swordContentFacade.getPlainText(esv, key, 1)));
+		}
+	}
+
 	private String getHtml(Book book, Key key, int maxVerses) throws Exception {
 		String html = swordContentFacade.readHtmlText(book, key);
 		return html;		
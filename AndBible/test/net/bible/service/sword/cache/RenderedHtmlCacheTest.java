@@ -0,0 +1,163 @@
+package net.bible.service.sword.cache;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenderedHtmlCacheTest {
+
+	private static final String APP_VERSION = "1.0";
+
+	private RenderedHtmlCache cache;
+	private Versification kjv;
+	private File diskCacheDir;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new RenderedHtmlCache(1000);
+		kjv = Versifications.instance().getVersification("KJV");
+		diskCacheDir = new File(System.getProperty("java.io.tmpdir"), "RenderedHtmlCacheTest");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 0, APP_VERSION);
+		cache.clear();
+		new File(diskCacheDir, "format").delete();
+		diskCacheDir.delete();
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		HtmlCacheKey key = createKey("KJV", "Gen 1", "a");
+		assertThat(cache.get(key), nullValue());
+		cache.put(key, "<html/>");
+		assertThat(cache.get(createKey("KJV", "Gen 1", "a")), equalTo("<html/>"));
+
+		// different parameters must not share html
+		assertThat(cache.get(createKey("KJV", "Gen 1", "b")), nullValue());
+
+		assertThat(cache.getHitCount(), equalTo(1L));
+		assertThat(cache.getMissCount(), equalTo(2L));
+	}
+
+	@Test
+	public void testEvictedWhenTooLarge() throws Exception {
+		// 300 chars is 600 bytes so 2 pages will not fit in 1000 bytes
+		String html = createHtml(300);
+		cache.put(createKey("KJV", "Gen 1", "a"), html);
+		cache.put(createKey("KJV", "Gen 2", "a"), html);
+
+		assertThat(cache.get(createKey("KJV", "Gen 1", "a")), nullValue());
+		assertThat(cache.get(createKey("KJV", "Gen 2", "a")), equalTo(html));
+		assertThat(cache.getEvictionCount(), equalTo(1L));
+	}
+
+	@Test
+	public void testInvalidateBook() throws Exception {
+		cache.put(createKey("KJV", "Gen 1", "a"), "kjv");
+		cache.put(createKey("ESV", "Gen 1", "a"), "esv");
+
+		cache.invalidate("KJV");
+		assertThat(cache.get(createKey("KJV", "Gen 1", "a")), nullValue());
+		assertThat(cache.get(createKey("ESV", "Gen 1", "a")), equalTo("esv"));
+	}
+
+	@Test
+	public void testInvalidateVerse() throws Exception {
+		cache.put(createKey("KJV", "Gen 1", "a"), "gen1");
+		cache.put(createKey("KJV", "Gen 2", "a"), "gen2");
+
+		cache.invalidate(new Verse(kjv, BibleBook.GEN, 1, 3));
+		assertThat(cache.get(createKey("KJV", "Gen 1", "a")), nullValue());
+		assertThat(cache.get(createKey("KJV", "Gen 2", "a")), equalTo("gen2"));
+	}
+
+	@Test
+	public void testDiskTier() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 100000, APP_VERSION);
+		String html = createHtml(400);
+		cache.put(createKey("KJV", "Gen 1", "a"), html);
+		// pushes Gen 1 out of memory
+		cache.put(createKey("KJV", "Gen 2", "a"), html);
+
+		assertThat(cache.get(createKey("KJV", "Gen 1", "a")), equalTo(html));
+		assertThat(cache.getDiskHitCount(), equalTo(1L));
+	}
+
+	@Test
+	public void testInvalidateVerseOnDiskOnlyRemovesChapter() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 100000, APP_VERSION);
+		cache.put(createKey("KJV", "Gen 1", "a"), "gen1");
+		cache.put(createKey("ESV", "Gen 2", "a"), "gen2");
+
+		cache.invalidate(new Verse(kjv, BibleBook.GEN, 1, 3));
+		// read from disk
+		RenderedHtmlCache newCache = new RenderedHtmlCache(1000);
+		newCache.enableDiskCache(diskCacheDir, 100000, APP_VERSION);
+		assertThat(newCache.get(createKey("KJV", "Gen 1", "a")), nullValue());
+		assertThat(newCache.get(createKey("ESV", "Gen 2", "a")), equalTo("gen2"));
+	}
+
+	@Test
+	public void testInvalidateBookOnDiskDoesNotRemoveSimilarInitials() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 100000, APP_VERSION);
+		cache.put(createKey("KJV", "Gen 1", "a"), "kjv");
+		cache.put(createKey("KJV_Apoc", "Gen 1", "a"), "kjvapoc");
+
+		cache.invalidate("KJV");
+		RenderedHtmlCache newCache = new RenderedHtmlCache(1000);
+		newCache.enableDiskCache(diskCacheDir, 100000, APP_VERSION);
+		assertThat(newCache.get(createKey("KJV", "Gen 1", "a")), nullValue());
+		assertThat(newCache.get(createKey("KJV_Apoc", "Gen 1", "a")), equalTo("kjvapoc"));
+	}
+
+	@Test
+	public void testAppUpgradeClearsDisk() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 100000, APP_VERSION);
+		cache.put(createKey("KJV", "Gen 1", "a"), "gen1");
+
+		RenderedHtmlCache sameVersionCache = new RenderedHtmlCache(1000);
+		sameVersionCache.enableDiskCache(diskCacheDir, 100000, APP_VERSION);
+		assertThat(sameVersionCache.get(createKey("KJV", "Gen 1", "a")), equalTo("gen1"));
+
+		RenderedHtmlCache upgradedCache = new RenderedHtmlCache(1000);
+		upgradedCache.enableDiskCache(diskCacheDir, 100000, "1.1");
+		assertThat(upgradedCache.get(createKey("KJV", "Gen 1", "a")), nullValue());
+	}
+
+	@Test
+	public void testModuleUpgradeIsNotReused() throws Exception {
+		cache.put(createKey("KJV", "1.0", "Gen 1", "a"), "v1");
+		assertThat(cache.get(createKey("KJV", "1.1", "Gen 1", "a")), nullValue());
+	}
+
+	private HtmlCacheKey createKey(String initials, String ref, String fingerprint) throws Exception {
+		return createKey(initials, "1.0", ref, fingerprint);
+	}
+
+	private HtmlCacheKey createKey(String initials, String bookVersion, String ref, String fingerprint) throws Exception {
+		Key key = PassageKeyFactory.instance().getKey(kjv, ref);
+		return new HtmlCacheKey(initials, bookVersion, key, fingerprint, false);
+	}
+
+	private String createHtml(int length) {
+		StringBuilder builder = new StringBuilder();
+		for (int i=0; i<length; i++) {
+			builder.append('x');
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,218 @@
+package net.bible.service.sword.cache;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.List;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookCategory;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.book.basic.DefaultBookMetaData;
+import org.crosswire.jsword.book.filter.Filter;
+import org.crosswire.jsword.book.sword.processing.RawTextToXmlProcessor;
+import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.jdom2.Content;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchResultCacheTest {
+
+	private static final String LOVE_VERSES = "Gen 29:20, Mat 5:44, John 3:16, 1John 4:8";
+
+	private SearchResultCache cache;
+	private File diskCacheDir;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new SearchResultCache(100000);
+		diskCacheDir = new File(System.getProperty("java.io.tmpdir"), "SearchResultCacheTest");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 0);
+		cache.clear();
+		diskCacheDir.delete();
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		TestBible kjv = new TestBible("KJV");
+		assertThat(cache.find(kjv, "love").getName(), equalTo(getKey(LOVE_VERSES).getName()));
+		// the query is normalised
+		assertThat(cache.find(kjv, " love ").getName(), equalTo(getKey(LOVE_VERSES).getName()));
+
+		assertThat(kjv.searchCount, equalTo(1));
+		assertThat(cache.getHitCount(), equalTo(1L));
+		assertThat(cache.getMissCount(), equalTo(1L));
+	}
+
+	@Test
+	public void testRestrictionIntersectsUnrestrictedResult() throws Exception {
+		TestBible kjv = new TestBible("KJV");
+		assertThat(cache.find(kjv, "+[Mat-Rev] love").getName(), equalTo(getKey("Mat 5:44, John 3:16, 1John 4:8").getName()));
+		assertThat(cache.find(kjv, "+[Gen-Mal]  love").getName(), equalTo(getKey("Gen 29:20").getName()));
+		assertThat(cache.find(kjv, "love").getName(), equalTo(getKey(LOVE_VERSES).getName()));
+
+		// only the unrestricted query is searched
+		assertThat(kjv.searchCount, equalTo(1));
+		assertThat(kjv.lastQuery, equalTo("love"));
+	}
+
+	@Test
+	public void testInvalidRestrictionIsEmpty() throws Exception {
+		TestBible kjv = new TestBible("KJV");
+		assertThat(cache.find(kjv, "+[Nonsense] love").isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void testDiskTier() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 100000);
+		TestBible kjv = new TestBible("KJV");
+		cache.find(kjv, "love");
+
+		SearchResultCache newCache = new SearchResultCache(100000);
+		newCache.enableDiskCache(diskCacheDir, 100000);
+		assertThat(newCache.find(kjv, "love").getName(), equalTo(getKey(LOVE_VERSES).getName()));
+		assertThat(newCache.getDiskHitCount(), equalTo(1L));
+		assertThat(kjv.searchCount, equalTo(1));
+	}
+
+	@Test
+	public void testDiskResultFromOlderIndexIsNotUsed() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 100000);
+		TestBible kjv = new TestBible("KJV");
+		cache.find(kjv, "love");
+
+		// the index was replaced while the app was not running so no index status change was seen
+		SearchResultCache newCache = new SearchResultCache(100000) {
+			@Override
+			long getIndexTimestamp(Book book) {
+				return 1;
+			}
+		};
+		newCache.enableDiskCache(diskCacheDir, 100000);
+		newCache.find(kjv, "love");
+		assertThat(newCache.getDiskHitCount(), equalTo(0L));
+		assertThat(kjv.searchCount, equalTo(2));
+	}
+
+	@Test
+	public void testInvalidateOnDiskDoesNotRemoveSimilarInitials() throws Exception {
+		cache.enableDiskCache(diskCacheDir, 100000);
+		TestBible kjv = new TestBible("KJV");
+		TestBible kjvApoc = new TestBible("KJV_Apoc");
+		cache.find(kjv, "love");
+		cache.find(kjvApoc, "love");
+
+		cache.invalidate("KJV");
+		SearchResultCache newCache = new SearchResultCache(100000);
+		newCache.enableDiskCache(diskCacheDir, 100000);
+		newCache.find(kjv, "love");
+		newCache.find(kjvApoc, "love");
+		assertThat(kjv.searchCount, equalTo(2));
+		assertThat(kjvApoc.searchCount, equalTo(1));
+	}
+
+	@Test
+	public void testIndexChangeInvalidatesBook() throws Exception {
+		TestBible kjv = new TestBible("KJV");
+		TestBible esv = new TestBible("ESV");
+		cache.find(kjv, "love");
+		cache.find(esv, "love");
+		assertThat(cache.getWatchedBookCount(), equalTo(2));
+
+		kjv.setIndexStatus(IndexStatus.CREATING);
+		cache.find(kjv, "love");
+		cache.find(esv, "love");
+		assertThat(kjv.searchCount, equalTo(2));
+		assertThat(esv.searchCount, equalTo(1));
+	}
+
+	@Test
+	public void testInvalidateStopsWatchingBook() throws Exception {
+		TestBible kjv = new TestBible("KJV");
+		cache.find(kjv, "love");
+
+		cache.invalidate("KJV");
+		assertThat(cache.getWatchedBookCount(), equalTo(0));
+		// the removed listener no longer invalidates results
+		cache.find(new TestBible("KJV"), "love");
+		kjv.setIndexStatus(IndexStatus.CREATING);
+		assertThat(cache.getMemorySize()>0, equalTo(true));
+	}
+
+	private static Key getKey(String ref) throws Exception {
+		return PassageKeyFactory.instance().getKey(Versifications.instance().getVersification("KJV"), ref);
+	}
+
+	/** a Bible whose search returns the same verses for any query and counts searches
+	 */
+	private static class TestBible extends AbstractPassageBook {
+
+		private int searchCount;
+		private String lastQuery;
+
+		TestBible(String initials) {
+			super(createMetaData(initials), null);
+		}
+
+		private static DefaultBookMetaData createMetaData(String initials) {
+			DefaultBookMetaData bmd = new DefaultBookMetaData(null, initials, BookCategory.BIBLE);
+			bmd.setInitials(initials);
+			bmd.putProperty("Versification", "KJV");
+			return bmd;
+		}
+
+		@Override
+		public Key find(String query) throws BookException {
+			searchCount++;
+			lastQuery = query;
+			try {
+				return getKey(LOVE_VERSES);
+			} catch (Exception e) {
+				throw new BookException(e.getMessage());
+			}
+		}
+
+		@Override
+		public boolean contains(Key key) {
+			return false;
+		}
+
+		@Override
+		public String getRawText(Key key) {
+			return "";
+		}
+
+		@Override
+		public void setRawText(Key key, String rawData) {
+		}
+
+		@Override
+		public void setAliasKey(Key alias, Key source) {
+		}
+
+		@Override
+		public Key getGlobalKeyList() {
+			return createEmptyKeyList();
+		}
+
+		@Override
+		protected Filter getFilter() {
+			return null;
+		}
+
+		@Override
+		protected List<Content> getOsis(Key key, RawTextToXmlProcessor processor) {
+			return null;
+		}
+	}
+}
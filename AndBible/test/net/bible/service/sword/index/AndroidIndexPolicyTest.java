@@ -0,0 +1,56 @@
+package net.bible.service.sword.index;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import net.bible.service.device.BatteryState;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AndroidIndexPolicyTest {
+
+	private static final long MB = 1024*1024;
+
+	private static final BatteryState CHARGING = new BatteryState(true, 20, 300);
+	private static final BatteryState LOW = new BatteryState(false, 20, 300);
+	private static final BatteryState HOT = new BatteryState(true, 90, 450);
+
+	private AndroidIndexPolicy policy;
+
+	@Before
+	public void setUp() {
+		policy = new AndroidIndexPolicy();
+	}
+
+	@Test
+	public void testOneThreadOnLowBattery() {
+		assertThat(policy.getThreadCount(LOW, 4, 256*MB), equalTo(1));
+	}
+
+	@Test
+	public void testOneThreadOnHotBattery() {
+		assertThat(policy.getThreadCount(HOT, 4, 256*MB), equalTo(1));
+	}
+
+	@Test
+	public void testLowBatteryIsIgnoredWhenCharging() {
+		assertThat(policy.getThreadCount(CHARGING, 4, 256*MB), equalTo(4));
+	}
+
+	@Test
+	public void testThreadsLimitedByProcessorsAndMemory() {
+		assertThat(policy.getThreadCount(CHARGING, 2, 256*MB), equalTo(2));
+		assertThat(policy.getThreadCount(CHARGING, 16, 256*MB), equalTo(4));
+		// 8MB for indexing only allows 2 threads
+		assertThat(policy.getThreadCount(CHARGING, 4, 32*MB), equalTo(2));
+		assertThat(policy.getThreadCount(CHARGING, 4, 4*MB), equalTo(1));
+	}
+
+	@Test
+	public void testRAMBufferSizeIsBounded() {
+		assertThat(policy.getRAMBufferSize(1, 1024*MB), equalTo(16));
+		assertThat(policy.getRAMBufferSize(2, 64*MB), equalTo(6));
+		assertThat(policy.getRAMBufferSize(4, 16*MB), equalTo(1));
+	}
+}
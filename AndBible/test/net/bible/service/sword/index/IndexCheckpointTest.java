@@ -0,0 +1,71 @@
+package net.bible.service.sword.index;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.BitSet;
+
+import net.bible.service.common.CommonUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class IndexCheckpointTest {
+
+	private File partsDir;
+
+	@Before
+	public void setUp() throws Exception {
+		partsDir = new File(System.getProperty("java.io.tmpdir"), "IndexCheckpointTest");
+		CommonUtils.ensureDirExists(partsDir);
+	}
+
+	@After
+	public void tearDown() {
+		CommonUtils.deleteDirectory(partsDir);
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		assertThat(IndexCheckpoint.exists(partsDir), is(false));
+		assertThat(IndexCheckpoint.load(partsDir, "1.2", 31000), nullValue());
+
+		IndexCheckpoint checkpoint = new IndexCheckpoint(partsDir, "1.2", 31000);
+		checkpoint.segmentCommitted(0, ranges(0, 1, 2), "Gen.3.24");
+		checkpoint.segmentCommitted(70, ranges(3, 200), "Rev.22.21");
+		assertThat(IndexCheckpoint.exists(partsDir), is(true));
+
+		IndexCheckpoint loaded = IndexCheckpoint.load(partsDir, "1.2", 31000);
+		assertThat(loaded, notNullValue());
+		assertThat(loaded.getCompletedRangeCount(), equalTo(5));
+		assertThat(loaded.isRangeCompleted(200), is(true));
+		assertThat(loaded.isRangeCompleted(4), is(false));
+		assertThat(loaded.getSegments(), equalTo(ranges(0, 70)));
+		assertThat(loaded.getLastKey(), equalTo("Rev.22.21"));
+	}
+
+	@Test
+	public void testOtherVersionOrKeysAreNotLoaded() throws Exception {
+		new IndexCheckpoint(partsDir, "1.2", 31000).segmentCommitted(0, ranges(0), "Gen.1.1");
+
+		assertThat(IndexCheckpoint.load(partsDir, "1.3", 31000), nullValue());
+		assertThat(IndexCheckpoint.load(partsDir, "1.2", 31001), nullValue());
+		assertThat(IndexCheckpoint.load(partsDir, "1.2", 31000), notNullValue());
+	}
+
+	private BitSet ranges(int... rangeNos) {
+		BitSet ranges = new BitSet();
+		for (int rangeNo : rangeNos) {
+			ranges.set(rangeNo);
+		}
+		return ranges;
+	}
+}
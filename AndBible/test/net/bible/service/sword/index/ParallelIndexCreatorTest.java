@@ -0,0 +1,106 @@
+package net.bible.service.sword.index;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.bible.service.common.CommonUtils;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.index.lucene.LuceneIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ParallelIndexCreatorTest {
+
+	private File testDir;
+
+	@Before
+	public void setUp() throws Exception {
+		testDir = new File(System.getProperty("java.io.tmpdir"), "ParallelIndexCreatorTest");
+		CommonUtils.deleteDirectory(testDir);
+		CommonUtils.ensureDirExists(testDir);
+	}
+
+	@After
+	public void tearDown() {
+		CommonUtils.deleteDirectory(testDir);
+	}
+
+	@Test
+	public void testMergeSegments() throws Exception {
+		List<File> segmentDirs = new ArrayList<File>();
+		segmentDirs.add(createSegment(0, "Gen.1.1", "Gen.1.2"));
+		segmentDirs.add(createSegment(1, "Rev.22.21"));
+		File indexDir = new File(testDir, "index");
+
+		ParallelIndexCreator.mergeSegments(segmentDirs, indexDir, new WhitespaceAnalyzer(), 1);
+
+		Directory index = FSDirectory.open(indexDir);
+		IndexReader reader = IndexReader.open(index, true);
+		try {
+			assertThat(reader.numDocs(), equalTo(3));
+			IndexSearcher searcher = new IndexSearcher(reader);
+			assertThat(searcher.search(new TermQuery(new Term(LuceneIndex.FIELD_KEY, "Rev.22.21")), 10).totalHits, equalTo(1));
+			assertThat(searcher.search(new TermQuery(new Term(LuceneIndex.FIELD_BODY, "gen.1.2")), 10).totalHits, equalTo(1));
+		} finally {
+			reader.close();
+			index.close();
+		}
+		// the directories are closed so the segments can be deleted
+		for (File segmentDir : segmentDirs) {
+			assertThat(CommonUtils.deleteDirectory(segmentDir), is(true));
+		}
+	}
+
+	@Test
+	public void testCreateIndex() throws Exception {
+		Book book = Books.installed().getBook("KJV");
+		new ParallelIndexCreator(book, new AndroidIndexPolicy()).createIndex();
+
+		assertThat(book.getIndexStatus(), equalTo(IndexStatus.DONE));
+		assertThat(ParallelIndexCreator.isResumable(book), is(false));
+		assertThat(book.find("+[John] wept").isEmpty(), is(false));
+	}
+
+	private File createSegment(int segmentNo, String... keys) throws Exception {
+		File segmentDir = new File(testDir, Integer.toString(segmentNo));
+		Directory segment = FSDirectory.open(segmentDir);
+		try {
+			IndexWriter writer = new IndexWriter(segment, new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+			try {
+				for (String key : keys) {
+					Document doc = new Document();
+					doc.add(new Field(LuceneIndex.FIELD_KEY, key, Field.Store.YES, Field.Index.NOT_ANALYZED));
+					doc.add(new Field(LuceneIndex.FIELD_BODY, key.toLowerCase(), Field.Store.NO, Field.Index.ANALYZED));
+					writer.addDocument(doc);
+				}
+			} finally {
+				writer.close();
+			}
+		} finally {
+			segment.close();
+		}
+		return segmentDir;
+	}
+}
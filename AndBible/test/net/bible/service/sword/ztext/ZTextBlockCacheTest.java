@@ -0,0 +1,35 @@
+package net.bible.service.sword.ztext;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import org.crosswire.jsword.versification.Testament;
+import org.junit.Test;
+
+public class ZTextBlockCacheTest {
+
+	@Test
+	public void testGrowsToHoldLargeBlocks() {
+		ZTextBlockCache cache = new ZTextBlockCache(1000, 10000);
+		cache.put("KJV", Testament.OLD, 1, new byte[100]);
+
+		// 4 blocks of 1000 bytes do not fit in 1000 bytes
+		cache.put("KJV", Testament.OLD, 2, new byte[1000]);
+		assertThat(cache.getMaxBytes(), equalTo(4000));
+		// existing content is kept
+		assertThat(cache.get("KJV", Testament.OLD, 1), notNullValue());
+
+		cache.put("KJV", Testament.OLD, 3, new byte[1000]);
+		cache.put("KJV", Testament.OLD, 4, new byte[1000]);
+		assertThat(cache.get("KJV", Testament.OLD, 2), notNullValue());
+		assertThat(cache.getEvictionCount(), equalTo(0L));
+	}
+
+	@Test
+	public void testDoesNotGrowBeyondLimit() {
+		ZTextBlockCache cache = new ZTextBlockCache(1000, 3000);
+		cache.put("KJV", Testament.OLD, 1, new byte[2000]);
+		assertThat(cache.getMaxBytes(), equalTo(3000));
+	}
+}
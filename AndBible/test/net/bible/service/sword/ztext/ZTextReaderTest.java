@@ -0,0 +1,119 @@
+package net.bible.service.sword.ztext;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Iterator;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.basic.AbstractBook;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZTextReaderTest {
+
+	private Book kjv;
+	private ZTextReader mappedReader;
+	private ZTextReader randomAccessReader;
+	private ZTextBlockCache blockCache;
+
+	private Key genesis;
+
+	private static final int BLOCK_CACHE_SIZE = 4*1024*1024;
+
+	@Before
+	public void setUp() throws Exception {
+		kjv = Books.installed().getBook("KJV");
+		blockCache = new ZTextBlockCache(BLOCK_CACHE_SIZE, BLOCK_CACHE_SIZE);
+		mappedReader = new ZTextReader("KJV", ((AbstractBook)kjv).getBackend(), blockCache, true);
+		randomAccessReader = new ZTextReader("KJV", ((AbstractBook)kjv).getBackend(), blockCache, false);
+
+		Versification v11n = ((AbstractPassageBook)kjv).getVersification();
+		genesis = new VerseRange(v11n, new Verse(v11n, BibleBook.GEN, 1, 1), new Verse(v11n, BibleBook.GEN, 50, v11n.getLastVerse(BibleBook.GEN, 50)));
+	}
+
+	@After
+	public void tearDown() {
+		mappedReader.close();
+		randomAccessReader.close();
+	}
+
+	@Test
+	public void testSameAsJSword() throws Exception {
+		for (String ref : new String[] {"Gen 1:1", "Ps 119:176", "Mal 4:6", "Matt 1:1", "John 3:16", "Rev 22:21"}) {
+			Key key = kjv.getKey(ref);
+			String expected = kjv.getRawText(key);
+			assertThat("Mapped text differs for "+ref, mappedReader.getRawText(key), equalTo(expected));
+			assertThat("Random access text differs for "+ref, randomAccessReader.getRawText(key), equalTo(expected));
+		}
+	}
+
+	@Test
+	public void testWholeBookSameAsJSword() throws Exception {
+		for (Iterator<Key> iter = genesis.iterator(); iter.hasNext(); ) {
+			Key verse = iter.next();
+			assertThat("Text differs for "+verse.getOsisID(), mappedReader.getRawText(verse), equalTo(kjv.getRawText(verse)));
+		}
+	}
+
+	/**
+	 * Blocks are shared through the block cache so a second pass of Genesis, even by another reader, inflates no blocks.
+	 */
+	@Test
+	public void testRepeatedReadsUseBlockCache() throws Exception {
+		readGenesis(mappedReader);
+		long missCount = blockCache.getMissCount();
+		long hitCount = blockCache.getHitCount();
+
+		readGenesis(randomAccessReader);
+
+		assertThat(blockCache.getMissCount(), equalTo(missCount));
+		assertThat(blockCache.getHitCount()>hitCount, equalTo(true));
+	}
+
+	/**
+	 * Compare the time taken to read every verse in Genesis using mapped and random access index files.
+	 * Blocks are shared through the block cache and warmed first so only index access is compared.
+	 * Takes a while so only runs when the benchmark system property is set e.g. -Dbenchmark=true
+	 */
+	@Test
+	public void benchmarkGenesis() throws Exception {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+		final int iterations = 20;
+
+		// warm up the block cache and the JIT
+		readGenesis(randomAccessReader, iterations);
+		readGenesis(mappedReader, iterations);
+
+		long randomAccessNanos = readGenesis(randomAccessReader, iterations);
+		long mappedNanos = readGenesis(mappedReader, iterations);
+
+		System.out.println("RandomAccessFile: "+randomAccessNanos/iterations/1000+"us per pass of Genesis");
+		System.out.println("Memory mapped:    "+mappedNanos/iterations/1000+"us per pass of Genesis");
+	}
+
+	private void readGenesis(ZTextReader reader) throws Exception {
+		readGenesis(reader, 1);
+	}
+
+	/** @return nanoseconds taken
+	 */
+	private long readGenesis(ZTextReader reader, int iterations) throws Exception {
+		long start = System.nanoTime();
+		for (int i=0; i<iterations; i++) {
+			for (Iterator<Key> iter = genesis.iterator(); iter.hasNext(); ) {
+				reader.getRawText(iter.next());
+			}
+		}
+		return System.nanoTime()-start;
+	}
+}